@@ -0,0 +1,101 @@
+package library.benchmark;
+
+import library.dto.BookDetails;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.LoanView;
+import library.dto.UserDetails;
+import library.dto.UserSummary;
+import library.entity.Book;
+import library.entity.Loan;
+import library.entity.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Детерминированные данные для бенчмарков: сущности и DTO с заданным количеством займов.
+ *
+ * @author Avdeyev Viktor
+ */
+final class BenchmarkData {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private BenchmarkData() {
+    }
+
+    static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Benchmark title " + id);
+        book.setAuthor("Benchmark Author " + id % 100);
+        book.setPublishedYear(1900 + (int) (id % 120));
+        book.setPageCount(100 + (int) (id % 900));
+        book.setAvailable(id % 3 != 0);
+        book.setAddedAt(BASE_TIME.plusMinutes(id));
+        return book;
+    }
+
+    static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName("First" + id);
+        user.setLastName("Last" + id);
+        user.setBirthDate(LocalDate.of(1990, 1, 1).plusDays(id));
+        user.setDateRegistration(BASE_TIME.plusMinutes(id));
+        return user;
+    }
+
+    static Loan loan(long id, User user, Book book) {
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(BASE_TIME.plusHours(id));
+        loan.setDueDate(BASE_TIME.plusHours(id).plusDays(14));
+        loan.setReturned(id % 2 == 0);
+        loan.setReturnDate(id % 2 == 0 ? BASE_TIME.plusHours(id + 72) : null);
+        return loan;
+    }
+
+    /**
+     * Займы одной книги разными пользователями.
+     */
+    static List<Loan> loansOfBook(Book book, int count) {
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            loans.add(loan(i, user(i), book));
+        }
+        return loans;
+    }
+
+    /**
+     * Займы разных книг одним пользователем.
+     */
+    static List<Loan> loansOfUser(User user, int count) {
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            loans.add(loan(i, user, book(i)));
+        }
+        return loans;
+    }
+
+    static BookDetails bookDetails(Book book, List<Loan> loans) {
+        return new BookDetails(BookSummary.from(book), loans.stream().map(LoanView::from).toList());
+    }
+
+    static UserDetails userDetails(User user, List<Loan> loans) {
+        return new UserDetails(UserSummary.from(user), loans.stream().map(LoanView::from).toList());
+    }
+
+    static CursorPage<BookSummary> bookPage(int size) {
+        List<BookSummary> books = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            books.add(BookSummary.from(book(i)));
+        }
+        return new CursorPage<>(books, "token");
+    }
+}
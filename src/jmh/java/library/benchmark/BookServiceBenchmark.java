@@ -0,0 +1,70 @@
+package library.benchmark;
+
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.entity.Book;
+import library.repository.BookRepository;
+import library.service.BookService;
+import library.util.KeysetCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.AopTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение книг через {@link BookService} с кэшем и без него.
+ * <p>
+ * Без кэша вызывается целевой объект сервиса в обход прокси {@code @Cacheable}, поэтому каждый вызов
+ * доходит до базы данных. С кэшем после прогрева запросы обслуживаются локальным уровнем.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private BookService bookService;
+
+    private String middleCursor;
+
+    @Setup
+    public void setUp(LibraryContext library) {
+        BookService proxy = library.bean(BookService.class);
+        bookService = cached ? proxy : AopTestUtils.getUltimateTargetObject(proxy);
+        Book middle = library.bean(BookRepository.class).findById(library.middleBookId()).orElseThrow();
+        middleCursor = new KeysetCursor(middle.getAddedAt(), middle.getId()).encode();
+    }
+
+    @Benchmark
+    public Optional<Book> findById(LibraryContext library) {
+        return bookService.findById(library.randomBookId());
+    }
+
+    @Benchmark
+    public CursorPage<BookSummary> findFirstPage() {
+        return bookService.findPage(null, KeysetCursor.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CursorPage<BookSummary> findMiddlePage() {
+        return bookService.findPage(middleCursor, KeysetCursor.DEFAULT_PAGE_SIZE);
+    }
+}
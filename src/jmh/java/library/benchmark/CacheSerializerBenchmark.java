@@ -0,0 +1,81 @@
+package library.benchmark;
+
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.entity.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация значений кэша тем же сериализатором, что использует {@code RedisCacheManager} приложения
+ * ({@link RedisCacheConfiguration#defaultCacheConfig()}).
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    /**
+     * Размер кэшируемой страницы книг.
+     */
+    @Param({"10", "50", "500"})
+    public int pageSize;
+
+    private RedisSerializationContext.SerializationPair<Object> serializer;
+
+    private Book book;
+
+    private CursorPage<BookSummary> page;
+
+    private ByteBuffer serializedBook;
+
+    private ByteBuffer serializedPage;
+
+    @Setup
+    public void setUp() {
+        serializer = RedisCacheConfiguration.defaultCacheConfig().getValueSerializationPair();
+        book = BenchmarkData.book(1);
+        page = BenchmarkData.bookPage(pageSize);
+        serializedBook = serializer.write(book);
+        serializedPage = serializer.write(page);
+    }
+
+    @Benchmark
+    public ByteBuffer writeBook() {
+        return serializer.write(book);
+    }
+
+    @Benchmark
+    public Object readBook() {
+        return serializer.read(serializedBook.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer writePage() {
+        return serializer.write(page);
+    }
+
+    @Benchmark
+    public Object readPage() {
+        return serializer.read(serializedPage.duplicate());
+    }
+}
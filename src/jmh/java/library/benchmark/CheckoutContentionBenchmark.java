@@ -0,0 +1,159 @@
+package library.benchmark;
+
+import library.availability.BookAvailabilityIndex;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.entity.Book;
+import library.entity.Loan;
+import library.entity.User;
+import library.exception.ConflictException;
+import library.service.LoanService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкурентная выдача немногих популярных книг множеством клиентов.
+ * <p>
+ * Каждый поток выдает случайную книгу из {@code hotTitles} и сразу возвращает ее. Выдача занимает книгу
+ * условным UPDATE без блокировок строк на чтение, поэтому проигравшие гонку получают отказ, который
+ * считается во вспомогательном счетчике {@code conflicts}. После прогона проверяется, что ни у одной
+ * книги нет двух открытых займов и что {@code books.available} совпадает с наличием открытого займа;
+ * при нарушении бенчмарк завершается ошибкой.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(200)
+@Fork(1)
+public class CheckoutContentionBenchmark {
+
+    /**
+     * Количество популярных книг, за которые соревнуются потоки.
+     */
+    @Param({"1", "16"})
+    public int hotTitles;
+
+    private LoanService loanService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private Long[] hotBookIds;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryContext library) {
+        loanService = library.bean(LoanService.class);
+        jdbcTemplate = library.bean(JdbcTemplate.class);
+        // последние книги каталога: займы из LibraryContext выдаются на первые
+        hotBookIds = jdbcTemplate.queryForList("SELECT book_id FROM books ORDER BY book_id DESC LIMIT ?",
+            Long.class, hotTitles).toArray(Long[]::new);
+        jdbcTemplate.update("UPDATE loans SET returned = true, return_date = now() "
+            + "WHERE book_id = ANY(?) AND NOT returned", (Object) hotBookIds);
+        jdbcTemplate.update("UPDATE books SET available = true WHERE book_id = ANY(?)", (Object) hotBookIds);
+        library.bean(BookAvailabilityIndex.class).reconcile();
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        List<Long> doubleLoaned = jdbcTemplate.queryForList("SELECT book_id FROM loans "
+            + "WHERE book_id = ANY(?) AND NOT returned GROUP BY book_id HAVING count(*) > 1",
+            Long.class, (Object) hotBookIds);
+        List<Long> drifted = jdbcTemplate.queryForList("SELECT b.book_id FROM books b WHERE b.book_id = ANY(?) "
+            + "AND b.available = EXISTS (SELECT 1 FROM loans l WHERE l.book_id = b.book_id AND NOT l.returned)",
+            Long.class, (Object) hotBookIds);
+        if (!doubleLoaned.isEmpty() || !drifted.isEmpty()) {
+            throw new IllegalStateException("Нарушена согласованность выдачи: два открытых займа у книг "
+                + doubleLoaned + ", доступность не совпадает с займами у книг " + drifted);
+        }
+    }
+
+    /**
+     * Выдача через {@link LoanService#save(Loan)} и возврат через {@link LoanService#updateReturnStatus}.
+     */
+    @Benchmark
+    public void checkoutAndReturn(Outcomes outcomes) {
+        Loan loan = new Loan();
+        loan.setUser(user());
+        loan.setBook(book(hotBookId()));
+        Loan saved;
+        try {
+            saved = loanService.save(loan);
+        } catch (ConflictException ex) {
+            outcomes.conflicts++;
+            return;
+        }
+        outcomes.checkouts++;
+        loanService.updateReturnStatus(saved.getId(), true);
+    }
+
+    /**
+     * Выдача и возврат через пакетные операции с одной книгой в пакете.
+     */
+    @Benchmark
+    public void batchCheckoutAndReturn(Outcomes outcomes) {
+        LoanBatchResult result = loanService.checkoutAll(
+            new LoanCheckoutBatch(LibraryContext.LOAN_USER_ID, List.of(hotBookId()))).get(0);
+        if (result.status() != LoanBatchResult.Status.CHECKED_OUT) {
+            outcomes.conflicts++;
+            return;
+        }
+        outcomes.checkouts++;
+        loanService.returnAll(new LoanReturnBatch(List.of(result.loanId())));
+    }
+
+    private long hotBookId() {
+        return hotBookIds[ThreadLocalRandom.current().nextInt(hotBookIds.length)];
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(LibraryContext.LOAN_USER_ID);
+        return user;
+    }
+
+    private static Book book(long bookId) {
+        Book book = new Book();
+        book.setId(bookId);
+        return book;
+    }
+
+    /**
+     * Счетчики успешных выдач и отказов из-за занятой книги, публикуются JMH рядом с основными результатами.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+
+        public long checkouts;
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            checkouts = 0;
+            conflicts = 0;
+        }
+    }
+}
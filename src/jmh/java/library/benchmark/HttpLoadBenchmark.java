@@ -0,0 +1,94 @@
+package library.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный бенчмарк HTTP API: пропускная способность и распределение задержек (p99 в режиме
+ * {@code SampleTime}) при пуле платформенных потоков Tomcat и в режиме виртуальных потоков.
+ * <p>
+ * Каждый поток JMH - отдельный клиент с блокирующими запросами, параллельность задается {@code -t}.
+ * Чтобы увидеть упор в пул потоков, количество клиентов должно превышать {@code server.tomcat.threads.max}
+ * (200 по умолчанию), например {@code -t 400}. Ответы не 2xx, в том числе отказы по таймауту пула соединений,
+ * считаются во вспомогательном счетчике {@code errors}.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class HttpLoadBenchmark {
+
+    private HttpClient client;
+
+    @Setup
+    public void setUp() {
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    /**
+     * Книга с займами: без кэша, каждый запрос занимает соединение с базой данных.
+     */
+    @Benchmark
+    public int bookDetails(WebLibraryContext library, Outcomes outcomes) throws IOException, InterruptedException {
+        return get(library.baseUrl() + "/books/" + library.randomBookId() + "/details", outcomes);
+    }
+
+    /**
+     * Первая страница каталога: после прогрева отдается из кэша.
+     */
+    @Benchmark
+    public int firstPage(WebLibraryContext library, Outcomes outcomes) throws IOException, InterruptedException {
+        return get(library.baseUrl() + "/books?size=50", outcomes);
+    }
+
+    private int get(String url, Outcomes outcomes) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+            HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            outcomes.errors++;
+        }
+        return response.statusCode();
+    }
+
+    /**
+     * Счетчик неуспешных ответов, публикуется JMH рядом с основными результатами.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            errors = 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package library.benchmark;
+
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.entity.Book;
+import library.repository.BookRepository;
+import library.repository.LoanRepository;
+import library.util.KeysetCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполнение запросов репозиториев напрямую, без сервисного слоя и кэша.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpqlQueryBenchmark {
+
+    private BookRepository bookRepository;
+
+    private LoanRepository loanRepository;
+
+    private KeysetCursor middleCursor;
+
+    private String author;
+
+    @Setup
+    public void setUp(LibraryContext library) {
+        bookRepository = library.bean(BookRepository.class);
+        loanRepository = library.bean(LoanRepository.class);
+        Book middle = bookRepository.findById(library.middleBookId()).orElseThrow();
+        middleCursor = new KeysetCursor(middle.getAddedAt(), middle.getId());
+        author = middle.getAuthor();
+    }
+
+    @Benchmark
+    public Optional<Book> findById(LibraryContext library) {
+        return bookRepository.findById(library.randomBookId());
+    }
+
+    @Benchmark
+    public Optional<Book> findByIdWithLoans(LibraryContext library) {
+        return bookRepository.findByIdWithLoans(library.loanedBookId());
+    }
+
+    @Benchmark
+    public List<BookSummary> findFirstPage() {
+        return bookRepository.findPage(null, KeysetCursor.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<BookSummary> findMiddlePage() {
+        return bookRepository.findPage(middleCursor, KeysetCursor.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<BookSummary> findByAuthor() {
+        return bookRepository.findByAuthor(author);
+    }
+
+    @Benchmark
+    public List<LoanView> findLoansByUser() {
+        return loanRepository.findByUserId(LibraryContext.LOAN_USER_ID);
+    }
+}
@@ -0,0 +1,112 @@
+package library.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import library.dto.BookDetails;
+import library.dto.UserDetails;
+import library.entity.Book;
+import library.entity.Loan;
+import library.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов API в JSON при разном количестве займов на книгу или пользователя.
+ * <p>
+ * {@code ObjectMapper} настроен так же, как в Spring Boot по умолчанию: модули {@code java.time}
+ * и даты строками ISO-8601.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int loansPerEntity;
+
+    private ObjectMapper objectMapper;
+
+    private Book book;
+
+    private User user;
+
+    private List<Loan> loansOfUser;
+
+    private BookDetails bookDetails;
+
+    private UserDetails userDetails;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        book = BenchmarkData.book(1);
+        List<Loan> loansOfBook = BenchmarkData.loansOfBook(book, loansPerEntity);
+        book.setLoans(loansOfBook);
+        user = BenchmarkData.user(1);
+        loansOfUser = BenchmarkData.loansOfUser(user, loansPerEntity);
+        user.setLoans(loansOfUser);
+        bookDetails = BenchmarkData.bookDetails(book, loansOfBook);
+        userDetails = BenchmarkData.userDetails(user, loansOfUser);
+    }
+
+    /**
+     * Сущность книги: займы помечены {@code @JsonIgnore}, поэтому стоимость не должна расти с их количеством.
+     */
+    @Benchmark
+    public byte[] bookEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(book);
+    }
+
+    /**
+     * Сущность пользователя, займы так же не сериализуются.
+     */
+    @Benchmark
+    public byte[] userEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    /**
+     * Список сущностей займов: каждый займ несет вложенные книгу и пользователя.
+     */
+    @Benchmark
+    public byte[] loanEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(loansOfUser);
+    }
+
+    /**
+     * Ответ {@code GET /books/{id}/details}.
+     */
+    @Benchmark
+    public byte[] bookDetails() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bookDetails);
+    }
+
+    /**
+     * Ответ {@code GET /users/{id}/details}.
+     */
+    @Benchmark
+    public byte[] userDetails() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userDetails);
+    }
+}
@@ -0,0 +1,163 @@
+package library.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import library.LibraryApplication;
+import library.entity.Book;
+import library.repository.BookRepository;
+import library.repository.LoanRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Контекст приложения поверх PostgreSQL для бенчмарков сервисов и запросов.
+ * <p>
+ * По умолчанию поднимает встроенный PostgreSQL; схема создается миграциями Liquibase при старте контекста,
+ * затем каталог дополняется до {@link #catalogSize} книг. Системное свойство {@value #JDBC_URL_PROPERTY}
+ * подключает вместо него внешнюю базу, например если встроенный сервер нельзя запустить от текущего
+ * пользователя. Кэш работает в режиме {@code simple}, поэтому Redis не нужен.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+public class LibraryContext {
+
+    /**
+     * JDBC URL внешней базы вместо встроенной. База должна быть выделена под бенчмарки: в нее добавляются книги.
+     */
+    static final String JDBC_URL_PROPERTY = "library.bench.jdbc-url";
+
+    /**
+     * Количество займов, которое получает пользователь {@link #LOAN_USER_ID}.
+     */
+    static final int LOANS_PER_USER = 100;
+
+    static final long LOAN_USER_ID = 1L;
+
+    private static final int SEED_BATCH = 1000;
+
+    /**
+     * Количество книг в каталоге.
+     */
+    @Param("10000")
+    public int catalogSize;
+
+    private EmbeddedPostgres postgres;
+
+    private ConfigurableApplicationContext context;
+
+    private long[] bookIds;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl == null) {
+            postgres = EmbeddedPostgres.builder().start();
+            jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+        }
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.docker.compose.enabled", "false");
+        properties.put("spring.liquibase.enabled", "true");
+        properties.put("spring.cache.type", "simple");
+        properties.put("library.availability.reconcile-interval", "1h");
+        properties.put("library.search.reconcile-interval", "1h");
+        properties.put("library.stream.port", 0);
+        properties.put("logging.level.root", "WARN");
+        configure(properties);
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+            .web(webApplicationType())
+            .properties(properties)
+            .run();
+        seed();
+    }
+
+    /**
+     * Дополнить свойства запускаемого приложения.
+     *
+     * @param properties свойства по умолчанию для бенчмарков
+     */
+    protected void configure(Map<String, Object> properties) {
+    }
+
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    String property(String name) {
+        return context.getEnvironment().getProperty(name);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    long randomBookId() {
+        return bookIds[ThreadLocalRandom.current().nextInt(bookIds.length)];
+    }
+
+    /**
+     * Книга, у которой есть займы пользователя {@link #LOAN_USER_ID}.
+     */
+    long loanedBookId() {
+        return bookIds[0];
+    }
+
+    long middleBookId() {
+        return bookIds[bookIds.length / 2];
+    }
+
+    private void seed() {
+        JdbcTemplate jdbcTemplate = bean(JdbcTemplate.class);
+        BookRepository bookRepository = bean(BookRepository.class);
+        int existing = jdbcTemplate.queryForObject("SELECT count(*) FROM books", Integer.class);
+        for (int next = existing; next < catalogSize; next += SEED_BATCH) {
+            List<Book> books = new ArrayList<>(SEED_BATCH);
+            for (int i = next; i < Math.min(next + SEED_BATCH, catalogSize); i++) {
+                Book book = BenchmarkData.book(i);
+                book.setId(null);
+                books.add(book);
+            }
+            bookRepository.insertAll(books);
+        }
+        bookIds = jdbcTemplate.queryForList("SELECT book_id FROM books ORDER BY book_id", Long.class)
+            .stream().mapToLong(Long::longValue).toArray();
+
+        int loans = jdbcTemplate.queryForObject("SELECT count(*) FROM loans WHERE user_id = ?", Integer.class,
+            LOAN_USER_ID);
+        if (loans < LOANS_PER_USER) {
+            List<Long> loanBookIds = new ArrayList<>();
+            for (int i = 0; i < LOANS_PER_USER - loans; i++) {
+                loanBookIds.add(bookIds[i % bookIds.length]);
+            }
+            bean(LoanRepository.class).insertAll(LOAN_USER_ID, loanBookIds, LocalDateTime.now(),
+                LocalDateTime.now().plusDays(14));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package library.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время от запуска процесса приложения до первого обслуженного запроса.
+ * <p>
+ * Каждый вызов запускает приложение отдельным процессом на той же JVM, что и бенчмарк, ждет готовности
+ * ({@code /actuator/health/readiness}, то есть с прогревом) и первого ответа {@code GET /library/books},
+ * затем останавливает процесс. Миграции выполняются один раз до замеров ({@code migrate}), запуски только
+ * проверяют тег версии схемы. Варианты запуска {@link #launch}:
+ * <ul>
+ *     <li>{@code fat-jar} - {@code java -jar} исполняемого jar, как в {@code Dockerfile};</li>
+ *     <li>{@code extracted} - jar, распакованный {@code -Djarmode=tools extract},
+ *     как в {@code Dockerfile.fast-start};</li>
+ *     <li>{@code cds} - распакованный jar с архивом AppCDS, обученным в начале прогона;</li>
+ *     <li>{@code cds-aot} - то же с кодом Spring AOT и профилем {@code fast-start}, как в образе быстрого старта;
+ *     требует сборки с профилем Maven {@code fast-start}.</li>
+ * </ul>
+ * Пример: {@code mvn -Pbenchmarks,fast-start -Dfast-start.image.skip=true -DskipTests verify
+ * -Djmh.args="StartupBenchmark"}. База данных - встроенный PostgreSQL или {@code -Dlibrary.bench.jdbc-url};
+ * кэш - Redis на {@code -Dlibrary.bench.redis-host} (по умолчанию localhost, например из {@code compose.yaml}),
+ * потому что в сборке с AOT выбор кэша зафиксирован настройками сборки. Журналы запусков пишутся
+ * во временный каталог, путь к которому выводится при ошибке запуска.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    static final String REDIS_HOST_PROPERTY = "library.bench.redis-host";
+
+    private static final Path TARGET = Path.of("target");
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+    @Param({"fat-jar", "extracted", "cds", "cds-aot"})
+    public String launch;
+
+    private EmbeddedPostgres postgres;
+
+    private String jdbcUrl;
+
+    private Path workDir;
+
+    private Path fatJar;
+
+    private Path extractedJar;
+
+    private Path archive;
+
+    private HttpClient client;
+
+    private Process application;
+
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException, InterruptedException {
+        jdbcUrl = System.getProperty(LibraryContext.JDBC_URL_PROPERTY);
+        if (jdbcUrl == null) {
+            postgres = EmbeddedPostgres.builder().start();
+            jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+        }
+        workDir = Files.createTempDirectory("library-startup-bench");
+        fatJar = findFatJar();
+        extractedJar = workDir.resolve("app").resolve("library.jar");
+        run("extract", List.of(java(), "-Djarmode=tools", "-jar", fatJar.toString(), "extract",
+            "--destination", extractedJar.getParent().toString(), "--application-filename", "library.jar"));
+        run("migrate", List.of(java(), "-jar", fatJar.toString(), "migrate", "--spring.datasource.url=" + jdbcUrl,
+            "--spring.docker.compose.enabled=false"));
+        if (launch.startsWith("cds")) {
+            // обучающий запуск с теми же параметрами, что и замеряемые
+            archive = workDir.resolve("library.jsa");
+            List<String> training = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=" + archive,
+                "-Dspring.context.exit=onRefresh"));
+            training.addAll(applicationCommand(freePort()));
+            run("training", training);
+        }
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    }
+
+    @Benchmark
+    public int firstRequest() throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.addAll(applicationCommand(port));
+        Path log = workDir.resolve("start-" + ++invocation + ".log");
+        application = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+
+        URI readiness = URI.create("http://localhost:" + port + "/actuator/health/readiness");
+        long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+        while (status(readiness) != 200) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("Приложение завершилось с кодом " + application.exitValue()
+                    + ", журнал: " + log);
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Приложение не готово за " + START_TIMEOUT + ", журнал: " + log);
+            }
+            Thread.sleep(10);
+        }
+        return status(URI.create("http://localhost:" + port + "/library/books"));
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopApplication() throws InterruptedException {
+        if (application != null) {
+            application.destroy();
+            if (!application.waitFor(30, TimeUnit.SECONDS)) {
+                application.destroyForcibly().waitFor();
+            }
+            application = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    /**
+     * Параметры JVM варианта без архива CDS, jar и аргументы приложения.
+     */
+    private List<String> applicationCommand(int port) {
+        List<String> command = new ArrayList<>();
+        if ("cds-aot".equals(launch)) {
+            command.add("-Dspring.aot.enabled=true");
+            command.add("-Dspring.profiles.include=fast-start");
+        }
+        command.add("-jar");
+        command.add(("fat-jar".equals(launch) ? fatJar : extractedJar).toString());
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=" + jdbcUrl);
+        command.add("--spring.data.redis.host=" + System.getProperty(REDIS_HOST_PROPERTY, "localhost"));
+        command.add("--spring.docker.compose.enabled=false");
+        command.add("--library.stream.port=0");
+        command.add("--library.warmup.request-rounds=20");
+        command.add("--logging.level.root=WARN");
+        return command;
+    }
+
+    private int status(URI uri) throws InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private void run(String name, List<String> command) throws IOException, InterruptedException {
+        Path log = workDir.resolve(name + ".log");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        if (!process.waitFor(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Шаг " + name + " не завершился за " + START_TIMEOUT + ", журнал: " + log);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Шаг " + name + " завершился с кодом " + process.exitValue()
+                + ", журнал: " + log);
+        }
+    }
+
+    private static Path findFatJar() throws IOException {
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(TARGET, "library-*.jar")) {
+            for (Path jar : jars) {
+                return jar;
+            }
+        }
+        throw new IllegalStateException("Исполняемый jar не найден в " + TARGET.toAbsolutePath()
+            + ", нужна сборка mvn package");
+    }
+
+    private static String java() {
+        return ProcessHandle.current().info().command().orElse("java");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
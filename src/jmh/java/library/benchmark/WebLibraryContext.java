@@ -0,0 +1,41 @@
+package library.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.boot.WebApplicationType;
+
+import java.util.Map;
+
+/**
+ * {@link LibraryContext} с веб-сервером на случайном порту и выбранной моделью потоков.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+public class WebLibraryContext extends LibraryContext {
+
+    /**
+     * {@code platform} - пул потоков Tomcat по умолчанию, {@code virtual} - профиль {@code virtual-threads}
+     * (требует запуска бенчмарков на JVM 21+).
+     */
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Override
+    protected void configure(Map<String, Object> properties) {
+        properties.put("server.port", "0");
+        if ("virtual".equals(threads)) {
+            properties.put("spring.profiles.active", "virtual-threads");
+        }
+    }
+
+    @Override
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.SERVLET;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + property("local.server.port") + "/library";
+    }
+}
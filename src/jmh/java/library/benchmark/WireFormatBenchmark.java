@@ -0,0 +1,155 @@
+package library.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import library.config.BinaryFormatsConfig;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.LoanView;
+import library.entity.Book;
+import library.entity.Loan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сравнение форматов ответов API: JSON, Smile и CBOR на формах существующих ответов.
+ * <p>
+ * Мапперы строятся так же, как конвертеры приложения: JSON - с датами строками ISO-8601,
+ * Smile и CBOR - через {@link BinaryFormatsConfig} с датами числами. Размеры ответов без сжатия
+ * и после gzip печатаются один раз при подготовке каждой комбинации параметров, время
+ * сериализации и разбора измеряет JMH.
+ *
+ * @author Avdeyev Viktor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<LoanView>> LOAN_VIEWS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    /**
+     * Количество элементов в ответе.
+     */
+    @Param({"10", "500"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+
+    private List<Book> books;
+
+    private List<Loan> loans;
+
+    private List<LoanView> loanViews;
+
+    private CursorPage<BookSummary> bookPage;
+
+    private byte[] serializedLoanViews;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = switch (format) {
+            case "json" -> jsonBuilder().build();
+            case "smile" -> BinaryFormatsConfig.smileObjectMapper(jsonBuilder());
+            case "cbor" -> BinaryFormatsConfig.cborObjectMapper(jsonBuilder());
+            default -> throw new IllegalArgumentException("Неизвестный формат: " + format);
+        };
+        books = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            books.add(BenchmarkData.book(i));
+        }
+        loans = BenchmarkData.loansOfUser(BenchmarkData.user(1), size);
+        loanViews = loans.stream().map(LoanView::from).toList();
+        bookPage = BenchmarkData.bookPage(size);
+        serializedLoanViews = objectMapper.writeValueAsBytes(loanViews);
+
+        System.out.printf("%n%s, %d элементов: книги %s, займы %s, представления займов %s, страница книг %s%n",
+            format, size, payloadSize(books), payloadSize(loans), payloadSize(loanViews), payloadSize(bookPage));
+    }
+
+    /**
+     * Список сущностей книг, каждая в форме ответа {@code GET /books/{id}}.
+     */
+    @Benchmark
+    public byte[] writeBooks() throws IOException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    /**
+     * Список сущностей займов с вложенными книгой и пользователем.
+     */
+    @Benchmark
+    public byte[] writeLoans() throws IOException {
+        return objectMapper.writeValueAsBytes(loans);
+    }
+
+    /**
+     * Ответ {@code GET /loans/user/{userId}} и {@code /loans/not-returned}.
+     */
+    @Benchmark
+    public byte[] writeLoanViews() throws IOException {
+        return objectMapper.writeValueAsBytes(loanViews);
+    }
+
+    /**
+     * Ответ {@code GET /books}.
+     */
+    @Benchmark
+    public byte[] writeBookPage() throws IOException {
+        return objectMapper.writeValueAsBytes(bookPage);
+    }
+
+    /**
+     * Разбор списка займов на стороне клиента.
+     */
+    @Benchmark
+    public List<LoanView> readLoanViews() throws IOException {
+        return objectMapper.readValue(serializedLoanViews, LOAN_VIEWS);
+    }
+
+    private String payloadSize(Object value) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(value);
+        return payload.length + " Б (gzip " + gzip(payload).length + " Б)";
+    }
+
+    private static byte[] gzip(byte[] payload) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static Jackson2ObjectMapperBuilder jsonBuilder() {
+        return Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
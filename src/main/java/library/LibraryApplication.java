@@ -1,14 +1,31 @@
 package library;
 
+import library.config.NativeRuntimeHints;
+import library.schema.SchemaMigration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+import java.util.Arrays;
+
+// R2DBC нужен только потоковому API и настраивается в CatalogStreamRepositoryImpl: бин ConnectionFactory
+// отключил бы автонастройку DataSource
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ConfigurationPropertiesScan
 @EnableCaching
+@EnableScheduling
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class LibraryApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(LibraryApplication.class, args);
+        if (args.length > 0 && SchemaMigration.COMMAND.equals(args[0])) {
+            System.exit(SchemaMigration.run(Arrays.copyOfRange(args, 1, args.length)));
+        } else {
+            SpringApplication.run(LibraryApplication.class, args);
+        }
     }
 }
@@ -0,0 +1,301 @@
+package library.availability;
+
+import library.dto.BookSummary;
+import library.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс доступности книг в памяти процесса: два сжатых битовых множества Roaring с id всех книг
+ * и id доступных книг.
+ * <p>
+ * Индекс строится из базы данных при старте приложения, до того как веб-сервер начнет принимать запросы,
+ * и далее поддерживается из {@link library.service.BookService} и {@link library.service.LoanService} после
+ * фиксации их транзакций. Изменения в обход сервисов (ручной SQL, другой экземпляр приложения) исправляются
+ * периодической сверкой с базой данных.
+ * <p>
+ * Id книг хранятся как {@code int}: колонка {@code books.book_id} имеет тип {@code integer}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class BookAvailabilityIndex implements SmartInitializingSingleton {
+
+    private final BookRepository bookRepository;
+
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    /**
+     * Не дает сверкам идти параллельно. Блокировка, а не {@code synchronized}: сверка держит ее на время
+     * чтения из базы данных и не должна закреплять поток-носитель виртуального потока.
+     */
+    private final Lock reconcileLock = new ReentrantLock();
+
+    private RoaringBitmap books = new RoaringBitmap();
+
+    private RoaringBitmap available = new RoaringBitmap();
+
+    /**
+     * Изменения, пришедшие во время сверки. Повторяются поверх снимка из базы данных перед его подменой,
+     * иначе снимок, прочитанный до их фиксации, откатил бы их. {@code null}, пока сверка не идет.
+     */
+    private List<Change> journal;
+
+    private boolean loaded;
+
+    public BookAvailabilityIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reconcile();
+    }
+
+    /**
+     * Сверить индекс с базой данных и заменить его свежим снимком.
+     * Количество расхождений с прежним состоянием пишется в лог.
+     */
+    @Scheduled(initialDelayString = "${library.availability.reconcile-interval:5m}",
+        fixedDelayString = "${library.availability.reconcile-interval:5m}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            reconcileExclusively();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void reconcileExclusively() {
+        log.info("reconcile - начало");
+        long startTime = System.currentTimeMillis();
+        setJournal(new ArrayList<>());
+        RoaringBitmap freshBooks = new RoaringBitmap();
+        RoaringBitmap freshAvailable = new RoaringBitmap();
+        try {
+            bookRepository.scanAvailability((bookId, isAvailable) -> {
+                int id = toIntId(bookId);
+                freshBooks.add(id);
+                if (isAvailable) {
+                    freshAvailable.add(id);
+                }
+            });
+        } catch (RuntimeException ex) {
+            setJournal(null);
+            throw ex;
+        }
+        long drift;
+        writeLock.lock();
+        try {
+            for (Change change : journal) {
+                change.applyTo(freshBooks, freshAvailable);
+            }
+            freshBooks.runOptimize();
+            freshAvailable.runOptimize();
+            drift = RoaringBitmap.xorCardinality(books, freshBooks)
+                + RoaringBitmap.xorCardinality(available, freshAvailable);
+            books = freshBooks;
+            available = freshAvailable;
+            journal = null;
+        } finally {
+            writeLock.unlock();
+        }
+        if (loaded && drift > 0) {
+            log.warn("reconcile - индекс расходился с базой данных в {} позициях, исправлено", drift);
+        }
+        loaded = true;
+        log.info("reconcile - конец, книг: {}, доступно: {}, за {} мс", freshBooks.getLongCardinality(),
+            freshAvailable.getLongCardinality(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Записать текущую доступность книги.
+     *
+     * @param bookId    id существующей книги
+     * @param available доступна ли книга
+     */
+    public void put(long bookId, boolean available) {
+        apply(new Change(toIntId(bookId), available));
+    }
+
+    /**
+     * Записать текущую доступность книг.
+     *
+     * @param books книги в состоянии после фиксации изменения
+     */
+    public void putAll(Collection<BookSummary> books) {
+        for (BookSummary book : books) {
+            put(book.id(), book.available());
+        }
+    }
+
+    /**
+     * Удалить книгу из индекса.
+     *
+     * @param bookId id удаленной книги
+     */
+    public void remove(long bookId) {
+        apply(new Change(toIntId(bookId), null));
+    }
+
+    /**
+     * Есть ли книга в индексе.
+     *
+     * @param bookId id книги
+     * @return {@code true}, если книга существует
+     */
+    public boolean contains(long bookId) {
+        if (bookId < 1 || bookId > Integer.MAX_VALUE) {
+            return false;
+        }
+        readLock.lock();
+        try {
+            return books.contains((int) bookId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Доступна ли книга.
+     *
+     * @param bookId id книги
+     * @return {@code true}, если книга существует и доступна
+     */
+    public boolean isAvailable(long bookId) {
+        if (bookId < 1 || bookId > Integer.MAX_VALUE) {
+            return false;
+        }
+        readLock.lock();
+        try {
+            return available.contains((int) bookId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Количество всех книг.
+     *
+     * @return количество книг в индексе
+     */
+    public long count() {
+        readLock.lock();
+        try {
+            return books.getLongCardinality();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Количество доступных книг.
+     *
+     * @return количество доступных книг в индексе
+     */
+    public long countAvailable() {
+        readLock.lock();
+        try {
+            return available.getLongCardinality();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Id доступных книг по возрастанию, начиная после заданного.
+     *
+     * @param afterId id, после которого начинается выборка, или {@code null} для выборки с начала
+     * @param limit   наибольшее количество id
+     * @return id доступных книг
+     */
+    public List<Long> findAvailableAfter(Long afterId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        if (afterId != null && afterId >= Integer.MAX_VALUE) {
+            return ids;
+        }
+        readLock.lock();
+        try {
+            PeekableIntIterator iterator = available.getIntIterator();
+            if (afterId != null && afterId >= 0) {
+                iterator.advanceIfNeeded((int) (afterId + 1));
+            }
+            while (iterator.hasNext() && ids.size() < limit) {
+                ids.add((long) iterator.next());
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return ids;
+    }
+
+    private void apply(Change change) {
+        writeLock.lock();
+        try {
+            change.applyTo(books, available);
+            if (journal != null) {
+                journal.add(change);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void setJournal(List<Change> journal) {
+        writeLock.lock();
+        try {
+            this.journal = journal;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int toIntId(long bookId) {
+        if (bookId < 1 || bookId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Id книги вне диапазона integer: " + bookId);
+        }
+        return (int) bookId;
+    }
+
+    /**
+     * Изменение одной книги. Применение идемпотентно, поэтому повтор уже учтенного в снимке изменения безвреден.
+     *
+     * @param bookId    id книги
+     * @param available доступность книги или {@code null}, если книга удалена
+     */
+    private record Change(int bookId, Boolean available) {
+
+        void applyTo(RoaringBitmap books, RoaringBitmap available) {
+            if (this.available == null) {
+                books.remove(bookId);
+                available.remove(bookId);
+            } else {
+                books.add(bookId);
+                if (this.available) {
+                    available.add(bookId);
+                } else {
+                    available.remove(bookId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package library.cache;
+
+import java.io.Serializable;
+
+/**
+ * Сообщение об инвалидации локального уровня кэша на других узлах.
+ *
+ * @param origin    идентификатор узла, выполнившего запись
+ * @param cacheName имя кэша
+ * @param key       ключ записи или {@code null}, если кэш очищен целиком
+ * @author Avdeyev Viktor
+ */
+public record CacheInvalidation(String origin, String cacheName, Object key) implements Serializable {
+
+    /**
+     * Признак очистки кэша целиком.
+     *
+     * @return {@code true}, если ключ не указан
+     */
+    public boolean isClear() {
+        return key == null;
+    }
+}
@@ -0,0 +1,25 @@
+package library.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Канал рассылки инвалидаций локального уровня кэша между узлами приложения.
+ *
+ * @author Avdeyev Viktor
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Отправить инвалидацию всем подписчикам, включая подписчиков текущего узла.
+     *
+     * @param invalidation сообщение об инвалидации
+     */
+    void publish(CacheInvalidation invalidation);
+
+    /**
+     * Подписаться на инвалидации.
+     *
+     * @param listener обработчик сообщений
+     */
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
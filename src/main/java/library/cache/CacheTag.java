@@ -0,0 +1,28 @@
+package library.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Теги, к которым привязываются записи кэша метода.
+ * <p>
+ * Значение может ссылаться на аргументы метода по номеру: {@code "book:{0}"}.
+ * Инвалидация любого из тегов через {@link CacheTags#invalidate} делает недоступными все записи, созданные под ним.
+ *
+ * @author Avdeyev Viktor
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheTag {
+
+    /**
+     * Шаблоны тегов.
+     *
+     * @return шаблоны тегов с подстановками аргументов {@code {N}}
+     */
+    String[] value();
+}
@@ -0,0 +1,90 @@
+package library.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Версии тегов кэша.
+ * <p>
+ * Ключ каждой записи содержит текущую версию ее тега, поэтому инвалидация тега сводится к записи новой версии:
+ * старые записи перестают находиться и вытесняются по TTL. Заполнение кэша, начавшееся до инвалидации,
+ * сохраняется под старой версией и не может вернуть устаревшие данные.
+ * Версии хранятся в кэше {@value #CACHE_NAME} и разделяются узлами так же, как остальные кэши.
+ * <p>
+ * Тег, который еще не инвалидировался, в кэше версий не хранится: чтение версии ничего не записывает, ключ
+ * версии создает только {@link #invalidate}. Такой тег имеет версию {@value #ABSENT_VERSION}, а если версии
+ * истекают по {@code spring.cache.redis.time-to-live} - {@value #ABSENT_VERSION} с номером периода этой длины.
+ * Записанная версия истекает не раньше чем через период, поэтому тег после ее истечения получает версию
+ * следующего периода и не возвращает записи и ETag, выданные до инвалидации.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class CacheTags {
+
+    /**
+     * Имя кэша с версиями тегов.
+     */
+    public static final String CACHE_NAME = "cache-tags";
+
+    /**
+     * Версия тега, который еще не инвалидировался, при версиях без срока жизни.
+     */
+    public static final String ABSENT_VERSION = "0";
+
+    private final Cache versions;
+
+    private final long absentPeriodMillis;
+
+    public CacheTags(CacheManager cacheManager, CacheProperties cacheProperties) {
+        this.versions = cacheManager.getCache(CACHE_NAME);
+        Duration timeToLive = cacheProperties.getRedis().getTimeToLive();
+        this.absentPeriodMillis = timeToLive == null || timeToLive.isZero() ? 0 : timeToLive.toMillis();
+    }
+
+    /**
+     * Текущая версия тега. Для тега без версии возвращается версия отсутствующего тега, в кэш ничего не
+     * записывается.
+     *
+     * @param tag тег
+     * @return версия тега
+     */
+    public String current(String tag) {
+        String version = versions.get(tag, String.class);
+        return version == null ? absentVersion(tag) : version;
+    }
+
+    /**
+     * Инвалидировать все записи, привязанные к тегам.
+     *
+     * @param tags теги
+     */
+    public void invalidate(Collection<String> tags) {
+        log.debug("invalidate - теги: {}", tags);
+        tags.forEach(tag -> versions.put(tag, nextVersion()));
+    }
+
+    private String absentVersion(String tag) {
+        if (absentPeriodMillis == 0) {
+            return ABSENT_VERSION;
+        }
+        // периоды тегов сдвинуты на хэш тега, чтобы записи всех тегов не становились промахами одновременно;
+        // '-' не встречается в записанных версиях, поэтому версии периодов с ними не совпадают
+        long period = (System.currentTimeMillis() + Math.floorMod(tag.hashCode(), absentPeriodMillis))
+            / absentPeriodMillis;
+        return ABSENT_VERSION + '-' + Long.toString(period, Character.MAX_RADIX);
+    }
+
+    private static String nextVersion() {
+        // ноль не выпадает: записанная версия всегда отличается от ABSENT_VERSION
+        return Long.toString(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE), Character.MAX_RADIX);
+    }
+}
@@ -0,0 +1,26 @@
+package library.cache;
+
+/**
+ * Статистика одного уровня кэша.
+ *
+ * @param hits      количество попаданий
+ * @param misses    количество промахов
+ * @param hitRatio  доля попаданий от всех обращений
+ * @param evictions количество вытеснений и инвалидаций
+ * @author Avdeyev Viktor
+ */
+public record CacheTierStats(long hits, long misses, double hitRatio, long evictions) {
+
+    /**
+     * Создает статистику с вычисленной долей попаданий.
+     *
+     * @param hits      количество попаданий
+     * @param misses    количество промахов
+     * @param evictions количество вытеснений
+     * @return статистика уровня
+     */
+    public static CacheTierStats of(long hits, long misses, long evictions) {
+        long requests = hits + misses;
+        return new CacheTierStats(hits, misses, requests == 0 ? 0.0 : (double) hits / requests, evictions);
+    }
+}
@@ -0,0 +1,32 @@
+package library.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Реализация {@link CacheInvalidationBus} в пределах одной JVM.
+ * <p>
+ * Доставляет сообщения синхронно в потоке отправителя. Используется, когда приложение
+ * запускается без Redis, а также в тестах, где несколько менеджеров кэша изображают разные узлы.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+public class InMemoryCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        log.debug("publish - {}", invalidation);
+        listeners.forEach(listener -> listener.accept(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,21 @@
+package library.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Параметр размера страницы кэшируемого метода.
+ * <p>
+ * В ключ кэша попадает размер после ограничения {@link library.util.KeysetCursor#pageSize}, поэтому запросы
+ * без размера, с размером по умолчанию и с размерами больше максимального делят одну запись.
+ *
+ * @author Avdeyev Viktor
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PageSize {
+}
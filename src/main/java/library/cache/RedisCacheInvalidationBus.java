@@ -0,0 +1,64 @@
+package library.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Реализация {@link CacheInvalidationBus} поверх Redis pub/sub.
+ * <p>
+ * Сообщения сериализуются сериализатором значений переданного {@link RedisTemplate},
+ * поэтому ключи кэша восстанавливаются на принимающем узле с исходным типом.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+public class RedisCacheInvalidationBus implements CacheInvalidationBus, MessageListener {
+
+    /**
+     * Канал Redis для инвалидаций.
+     */
+    public static final String CHANNEL = "library:cache-invalidation";
+
+    private final RedisTemplate<Object, Object> redisTemplate;
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    public RedisCacheInvalidationBus(RedisTemplate<Object, Object> redisTemplate,
+                                     RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        log.debug("publish - {}", invalidation);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, invalidation);
+        } catch (RuntimeException ex) {
+            log.warn("publish - не удалось отправить инвалидацию {}: {}", invalidation, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (payload instanceof CacheInvalidation invalidation) {
+            listeners.forEach(listener -> listener.accept(invalidation));
+        } else {
+            log.warn("onMessage - неизвестное сообщение в канале {}: {}", CHANNEL, payload);
+        }
+    }
+}
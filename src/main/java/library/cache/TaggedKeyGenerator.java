@@ -0,0 +1,78 @@
+package library.cache;
+
+import library.util.KeysetCursor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Генератор ключей вида {@code метод:аргументы@версия-тега[@версия-тега...]}.
+ * <p>
+ * Имя метода разделяет пространства ключей разных запросов внутри одного кэша, поэтому, например,
+ * автор "1984" и название "1984" больше не совпадают. Версии тегов из {@link CacheTag} добавляются
+ * в порядке объявления, если метод помечен этой аннотацией. Аргументы, помеченные {@link PageSize}, входят
+ * в ключ после ограничения размера страницы.
+ *
+ * @author Avdeyev Viktor
+ */
+public class TaggedKeyGenerator implements KeyGenerator {
+
+    private final ObjectProvider<CacheTags> cacheTags;
+
+    /**
+     * Номера параметров с {@link PageSize} по методам.
+     */
+    private final Map<Method, int[]> pageSizeParameters = new ConcurrentHashMap<>();
+
+    public TaggedKeyGenerator(ObjectProvider<CacheTags> cacheTags) {
+        this.cacheTags = cacheTags;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Method targetMethod = AopUtils.getMostSpecificMethod(method, AopUtils.getTargetClass(target));
+        Object[] keyParams = params;
+        for (int index : pageSizeParameters.computeIfAbsent(targetMethod, TaggedKeyGenerator::findPageSizes)) {
+            if (keyParams == params) {
+                keyParams = params.clone();
+            }
+            keyParams[index] = KeysetCursor.pageSize((Integer) params[index]);
+        }
+        String key = method.getName() + ":" + Arrays.stream(keyParams)
+            .map(String::valueOf)
+            .collect(Collectors.joining(","));
+        CacheTag tag = AnnotatedElementUtils.findMergedAnnotation(targetMethod, CacheTag.class);
+        if (tag == null) {
+            return key;
+        }
+        StringBuilder taggedKey = new StringBuilder(key);
+        for (String template : tag.value()) {
+            taggedKey.append('@').append(cacheTags.getObject().current(resolve(template, params)));
+        }
+        return taggedKey.toString();
+    }
+
+    private static int[] findPageSizes(Method method) {
+        Parameter[] parameters = method.getParameters();
+        return IntStream.range(0, parameters.length)
+            .filter(i -> parameters[i].isAnnotationPresent(PageSize.class))
+            .toArray();
+    }
+
+    static String resolve(String template, Object... params) {
+        String tag = template;
+        for (int i = 0; i < params.length; i++) {
+            tag = tag.replace("{" + i + "}", String.valueOf(params[i]));
+        }
+        return tag;
+    }
+}
@@ -0,0 +1,240 @@
+package library.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Двухуровневый кэш: локальный уровень в памяти процесса (L1) перед общим кэшем (L2).
+ * <p>
+ * Чтение сначала обращается к L1 и только при промахе идет в L2, заполняя L1 найденным значением.
+ * Запись и инвалидация выполняются в обоих уровнях, после чего остальным узлам через
+ * {@link CacheInvalidationBus} отправляется сообщение об удалении записи из их L1. Заполнение на чтении
+ * ({@link #get(Object, Callable)}, {@link #putIfAbsent}) сообщений не отправляет, поэтому кэширующие методы
+ * объявляются с {@code sync = true}: без него Spring заполняет кэш через {@link #put}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final Cache<Object, Object> local;
+
+    private final org.springframework.cache.Cache remote;
+
+    private final CacheInvalidationBus invalidationBus;
+
+    private final String origin;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder remoteHits = new LongAdder();
+
+    private final LongAdder remoteMisses = new LongAdder();
+
+    private final LongAdder remoteEvictions = new LongAdder();
+
+    private final LongAdder localInvalidations = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    public TwoTierCache(String name, Cache<Object, Object> local, org.springframework.cache.Cache remote,
+                        CacheInvalidationBus invalidationBus, String origin) {
+        super(true);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+        this.origin = origin;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        value = toStoreValue(wrapper.get());
+        local.put(key, value);
+        return value;
+    }
+
+    /**
+     * Прочитать значение, а при промахе в обоих уровнях загрузить его и записать в оба уровня.
+     * L2 опрашивается один раз. Загрузка - заполнение, а не изменение: ключ содержит версию тега, поэтому
+     * другие узлы не могут держать под ним другое значение, и инвалидация не отправляется.
+     * <p>
+     * Параллельные промахи по одному ключу на этом узле загружают значение один раз: первый поток
+     * регистрирует загрузку, остальные ждут ее результата или ошибки. Загрузка идет вне блокировок Caffeine,
+     * поэтому долгий запрос не задерживает запись соседних ключей.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return (T) await(inFlight);
+        }
+        try {
+            T value = load(key, valueLoader);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        // загрузка, завершившаяся между промахом и регистрацией, уже записала значение в L1;
+        // повторная проверка не учитывается в статистике L1
+        Object stored = local.policy().getIfPresentQuietly(key);
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        remote.put(key, value);
+        local.put(key, toStoreValue(value));
+        puts.increment();
+        return value;
+    }
+
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Записать значение, только если его нет в L2. Как и загрузка через {@link #get(Object, Callable)},
+     * это заполнение, поэтому инвалидация не отправляется.
+     */
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        Object stored = existing == null ? value : existing.get();
+        local.put(key, toStoreValue(stored));
+        if (existing == null) {
+            puts.increment();
+        }
+        return existing;
+    }
+
+    /**
+     * Записать новое значение в оба уровня и инвалидировать прежнее в L1 остальных узлов.
+     */
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(key, toStoreValue(value));
+        puts.increment();
+        invalidationBus.publish(new CacheInvalidation(origin, name, key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        remoteEvictions.increment();
+        local.invalidate(key);
+        invalidationBus.publish(new CacheInvalidation(origin, name, key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        remoteEvictions.increment();
+        local.invalidateAll();
+        invalidationBus.publish(new CacheInvalidation(origin, name, null));
+    }
+
+    /**
+     * Применить инвалидацию, полученную от другого узла, только к локальному уровню.
+     *
+     * @param invalidation сообщение об инвалидации
+     */
+    void invalidateLocal(CacheInvalidation invalidation) {
+        log.debug("invalidateLocal - {}", invalidation);
+        localInvalidations.increment();
+        if (invalidation.isClear()) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(invalidation.key());
+        }
+    }
+
+    /**
+     * Количество записей значений в кэш.
+     *
+     * @return количество вызовов {@code put} и загрузок через {@code get(key, valueLoader)}
+     */
+    long putCount() {
+        return puts.sum();
+    }
+
+    /**
+     * Снимок статистики обоих уровней.
+     *
+     * @return статистика кэша
+     */
+    public TwoTierCacheStats stats() {
+        local.cleanUp();
+        CacheStats localStats = local.stats();
+        long localBytes = local.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+        return new TwoTierCacheStats(
+            name,
+            CacheTierStats.of(localStats.hitCount(), localStats.missCount(),
+                localStats.evictionCount() + localInvalidations.sum()),
+            CacheTierStats.of(remoteHits.sum(), remoteMisses.sum(), remoteEvictions.sum()),
+            localBytes,
+            local.estimatedSize());
+    }
+}
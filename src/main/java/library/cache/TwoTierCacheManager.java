@@ -0,0 +1,182 @@
+package library.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
+
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link CacheManager}, оборачивающий каждый кэш удаленного менеджера (L2) в {@link TwoTierCache}.
+ * <p>
+ * Локальный уровень ограничен по весу: вес записи - оценка ее размера в байтах по типу значения.
+ * Инвалидации от других узлов принимаются через {@link CacheInvalidationBus}, собственные сообщения игнорируются.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager {
+
+    /**
+     * Вес объекта, размер которого не оценивается точнее, например сущности JPA.
+     */
+    static final int OBJECT_WEIGHT = 256;
+
+    /**
+     * Вес числа, даты и другого небольшого значения вместе со ссылкой на него.
+     */
+    private static final int SCALAR_WEIGHT = 24;
+
+    /**
+     * Вес пустой строки; каждый символ добавляет два байта.
+     */
+    private static final int STRING_WEIGHT = 40;
+
+    /**
+     * Глубина, до которой оцениваются вложенные коллекции и записи.
+     */
+    private static final int ESTIMATE_DEPTH = 3;
+
+    private final CacheManager remoteCacheManager;
+
+    private final CacheInvalidationBus invalidationBus;
+
+    private final long localMaxBytes;
+
+    private final Duration localTimeToLive;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    private volatile Consumer<TwoTierCache> cacheCreatedListener = cache -> {
+    };
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager, CacheInvalidationBus invalidationBus,
+                               long localMaxBytes, Duration localTimeToLive) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.invalidationBus = invalidationBus;
+        this.localMaxBytes = localMaxBytes;
+        this.localTimeToLive = localTimeToLive;
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(remoteCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return names;
+    }
+
+    /**
+     * Статистика всех созданных кэшей.
+     *
+     * @return статистика по каждому кэшу
+     */
+    public List<TwoTierCacheStats> stats() {
+        return caches.values().stream().map(TwoTierCache::stats).toList();
+    }
+
+    /**
+     * Задать действие над каждым новым кэшем, например регистрацию его метрик.
+     * Кэши создаются лениво при первом обращении, поэтому набор кэшей при старте неполон.
+     *
+     * @param cacheCreatedListener действие над созданным кэшем
+     */
+    public void setCacheCreatedListener(Consumer<TwoTierCache> cacheCreatedListener) {
+        this.cacheCreatedListener = cacheCreatedListener;
+    }
+
+    private TwoTierCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        log.info("createCache - кэш '{}', L1 до {} байт, ttl {}", name, localMaxBytes, localTimeToLive);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+            .maximumWeight(localMaxBytes)
+            .weigher(TwoTierCacheManager::weigh)
+            .expireAfterWrite(localTimeToLive)
+            .recordStats()
+            .build();
+        TwoTierCache cache = new TwoTierCache(name, local, remote, invalidationBus, nodeId);
+        cacheCreatedListener.accept(cache);
+        return cache;
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        TwoTierCache cache = caches.get(invalidation.cacheName());
+        if (cache != null) {
+            cache.invalidateLocal(invalidation);
+        }
+    }
+
+    /**
+     * Вес записи для ограничения локального уровня.
+     *
+     * @param key   ключ
+     * @param value значение в локальном уровне
+     * @return оценка размера значения в байтах
+     */
+    static int weigh(Object key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, estimate(value, ESTIMATE_DEPTH));
+    }
+
+    /**
+     * Грубая оценка размера значения по его типу, без сериализации: вес считается при каждой записи в L1,
+     * в том числе при заполнении из L2 на чтении. Строки оцениваются по длине, коллекции - по размеру и
+     * первому элементу, записи ({@code record}) - по компонентам, остальные объекты - фиксированным весом.
+     */
+    private static long estimate(Object value, int depth) {
+        if (value == null || value instanceof NullValue || value instanceof Number || value instanceof Boolean
+            || value instanceof Enum<?> || value instanceof Temporal) {
+            return SCALAR_WEIGHT;
+        }
+        if (value instanceof CharSequence text) {
+            return STRING_WEIGHT + 2L * text.length();
+        }
+        if (value instanceof Optional<?> optional) {
+            return SCALAR_WEIGHT + estimate(optional.orElse(null), depth);
+        }
+        if (depth == 0) {
+            return OBJECT_WEIGHT;
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.isEmpty() ? OBJECT_WEIGHT
+                : OBJECT_WEIGHT + collection.size() * estimate(collection.iterator().next(), depth - 1);
+        }
+        if (value.getClass().isRecord()) {
+            long weight = SCALAR_WEIGHT;
+            for (RecordComponent component : value.getClass().getRecordComponents()) {
+                try {
+                    weight += estimate(component.getAccessor().invoke(value), depth - 1);
+                } catch (ReflectiveOperationException | RuntimeException ex) {
+                    weight += OBJECT_WEIGHT;
+                }
+            }
+            return weight;
+        }
+        return OBJECT_WEIGHT;
+    }
+}
@@ -0,0 +1,87 @@
+package library.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Метрики Micrometer для {@link TwoTierCache}.
+ * <p>
+ * Стандартные метрики {@code cache.*} описывают кэш целиком: попадание в любой из уровней считается попаданием,
+ * промахом считается только промах обоих уровней. Разбивка по уровням публикуется в {@code cache.tier.gets}
+ * и {@code cache.tier.evictions} с тегом {@code tier} ({@code local} или {@code remote}).
+ *
+ * @author Avdeyev Viktor
+ */
+public class TwoTierCacheMetrics extends CacheMeterBinder<TwoTierCache> {
+
+    public TwoTierCacheMetrics(TwoTierCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+        TwoTierCache cache = getCache();
+        return cache == null ? null : cache.stats().localSize();
+    }
+
+    @Override
+    protected long hitCount() {
+        return stat(stats -> stats.local().hits() + stats.remote().hits());
+    }
+
+    @Override
+    protected Long missCount() {
+        return stat(stats -> stats.remote().misses());
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return stat(stats -> stats.local().evictions() + stats.remote().evictions());
+    }
+
+    @Override
+    protected long putCount() {
+        TwoTierCache cache = getCache();
+        return cache == null ? 0 : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        TwoTierCache cache = getCache();
+        bindTier(registry, cache, "local", stats -> stats.local());
+        bindTier(registry, cache, "remote", stats -> stats.remote());
+        Gauge.builder("cache.local.size", cache, c -> c.stats().localBytes())
+            .tags(getTagsWithCacheName())
+            .description("Оценка объема локального уровня")
+            .baseUnit(BaseUnits.BYTES)
+            .register(registry);
+    }
+
+    private void bindTier(MeterRegistry registry, TwoTierCache cache, String tier,
+                          Function<TwoTierCacheStats, CacheTierStats> select) {
+        FunctionCounter.builder("cache.tier.gets", cache, c -> select.apply(c.stats()).hits())
+            .tags(getTagsWithCacheName()).tag("tier", tier).tag("result", "hit")
+            .description("Попадания в уровень кэша")
+            .register(registry);
+        FunctionCounter.builder("cache.tier.gets", cache, c -> select.apply(c.stats()).misses())
+            .tags(getTagsWithCacheName()).tag("tier", tier).tag("result", "miss")
+            .description("Промахи уровня кэша")
+            .register(registry);
+        FunctionCounter.builder("cache.tier.evictions", cache, c -> select.apply(c.stats()).evictions())
+            .tags(getTagsWithCacheName()).tag("tier", tier)
+            .description("Вытеснения и инвалидации уровня кэша")
+            .register(registry);
+    }
+
+    private long stat(ToLongFunction<TwoTierCacheStats> value) {
+        TwoTierCache cache = getCache();
+        return cache == null ? 0 : value.applyAsLong(cache.stats());
+    }
+}
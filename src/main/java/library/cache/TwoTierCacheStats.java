@@ -0,0 +1,15 @@
+package library.cache;
+
+/**
+ * Статистика двухуровневого кэша.
+ *
+ * @param name        имя кэша
+ * @param local       статистика локального уровня (L1)
+ * @param remote      статистика удаленного уровня (L2)
+ * @param localBytes  оценка занятого локальным уровнем объема в байтах
+ * @param localSize   количество записей в локальном уровне
+ * @author Avdeyev Viktor
+ */
+public record TwoTierCacheStats(String name, CacheTierStats local, CacheTierStats remote, long localBytes,
+                                long localSize) {
+}
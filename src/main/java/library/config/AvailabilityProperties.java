@@ -0,0 +1,18 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки индекса доступности книг.
+ *
+ * @param reconcileInterval пауза между сверками индекса с базой данных
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.availability")
+public record AvailabilityProperties(
+    @DefaultValue("5m") Duration reconcileInterval
+) {
+}
@@ -0,0 +1,62 @@
+package library.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Двоичные форматы ответов и запросов всех контроллеров: CBOR ({@code application/cbor})
+ * и Smile ({@code application/x-jackson-smile}).
+ * <p>
+ * Формат выбирается заголовком {@code Accept}, тело запроса - заголовком {@code Content-Type}; без них
+ * остается JSON. Мапперы строятся из того же {@link Jackson2ObjectMapperBuilder} Spring Boot, что и JSON,
+ * с одним отличием: даты и время пишутся массивами чисел, а не строками ISO-8601, потому что
+ * клиенты двоичных форматов читают их тем же Jackson, а числа в CBOR и Smile занимают по 1-2 байта.
+ * Конвертеры заменяют конвертеры Spring MVC по умолчанию на тех же местах, после JSON, поэтому
+ * запрос, которому подходит любой формат, по-прежнему получает JSON.
+ *
+ * @author Avdeyev Viktor
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatsConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(builder));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileObjectMapper(builder));
+    }
+
+    /**
+     * Маппер CBOR с настройками приложения.
+     *
+     * @param builder построитель с настройками JSON
+     * @return маппер CBOR
+     */
+    public static ObjectMapper cborObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new CBORFactory())
+            .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    }
+
+    /**
+     * Маппер Smile с настройками приложения.
+     *
+     * @param builder построитель с настройками JSON
+     * @return маппер Smile
+     */
+    public static ObjectMapper smileObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new SmileFactory())
+            .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    }
+}
@@ -0,0 +1,134 @@
+package library.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import library.cache.CacheInvalidationBus;
+import library.cache.CacheTags;
+import library.cache.InMemoryCacheInvalidationBus;
+import library.cache.RedisCacheInvalidationBus;
+import library.cache.TaggedKeyGenerator;
+import library.cache.TwoTierCacheManager;
+import library.cache.TwoTierCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Конфигурация двухуровневого кэша.
+ * <p>
+ * При {@code spring.cache.type: redis} удаленным уровнем служит Redis, а инвалидации локального уровня
+ * рассылаются через Redis pub/sub. При {@code spring.cache.type: simple} приложение работает без Redis:
+ * удаленный уровень хранится в памяти, инвалидации доставляются внутри JVM.
+ * Ключи строит {@link TaggedKeyGenerator}, инвалидация выполняется по тегам через {@link CacheTags}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig implements CachingConfigurer {
+
+    private final ObjectProvider<CacheTags> cacheTags;
+
+    public CacheConfig(ObjectProvider<CacheTags> cacheTags) {
+        this.cacheTags = cacheTags;
+    }
+
+    /**
+     * Генератор ключей по умолчанию для всех {@code @Cacheable}.
+     */
+    @Bean
+    @Override
+    public KeyGenerator keyGenerator() {
+        return new TaggedKeyGenerator(cacheTags);
+    }
+
+    /**
+     * Двухуровневый менеджер кэшей. Метрики каждого кэша регистрируются при его создании
+     * с тегом {@code cache.manager}, как у кэшей, которые привязывает Spring Boot.
+     */
+    @Bean
+    @Primary
+    public TwoTierCacheManager cacheManager(@Qualifier("remoteCacheManager") CacheManager remoteCacheManager,
+                                            CacheInvalidationBus cacheInvalidationBus,
+                                            LocalCacheProperties localCacheProperties,
+                                            ObjectProvider<MeterRegistry> meterRegistry) {
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(remoteCacheManager, cacheInvalidationBus,
+            localCacheProperties.maxBytes(), localCacheProperties.timeToLive());
+        cacheManager.setCacheCreatedListener(cache -> meterRegistry.ifAvailable(registry ->
+            new TwoTierCacheMetrics(cache, Tags.of("cache.manager", "cacheManager")).bindTo(registry)));
+        return cacheManager;
+    }
+
+    /**
+     * Удаленный уровень и шина инвалидаций на Redis.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis", matchIfMissing = true)
+    static class RedisTierConfig {
+
+        @Bean
+        public RedisCacheManager remoteCacheManager(RedisConnectionFactory connectionFactory,
+                                                    CacheProperties cacheProperties) {
+            CacheProperties.Redis redis = cacheProperties.getRedis();
+            RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig();
+            if (redis.getTimeToLive() != null) {
+                configuration = configuration.entryTtl(redis.getTimeToLive());
+            }
+            if (!redis.isCacheNullValues()) {
+                configuration = configuration.disableCachingNullValues();
+            }
+            return RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(configuration)
+                .initialCacheNames(new LinkedHashSet<>(cacheProperties.getCacheNames()))
+                .build();
+        }
+
+        @Bean
+        public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        public CacheInvalidationBus cacheInvalidationBus(RedisTemplate<Object, Object> redisTemplate,
+                                                         RedisMessageListenerContainer listenerContainer) {
+            return new RedisCacheInvalidationBus(redisTemplate, listenerContainer);
+        }
+    }
+
+    /**
+     * Удаленный уровень и шина инвалидаций в памяти процесса.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "spring.cache.type", havingValue = "simple")
+    static class InMemoryTierConfig {
+
+        @Bean
+        public ConcurrentMapCacheManager remoteCacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        public CacheInvalidationBus cacheInvalidationBus() {
+            return new InMemoryCacheInvalidationBus();
+        }
+    }
+}
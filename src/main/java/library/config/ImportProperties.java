@@ -0,0 +1,18 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки массового импорта книг и пользователей.
+ *
+ * @param batchSize          количество строк, вставляемых в базу данных одной пачкой и одной транзакцией
+ * @param maxReportedErrors  сколько ошибок строк возвращать в отчете; остальные только подсчитываются
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.import")
+public record ImportProperties(
+    @DefaultValue("1000") int batchSize,
+    @DefaultValue("1000") int maxReportedErrors
+) {
+}
@@ -0,0 +1,22 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки обслуживания месячных секций таблицы займов.
+ *
+ * @param monthsAhead         на сколько месяцев вперед от текущего создаются секции
+ * @param retentionMonths     сколько месяцев секции остаются присоединенными; {@code 0} - не отсоединять
+ * @param maintenanceInterval пауза между проходами обслуживания
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.loans.partitions")
+public record LoanPartitionProperties(
+    @DefaultValue("3") int monthsAhead,
+    @DefaultValue("60") int retentionMonths,
+    @DefaultValue("1d") Duration maintenanceInterval
+) {
+}
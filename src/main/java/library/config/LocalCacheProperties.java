@@ -0,0 +1,20 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки локального уровня (L1) двухуровневого кэша.
+ *
+ * @param maxBytes   максимальный суммарный размер записей одного кэша в байтах
+ * @param timeToLive время жизни записи в L1, ограничивает устаревание при потере инвалидации
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.cache.local")
+public record LocalCacheProperties(
+    @DefaultValue("67108864") long maxBytes,
+    @DefaultValue("10m") Duration timeToLive
+) {
+}
@@ -0,0 +1,110 @@
+package library.config;
+
+import library.cache.CacheInvalidation;
+import library.cache.CacheTierStats;
+import library.cache.TwoTierCacheStats;
+import library.dto.AuthorLoanStats;
+import library.dto.AvailabilityCounts;
+import library.dto.BookDetails;
+import library.dto.BookImportRow;
+import library.dto.BookLoanStats;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.ImportRowError;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanView;
+import library.dto.SearchPage;
+import library.dto.UserDetails;
+import library.dto.UserImportRow;
+import library.dto.UserLoanStats;
+import library.dto.UserSummary;
+import library.entity.Book;
+import library.entity.Loan;
+import library.entity.User;
+import library.enums.Role;
+import library.outbox.BookChanged;
+import library.outbox.LoanChanged;
+import library.outbox.LoanCreated;
+import library.outbox.LoanReturned;
+import library.outbox.UserChanged;
+import library.warmup.WarmupReport;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Подсказки для сборки native-image (профиль Maven {@code native}) сверх тех, что Spring AOT выводит сам.
+ * <ul>
+ *     <li>сущности {@link Book}, {@link User}, {@link Loan}: поля для Hibernate, конструкторы и методы доступа,
+ *     которые генерирует Lombok, для Jackson;</li>
+ *     <li>DTO, в том числе строки импорта, которые Jackson читает вне контроллеров, и тела ответов
+ *     actuator и контроллера кэшей, а также события outbox, которые Jackson пишет и читает по имени типа;</li>
+ *     <li>Java-сериализация значений, которые Redis-уровень кэша и шина инвалидаций пишут
+ *     сериализатором JDK по умолчанию, включая коллекции Hibernate в непрогруженных связях сущностей;</li>
+ *     <li>ресурсы: changelog Liquibase с changeset в подкаталогах и webjar Swagger UI для springdoc
+ *     (модели OpenAPI springdoc регистрирует сам).</li>
+ * </ul>
+ *
+ * @author Avdeyev Viktor
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> ENTITIES = List.of(Book.class, User.class, Loan.class);
+
+    static final List<Class<?>> BINDING_TYPES = List.of(
+        AuthorLoanStats.class, AvailabilityCounts.class, BookDetails.class, BookImportRow.class,
+        BookLoanStats.class, BookSummary.class, CursorPage.class, ImportReport.class, ImportRowError.class,
+        LoanBatchResult.class, LoanCheckoutBatch.class, LoanReturnBatch.class, LoanView.class,
+        SearchPage.class, UserDetails.class, UserImportRow.class, UserLoanStats.class, UserSummary.class,
+        TwoTierCacheStats.class, CacheTierStats.class, WarmupReport.class, BookChanged.class, UserChanged.class,
+        LoanCreated.class, LoanReturned.class, LoanChanged.class);
+
+    /**
+     * Значения удаленного уровня кэша и сообщения шины инвалидаций.
+     */
+    static final List<Class<?>> SERIALIZABLE_TYPES = List.of(
+        Book.class, User.class, Loan.class, Role.class, BookSummary.class, UserSummary.class, LoanView.class,
+        BookDetails.class, UserDetails.class, CursorPage.class, SearchPage.class, CacheInvalidation.class,
+        String.class, Long.class, Integer.class, Number.class, Boolean.class, Enum.class,
+        LocalDate.class, LocalDateTime.class, ArrayList.class);
+
+    /**
+     * Сериализуемые JDK типы, недоступные из кода приложения: формы сериализации неизменяемых коллекций
+     * и {@code java.time}, коллекции Hibernate.
+     */
+    static final List<String> SERIALIZABLE_TYPE_NAMES = List.of(
+        "java.util.CollSer", "java.util.ImmutableCollections$ListN", "java.util.ImmutableCollections$List12",
+        "java.time.Ser", "org.hibernate.collection.spi.AbstractPersistentCollection",
+        "org.hibernate.collection.spi.PersistentBag");
+
+    static final List<String> RESOURCE_PATTERNS = List.of(
+        "db/changelog/**",
+        "META-INF/resources/webjars/swagger-ui/**",
+        "META-INF/maven/org.webjars/swagger-ui/pom.properties");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> entity : ENTITIES) {
+            hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        BindingReflectionHintsRegistrar binding = new BindingReflectionHintsRegistrar();
+        binding.registerReflectionHints(hints.reflection(), ENTITIES.toArray(Class<?>[]::new));
+        binding.registerReflectionHints(hints.reflection(), BINDING_TYPES.toArray(Class<?>[]::new));
+
+        SERIALIZABLE_TYPES.forEach(type -> hints.serialization().registerType(TypeReference.of(type)));
+        SERIALIZABLE_TYPE_NAMES.forEach(name -> hints.serialization().registerType(TypeReference.of(name)));
+
+        RESOURCE_PATTERNS.forEach(hints.resources()::registerPattern);
+    }
+}
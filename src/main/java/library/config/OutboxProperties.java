@@ -0,0 +1,32 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки доставки событий из outbox.
+ *
+ * @param dispatch        доставлять ли события этим экземпляром приложения; запись в outbox идет всегда
+ * @param batchSize       наибольшее количество событий в одной пачке
+ * @param pollInterval    период проверки outbox без сигналов о новых событиях: повторы и события,
+ *                        записанные другими экземплярами
+ * @param retryBackoff    задержка первой повторной доставки, далее удваивается
+ * @param maxRetryBackoff наибольшая задержка повторной доставки
+ * @param deliveryThreads потоки доставки событий сразу после фиксации транзакции
+ * @param deliveryQueue   наибольшее количество транзакций, ждущих доставки после фиксации; события
+ *                        транзакций сверх очереди доставляет опрос outbox
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.outbox")
+public record OutboxProperties(
+    @DefaultValue("true") boolean dispatch,
+    @DefaultValue("100") int batchSize,
+    @DefaultValue("1s") Duration pollInterval,
+    @DefaultValue("1s") Duration retryBackoff,
+    @DefaultValue("5m") Duration maxRetryBackoff,
+    @DefaultValue("2") int deliveryThreads,
+    @DefaultValue("1000") int deliveryQueue
+) {
+}
@@ -0,0 +1,24 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки сроков займов и учета просроченных займов.
+ *
+ * @param loanPeriod        срок займа, если он не задан при выдаче
+ * @param tick              шаг времени колеса таймеров: с этой точностью и с этой задержкой займ становится
+ *                          просроченным
+ * @param reconcileInterval пауза между сверками учета с базой данных, за нее становятся видны займы,
+ *                          выданные и возвращенные другими экземплярами приложения
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.overdue")
+public record OverdueProperties(
+    @DefaultValue("14d") Duration loanPeriod,
+    @DefaultValue("1m") Duration tick,
+    @DefaultValue("1m") Duration reconcileInterval
+) {
+}
@@ -0,0 +1,35 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки реплик базы данных для транзакций только для чтения.
+ *
+ * @param replicas                 реплики; если список пуст, все транзакции идут на основной сервер
+ * @param maxLag                   наибольшее отставание реплики, при котором она еще обслуживает чтение
+ * @param lagCheckInterval         период проверки позиций WAL основного сервера и реплик
+ * @param replicaConnectionTimeout ожидание соединения реплики, после которого чтение уходит на основной сервер
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.datasource")
+public record ReplicaProperties(
+    List<Replica> replicas,
+    @DefaultValue("5s") Duration maxLag,
+    @DefaultValue("500ms") Duration lagCheckInterval,
+    @DefaultValue("1s") Duration replicaConnectionTimeout
+) {
+
+    /**
+     * Реплика.
+     *
+     * @param url      URL JDBC
+     * @param username пользователь; если не задан, как у основного сервера
+     * @param password пароль; если не задан, как у основного сервера
+     */
+    public record Replica(String url, String username, String password) {
+    }
+}
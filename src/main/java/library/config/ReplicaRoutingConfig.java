@@ -0,0 +1,69 @@
+package library.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import library.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение с реплик: включается, когда задана хотя бы одна {@code library.datasource.replicas[n].url}.
+ * <p>
+ * Основной пул строится из {@code spring.datasource}, пулы реплик копируют его настройки
+ * ({@code spring.datasource.hikari}) со своими адресом и учетными данными. Основным источником
+ * соединений приложения, который получают JPA, {@code JdbcTemplate} и Liquibase, становится
+ * {@link ReplicaRoutingDataSource} за {@link LazyConnectionDataSourceProxy}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "library.datasource.replicas[0].url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+        @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+        DataSourceProperties dataSourceProperties,
+        ReplicaProperties replicaProperties) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaProperties.replicas().size(); i++) {
+            ReplicaProperties.Replica replica = replicaProperties.replicas().get(i);
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setPoolName("replica-" + i);
+            config.setJdbcUrl(replica.url());
+            config.setUsername(replica.username() != null
+                ? replica.username() : dataSourceProperties.determineUsername());
+            config.setPassword(replica.password() != null
+                ? replica.password() : dataSourceProperties.determinePassword());
+            config.setReadOnly(true);
+            config.setConnectionTimeout(replicaProperties.replicaConnectionTimeout().toMillis());
+            // недоступная при старте реплика не мешает запуску: ее исключит проверка отставания
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaProperties.maxLag());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
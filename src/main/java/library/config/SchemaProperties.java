@@ -0,0 +1,19 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки проверки версии схемы базы данных при старте.
+ *
+ * @param checkEnabled проверять ли при старте, что схема размечена ожидаемым тегом
+ * @param expectedTag  тег Liquibase последнего changeset, без которого приложение не работает;
+ *                     обновляется вместе с changelog
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.schema")
+public record SchemaProperties(
+    @DefaultValue("true") boolean checkEnabled,
+    @DefaultValue("step9") String expectedTag
+) {
+}
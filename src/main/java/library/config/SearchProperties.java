@@ -0,0 +1,20 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки полнотекстового индекса книг.
+ *
+ * @param rebuildBatch      размер страницы книг при перестроении индекса из базы данных
+ * @param reconcileInterval пауза между перестроениями индекса из базы данных
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.search")
+public record SearchProperties(
+    @DefaultValue("1000") int rebuildBatch,
+    @DefaultValue("5m") Duration reconcileInterval
+) {
+}
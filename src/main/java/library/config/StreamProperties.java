@@ -0,0 +1,22 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки реактивного потокового API каталога.
+ *
+ * @param port        порт отдельного сервера Reactor Netty
+ * @param pageSize    количество строк, читаемых из базы данных одним запросом
+ * @param poolMaxSize наибольшее количество соединений R2DBC
+ * @param r2dbcUrl    URL R2DBC; если не задан, выводится из {@code spring.datasource.url}
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.stream")
+public record StreamProperties(
+    @DefaultValue("8081") int port,
+    @DefaultValue("500") int pageSize,
+    @DefaultValue("10") int poolMaxSize,
+    String r2dbcUrl
+) {
+}
@@ -0,0 +1,30 @@
+package library.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Проверка режима виртуальных потоков ({@code spring.threads.virtual.enabled}).
+ * <p>
+ * На JVM младше 21 Spring Boot молча оставляет пулы платформенных потоков, поэтому запуск в этом режиме
+ * прерывается, а не продолжается с другой моделью потоков.
+ *
+ * @author Avdeyev Viktor
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfig {
+
+    static final int MIN_JAVA_VERSION = 21;
+
+    public VirtualThreadsConfig() {
+        int javaVersion = Runtime.version().feature();
+        if (javaVersion < MIN_JAVA_VERSION) {
+            throw new IllegalStateException("Режим виртуальных потоков требует Java " + MIN_JAVA_VERSION
+                + " или новее, текущая версия: " + javaVersion);
+        }
+        log.info("Режим виртуальных потоков включен, Java {}", javaVersion);
+    }
+}
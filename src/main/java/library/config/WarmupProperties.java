@@ -0,0 +1,24 @@
+package library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки прогрева приложения при старте.
+ *
+ * @param enabled       прогревать ли приложение до готовности принимать трафик
+ * @param topItems      сколько самых востребованных книг и пользователей загрузить в кэш
+ * @param requestRounds сколько раз пройти по GET-эндпоинтам синтетическими запросами
+ * @param timeout       наибольшая длительность прогрева; по ее истечении оставшиеся проходы пропускаются
+ * @author Avdeyev Viktor
+ */
+@ConfigurationProperties(prefix = "library.warmup")
+public record WarmupProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("100") int topItems,
+    @DefaultValue("200") int requestRounds,
+    @DefaultValue("60s") Duration timeout
+) {
+}
@@ -2,16 +2,25 @@ package library.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import library.dto.AvailabilityCounts;
+import library.dto.BookDetails;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.SearchPage;
 import library.entity.Book;
+import library.importer.ImportFormat;
 import library.service.BookService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.io.InputStream;
 import java.util.Optional;
 
 /**
@@ -29,34 +38,121 @@ public class BookController {
 
     private final BookService bookService;
 
-    private final static Logger logger = LoggerFactory.getLogger(BookController.class);
     /**
-     * Метод позволяет получить список всех книг в библиотеке.
+     * Метод позволяет постранично получить список книг в библиотеке.
      *
-     * @return список всех книг
+     * @param cursor токен продолжения из предыдущей страницы
+     * @param size размер страницы
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return страница книг или статус 304, если списки книг не менялись
      */
-    @Operation(summary = "Метод позволяет получить список всех книг")
+    @Operation(summary = "Метод позволяет постранично получить список книг")
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        log.info("getAllBooks - start");
-        long startTime = System.currentTimeMillis();
-        ResponseEntity<List<Book>> response = ResponseEntity.ok(bookService.findAll());
-        long endTime = System.currentTimeMillis() - startTime;
-        logger.info("Duration = {}", endTime);
-        log.info("getAllBooks - end, booksCount = {}", response.getBody().size());
-        return response;
+    public ResponseEntity<CursorPage<BookSummary>> getAllBooks(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer size,
+                                                        WebRequest request) {
+        log.info("getAllBooks - start, cursor = {}, size = {}", cursor, size);
+        String etag = ConditionalGet.etag(bookService.findListVersion(), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getAllBooks - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        CursorPage<BookSummary> page = bookService.findPage(cursor, size);
+        log.info("getAllBooks - end, booksCount = {}", page.items().size());
+        return ConditionalGet.ok(etag, page);
+    }
+
+    /**
+     * Метод позволяет найти книги по названию и автору.
+     * Поиск учитывает префиксы и опечатки, результаты упорядочены по релевантности.
+     *
+     * @param q поисковая строка
+     * @param page номер страницы, начиная с нуля
+     * @param size размер страницы
+     * @return страница найденных книг
+     */
+    @Operation(summary = "Метод позволяет найти книги по названию и автору")
+    @GetMapping("/search")
+    public ResponseEntity<SearchPage<BookSummary>> searchBooks(@RequestParam String q,
+                                                               @RequestParam(required = false) Integer page,
+                                                               @RequestParam(required = false) Integer size) {
+        log.info("searchBooks - start, q = {}, page = {}, size = {}", q, page, size);
+        SearchPage<BookSummary> result = bookService.search(q, page, size);
+        log.info("searchBooks - end, total = {}", result.total());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Метод позволяет постранично получить доступные книги в порядке возрастания id.
+     *
+     * @param cursor токен продолжения из предыдущей страницы
+     * @param size размер страницы
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return страница доступных книг или статус 304, если списки книг не менялись
+     */
+    @Operation(summary = "Метод позволяет постранично получить доступные книги")
+    @GetMapping("/available")
+    public ResponseEntity<CursorPage<BookSummary>> getAvailableBooks(@RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer size,
+                                                                     WebRequest request) {
+        log.info("getAvailableBooks - start, cursor = {}, size = {}", cursor, size);
+        String etag = ConditionalGet.etag(bookService.findListVersion(), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getAvailableBooks - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        CursorPage<BookSummary> page = bookService.findAvailable(cursor, size);
+        log.info("getAvailableBooks - end, booksCount = {}", page.items().size());
+        return ConditionalGet.ok(etag, page);
+    }
+
+    /**
+     * Метод позволяет узнать количество всех, доступных и выданных книг.
+     *
+     * @return количество книг по доступности
+     */
+    @Operation(summary = "Метод позволяет узнать количество доступных и выданных книг")
+    @GetMapping("/available/count")
+    public ResponseEntity<AvailabilityCounts> countAvailableBooks() {
+        log.info("countAvailableBooks - start");
+        AvailabilityCounts counts = bookService.countAvailability();
+        log.info("countAvailableBooks - end, counts = {}", counts);
+        return ResponseEntity.ok(counts);
+    }
+
+    /**
+     * Метод позволяет проверить доступность книги без тела ответа.
+     *
+     * @param bookId идентификатор книги
+     * @return статус 200, если книга доступна, 409, если выдана, или 404, если книги нет
+     */
+    @Operation(summary = "Метод позволяет проверить доступность книги")
+    @RequestMapping(value = "/{bookId}/available", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> checkBookAvailable(@PathVariable Long bookId) {
+        log.info("checkBookAvailable - start, bookId = {}", bookId);
+        Optional<Boolean> available = bookService.findAvailability(bookId);
+        HttpStatus status = available.map(isAvailable -> isAvailable ? HttpStatus.OK : HttpStatus.CONFLICT)
+            .orElse(HttpStatus.NOT_FOUND);
+        log.info("checkBookAvailable - end, status = {}", status);
+        return ResponseEntity.status(status).build();
     }
 
     /**
      * Метод позволяет получить книгу по ее идентификатору.
      *
      * @param bookId идентификатор книги
-     * @return найденная книга или статус 404, если книга не найдена
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return найденная книга, статус 304, если книга не менялась, или 404, если книга не найдена
      */
     @Operation(summary = "Метод позволяет получить книгу по ID")
     @GetMapping("/{bookId}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long bookId) {
+    public ResponseEntity<Book> getBookById(@PathVariable Long bookId, WebRequest request) {
         log.info("getBookById - start, bookId = {}", bookId);
+        String etag = ConditionalGet.etag(bookService.findVersion(bookId), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getBookById - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
         Optional<Book> book = bookService.findById(bookId);
 
         if (book.isEmpty()) {
@@ -64,11 +160,26 @@ public class BookController {
             return ResponseEntity.notFound().build();
         }
 
-        ResponseEntity<Book> response = ResponseEntity.ok(book.get());
+        ResponseEntity<Book> response = ConditionalGet.ok(etag, book.get());
         log.info("getBookById - end, book = {}", book.get());
         return response;
     }
 
+    /**
+     * Метод позволяет получить книгу вместе с историей ее займов.
+     *
+     * @param bookId идентификатор книги
+     * @return книга и ее займы или статус 404, если книга не найдена
+     */
+    @Operation(summary = "Метод позволяет получить книгу вместе с ее займами")
+    @GetMapping("/{bookId}/details")
+    public ResponseEntity<BookDetails> getBookDetails(@PathVariable Long bookId) {
+        log.info("getBookDetails - start, bookId = {}", bookId);
+        BookDetails details = bookService.findDetailsById(bookId);
+        log.info("getBookDetails - end, loansCount = {}", details.loans().size());
+        return ResponseEntity.ok(details);
+    }
+
     /**
      * Метод позволяет получить книгу по названию.
      *
@@ -107,6 +218,24 @@ public class BookController {
         return response;
     }
 
+    /**
+     * Метод позволяет загрузить книги из файла NDJSON или CSV.
+     * Строки с ошибками отклоняются по одной и перечисляются в отчете, остальные сохраняются.
+     *
+     * @param contentType тип содержимого: application/x-ndjson или text/csv
+     * @param body содержимое файла
+     * @return отчет об импорте
+     */
+    @Operation(summary = "Метод позволяет загрузить книги из NDJSON или CSV")
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, ImportFormat.TEXT_CSV_VALUE})
+    public ResponseEntity<ImportReport> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                    InputStream body) {
+        log.info("importBooks - start, contentType = {}", contentType);
+        ImportReport report = bookService.importBooks(body, ImportFormat.fromContentType(contentType));
+        log.info("importBooks - end, imported = {}, failed = {}", report.imported(), report.failed());
+        return ResponseEntity.ok(report);
+    }
+
     /**
      * Метод позволяет обновить информацию о книге.
      *
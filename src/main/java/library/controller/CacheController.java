@@ -0,0 +1,43 @@
+package library.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import library.cache.TwoTierCacheManager;
+import library.cache.TwoTierCacheStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Контроллер для просмотра состояния кэшей.
+ * <p>
+ * Автор: Avdeyev Viktor
+ */
+@Tag(name = "Контроллер для просмотра состояния кэшей")
+@RestController
+@Slf4j
+@RequestMapping("/library/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final TwoTierCacheManager cacheManager;
+
+    /**
+     * Метод позволяет получить статистику попаданий и вытеснений по уровням каждого кэша.
+     *
+     * @return статистика кэшей
+     */
+    @Operation(summary = "Метод позволяет получить статистику кэшей по уровням")
+    @GetMapping("/stats")
+    public ResponseEntity<List<TwoTierCacheStats>> getCacheStats() {
+        log.info("getCacheStats - start");
+        List<TwoTierCacheStats> stats = cacheManager.stats();
+        log.info("getCacheStats - end, cachesCount = {}", stats.size());
+        return ResponseEntity.ok(stats);
+    }
+}
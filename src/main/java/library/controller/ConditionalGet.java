@@ -0,0 +1,130 @@
+package library.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ответы на условные GET-запросы.
+ * <p>
+ * ETag строится из версии тега кэша, которую меняют методы записи сервисов, поэтому проверка
+ * {@code If-None-Match} стоит одного чтения версии и отвечает 304 без обращения к базе данных
+ * и сериализации. Версия читается до загрузки данных: если данные изменятся между этими шагами,
+ * клиент получит новые данные под старой версией и перезагрузит их при следующей проверке,
+ * но не наоборот.
+ *
+ * @author Avdeyev Viktor
+ */
+final class ConditionalGet {
+
+    /**
+     * Ответ можно хранить, но перед использованием нужно перепроверить по ETag.
+     */
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache();
+
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Строгий ETag версии в формате, который получит клиент.
+     *
+     * @param version версия ресурса из сервиса
+     * @param request запрос с заголовком {@code Accept}
+     * @return значение заголовка {@code ETag}
+     */
+    static String etag(String version, WebRequest request) {
+        return '"' + version + representation(request) + '"';
+    }
+
+    /**
+     * Проверить, есть ли у клиента текущее представление.
+     *
+     * @param request запрос
+     * @param etag    текущий ETag
+     * @return {@code true}, если заголовки {@code If-None-Match} содержат текущий ETag или {@code *}
+     */
+    static boolean isNotModified(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (headers == null) {
+            return false;
+        }
+        for (String header : headers) {
+            for (String candidate : header.split(",")) {
+                String tag = candidate.trim();
+                // If-None-Match сравнивается слабо: W/ перед значением не учитывается
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ответ 304 без тела.
+     *
+     * @param etag текущий ETag
+     * @param <T>  тип тела обычного ответа
+     * @return ответ 304
+     */
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL)
+            .varyBy(HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Ответ 200 с ETag и {@code Cache-Control}.
+     *
+     * @param etag ETag, прочитанный до загрузки тела
+     * @param body тело ответа
+     * @param <T>  тип тела
+     * @return ответ 200
+     */
+    static <T> ResponseEntity<T> ok(String etag, T body) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    /**
+     * Суффикс ETag по формату ответа: представления одной версии в JSON, CBOR и Smile различаются побайтно
+     * и не могут иметь общий строгий ETag. Формат определяется так же, как его выберет Spring MVC:
+     * первый по качеству приемлемый тип, JSON - для любого типа, который он покрывает.
+     */
+    private static String representation(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return "";
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException ex) {
+            return "";
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : accepted) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return "";
+            }
+            if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                return "-cbor";
+            }
+            if (type.equalsTypeAndSubtype(SMILE)) {
+                return "-smile";
+            }
+        }
+        return "";
+    }
+}
@@ -2,6 +2,11 @@ package library.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import library.dto.CursorPage;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanView;
 import library.entity.Loan;
 import library.exception.NotFoundException;
 import library.service.LoanService;
@@ -9,6 +14,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -29,37 +35,53 @@ public class LoanController {
     private final LoanService loanService;
 
     /**
-     * Метод позволяет получить список всех займов.
+     * Метод позволяет постранично получить список займов.
      *
-     * @return список всех займов
+     * @param cursor токен продолжения из предыдущей страницы
+     * @param size размер страницы
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return страница займов или статус 304, если списки займов не менялись
      */
-    @Operation(summary = "Метод позволяет получить список всех займов")
+    @Operation(summary = "Метод позволяет постранично получить список займов")
     @GetMapping
-    public ResponseEntity<List<Loan>> getAllLoans() {
-        log.info("getAllLoans - start");
-        List<Loan> loans = loanService.findAll();
-        log.info("getAllLoans - end, количество займов = {}", loans.size());
-        return ResponseEntity.ok(loans);
+    public ResponseEntity<CursorPage<LoanView>> getAllLoans(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer size,
+                                                        WebRequest request) {
+        log.info("getAllLoans - start, cursor = {}, size = {}", cursor, size);
+        String etag = ConditionalGet.etag(loanService.findListVersion(), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getAllLoans - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        CursorPage<LoanView> loans = loanService.findPage(cursor, size);
+        log.info("getAllLoans - end, количество займов = {}", loans.items().size());
+        return ConditionalGet.ok(etag, loans);
     }
 
     /**
      * Метод позволяет получить заем по ID.
      *
      * @param loanId идентификатор займа
-     * @return найденный заем или статус 404, если заем не найден
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return найденный заем, статус 304, если заем не менялся, или 404, если заем не найден
      */
     @Operation(summary = "Метод позволяет получить заем по ID")
     @GetMapping("/{loanId}")
-    public ResponseEntity<Loan> getLoanById(@PathVariable Long loanId) {
+    public ResponseEntity<LoanView> getLoanById(@PathVariable Long loanId, WebRequest request) {
         log.info("getLoanById - start, loanId = {}", loanId);
-        Optional<Loan> loan = loanService.findById(loanId);
+        String etag = ConditionalGet.etag(loanService.findVersion(loanId), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getLoanById - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        Optional<LoanView> loan = loanService.findById(loanId);
 
         if (loan.isEmpty()) {
             log.warn("getLoanById - заем с ID {} не найден", loanId);
             return ResponseEntity.notFound().build();
         }
 
-        ResponseEntity<Loan> response = ResponseEntity.ok(loan.get());
+        ResponseEntity<LoanView> response = ConditionalGet.ok(etag, loan.get());
         log.info("getLoanById - end, найден заем = {}", loan.get());
         return response;
     }
@@ -68,33 +90,60 @@ public class LoanController {
      * Метод позволяет получить список займов по ID пользователя.
      *
      * @param userId идентификатор пользователя
-     * @return список займов пользователя
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return список займов пользователя или статус 304, если его займы не менялись
      */
     @Operation(summary = "Метод позволяет получить список займов по ID пользователя")
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Loan>> getLoansByUserId(@PathVariable Long userId) {
+    public ResponseEntity<List<LoanView>> getLoansByUserId(@PathVariable Long userId, WebRequest request) {
         log.info("getLoansByUserId - start, userId = {}", userId);
-        List<Loan> loans = loanService.findByUserId(userId);
+        String etag = ConditionalGet.etag(loanService.findUserLoansVersion(userId), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getLoansByUserId - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        List<LoanView> loans = loanService.findByUserId(userId);
         log.info("getLoansByUserId - end, количество займов = {}", loans.size());
-        return ResponseEntity.ok(loans);
+        return ConditionalGet.ok(etag, loans);
     }
 
     /**
      * Метод позволяет получить список незавершенных займов.
      *
-     * @return список незавершенных займов
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return список незавершенных займов или статус 304, если списки займов не менялись
      */
     @Operation(summary = "Метод позволяет получить список незавершенных займов")
     @GetMapping("/not-returned")
-    public ResponseEntity<List<Loan>> getNotReturnedLoans() {
+    public ResponseEntity<List<LoanView>> getNotReturnedLoans(WebRequest request) {
         log.info("getNotReturnedLoans - start");
-        List<Loan> loans = loanService.findByReturnedFalse();
+        String etag = ConditionalGet.etag(loanService.findListVersion(), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getNotReturnedLoans - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        List<LoanView> loans = loanService.findByReturnedFalse();
         log.info("getNotReturnedLoans - end, количество незавершенных займов = {}", loans.size());
+        return ConditionalGet.ok(etag, loans);
+    }
+
+    /**
+     * Метод позволяет получить список просроченных займов.
+     *
+     * @return список открытых займов с истекшим сроком возврата в порядке срока
+     */
+    @Operation(summary = "Метод позволяет получить список просроченных займов")
+    @GetMapping("/overdue")
+    public ResponseEntity<List<LoanView>> getOverdueLoans() {
+        log.info("getOverdueLoans - start");
+        List<LoanView> loans = loanService.findOverdue();
+        log.info("getOverdueLoans - end, количество просроченных займов = {}", loans.size());
         return ResponseEntity.ok(loans);
     }
 
     /**
      * Метод позволяет добавить новый заем.
+     * Открытый заем выдает книгу; если книга уже выдана, возвращается 409.
      *
      * @param loan объект займа, который нужно добавить
      * @return добавленный заем
@@ -114,7 +163,8 @@ public class LoanController {
      *
      * @param loanId идентификатор займа
      * @param returned статус возврата
-     * @return статус 204 (No Content), если статус обновлен, или 404, если заем не найден
+     * @return статус 204 (No Content), если статус обновлен, 404, если заем не найден,
+     * или 409, если книга займа уже выдана по другому займу
      */
     @Operation(summary = "Метод позволяет обновить статус возврата займа")
     @PutMapping("/{loanId}/return-status")
@@ -131,6 +181,38 @@ public class LoanController {
         }
     }
 
+    /**
+     * Метод позволяет выдать пользователю несколько книг одной транзакцией.
+     * Недоступные и несуществующие книги не прерывают выдачу остальных.
+     *
+     * @param batch пользователь и выдаваемые книги
+     * @return результат по каждой книге в порядке запроса
+     */
+    @Operation(summary = "Метод позволяет выдать пользователю несколько книг")
+    @PostMapping("/batch-checkout")
+    public ResponseEntity<List<LoanBatchResult>> checkoutBooks(@RequestBody LoanCheckoutBatch batch) {
+        log.info("checkoutBooks - start, batch = {}", batch);
+        List<LoanBatchResult> results = loanService.checkoutAll(batch);
+        log.info("checkoutBooks - end, количество результатов = {}", results.size());
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Метод позволяет закрыть несколько займов одной транзакцией.
+     * Несуществующие и уже закрытые займы не прерывают возврат остальных.
+     *
+     * @param batch закрываемые займы
+     * @return результат по каждому займу в порядке запроса
+     */
+    @Operation(summary = "Метод позволяет закрыть несколько займов")
+    @PostMapping("/batch-return")
+    public ResponseEntity<List<LoanBatchResult>> returnBooks(@RequestBody LoanReturnBatch batch) {
+        log.info("returnBooks - start, batch = {}", batch);
+        List<LoanBatchResult> results = loanService.returnAll(batch);
+        log.info("returnBooks - end, количество результатов = {}", results.size());
+        return ResponseEntity.ok(results);
+    }
+
     /**
      * Метод позволяет удалить заем по ID.
      *
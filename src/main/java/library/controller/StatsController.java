@@ -0,0 +1,124 @@
+package library.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import library.dto.AuthorLoanStats;
+import library.dto.BookLoanStats;
+import library.dto.UserLoanStats;
+import library.service.StatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Контроллер для статистики займов.
+ * Предоставляет рейтинги книг, авторов и пользователей по займам.
+ * <p>
+ * Автор: Avdeyev Viktor
+ */
+@Tag(name = "Контроллер для статистики займов")
+@RestController
+@Slf4j
+@RequestMapping("/library/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final StatsService statsService;
+
+    /**
+     * Метод позволяет получить книги с наибольшим количеством займов.
+     *
+     * @param limit размер рейтинга
+     * @return книги в порядке убывания количества займов
+     */
+    @Operation(summary = "Метод позволяет получить книги с наибольшим количеством займов")
+    @GetMapping("/books/top")
+    public ResponseEntity<List<BookLoanStats>> getTopBooks(@RequestParam(required = false) Integer limit) {
+        log.info("getTopBooks - start, limit = {}", limit);
+        List<BookLoanStats> books = statsService.findTopBooks(limit);
+        log.info("getTopBooks - end, количество книг = {}", books.size());
+        return ResponseEntity.ok(books);
+    }
+
+    /**
+     * Метод позволяет получить количество займов книги.
+     *
+     * @param bookId идентификатор книги
+     * @return статистика книги
+     */
+    @Operation(summary = "Метод позволяет получить количество займов книги")
+    @GetMapping("/books/{bookId}")
+    public ResponseEntity<BookLoanStats> getBookStats(@PathVariable Long bookId) {
+        log.info("getBookStats - start, bookId = {}", bookId);
+        BookLoanStats stats = statsService.findBookStats(bookId);
+        log.info("getBookStats - end, количество займов = {}", stats.loans());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Метод позволяет получить авторов с наибольшим количеством займов их книг.
+     *
+     * @param limit размер рейтинга
+     * @return авторы в порядке убывания количества займов
+     */
+    @Operation(summary = "Метод позволяет получить авторов с наибольшим количеством займов")
+    @GetMapping("/authors/top")
+    public ResponseEntity<List<AuthorLoanStats>> getTopAuthors(@RequestParam(required = false) Integer limit) {
+        log.info("getTopAuthors - start, limit = {}", limit);
+        List<AuthorLoanStats> authors = statsService.findTopAuthors(limit);
+        log.info("getTopAuthors - end, количество авторов = {}", authors.size());
+        return ResponseEntity.ok(authors);
+    }
+
+    /**
+     * Метод позволяет получить пользователей с наибольшим количеством открытых займов.
+     *
+     * @param limit размер рейтинга
+     * @return пользователи в порядке убывания количества открытых займов
+     */
+    @Operation(summary = "Метод позволяет получить пользователей с наибольшим количеством открытых займов")
+    @GetMapping("/users/top")
+    public ResponseEntity<List<UserLoanStats>> getTopActiveUsers(@RequestParam(required = false) Integer limit) {
+        log.info("getTopActiveUsers - start, limit = {}", limit);
+        List<UserLoanStats> users = statsService.findTopActiveUsers(limit);
+        log.info("getTopActiveUsers - end, количество пользователей = {}", users.size());
+        return ResponseEntity.ok(users);
+    }
+
+    /**
+     * Метод позволяет получить количество открытых и всех займов пользователя.
+     *
+     * @param userId идентификатор пользователя
+     * @return статистика пользователя
+     */
+    @Operation(summary = "Метод позволяет получить количество займов пользователя")
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<UserLoanStats> getUserStats(@PathVariable Long userId) {
+        log.info("getUserStats - start, userId = {}", userId);
+        UserLoanStats stats = statsService.findUserStats(userId);
+        log.info("getUserStats - end, открытых займов = {}", stats.activeLoans());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Метод позволяет пересчитать статистику по таблице займов, например после изменения займов прямым SQL.
+     *
+     * @return статус 204
+     */
+    @Operation(summary = "Метод позволяет пересчитать статистику займов")
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild() {
+        log.info("rebuild - start");
+        statsService.rebuild();
+        log.info("rebuild - end");
+        return ResponseEntity.noContent().build();
+    }
+}
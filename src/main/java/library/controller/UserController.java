@@ -2,13 +2,22 @@ package library.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.UserDetails;
+import library.dto.UserSummary;
 import library.entity.User;
+import library.importer.ImportFormat;
 import library.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -29,17 +38,27 @@ public class UserController {
     private final UserService userService;
 
     /**
-     * Метод позволяет получить список всех пользователей.
+     * Метод позволяет постранично получить список пользователей.
      *
-     * @return список всех пользователей
+     * @param cursor токен продолжения из предыдущей страницы
+     * @param size размер страницы
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return страница пользователей или статус 304, если списки пользователей не менялись
      */
-    @Operation(summary = "Метод позволяет получить список всех пользователей")
+    @Operation(summary = "Метод позволяет постранично получить список пользователей")
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        log.info("getAllUsers - start");
-        List<User> users = userService.findAll();
-        ResponseEntity<List<User>> response = ResponseEntity.ok(users);
-        log.info("getAllUsers - end, usersCount = {}", users.size());
+    public ResponseEntity<CursorPage<UserSummary>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer size,
+                                                        WebRequest request) {
+        log.info("getAllUsers - start, cursor = {}, size = {}", cursor, size);
+        String etag = ConditionalGet.etag(userService.findListVersion(), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getAllUsers - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
+        CursorPage<UserSummary> users = userService.findPage(cursor, size);
+        ResponseEntity<CursorPage<UserSummary>> response = ConditionalGet.ok(etag, users);
+        log.info("getAllUsers - end, usersCount = {}", users.items().size());
         return response;
     }
 
@@ -47,12 +66,18 @@ public class UserController {
      * Метод позволяет получить пользователя по его идентификатору.
      *
      * @param userId идентификатор пользователя
-     * @return найденный пользователь или статус 404, если пользователь не найден
+     * @param request запрос с заголовком {@code If-None-Match}
+     * @return найденный пользователь, статус 304, если пользователь не менялся, или 404, если он не найден
      */
     @Operation(summary = "Метод позволяет получить пользователя по ID")
     @GetMapping("/{userId}")
-    public ResponseEntity<User> getUserById(@PathVariable Long userId) {
+    public ResponseEntity<User> getUserById(@PathVariable Long userId, WebRequest request) {
         log.info("getUserById - start, userId = {}", userId);
+        String etag = ConditionalGet.etag(userService.findVersion(userId), request);
+        if (ConditionalGet.isNotModified(request, etag)) {
+            log.info("getUserById - end, не изменено");
+            return ConditionalGet.notModified(etag);
+        }
         Optional<User> user = userService.findById(userId);
 
         if (user.isEmpty()) {
@@ -60,11 +85,26 @@ public class UserController {
             return ResponseEntity.notFound().build();
         }
 
-        ResponseEntity<User> response = ResponseEntity.ok(user.get());
+        ResponseEntity<User> response = ConditionalGet.ok(etag, user.get());
         log.info("getUserById - end, user = {}", user.get());
         return response;
     }
 
+    /**
+     * Метод позволяет получить пользователя вместе с историей его займов.
+     *
+     * @param userId идентификатор пользователя
+     * @return пользователь и его займы или статус 404, если пользователь не найден
+     */
+    @Operation(summary = "Метод позволяет получить пользователя вместе с его займами")
+    @GetMapping("/{userId}/details")
+    public ResponseEntity<UserDetails> getUserDetails(@PathVariable Long userId) {
+        log.info("getUserDetails - start, userId = {}", userId);
+        UserDetails details = userService.findDetailsById(userId);
+        log.info("getUserDetails - end, loansCount = {}", details.loans().size());
+        return ResponseEntity.ok(details);
+    }
+
     /**
      * Метод позволяет получить пользователей по имени.
      *
@@ -73,10 +113,10 @@ public class UserController {
      */
     @Operation(summary = "Метод позволяет получить пользователей по имени")
     @GetMapping("/first-name/{firstName}")
-    public ResponseEntity<List<User>> getUsersByFirstName(@PathVariable String firstName) {
+    public ResponseEntity<List<UserSummary>> getUsersByFirstName(@PathVariable String firstName) {
         log.info("getUsersByFirstName - start, firstName = {}", firstName);
-        List<User> users = userService.findByFirstName(firstName);
-        ResponseEntity<List<User>> response = ResponseEntity.ok(users);
+        List<UserSummary> users = userService.findByFirstName(firstName);
+        ResponseEntity<List<UserSummary>> response = ResponseEntity.ok(users);
         log.info("getUsersByFirstName - end, usersCount = {}", users.size());
         return response;
     }
@@ -89,10 +129,10 @@ public class UserController {
      */
     @Operation(summary = "Метод позволяет получить пользователей по фамилии")
     @GetMapping("/last-name/{lastName}")
-    public ResponseEntity<List<User>> getUsersByLastName(@PathVariable String lastName) {
+    public ResponseEntity<List<UserSummary>> getUsersByLastName(@PathVariable String lastName) {
         log.info("getUsersByLastName - start, lastName = {}", lastName);
-        List<User> users = userService.findByLastName(lastName);
-        ResponseEntity<List<User>> response = ResponseEntity.ok(users);
+        List<UserSummary> users = userService.findByLastName(lastName);
+        ResponseEntity<List<UserSummary>> response = ResponseEntity.ok(users);
         log.info("getUsersByLastName - end, usersCount = {}", users.size());
         return response;
     }
@@ -105,10 +145,10 @@ public class UserController {
      */
     @Operation(summary = "Метод позволяет получить пользователей, зарегистрированных после указанной даты")
     @GetMapping("/registered-after/{date}")
-    public ResponseEntity<List<User>> getUsersByDateRegistrationAfter(@PathVariable LocalDate date) {
+    public ResponseEntity<List<UserSummary>> getUsersByDateRegistrationAfter(@PathVariable LocalDate date) {
         log.info("getUsersByDateRegistrationAfter - start, date = {}", date);
-        List<User> users = userService.findByDateRegistrationAfter(date);
-        ResponseEntity<List<User>> response = ResponseEntity.ok(users);
+        List<UserSummary> users = userService.findByDateRegistrationAfter(date);
+        ResponseEntity<List<UserSummary>> response = ResponseEntity.ok(users);
         log.info("getUsersByDateRegistrationAfter - end, usersCount = {}", users.size());
         return response;
     }
@@ -129,6 +169,24 @@ public class UserController {
         return response;
     }
 
+    /**
+     * Метод позволяет загрузить пользователей из файла NDJSON или CSV.
+     * Строки с ошибками отклоняются по одной и перечисляются в отчете, остальные сохраняются.
+     *
+     * @param contentType тип содержимого: application/x-ndjson или text/csv
+     * @param body содержимое файла
+     * @return отчет об импорте
+     */
+    @Operation(summary = "Метод позволяет загрузить пользователей из NDJSON или CSV")
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, ImportFormat.TEXT_CSV_VALUE})
+    public ResponseEntity<ImportReport> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                    InputStream body) {
+        log.info("importUsers - start, contentType = {}", contentType);
+        ImportReport report = userService.importUsers(body, ImportFormat.fromContentType(contentType));
+        log.info("importUsers - end, imported = {}, failed = {}", report.imported(), report.failed());
+        return ResponseEntity.ok(report);
+    }
+
     /**
      * Метод позволяет обновить информацию о пользователе.
      *
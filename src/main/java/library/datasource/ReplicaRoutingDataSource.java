@@ -0,0 +1,296 @@
+package library.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Источник соединений, который отправляет транзакции только для чтения на реплики PostgreSQL.
+ * <p>
+ * Соединение выбирается по флагу {@link TransactionSynchronizationManager#isCurrentTransactionReadOnly()},
+ * поэтому источник должен стоять за {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * тогда физическое соединение берется при первом запросе, когда флаг транзакции уже выставлен.
+ * Все остальное, включая работу вне транзакций, идет на основной сервер.
+ * <p>
+ * Раз в {@code library.datasource.lag-check-interval} {@link #checkReplicas()} запоминает позицию WAL
+ * основного сервера вместе с моментом проверки и сравнивает с ней позицию воспроизведения каждой реплики.
+ * Реплика догнала момент проверки, если воспроизвела WAL до позиции, записанной в этот момент. Чтение
+ * уходит на реплику, только если она догнала момент не раньше окончания последней записи этого экземпляра
+ * приложения (чтение своих записей) и не старше {@code max-lag}; иначе - на основной сервер. Записи
+ * других экземпляров реплика может показать с отставанием до {@code max-lag}.
+ * <p>
+ * Записью считается только то, что отмечено через {@link #trackWrite()}: изменения данных, которые пишут
+ * события в outbox, и массовый импорт. Транзакция на запись, которая ничего не изменила, например опрос
+ * outbox, чтение с реплик не задерживает.
+ * <p>
+ * Реплика, которая не выдала соединение, исключается до следующей успешной проверки, а чтение
+ * продолжается на следующей реплике или на основном сервере.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    static final String PRIMARY_WAL_POSITION = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+
+    /**
+     * Позиция воспроизведенного WAL; {@code NULL}, если сервер не является репликой.
+     */
+    static final String REPLAY_WAL_POSITION = "SELECT (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+
+    private static final int CHECK_TIMEOUT_SECONDS = 5;
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final long maxLagNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * Момент окончания последней записи этого экземпляра приложения.
+     */
+    private final AtomicLong lastWriteNanos;
+
+    /**
+     * Блокировка, а не {@code synchronized}: проверка держит ее на время запросов к серверам
+     * и не должна закреплять поток-носитель виртуального потока.
+     */
+    private final Lock checkLock = new ReentrantLock();
+
+    /**
+     * Позиции WAL основного сервера за последние {@code max-lag}, от старых к новым.
+     */
+    private final Deque<WalCheckpoint> checkpoints = new ArrayDeque<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Duration maxLag) {
+        this(primary, replicas, maxLag, System::nanoTime);
+    }
+
+    ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Duration maxLag,
+                             LongSupplier nanoClock) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagNanos = maxLag.toNanos();
+        this.nanoClock = nanoClock;
+        this.lastWriteNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        long now = nanoClock.getAsLong();
+        long lastWrite = lastWriteNanos.get();
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (first + i) % replicas.size();
+            Replica replica = replicas.get(index);
+            if (!replica.isUsable(now, lastWrite, maxLagNanos)) {
+                continue;
+            }
+            try {
+                return replica.dataSource().getConnection();
+            } catch (SQLException ex) {
+                replica.markDown();
+                log.warn("getConnection - реплика {} недоступна, чтение уходит дальше: {}", index, ex.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Соединения с другими учетными данными не поддерживаются, как и у пулов соединений.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Соединения с другими учетными данными не поддерживаются");
+    }
+
+    /**
+     * Сравнить позиции WAL реплик с позицией основного сервера.
+     */
+    @Scheduled(fixedDelayString = "${library.datasource.lag-check-interval:500ms}")
+    public void checkReplicas() {
+        checkLock.lock();
+        try {
+            long start = nanoClock.getAsLong();
+            Long primaryPosition;
+            try {
+                primaryPosition = walPosition(primary, PRIMARY_WAL_POSITION);
+            } catch (SQLException ex) {
+                log.warn("checkReplicas - основной сервер недоступен: {}", ex.getMessage());
+                return;
+            }
+            if (primaryPosition == null) {
+                return;
+            }
+            checkpoints.addLast(new WalCheckpoint(start, primaryPosition));
+            while (checkpoints.size() > 1 && start - checkpoints.getFirst().nanos() > maxLagNanos) {
+                checkpoints.removeFirst();
+            }
+            for (int i = 0; i < replicas.size(); i++) {
+                checkReplica(i, replicas.get(i));
+            }
+        } finally {
+            checkLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private void checkReplica(int index, Replica replica) {
+        Long replayPosition;
+        try {
+            replayPosition = walPosition(replica.dataSource(), REPLAY_WAL_POSITION);
+        } catch (SQLException ex) {
+            if (replica.markDown()) {
+                log.warn("checkReplicas - реплика {} недоступна: {}", index, ex.getMessage());
+            }
+            return;
+        }
+        if (replayPosition == null) {
+            if (replica.markDown()) {
+                log.warn("checkReplicas - сервер {} не является репликой и не используется для чтения", index);
+            }
+            return;
+        }
+        Iterator<WalCheckpoint> newestFirst = checkpoints.descendingIterator();
+        while (newestFirst.hasNext()) {
+            WalCheckpoint checkpoint = newestFirst.next();
+            if (checkpoint.position() <= replayPosition) {
+                if (replica.caughtUp(checkpoint.nanos())) {
+                    log.info("checkReplicas - реплика {} используется для чтения", index);
+                }
+                return;
+            }
+        }
+        if (replica.markDown()) {
+            log.warn("checkReplicas - реплика {} отстает больше max-lag", index);
+        }
+    }
+
+    /**
+     * Отметить запись этого экземпляра: следующее чтение уйдет на реплику, только когда она воспроизведет
+     * запись. Окончание записи запоминается после завершения текущей транзакции, а вне транзакции - сразу.
+     */
+    public void trackWrite() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    markWritten();
+                }
+            });
+        } else {
+            markWritten();
+        }
+    }
+
+    private void markWritten() {
+        lastWriteNanos.accumulateAndGet(nanoClock.getAsLong(), Math::max);
+    }
+
+    private static Long walPosition(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                return resultSet.next() ? resultSet.getObject(1, Long.class) : null;
+            }
+        }
+    }
+
+    /**
+     * Позиция WAL основного сервера в момент начала проверки.
+     */
+    private record WalCheckpoint(long nanos, long position) {
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        /**
+         * Момент проверки, который реплика догнала; имеет смысл в состоянии {@link State#UP}.
+         */
+        private volatile long caughtUpNanos;
+
+        private volatile State state = State.UNKNOWN;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        DataSource dataSource() {
+            return dataSource;
+        }
+
+        boolean isUsable(long now, long lastWriteNanos, long maxLagNanos) {
+            if (state != State.UP) {
+                return false;
+            }
+            long caughtUp = caughtUpNanos;
+            return caughtUp - lastWriteNanos >= 0 && now - caughtUp <= maxLagNanos;
+        }
+
+        /**
+         * @return {@code true}, если реплика до этого не использовалась
+         */
+        boolean caughtUp(long nanos) {
+            caughtUpNanos = nanos;
+            boolean changed = state != State.UP;
+            state = State.UP;
+            return changed;
+        }
+
+        /**
+         * @return {@code true}, если реплика до этого не была исключена
+         */
+        boolean markDown() {
+            boolean changed = state != State.DOWN;
+            state = State.DOWN;
+            return changed;
+        }
+    }
+
+    /**
+     * Состояние реплики: до первой проверки она не используется, но и не считается исключенной.
+     */
+    private enum State {
+        UNKNOWN, UP, DOWN
+    }
+}
@@ -0,0 +1,11 @@
+package library.dto;
+
+/**
+ * Статистика выдач книг автора.
+ *
+ * @param author автор
+ * @param loans  количество займов книг автора
+ * @author Avdeyev Viktor
+ */
+public record AuthorLoanStats(String author, long loans) {
+}
@@ -0,0 +1,12 @@
+package library.dto;
+
+/**
+ * Количество книг по доступности.
+ *
+ * @param total     количество всех книг
+ * @param available количество доступных книг
+ * @param onLoan    количество выданных книг
+ * @author Avdeyev Viktor
+ */
+public record AvailabilityCounts(long total, long available, long onLoan) {
+}
@@ -0,0 +1,14 @@
+package library.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Книга вместе с историей ее займов.
+ *
+ * @param book  книга
+ * @param loans займы, связанные с книгой
+ * @author Avdeyev Viktor
+ */
+public record BookDetails(BookSummary book, List<LoanView> loans) implements Serializable {
+}
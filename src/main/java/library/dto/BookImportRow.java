@@ -0,0 +1,48 @@
+package library.dto;
+
+import library.entity.Book;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка массового импорта книг.
+ * <p>
+ * Имена полей совпадают с ключами NDJSON и заголовками колонок CSV.
+ *
+ * @param title         название книги
+ * @param author        автор книги
+ * @param publishedYear год издания книги
+ * @param pageCount     количество страниц в книге
+ * @param available     маркер занятости книги, по умолчанию {@code true}
+ * @param addedAt       дата добавления книги в библиотеку, по умолчанию момент импорта
+ * @author Avdeyev Viktor
+ */
+public record BookImportRow(
+    String title,
+    String author,
+    Integer publishedYear,
+    Integer pageCount,
+    Boolean available,
+    LocalDateTime addedAt
+) {
+
+    /**
+     * Создает новую сущность книги без id.
+     *
+     * @return сущность книги
+     */
+    public Book toBook() {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setPublishedYear(publishedYear);
+        book.setPageCount(pageCount);
+        if (available != null) {
+            book.setAvailable(available);
+        }
+        if (addedAt != null) {
+            book.setAddedAt(addedAt);
+        }
+        return book;
+    }
+}
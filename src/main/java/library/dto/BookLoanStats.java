@@ -0,0 +1,13 @@
+package library.dto;
+
+/**
+ * Статистика выдач книги.
+ *
+ * @param bookId id книги
+ * @param title  название книги
+ * @param author автор книги
+ * @param loans  количество займов книги
+ * @author Avdeyev Viktor
+ */
+public record BookLoanStats(Long bookId, String title, String author, long loans) {
+}
@@ -0,0 +1,42 @@
+package library.dto;
+
+import library.entity.Book;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Облегченное представление книги без связанных займов.
+ * <p>
+ * Используется в списках и поиске, выбирается конструкторным JPQL-запросом.
+ *
+ * @param id            id книги
+ * @param title         название книги
+ * @param author        автор книги
+ * @param publishedYear год издания книги
+ * @param pageCount     количество страниц в книге
+ * @param available     маркер занятости книги
+ * @param addedAt       дата добавления книги в библиотеку
+ * @author Avdeyev Viktor
+ */
+public record BookSummary(
+    Long id,
+    String title,
+    String author,
+    Integer publishedYear,
+    Integer pageCount,
+    boolean available,
+    LocalDateTime addedAt
+) implements Serializable {
+
+    /**
+     * Создает представление из загруженной сущности.
+     *
+     * @param book сущность книги
+     * @return представление книги
+     */
+    public static BookSummary from(Book book) {
+        return new BookSummary(book.getId(), book.getTitle(), book.getAuthor(), book.getPublishedYear(),
+            book.getPageCount(), book.isAvailable(), book.getAddedAt());
+    }
+}
@@ -0,0 +1,15 @@
+package library.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Страница результатов с курсорной (keyset) пагинацией.
+ *
+ * @param items      элементы текущей страницы
+ * @param nextCursor непрозрачный токен продолжения или {@code null}, если страница последняя
+ * @param <T>        тип элементов страницы
+ * @author Avdeyev Viktor
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) implements Serializable {
+}
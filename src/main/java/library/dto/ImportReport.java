@@ -0,0 +1,15 @@
+package library.dto;
+
+import java.util.List;
+
+/**
+ * Итог массового импорта.
+ *
+ * @param processed количество прочитанных строк
+ * @param imported  количество сохраненных строк
+ * @param failed    количество отклоненных строк
+ * @param errors    ошибки отклоненных строк в порядке следования, не больше настроенного предела
+ * @author Avdeyev Viktor
+ */
+public record ImportReport(long processed, long imported, long failed, List<ImportRowError> errors) {
+}
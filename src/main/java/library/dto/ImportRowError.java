@@ -0,0 +1,11 @@
+package library.dto;
+
+/**
+ * Ошибка строки массового импорта.
+ *
+ * @param line    номер строки во входном файле, начиная с единицы
+ * @param message причина отклонения строки
+ * @author Avdeyev Viktor
+ */
+public record ImportRowError(long line, String message) {
+}
@@ -0,0 +1,53 @@
+package library.dto;
+
+/**
+ * Результат обработки одного элемента пакетной выдачи или возврата.
+ *
+ * @param bookId id книги, если известен
+ * @param loanId id займа, если известен
+ * @param status итог обработки элемента
+ * @author Avdeyev Viktor
+ */
+public record LoanBatchResult(Long bookId, Long loanId, Status status) {
+
+    /**
+     * Итог обработки элемента пакета.
+     */
+    public enum Status {
+
+        /**
+         * Книга выдана, создан займ.
+         */
+        CHECKED_OUT,
+
+        /**
+         * Займ закрыт, книга снова доступна.
+         */
+        RETURNED,
+
+        /**
+         * Книга не найдена.
+         */
+        BOOK_NOT_FOUND,
+
+        /**
+         * Книга уже выдана.
+         */
+        BOOK_UNAVAILABLE,
+
+        /**
+         * Займ не найден.
+         */
+        LOAN_NOT_FOUND,
+
+        /**
+         * Займ уже закрыт.
+         */
+        ALREADY_RETURNED,
+
+        /**
+         * Повтор элемента, уже встречавшегося в пакете; обработан только первый.
+         */
+        DUPLICATE
+    }
+}
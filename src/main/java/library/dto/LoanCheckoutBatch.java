@@ -0,0 +1,13 @@
+package library.dto;
+
+import java.util.List;
+
+/**
+ * Пакетная выдача книг одному пользователю.
+ *
+ * @param userId  id пользователя, которому выдаются книги
+ * @param bookIds id выдаваемых книг
+ * @author Avdeyev Viktor
+ */
+public record LoanCheckoutBatch(Long userId, List<Long> bookIds) {
+}
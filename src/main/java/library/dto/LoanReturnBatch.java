@@ -0,0 +1,12 @@
+package library.dto;
+
+import java.util.List;
+
+/**
+ * Пакетный возврат книг.
+ *
+ * @param loanIds id закрываемых займов
+ * @author Avdeyev Viktor
+ */
+public record LoanReturnBatch(List<Long> loanIds) {
+}
@@ -0,0 +1,47 @@
+package library.dto;
+
+/**
+ * Изменение статистики займов от одного займа.
+ *
+ * @param bookId      id книги займа
+ * @param userId      id пользователя займа
+ * @param loans       изменение количества займов: {@code 1} для нового займа, {@code -1} для удаленного
+ * @param activeLoans изменение количества открытых займов: {@code 1} при выдаче, {@code -1} при возврате
+ * @author Avdeyev Viktor
+ */
+public record LoanStatsDelta(Long bookId, Long userId, int loans, int activeLoans) {
+
+    /**
+     * Изменение от появления займа в указанном состоянии.
+     *
+     * @param loan новый заем
+     * @return изменение статистики
+     */
+    public static LoanStatsDelta created(LoanView loan) {
+        return new LoanStatsDelta(loan.bookId(), loan.userId(), 1, isOpen(loan) ? 1 : 0);
+    }
+
+    /**
+     * Изменение от удаления займа в указанном состоянии.
+     *
+     * @param loan удаленный заем
+     * @return изменение статистики
+     */
+    public static LoanStatsDelta deleted(LoanView loan) {
+        return new LoanStatsDelta(loan.bookId(), loan.userId(), -1, isOpen(loan) ? -1 : 0);
+    }
+
+    /**
+     * Изменение от перехода займа между открытым и возвращенным состоянием.
+     *
+     * @param loan заем в новом состоянии
+     * @return изменение статистики
+     */
+    public static LoanStatsDelta statusChanged(LoanView loan) {
+        return new LoanStatsDelta(loan.bookId(), loan.userId(), 0, isOpen(loan) ? 1 : -1);
+    }
+
+    private static boolean isOpen(LoanView loan) {
+        return !Boolean.TRUE.equals(loan.returned());
+    }
+}
@@ -0,0 +1,42 @@
+package library.dto;
+
+import library.entity.Loan;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Представление займа со ссылками на пользователя и книгу по id.
+ * <p>
+ * Не подтягивает связанные сущности: id берутся из внешних ключей таблицы loans.
+ *
+ * @param id         id записи о выдаче
+ * @param userId     id пользователя, который взял книгу
+ * @param bookId     id выданной книги
+ * @param loanDate   дата выдачи книги
+ * @param dueDate    срок возврата книги
+ * @param returnDate дата возврата книги
+ * @param returned   маркер возврата книги
+ * @author Avdeyev Viktor
+ */
+public record LoanView(
+    Long id,
+    Long userId,
+    Long bookId,
+    LocalDateTime loanDate,
+    LocalDateTime dueDate,
+    LocalDateTime returnDate,
+    Boolean returned
+) implements Serializable {
+
+    /**
+     * Создает представление из загруженной сущности.
+     *
+     * @param loan сущность займа
+     * @return представление займа
+     */
+    public static LoanView from(Loan loan) {
+        return new LoanView(loan.getId(), loan.getUser().getId(), loan.getBook().getId(), loan.getLoanDate(),
+            loan.getDueDate(), loan.getReturnDate(), loan.getReturned());
+    }
+}
@@ -0,0 +1,17 @@
+package library.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Страница результатов полнотекстового поиска, упорядоченных по релевантности.
+ *
+ * @param items элементы текущей страницы
+ * @param total общее количество найденных элементов; точное до 1000, дальше нижняя оценка
+ * @param page  номер страницы, начиная с нуля
+ * @param size  размер страницы
+ * @param <T>   тип элементов страницы
+ * @author Avdeyev Viktor
+ */
+public record SearchPage<T>(List<T> items, long total, int page, int size) implements Serializable {
+}
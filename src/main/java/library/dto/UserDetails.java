@@ -0,0 +1,14 @@
+package library.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Пользователь вместе с историей его займов.
+ *
+ * @param user  пользователь
+ * @param loans займы, связанные с пользователем
+ * @author Avdeyev Viktor
+ */
+public record UserDetails(UserSummary user, List<LoanView> loans) implements Serializable {
+}
@@ -0,0 +1,47 @@
+package library.dto;
+
+import library.entity.User;
+import library.enums.Role;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Строка массового импорта пользователей.
+ * <p>
+ * Имена полей совпадают с ключами NDJSON и заголовками колонок CSV.
+ *
+ * @param firstName        имя пользователя
+ * @param lastName         фамилия пользователя
+ * @param birthDate        дата рождения пользователя
+ * @param dateRegistration дата регистрации пользователя, по умолчанию момент импорта
+ * @param role             роль пользователя, по умолчанию {@link Role#READER}
+ * @author Avdeyev Viktor
+ */
+public record UserImportRow(
+    String firstName,
+    String lastName,
+    LocalDate birthDate,
+    LocalDateTime dateRegistration,
+    Role role
+) {
+
+    /**
+     * Создает новую сущность пользователя без id.
+     *
+     * @return сущность пользователя
+     */
+    public User toUser() {
+        User user = new User();
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setBirthDate(birthDate);
+        if (dateRegistration != null) {
+            user.setDateRegistration(dateRegistration);
+        }
+        if (role != null) {
+            user.setRole(role);
+        }
+        return user;
+    }
+}
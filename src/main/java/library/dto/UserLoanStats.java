@@ -0,0 +1,14 @@
+package library.dto;
+
+/**
+ * Статистика займов пользователя.
+ *
+ * @param userId      id пользователя
+ * @param firstName   имя пользователя
+ * @param lastName    фамилия пользователя
+ * @param activeLoans количество открытых займов
+ * @param totalLoans  количество всех займов
+ * @author Avdeyev Viktor
+ */
+public record UserLoanStats(Long userId, String firstName, String lastName, int activeLoans, long totalLoans) {
+}
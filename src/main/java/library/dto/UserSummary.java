@@ -0,0 +1,42 @@
+package library.dto;
+
+import library.entity.User;
+import library.enums.Role;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Облегченное представление пользователя без связанных займов.
+ * <p>
+ * Используется в списках и поиске, выбирается конструкторным JPQL-запросом.
+ *
+ * @param id               id пользователя
+ * @param firstName        имя пользователя
+ * @param lastName         фамилия пользователя
+ * @param birthDate        дата рождения пользователя
+ * @param dateRegistration дата регистрации пользователя
+ * @param role             роль пользователя
+ * @author Avdeyev Viktor
+ */
+public record UserSummary(
+    Long id,
+    String firstName,
+    String lastName,
+    LocalDate birthDate,
+    LocalDateTime dateRegistration,
+    Role role
+) implements Serializable {
+
+    /**
+     * Создает представление из загруженной сущности.
+     *
+     * @param user сущность пользователя
+     * @return представление пользователя
+     */
+    public static UserSummary from(User user) {
+        return new UserSummary(user.getId(), user.getFirstName(), user.getLastName(), user.getBirthDate(),
+            user.getDateRegistration(), user.getRole());
+    }
+}
@@ -1,5 +1,6 @@
 package library.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -15,6 +16,7 @@ import java.util.List;
  * @author Avdeyev Viktor
  */
 @Entity
+@NamedEntityGraph(name = "Book.loans", attributeNodes = @NamedAttributeNode("loans"))
 @Table(name = "books")
 @Getter
 @Setter
@@ -24,11 +26,23 @@ import java.util.List;
 @EqualsAndHashCode
 public class Book implements Serializable {
 
+    /**
+     * Последовательность идентификаторов книг.
+     */
+    public static final String ID_SEQUENCE = "books_book_id_seq";
+
+    /**
+     * Количество идентификаторов, выдаваемых одним обращением к последовательности.
+     * Совпадает с шагом последовательности в changeset "alter-id-sequences".
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     /**
      * Id книги.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_id_seq")
+    @SequenceGenerator(name = "books_id_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "book_id", nullable = false, updatable = false)
     private Long id;
 
@@ -61,9 +75,11 @@ public class Book implements Serializable {
     private Integer pageCount;
 
     /**
-     * Маркер занятости книги.
+     * Маркер занятости книги. После создания книги меняется только выдачей и возвратом займов
+     * ({@link library.repository.BookRepository#updateAvailability}), поэтому при обновлении книги
+     * Hibernate колонку не пишет.
      */
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     @NotNull(message = "Book available cannot be null")
     private boolean available = true;
 
@@ -77,7 +93,11 @@ public class Book implements Serializable {
     /**
      * Список займов, связанных с книгой.
      * Связь с сущностью Loan.
+     * Загружается лениво, явно подгружается через граф "Book.loans".
      */
-    @OneToMany(mappedBy = "book", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "book", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Loan> loans;
 }
@@ -55,6 +55,12 @@ public class Loan implements Serializable {
     @NotNull(message = "Loan date cannot be null")
     private LocalDateTime loanDate = LocalDateTime.now();
 
+    /**
+     * Срок возврата книги. Если не задан при выдаче, его устанавливает {@link library.service.LoanService}.
+     */
+    @Column(name = "due_date", nullable = false)
+    private LocalDateTime dueDate;
+
     /**
      * Дата возврата книги.
      */
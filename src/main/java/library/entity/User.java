@@ -1,5 +1,6 @@
 package library.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -17,6 +18,7 @@ import java.util.List;
  * @author Avdeyev Viktor
  */
 @Entity
+@NamedEntityGraph(name = "User.loans", attributeNodes = @NamedAttributeNode("loans"))
 @Table(name = "users")
 @Getter
 @Setter
@@ -26,11 +28,23 @@ import java.util.List;
 @EqualsAndHashCode
 public class User implements Serializable {
 
+    /**
+     * Последовательность идентификаторов пользователей.
+     */
+    public static final String ID_SEQUENCE = "users_user_id_seq";
+
+    /**
+     * Количество идентификаторов, выдаваемых одним обращением к последовательности.
+     * Совпадает с шагом последовательности в changeset "alter-id-sequences".
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     /**
      * Id пользователя.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "user_id", nullable = false, updatable = false)
     private Long id;
 
@@ -75,7 +89,11 @@ public class User implements Serializable {
     /**
      * Список займов, связанных с пользователем.
      * Связь с сущностью Loan.
+     * Загружается лениво, явно подгружается через граф "User.loans".
      */
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Loan> loans;
 }
@@ -0,0 +1,19 @@
+package library.exception;
+
+/**
+ * Исключение, указывающее, что запрос конфликтует с текущим состоянием ресурса,
+ * например книга уже выдана или заем изменен параллельным запросом.
+ * Код ошибки: 409.
+ *
+ * @author Avdeyev Viktor
+ */
+public class ConflictException extends RuntimeException {
+    /**
+     * Конструктор исключения.
+     *
+     * @param message Сообщение.
+     */
+    public ConflictException(final String message) {
+        super(message);
+    }
+}
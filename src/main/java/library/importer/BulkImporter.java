@@ -0,0 +1,246 @@
+package library.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import library.config.ImportProperties;
+import library.datasource.ReplicaRoutingDataSource;
+import library.dto.ImportReport;
+import library.dto.ImportRowError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Потоковый конвейер массового импорта.
+ * <p>
+ * Читает вход по одной строке, не загружая его в память целиком, проверяет каждую строку ограничениями
+ * сущности и передает корректные строки на запись пачками по {@code library.import.batch-size}.
+ * Ошибка разбора или проверки отклоняет только свою строку. Если пачка не записалась, ее строки
+ * записываются по одной, чтобы отклонить только те, которые отвергла база данных.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class BulkImporter {
+
+    private final ObjectMapper objectMapper;
+
+    private final CsvMapper csvMapper;
+
+    private final Validator validator;
+
+    private final ImportProperties importProperties;
+
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+
+    public BulkImporter(ObjectMapper objectMapper, Validator validator, ImportProperties importProperties,
+                        ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.importProperties = importProperties;
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+        this.csvMapper = CsvMapper.builder()
+            .findAndAddModules()
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL, CsvParser.Feature.TRIM_SPACES)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    }
+
+    /**
+     * Импортировать строки из входного потока.
+     *
+     * @param input      входной поток в кодировке UTF-8
+     * @param format     формат входного потока
+     * @param rowType    тип строки импорта
+     * @param mapper     преобразование строки в новую сущность
+     * @param writer     запись пачки сущностей в одной транзакции
+     * @param onImported действие над успешно записанными сущностями, например инвалидация кэша
+     * @param <R>        тип строки импорта
+     * @param <T>        тип сущности
+     * @return итог импорта
+     */
+    public <R, T> ImportReport importRows(InputStream input, ImportFormat format, Class<R> rowType,
+                                          Function<R, T> mapper, Consumer<List<T>> writer,
+                                          Consumer<List<T>> onImported) {
+        log.info("importRows - начало, формат: {}, тип строки: {}", format, rowType.getSimpleName());
+        long startTime = System.currentTimeMillis();
+        Run<R, T> run = new Run<>(mapper, writer, onImported);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (format == ImportFormat.CSV) {
+                readCsv(reader, rowType, run);
+            } else {
+                readNdjson(reader, rowType, run);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось прочитать файл импорта", ex);
+        }
+        run.flush();
+        ImportReport report = run.report();
+        log.info("importRows - конец, прочитано: {}, сохранено: {}, отклонено: {}, за {} мс", report.processed(),
+            report.imported(), report.failed(), System.currentTimeMillis() - startTime);
+        return report;
+    }
+
+    private <R> void readNdjson(BufferedReader reader, Class<R> rowType, Run<R, ?> run) throws IOException {
+        ObjectReader rowReader = objectMapper.readerFor(rowType);
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            try {
+                run.accept(line, rowReader.readValue(text));
+            } catch (JsonProcessingException ex) {
+                run.reject(line, ex.getOriginalMessage());
+            }
+        }
+    }
+
+    private <R> void readCsv(BufferedReader reader, Class<R> rowType, Run<R, ?> run) throws IOException {
+        ObjectReader rowReader = csvMapper.readerFor(rowType).with(CsvSchema.emptySchema().withHeader());
+        try (MappingIterator<R> rows = rowReader.readValues(reader)) {
+            while (true) {
+                long line;
+                R row;
+                try {
+                    if (!rows.hasNextValue()) {
+                        return;
+                    }
+                    line = rows.getCurrentLocation().getLineNr();
+                    row = rows.nextValue();
+                } catch (DatabindException ex) {
+                    // значение не подошло к полю: строка отклоняется, итератор переходит к следующей
+                    run.reject(lineOf(ex), ex.getOriginalMessage());
+                    continue;
+                } catch (JsonProcessingException ex) {
+                    // структура CSV нарушена (например, незакрытая кавычка): дальше строки не разобрать
+                    run.reject(lineOf(ex), ex.getOriginalMessage());
+                    return;
+                }
+                run.accept(line, row);
+            }
+        }
+    }
+
+    private static long lineOf(JsonProcessingException ex) {
+        return ex.getLocation() == null ? -1 : ex.getLocation().getLineNr();
+    }
+
+    /**
+     * Состояние одного импорта: текущая пачка и счетчики.
+     */
+    private final class Run<R, T> {
+
+        private final Function<R, T> mapper;
+
+        private final Consumer<List<T>> writer;
+
+        private final Consumer<List<T>> onImported;
+
+        private final List<PendingRow<T>> pending = new ArrayList<>();
+
+        private final List<ImportRowError> errors = new ArrayList<>();
+
+        private long processed;
+
+        private long imported;
+
+        private long failed;
+
+        private Run(Function<R, T> mapper, Consumer<List<T>> writer, Consumer<List<T>> onImported) {
+            this.mapper = mapper;
+            this.writer = writer;
+            this.onImported = onImported;
+        }
+
+        void accept(long line, R row) {
+            processed++;
+            T entity = mapper.apply(row);
+            Set<ConstraintViolation<T>> violations = validator.validate(entity);
+            if (!violations.isEmpty()) {
+                addError(line, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+                return;
+            }
+            pending.add(new PendingRow<>(line, entity));
+            if (pending.size() >= importProperties.batchSize()) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            processed++;
+            addError(line, message);
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<T> written = pending.stream().map(PendingRow::entity).toList();
+            try {
+                writer.accept(written);
+            } catch (DataAccessException ex) {
+                log.warn("flush - пачка из {} строк не записана, запись по одной: {}", written.size(),
+                    ex.getMostSpecificCause().getMessage());
+                written = new ArrayList<>();
+                for (PendingRow<T> row : pending) {
+                    try {
+                        writer.accept(List.of(row.entity()));
+                        written.add(row.entity());
+                    } catch (DataAccessException rowEx) {
+                        addError(row.line(), rowEx.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+            pending.clear();
+            imported += written.size();
+            if (!written.isEmpty()) {
+                replicaRoutingDataSource.ifAvailable(ReplicaRoutingDataSource::trackWrite);
+                onImported.accept(written);
+            }
+        }
+
+        ImportReport report() {
+            return new ImportReport(processed, imported, failed, List.copyOf(errors));
+        }
+
+        private void addError(long line, String message) {
+            failed++;
+            if (errors.size() < importProperties.maxReportedErrors()) {
+                errors.add(new ImportRowError(line, message));
+            }
+        }
+    }
+
+    private record PendingRow<T>(long line, T entity) {
+    }
+}
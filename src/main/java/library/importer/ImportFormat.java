@@ -0,0 +1,55 @@
+package library.importer;
+
+import library.exception.BadRequestException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Формат входного файла массового импорта.
+ *
+ * @author Avdeyev Viktor
+ */
+public enum ImportFormat {
+
+    /**
+     * Один JSON-объект на строку.
+     */
+    NDJSON(MediaType.APPLICATION_NDJSON_VALUE),
+
+    /**
+     * CSV с заголовком из имен полей.
+     */
+    CSV(ImportFormat.TEXT_CSV_VALUE);
+
+    /**
+     * Тип содержимого CSV.
+     */
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+
+    ImportFormat(String mediaType) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+    }
+
+    /**
+     * Определить формат по заголовку Content-Type запроса.
+     *
+     * @param contentType значение заголовка Content-Type
+     * @return формат импорта
+     * @throws BadRequestException если тип содержимого не поддерживается
+     */
+    public static ImportFormat fromContentType(String contentType) {
+        try {
+            MediaType requested = MediaType.parseMediaType(contentType);
+            for (ImportFormat format : values()) {
+                if (format.mediaType.isCompatibleWith(requested)) {
+                    return format;
+                }
+            }
+        } catch (InvalidMediaTypeException ex) {
+            // сообщаем ниже тем же исключением, что и для неподдерживаемого типа
+        }
+        throw new BadRequestException("Неподдерживаемый формат импорта: " + contentType);
+    }
+}
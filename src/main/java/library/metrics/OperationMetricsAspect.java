@@ -0,0 +1,78 @@
+package library.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Таймеры публичных методов сервисов и репозиториев.
+ * <p>
+ * Метрики {@value #SERVICE_METRIC} и {@value #REPOSITORY_METRIC} помечаются тегом {@code operation} вида
+ * {@code BookRepositoryImpl.findByAuthor} и тегом {@code exception} с простым именем класса исключения или
+ * {@code none}. Перцентили и гистограммы включаются настройками {@code management.metrics.distribution}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Aspect
+@Component
+public class OperationMetricsAspect {
+
+    static final String SERVICE_METRIC = "library.service";
+
+    static final String REPOSITORY_METRIC = "library.repository";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Таймеры успешных вызовов по методам, чтобы не искать таймер в реестре на каждый вызов.
+     */
+    private final ConcurrentMap<Method, Timer> successTimers = new ConcurrentHashMap<>();
+
+    public OperationMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * library.service.impl..*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_METRIC, joinPoint);
+    }
+
+    @Around("execution(public * library.repository.imp..*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_METRIC, joinPoint);
+    }
+
+    private Object time(String metric, ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable ex) {
+            sample.stop(timer(metric, joinPoint, ex.getClass().getSimpleName()));
+            throw ex;
+        }
+        sample.stop(successTimers.computeIfAbsent(method, key -> timer(metric, joinPoint, NO_EXCEPTION)));
+        return result;
+    }
+
+    private Timer timer(String metric, ProceedingJoinPoint joinPoint, String exception) {
+        String operation = ClassUtils.getUserClass(joinPoint.getTarget()).getSimpleName() + "."
+            + joinPoint.getSignature().getName();
+        return Timer.builder(metric)
+            .tag("operation", operation)
+            .tag("exception", exception)
+            .register(meterRegistry);
+    }
+}
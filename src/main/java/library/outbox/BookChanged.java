@@ -0,0 +1,13 @@
+package library.outbox;
+
+import library.dto.BookSummary;
+
+/**
+ * Книга создана, изменена, удалена или изменилась ее доступность.
+ *
+ * @param previous состояние до изменения или {@code null}, если книга создана или прежнее состояние не читалось
+ * @param current  состояние после изменения или {@code null}, если книга удалена
+ * @author Avdeyev Viktor
+ */
+public record BookChanged(BookSummary previous, BookSummary current) implements DomainEvent {
+}
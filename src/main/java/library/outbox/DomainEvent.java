@@ -0,0 +1,24 @@
+package library.outbox;
+
+import java.util.Map;
+
+/**
+ * Событие предметной области, которое сервисы записывают в outbox в транзакции изменения.
+ * <p>
+ * События несут состояния, нужные получателям, а не сущности: получатель обрабатывает событие после
+ * фиксации транзакции, возможно повторно и на другом экземпляре приложения.
+ *
+ * @author Avdeyev Viktor
+ */
+public sealed interface DomainEvent permits BookChanged, UserChanged, LoanCreated, LoanReturned, LoanChanged {
+
+    /**
+     * Типы событий по имени, которое хранится в {@code outbox_events.event_type}.
+     */
+    Map<String, Class<? extends DomainEvent>> TYPES = Map.of(
+        BookChanged.class.getSimpleName(), BookChanged.class,
+        UserChanged.class.getSimpleName(), UserChanged.class,
+        LoanCreated.class.getSimpleName(), LoanCreated.class,
+        LoanReturned.class.getSimpleName(), LoanReturned.class,
+        LoanChanged.class.getSimpleName(), LoanChanged.class);
+}
@@ -0,0 +1,24 @@
+package library.outbox;
+
+import java.util.List;
+
+/**
+ * Получатель событий из outbox. Все бины этого типа получают каждую пачку событий от {@link OutboxDispatcher}:
+ * сразу после фиксации транзакции в потоке запроса, а при ошибке - повторно из потока доставки. Поэтому
+ * получатель вызывается из нескольких потоков одновременно.
+ * <p>
+ * Доставка - не меньше одного раза: после ошибки любого получателя или падения процесса до удаления
+ * пачки она доставляется снова всем получателям, а события из повторяемой пачки могут прийти после более
+ * поздних. Поэтому обработка должна быть идемпотентной и не зависеть от порядка пачек.
+ *
+ * @author Avdeyev Viktor
+ */
+public interface DomainEventConsumer {
+
+    /**
+     * Обработать пачку событий. Исключение означает, что пачку нужно доставить повторно.
+     *
+     * @param events события в порядке записи
+     */
+    void accept(List<DomainEvent> events);
+}
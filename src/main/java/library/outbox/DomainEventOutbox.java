@@ -0,0 +1,79 @@
+package library.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import library.datasource.ReplicaRoutingDataSource;
+import library.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Запись событий предметной области в outbox.
+ * <p>
+ * События пишутся в таблицу {@code outbox_events} в транзакции изменения, поэтому фиксируются и
+ * откатываются вместе с ним. Сразу после фиксации транзакции события передаются на доставку получателям
+ * ({@link OutboxDispatcher#deliverCommitted}) в отдельном пуле потоков: запрос, изменивший данные, не ждет
+ * инвалидации кэша, поэтому чтение сразу после записи может недолго видеть прежнее состояние. Таблица
+ * остается гарантией доставки, если пул переполнен, получатель упал или процесс завершился между фиксацией
+ * и доставкой.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@RequiredArgsConstructor
+public class DomainEventOutbox {
+
+    private final OutboxRepository outboxRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final OutboxDispatcher outboxDispatcher;
+
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+
+    /**
+     * Записать события в outbox.
+     *
+     * @param events события в порядке возникновения
+     * @throws IllegalStateException если нет активной транзакции
+     */
+    public void append(Collection<? extends DomainEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("События записываются в outbox только в транзакции изменения");
+        }
+        List<String> types = new ArrayList<>(events.size());
+        List<String> payloads = new ArrayList<>(events.size());
+        for (DomainEvent event : events) {
+            types.add(event.getClass().getSimpleName());
+            payloads.add(serialize(event));
+        }
+        List<Long> ids = outboxRepository.append(types, payloads);
+        // событие в outbox означает изменение данных: чтение своих записей ждет, пока реплика его воспроизведет
+        replicaRoutingDataSource.ifAvailable(ReplicaRoutingDataSource::trackWrite);
+        List<DomainEvent> committed = List.copyOf(events);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxDispatcher.deliverCommitted(ids, committed);
+            }
+        });
+    }
+
+    private String serialize(DomainEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Не удалось сериализовать событие " + event, ex);
+        }
+    }
+}
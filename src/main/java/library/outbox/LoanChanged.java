@@ -0,0 +1,13 @@
+package library.outbox;
+
+import library.dto.LoanView;
+
+/**
+ * Заем изменен иначе, чем возвратом: перезаписан, снова открыт или удален.
+ *
+ * @param previous состояние до изменения или {@code null}, если прежнее состояние не читалось
+ * @param current  состояние после изменения или {@code null}, если заем удален
+ * @author Avdeyev Viktor
+ */
+public record LoanChanged(LoanView previous, LoanView current) implements DomainEvent {
+}
@@ -0,0 +1,12 @@
+package library.outbox;
+
+import library.dto.LoanView;
+
+/**
+ * Создан заем, в том числе пакетной выдачей.
+ *
+ * @param loan созданный заем
+ * @author Avdeyev Viktor
+ */
+public record LoanCreated(LoanView loan) implements DomainEvent {
+}
@@ -0,0 +1,12 @@
+package library.outbox;
+
+import library.dto.LoanView;
+
+/**
+ * Заем закрыт возвратом книги, в том числе пакетным.
+ *
+ * @param loan закрытый заем
+ * @author Avdeyev Viktor
+ */
+public record LoanReturned(LoanView loan) implements DomainEvent {
+}
@@ -0,0 +1,287 @@
+package library.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import library.config.OutboxProperties;
+import library.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Доставка событий из outbox получателям {@link DomainEventConsumer}.
+ * <p>
+ * События транзакции доставляются сразу после ее фиксации ({@link #deliverCommitted}) в ограниченном пуле
+ * потоков {@code library.outbox.delivery-threads}, а не в потоке запроса, и удаляются из outbox. Если очередь
+ * пула заполнена, получатель упал или процесс завершился до удаления, события забирает отдельный
+ * поток: опросом раз в {@code library.outbox.poll-interval} он пачками передает готовые события всем
+ * получателям и удаляет пачку в той же транзакции, а после ошибки оставляет ее в outbox с удвоенной
+ * задержкой повторной доставки. Строки пачки блокируются через {@code FOR UPDATE SKIP LOCKED}, поэтому
+ * экземпляры не доставляют одно событие одновременно.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher implements SmartLifecycle, DisposableBean {
+
+    static final String METRIC = "library.outbox.dispatch";
+
+    private final OutboxRepository outboxRepository;
+
+    private final List<DomainEventConsumer> consumers;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Доставка событий после фиксации: запрос не ждет получателей и удаления событий из outbox.
+     */
+    private final Executor deliveryExecutor;
+
+    private final OutboxProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Блокировка, а не {@code synchronized}: на ней ждет поток доставки, а будят его потоки запросов,
+     * которые могут быть виртуальными.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition signal = lock.newCondition();
+
+    private boolean signalled;
+
+    private volatile boolean running;
+
+    private volatile Thread worker;
+
+    @Autowired
+    public OutboxDispatcher(OutboxRepository outboxRepository, List<DomainEventConsumer> consumers,
+                            ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+                            OutboxProperties properties, MeterRegistry meterRegistry) {
+        this(outboxRepository, consumers, objectMapper, transactionTemplate, properties, meterRegistry,
+            deliveryExecutor(properties));
+    }
+
+    OutboxDispatcher(OutboxRepository outboxRepository, List<DomainEventConsumer> consumers,
+                     ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+                     OutboxProperties properties, MeterRegistry meterRegistry, Executor deliveryExecutor) {
+        this.outboxRepository = outboxRepository;
+        this.consumers = consumers;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "outbox-dispatcher");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+        log.info("Доставка событий из outbox запущена, получателей: {}", consumers.size());
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = worker;
+        running = false;
+        wakeUp();
+        if (thread != null) {
+            try {
+                thread.join(properties.pollInterval().toMillis() + TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return properties.dispatch();
+    }
+
+    /**
+     * Разбудить поток доставки: в outbox появились новые события.
+     */
+    public void wakeUp() {
+        lock.lock();
+        try {
+            signalled = true;
+            signal.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Передать события только что зафиксированной транзакции на доставку и удаление из outbox. Метод
+     * не ждет доставки и не бросает исключений: запись уже зафиксирована, а события, которые не удалось
+     * доставить сразу, доставит поток опроса.
+     *
+     * @param ids    id событий в outbox
+     * @param events события
+     */
+    public void deliverCommitted(List<Long> ids, List<DomainEvent> events) {
+        try {
+            deliveryExecutor.execute(() -> deliver(ids, events));
+        } catch (RejectedExecutionException ex) {
+            log.warn("deliverCommitted - очередь доставки заполнена, {} событий доставит опрос outbox",
+                events.size());
+            record("deferred", System.nanoTime());
+            wakeUp();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // недоставленные события остаются в outbox и будут доставлены опросом
+        if (deliveryExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Доставить одну пачку готовых событий в отдельной транзакции.
+     *
+     * @return количество событий в пачке, доставленных или отложенных
+     */
+    int dispatchBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = outboxRepository.lockBatch(properties.batchSize());
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            List<Long> ids = batch.stream().map(OutboxEvent::id).toList();
+            long startTime = System.nanoTime();
+            try {
+                List<DomainEvent> events = deserialize(batch);
+                for (DomainEventConsumer consumer : consumers) {
+                    consumer.accept(events);
+                }
+                outboxRepository.delete(ids);
+                record("success", startTime);
+            } catch (RuntimeException ex) {
+                int attempts = batch.stream().mapToInt(OutboxEvent::attempts).max().orElse(0) + 1;
+                log.warn("dispatchBatch - доставка {} событий не удалась, попытка {}: {}",
+                    batch.size(), attempts, ex.toString());
+                outboxRepository.scheduleRetry(ids, properties.retryBackoff(), properties.maxRetryBackoff(),
+                    ex.toString());
+                record("failure", startTime);
+            }
+            return batch.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    private void deliver(List<Long> ids, List<DomainEvent> events) {
+        long startTime = System.nanoTime();
+        try {
+            for (DomainEventConsumer consumer : consumers) {
+                consumer.accept(events);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("deliver - доставка {} событий отложена до повтора: {}", events.size(), ex.toString());
+            record("deferred", startTime);
+            wakeUp();
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.delete(ids));
+        } catch (RuntimeException ex) {
+            // события будут доставлены повторно, получатели идемпотентны
+            log.warn("deliver - не удалось удалить доставленные события: {}", ex.toString());
+        }
+        record("success", startTime);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // полная пачка значит, что в outbox, скорее всего, есть еще готовые события
+                while (running && dispatchBatch() == properties.batchSize()) {
+                    log.debug("run - outbox разобран не полностью, следующая пачка");
+                }
+            } catch (RuntimeException ex) {
+                log.warn("run - не удалось прочитать outbox: {}", ex.toString());
+            }
+            awaitSignal();
+        }
+    }
+
+    private void awaitSignal() {
+        lock.lock();
+        try {
+            long nanos = properties.pollInterval().toNanos();
+            while (!signalled && running && nanos > 0) {
+                nanos = signal.awaitNanos(nanos);
+            }
+            signalled = false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<DomainEvent> deserialize(List<OutboxEvent> batch) {
+        List<DomainEvent> events = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            Class<? extends DomainEvent> type = DomainEvent.TYPES.get(event.type());
+            if (type == null) {
+                throw new IllegalStateException("Неизвестный тип события " + event.type() + ", id " + event.id());
+            }
+            try {
+                events.add(objectMapper.readValue(event.payload(), type));
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Не удалось прочитать событие с id " + event.id(), ex);
+            }
+        }
+        return events;
+    }
+
+    private static ExecutorService deliveryExecutor(OutboxProperties properties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("outbox-delivery-");
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(properties.deliveryThreads(), properties.deliveryThreads(),
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.deliveryQueue()), threadFactory);
+    }
+
+    private void record(String outcome, long startTime) {
+        Timer.builder(METRIC)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+}
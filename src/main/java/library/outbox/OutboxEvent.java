@@ -0,0 +1,13 @@
+package library.outbox;
+
+/**
+ * Строка таблицы {@code outbox_events}: событие, ожидающее доставки.
+ *
+ * @param id       id события, возрастает в порядке записи
+ * @param type     имя типа события из {@link DomainEvent#TYPES}
+ * @param payload  событие в JSON
+ * @param attempts количество неудачных попыток доставки
+ * @author Avdeyev Viktor
+ */
+public record OutboxEvent(Long id, String type, String payload, int attempts) {
+}
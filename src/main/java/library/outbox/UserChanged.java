@@ -0,0 +1,13 @@
+package library.outbox;
+
+import library.dto.UserSummary;
+
+/**
+ * Пользователь создан, изменен или удален.
+ *
+ * @param previous состояние до изменения или {@code null}, если пользователь создан
+ * @param current  состояние после изменения или {@code null}, если пользователь удален
+ * @author Avdeyev Viktor
+ */
+public record UserChanged(UserSummary previous, UserSummary current) implements DomainEvent {
+}
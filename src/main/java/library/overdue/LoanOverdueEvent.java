@@ -0,0 +1,12 @@
+package library.overdue;
+
+import library.dto.LoanView;
+
+/**
+ * Событие приложения: у открытого займа истек срок возврата.
+ *
+ * @param loan просроченный заем
+ * @author Avdeyev Viktor
+ */
+public record LoanOverdueEvent(LoanView loan) {
+}
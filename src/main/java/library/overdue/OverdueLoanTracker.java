@@ -0,0 +1,305 @@
+package library.overdue;
+
+import library.config.OverdueProperties;
+import library.dto.LoanView;
+import library.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Учет просроченных займов в памяти процесса.
+ * <p>
+ * Открытые займы ждут срока возврата в {@link TimerWheel}, просроченные лежат в отдельном множестве,
+ * упорядоченном по сроку, поэтому список просроченных займов строится за O(количества просроченных),
+ * а не за O(открытых). Учет заполняется из базы данных при старте приложения, до того как веб-сервер
+ * начнет принимать запросы, и далее поддерживается из {@link library.service.LoanService} после фиксации
+ * его транзакций. Займы, выданные и возвращенные другими экземплярами приложения, учитываются периодической
+ * сверкой с базой данных раз в {@code library.overdue.reconcile-interval}, как в
+ * {@link library.availability.BookAvailabilityIndex}.
+ * <p>
+ * Раз в {@code library.overdue.tick} колесо продвигается до текущего времени. Для каждого займа,
+ * который стал просроченным в колесе, публикуется {@link LoanOverdueEvent}; займы, просроченные
+ * уже к старту или к сверке, событий не порождают.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class OverdueLoanTracker implements SmartInitializingSingleton {
+
+    private static final Comparator<LoanView> DUE_ORDER =
+        Comparator.comparing(LoanView::dueDate).thenComparing(LoanView::id);
+
+    private final LoanRepository loanRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Clock clock;
+
+    private final long tickMillis;
+
+    /**
+     * Блокировка, а не {@code synchronized}: ее берут потоки запросов, которые могут быть виртуальными.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Не дает сверкам идти параллельно, держится на время чтения из базы данных.
+     */
+    private final Lock reconcileLock = new ReentrantLock();
+
+    private TimerWheel<LoanView> pending;
+
+    private final Map<Long, LoanView> overdueById = new HashMap<>();
+
+    private final NavigableSet<LoanView> overdue = new TreeSet<>(DUE_ORDER);
+
+    /**
+     * Изменения, пришедшие во время сверки. Повторяются поверх снимка из базы данных перед его подменой,
+     * иначе снимок, прочитанный до их фиксации, откатил бы их. {@code null}, пока сверка не идет.
+     */
+    private List<Change> journal;
+
+    @Autowired
+    public OverdueLoanTracker(LoanRepository loanRepository, ApplicationEventPublisher eventPublisher,
+                              OverdueProperties overdueProperties) {
+        this(loanRepository, eventPublisher, overdueProperties, Clock.systemDefaultZone());
+    }
+
+    OverdueLoanTracker(LoanRepository loanRepository, ApplicationEventPublisher eventPublisher,
+                       OverdueProperties overdueProperties, Clock clock) {
+        this.loanRepository = loanRepository;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.tickMillis = overdueProperties.tick().toMillis();
+        this.pending = new TimerWheel<>(clock.millis() / tickMillis);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reconcile();
+    }
+
+    /**
+     * Сверить учет с базой данных и заменить его свежим снимком открытых займов.
+     */
+    @Scheduled(initialDelayString = "${library.overdue.reconcile-interval:1m}",
+        fixedDelayString = "${library.overdue.reconcile-interval:1m}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            reconcileExclusively();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void reconcileExclusively() {
+        log.info("reconcile - начало");
+        long startTime = System.currentTimeMillis();
+        setJournal(new ArrayList<>());
+        List<LoanView> open = new ArrayList<>();
+        try {
+            loanRepository.scanOpenLoans(open::add);
+        } catch (RuntimeException ex) {
+            setJournal(null);
+            throw ex;
+        }
+        lock.lock();
+        try {
+            pending = new TimerWheel<>(pending.currentTick());
+            overdueById.clear();
+            overdue.clear();
+            open.forEach(this::putLocked);
+            for (Change change : journal) {
+                change.applyLocked(this);
+            }
+            journal = null;
+            log.info("reconcile - конец, открытых займов: {}, просроченных: {}, заняло {} мс",
+                pending.size() + overdue.size(), overdue.size(), System.currentTimeMillis() - startTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Учесть состояние займа: открытый заем ждет своего срока, возвращенный снимается с учета.
+     *
+     * @param loan заем в новом состоянии
+     */
+    public void track(LoanView loan) {
+        trackAll(List.of(loan));
+    }
+
+    /**
+     * Учесть состояния нескольких займов одним захватом блокировки.
+     *
+     * @param loans займы в новом состоянии
+     */
+    public void trackAll(Collection<LoanView> loans) {
+        List<LoanView> becameOverdue = new ArrayList<>();
+        lock.lock();
+        try {
+            for (LoanView loan : loans) {
+                boolean wasOverdue = overdueById.containsKey(loan.id());
+                if (putLocked(loan) && !wasOverdue) {
+                    becameOverdue.add(loan);
+                }
+                if (journal != null) {
+                    journal.add(new Change(loan.id(), loan));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        publish(becameOverdue);
+    }
+
+    /**
+     * Снять заем с учета, например после его удаления.
+     *
+     * @param loanId id займа
+     */
+    public void untrack(Long loanId) {
+        untrackAll(List.of(loanId));
+    }
+
+    /**
+     * Снять с учета несколько займов одним захватом блокировки.
+     *
+     * @param loanIds id займов
+     */
+    public void untrackAll(Collection<Long> loanIds) {
+        lock.lock();
+        try {
+            for (Long loanId : loanIds) {
+                removeLocked(loanId);
+                if (journal != null) {
+                    journal.add(new Change(loanId, null));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Просроченные займы.
+     *
+     * @return просроченные займы в порядке срока возврата
+     */
+    public List<LoanView> findOverdue() {
+        lock.lock();
+        try {
+            return List.copyOf(overdue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Продвинуть колесо таймеров до текущего времени и перенести займы с наступившим сроком в просроченные.
+     */
+    @Scheduled(initialDelayString = "${library.overdue.tick:1m}", fixedDelayString = "${library.overdue.tick:1m}")
+    public void advance() {
+        List<LoanView> becameOverdue = new ArrayList<>();
+        lock.lock();
+        try {
+            pending.advanceTo(clock.millis() / tickMillis, loan -> {
+                overdueById.put(loan.id(), loan);
+                overdue.add(loan);
+                becameOverdue.add(loan);
+            });
+        } finally {
+            lock.unlock();
+        }
+        if (!becameOverdue.isEmpty()) {
+            log.info("advance - просрочено займов: {}", becameOverdue.size());
+        }
+        publish(becameOverdue);
+    }
+
+    /**
+     * Учесть состояние займа, блокировка уже захвачена.
+     *
+     * @param loan заем в новом состоянии
+     * @return {@code true}, если заем учтен как просроченный
+     */
+    private boolean putLocked(LoanView loan) {
+        removeLocked(loan.id());
+        if (Boolean.TRUE.equals(loan.returned()) || loan.dueDate() == null) {
+            return false;
+        }
+        if (pending.schedule(loan.id(), loan, deadlineTick(loan.dueDate()))) {
+            return false;
+        }
+        overdueById.put(loan.id(), loan);
+        overdue.add(loan);
+        return true;
+    }
+
+    private void removeLocked(Long loanId) {
+        pending.cancel(loanId);
+        LoanView previous = overdueById.remove(loanId);
+        if (previous != null) {
+            overdue.remove(previous);
+        }
+    }
+
+    /**
+     * Первый тик, к началу которого срок уже наступил.
+     */
+    private long deadlineTick(LocalDateTime dueDate) {
+        long dueMillis = dueDate.atZone(clock.getZone()).toInstant().toEpochMilli();
+        return Math.floorDiv(dueMillis + tickMillis - 1, tickMillis);
+    }
+
+    private void setJournal(List<Change> journal) {
+        lock.lock();
+        try {
+            this.journal = journal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(List<LoanView> loans) {
+        for (LoanView loan : loans) {
+            eventPublisher.publishEvent(new LoanOverdueEvent(loan));
+        }
+    }
+
+    /**
+     * Изменение одного займа. Применение идемпотентно, поэтому повтор уже учтенного в снимке изменения безвреден.
+     *
+     * @param loanId id займа
+     * @param loan   заем в новом состоянии или {@code null}, если заем снят с учета
+     */
+    private record Change(long loanId, LoanView loan) {
+
+        void applyLocked(OverdueLoanTracker tracker) {
+            if (loan == null) {
+                tracker.removeLocked(loanId);
+            } else {
+                tracker.putLocked(loan);
+            }
+        }
+    }
+}
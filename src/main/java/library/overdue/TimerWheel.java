@@ -0,0 +1,161 @@
+package library.overdue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров с дискретным временем в тиках.
+ * <p>
+ * {@value #LEVELS} уровня по {@value #SLOTS} ячеек: ячейка уровня {@code l} покрывает {@code 64^l} тиков.
+ * Таймер кладется на самый нижний уровень, на котором его срок отличается от текущего тика только
+ * цифрой этого уровня, а при переходе текущего тика через границу ячейки верхнего уровня ее таймеры
+ * перекладываются ниже. Постановка и отмена стоят O(1), продвижение на тик - O(1) плюс число сработавших
+ * и переложенных таймеров, независимо от общего числа таймеров. Сроки дальше {@code 64^4} тиков
+ * хранятся в отдельном списке и разбираются при переходе через границу всего колеса.
+ * <p>
+ * Класс не потокобезопасен.
+ *
+ * @param <T> значение таймера
+ * @author Avdeyev Viktor
+ */
+final class TimerWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final long SLOT_MASK = SLOTS - 1;
+
+    private static final int LEVELS = 4;
+
+    /**
+     * Номер ячейки списка таймеров за пределами колеса.
+     */
+    private static final int OVERFLOW = LEVELS * SLOTS;
+
+    /**
+     * Ячейки всех уровней подряд и список за пределами колеса последним элементом.
+     */
+    private final List<Map<Long, Timer<T>>> buckets = new ArrayList<>(OVERFLOW + 1);
+
+    private final Map<Long, Timer<T>> timers = new HashMap<>();
+
+    private long currentTick;
+
+    TimerWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (int i = 0; i <= OVERFLOW; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Поставить таймер или перенести уже поставленный с тем же id.
+     *
+     * @param id           id таймера
+     * @param value        значение, которое получит обработчик срабатывания
+     * @param deadlineTick тик срабатывания
+     * @return {@code false}, если срок уже наступил: таймер не ставится, прежний с тем же id снимается
+     */
+    boolean schedule(long id, T value, long deadlineTick) {
+        cancel(id);
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        place(new Timer<>(id, value, deadlineTick));
+        return true;
+    }
+
+    /**
+     * Снять таймер.
+     *
+     * @param id id таймера
+     * @return значение снятого таймера или {@code null}, если таймера не было
+     */
+    T cancel(long id) {
+        Timer<T> timer = timers.remove(id);
+        if (timer == null) {
+            return null;
+        }
+        buckets.get(timer.bucket()).remove(id);
+        return timer.value();
+    }
+
+    /**
+     * Продвинуть время до указанного тика и передать обработчику таймеры, срок которых наступил.
+     *
+     * @param tick    новый текущий тик; если он не больше текущего, ничего не происходит
+     * @param expired обработчик сработавших таймеров, вызывается в порядке сроков
+     */
+    void advanceTo(long tick, Consumer<T> expired) {
+        while (currentTick < tick) {
+            if (timers.isEmpty()) {
+                currentTick = tick;
+                return;
+            }
+            currentTick++;
+            if ((currentTick & ((1L << SLOT_BITS * LEVELS) - 1)) == 0) {
+                cascade(OVERFLOW);
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << SLOT_BITS * level) - 1)) == 0) {
+                    cascade(level * SLOTS + (int) ((currentTick >>> SLOT_BITS * level) & SLOT_MASK));
+                }
+            }
+            Map<Long, Timer<T>> due = buckets.get((int) (currentTick & SLOT_MASK));
+            for (Timer<T> timer : due.values()) {
+                timers.remove(timer.id());
+                expired.accept(timer.value());
+            }
+            due.clear();
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return timers.size();
+    }
+
+    private void cascade(int bucket) {
+        Map<Long, Timer<T>> timersInBucket = buckets.get(bucket);
+        if (timersInBucket.isEmpty()) {
+            return;
+        }
+        List<Timer<T>> cascaded = new ArrayList<>(timersInBucket.values());
+        timersInBucket.clear();
+        for (Timer<T> timer : cascaded) {
+            place(timer);
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        int bucket = OVERFLOW;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((timer.deadlineTick() >>> shift) == (currentTick >>> shift)) {
+                bucket = level * SLOTS + (int) ((timer.deadlineTick() >>> SLOT_BITS * level) & SLOT_MASK);
+                break;
+            }
+        }
+        Timer<T> placed = timer.bucket() == bucket ? timer : timer.in(bucket);
+        buckets.get(bucket).put(placed.id(), placed);
+        timers.put(placed.id(), placed);
+    }
+
+    private record Timer<T>(long id, T value, long deadlineTick, int bucket) {
+
+        Timer(long id, T value, long deadlineTick) {
+            this(id, value, deadlineTick, -1);
+        }
+
+        Timer<T> in(int bucket) {
+            return new Timer<>(id, value, deadlineTick, bucket);
+        }
+    }
+}
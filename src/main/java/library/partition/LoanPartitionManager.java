@@ -0,0 +1,97 @@
+package library.partition;
+
+import library.config.LoanPartitionProperties;
+import library.repository.LoanPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.Set;
+
+/**
+ * Обслуживание месячных секций таблицы займов.
+ * <p>
+ * Проход выполняется при старте приложения, до того как веб-сервер начнет принимать запросы, и далее
+ * раз в {@code library.loans.partitions.maintenance-interval}. Он создает секции от текущего месяца на
+ * {@code months-ahead} месяцев вперед, чтобы новые займы не попадали в {@code loans_default}, и отсоединяет
+ * секции старше {@code retention-months}. Секция с открытыми займами не отсоединяется, пока займы не вернут.
+ * <p>
+ * DDL создания и отсоединения идемпотентен по результату: если секцию уже создал или отсоединил другой
+ * экземпляр приложения, ошибка пишется в лог, и проход продолжается со следующего месяца.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoanPartitionManager implements SmartInitializingSingleton {
+
+    private final LoanPartitionRepository loanPartitionRepository;
+
+    private final LoanPartitionProperties loanPartitionProperties;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        maintain();
+    }
+
+    /**
+     * Создать недостающие секции и отсоединить устаревшие относительно текущего месяца.
+     */
+    @Scheduled(initialDelayString = "${library.loans.partitions.maintenance-interval:1d}",
+        fixedDelayString = "${library.loans.partitions.maintenance-interval:1d}")
+    public void maintain() {
+        maintain(YearMonth.now());
+    }
+
+    void maintain(YearMonth current) {
+        log.info("maintain - начало, текущий месяц {}", current);
+        Set<YearMonth> partitions = loanPartitionRepository.findMonthlyPartitions();
+        int created = 0;
+        for (YearMonth month = current; !month.isAfter(current.plusMonths(loanPartitionProperties.monthsAhead()));
+             month = month.plusMonths(1)) {
+            if (!partitions.contains(month) && create(month)) {
+                created++;
+            }
+        }
+        int detached = 0;
+        if (loanPartitionProperties.retentionMonths() > 0) {
+            YearMonth oldestRetained = current.minusMonths(loanPartitionProperties.retentionMonths());
+            for (YearMonth month : partitions.stream().filter(oldestRetained::isAfter).sorted().toList()) {
+                if (detach(month)) {
+                    detached++;
+                }
+            }
+        }
+        log.info("maintain - конец, создано секций: {}, отсоединено: {}", created, detached);
+    }
+
+    private boolean create(YearMonth month) {
+        try {
+            loanPartitionRepository.createMonthlyPartition(month);
+            return true;
+        } catch (DataAccessException ex) {
+            // например, в loans_default уже есть займы этого месяца
+            log.error("Не удалось создать секцию займов за {}", month, ex);
+            return false;
+        }
+    }
+
+    private boolean detach(YearMonth month) {
+        try {
+            if (loanPartitionRepository.hasOpenLoans(month)) {
+                log.warn("Секция займов за {} старше срока хранения, но в ней есть открытые займы", month);
+                return false;
+            }
+            loanPartitionRepository.detachMonthlyPartition(month);
+            return true;
+        } catch (DataAccessException ex) {
+            log.error("Не удалось отсоединить секцию займов за {}", month, ex);
+            return false;
+        }
+    }
+}
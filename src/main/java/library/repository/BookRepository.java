@@ -1,10 +1,15 @@
 package library.repository;
 
+import library.dto.BookSummary;
 import library.entity.Book;
+import library.util.KeysetCursor;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Репозиторий для работы с {@link Book}.
@@ -17,11 +22,13 @@ import java.util.Optional;
 public interface BookRepository {
 
     /**
-     * Получить список всех книг.
+     * Получить страницу книг, упорядоченных по {@code (addedAt, id)}.
      *
+     * @param after курсор последней книги предыдущей страницы или {@code null} для первой страницы
+     * @param limit максимальное количество книг
      * @return список книг
      */
-    List<Book> findAll();
+    List<BookSummary> findPage(KeysetCursor after, int limit);
 
     /**
      * Поиск книги по id в базе.
@@ -31,6 +38,16 @@ public interface BookRepository {
      */
     Optional<Book> findById(Long bookId);
 
+    /**
+     * Поиск книги по id вместе с ее займами.
+     * <p>
+     * Займы подгружаются одним запросом через граф сущности "Book.loans".
+     *
+     * @param bookId уникальный идентификатор книги
+     * @return объект типа {@link Book} с загруженными займами, если найден, иначе {@link Optional#empty()}
+     */
+    Optional<Book> findByIdWithLoans(Long bookId);
+
     /**
      * Поиск книги по названию.
      *
@@ -40,11 +57,19 @@ public interface BookRepository {
     Optional<Book> findByTitle(String title);
 
     /**
-     * Поиск всех доступных книг.
+     * Поиск книг по списку id.
      *
-     * @return список доступных книг
+     * @param bookIds id книг
+     * @return найденные книги в порядке возрастания id
      */
-    List<Book> findByAvailableTrue();
+    List<BookSummary> findSummariesByIds(Collection<Long> bookIds);
+
+    /**
+     * Потоково перебрать id и доступность всех книг, не загружая таблицу в память целиком.
+     *
+     * @param consumer получатель пары id книги и ее доступности
+     */
+    void scanAvailability(BiConsumer<Long, Boolean> consumer);
 
     /**
      * Поиск всех книг по автору.
@@ -52,7 +77,7 @@ public interface BookRepository {
      * @param author автор книги
      * @return список книг автора
      */
-    List<Book> findByAuthor(String author);
+    List<BookSummary> findByAuthor(String author);
 
     /**
      * Поиск книг, опубликованных после заданного года.
@@ -60,7 +85,7 @@ public interface BookRepository {
      * @param year год публикации
      * @return список книг, опубликованных после указанного года
      */
-    List<Book> findByPublishedYearAfter(Integer year);
+    List<BookSummary> findByPublishedYearAfter(Integer year);
 
     /**
      * Поиск книг с количеством страниц больше указанного.
@@ -68,7 +93,7 @@ public interface BookRepository {
      * @param pageCount минимальное количество страниц
      * @return список книг
      */
-    List<Book> findByPageCountGreaterThan(Integer pageCount);
+    List<BookSummary> findByPageCountGreaterThan(Integer pageCount);
 
     /**
      * Сохранение книги в базе.
@@ -78,6 +103,36 @@ public interface BookRepository {
      */
     Book save(Book book);
 
+    /**
+     * Вставка пачки новых книг одним пакетом JDBC.
+     * <p>
+     * Книгам без id идентификаторы выделяются блоками из последовательности {@link Book#ID_SEQUENCE}
+     * и записываются в переданные объекты.
+     *
+     * @param books новые книги
+     */
+    void insertAll(List<Book> books);
+
+    /**
+     * Изменить доступность книг одним запросом.
+     * <p>
+     * Изменяются только книги, у которых доступность отличается от требуемой, поэтому две конкурентные
+     * выдачи одной книги не могут обе получить ее в ответе.
+     *
+     * @param bookIds   id книг
+     * @param available требуемая доступность
+     * @return книги, доступность которых изменилась, в новом состоянии
+     */
+    List<BookSummary> updateAvailability(Collection<Long> bookIds, boolean available);
+
+    /**
+     * Выбрать id существующих книг из переданных.
+     *
+     * @param bookIds id книг
+     * @return id книг, которые есть в базе
+     */
+    Set<Long> findExistingIds(Collection<Long> bookIds);
+
     /**
      * Удаление книги по ID.
      *
@@ -0,0 +1,42 @@
+package library.repository;
+
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.dto.UserSummary;
+import reactor.core.publisher.Flux;
+
+/**
+ * Реактивное чтение таблиц каталога через R2DBC.
+ * <p>
+ * Методы не загружают таблицу целиком: строки читаются страницами по id, следующая страница запрашивается
+ * только после того, как подписчик забрал предыдущую. Соединение с базой данных занято на время чтения
+ * одной страницы, а не всего потока, поэтому медленный потребитель не держит соединение из пула.
+ *
+ * @author Avdeyev Viktor
+ */
+public interface CatalogStreamRepository {
+
+    /**
+     * Поток книг в порядке возрастания id.
+     *
+     * @param afterId id, после которого начинается поток; {@code 0} для потока с начала
+     * @return книги
+     */
+    Flux<BookSummary> streamBooks(long afterId);
+
+    /**
+     * Поток пользователей в порядке возрастания id.
+     *
+     * @param afterId id, после которого начинается поток; {@code 0} для потока с начала
+     * @return пользователи
+     */
+    Flux<UserSummary> streamUsers(long afterId);
+
+    /**
+     * Поток займов в порядке возрастания id.
+     *
+     * @param afterId id, после которого начинается поток; {@code 0} для потока с начала
+     * @return займы
+     */
+    Flux<LoanView> streamLoans(long afterId);
+}
@@ -0,0 +1,48 @@
+package library.repository;
+
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.util.Set;
+
+/**
+ * Репозиторий секций таблицы займов.
+ * <p>
+ * Таблица {@code loans} секционирована по диапазонам {@code loan_date}: одна секция {@code loans_pГГГГММ}
+ * на календарный месяц и секция {@code loans_default} для строк вне всех диапазонов.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+public interface LoanPartitionRepository {
+
+    /**
+     * Найти месяцы, для которых к таблице займов присоединены секции.
+     *
+     * @return месяцы существующих месячных секций
+     */
+    Set<YearMonth> findMonthlyPartitions();
+
+    /**
+     * Создать секцию займов за месяц, если ее еще нет.
+     *
+     * @param month месяц секции
+     */
+    void createMonthlyPartition(YearMonth month);
+
+    /**
+     * Проверить, есть ли открытые займы, выданные в указанном месяце.
+     *
+     * @param month месяц выдачи
+     * @return {@code true}, если хотя бы один заем месяца не возвращен
+     */
+    boolean hasOpenLoans(YearMonth month);
+
+    /**
+     * Отсоединить секцию займов за месяц. Секция остается отдельной таблицей с прежним именем
+     * и перестает участвовать в запросах к {@code loans}.
+     *
+     * @param month месяц секции
+     */
+    void detachMonthlyPartition(YearMonth month);
+}
@@ -1,10 +1,16 @@
 package library.repository;
 
+import library.dto.LoanView;
 import library.entity.Loan;
+import library.util.KeysetCursor;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Репозиторий для работы с {@link Loan}.
@@ -17,11 +23,13 @@ import java.util.Optional;
 public interface LoanRepository {
 
     /**
-     * Найти все записи о займах.
+     * Найти страницу займов, упорядоченных по {@code (loanDate, id)}.
      *
+     * @param after курсор последнего займа предыдущей страницы или {@code null} для первой страницы
+     * @param limit максимальное количество займов
      * @return список займов
      */
-    List<Loan> findAll();
+    List<LoanView> findPage(KeysetCursor after, int limit);
 
     /**
      * Найти займ по ID.
@@ -31,20 +39,38 @@ public interface LoanRepository {
      */
     Optional<Loan> findById(Long loanId);
 
+    /**
+     * Найти займ по ID без загрузки пользователя и книги.
+     *
+     * @param loanId ID займа
+     * @return представление займа, если найден
+     */
+    Optional<LoanView> findViewById(Long loanId);
+
     /**
      * Найти все займы конкретного пользователя.
      *
      * @param userId ID пользователя
      * @return список займов пользователя
      */
-    List<Loan> findByUserId(Long userId);
+    List<LoanView> findByUserId(Long userId);
 
     /**
      * Найти все незавершенные (не возвращенные) займы.
+     * <p>
+     * Открытые займы могут быть в любой секции, поэтому запрос читает частичный индекс открытых займов
+     * каждой секции; в секциях прошлых лет он обычно пуст.
      *
      * @return список незавершенных займов
      */
-    List<Loan> findByReturnedFalse();
+    List<LoanView> findByReturnedFalse();
+
+    /**
+     * Пройти по всем незавершенным займам, не загружая их в память целиком.
+     *
+     * @param consumer получатель займов
+     */
+    void scanOpenLoans(Consumer<LoanView> consumer);
 
     /**
      * Сохранить или обновить займ.
@@ -55,17 +81,69 @@ public interface LoanRepository {
     Loan save(Loan loan);
 
     /**
-     * Обновить статус возврата книги.
+     * Изменить статус возврата займа, только если текущий статус равен ожидаемому.
+     * <p>
+     * Из параллельных вызовов с одним ожидаемым статусом изменение выполняет только один, поэтому
+     * вызывающий может безопасно освободить или занять книгу займа по результату.
      *
-     * @param loanId ID займа
-     * @param returned статус возврата
+     * @param loanId     ID займа
+     * @param expected   ожидаемый текущий статус возврата
+     * @param returned   новый статус возврата
+     * @param returnDate дата возврата или {@code null}, если заем снова открыт
+     * @return заем в новом состоянии или {@link Optional#empty()}, если займа нет или его статус другой
+     */
+    Optional<LoanView> compareAndSetReturned(Long loanId, boolean expected, boolean returned,
+                                             LocalDateTime returnDate);
+
+    /**
+     * Создать займы одного пользователя на несколько книг одним запросом.
+     *
+     * @param userId   id пользователя
+     * @param bookIds  id книг
+     * @param loanDate дата выдачи
+     * @param dueDate  срок возврата
+     * @return созданные займы
      */
-    void updateReturnStatus(Long loanId, Boolean returned);
+    List<LoanView> insertAll(Long userId, Collection<Long> bookIds, LocalDateTime loanDate, LocalDateTime dueDate);
+
+    /**
+     * Закрыть незакрытые займы одним запросом.
+     *
+     * @param loanIds    id займов
+     * @param returnDate дата возврата
+     * @return займы, которые были закрыты этим вызовом, в новом состоянии
+     */
+    List<LoanView> markReturned(Collection<Long> loanIds, LocalDateTime returnDate);
+
+    /**
+     * Выбрать id существующих займов из переданных.
+     *
+     * @param loanIds id займов
+     * @return id займов, которые есть в базе
+     */
+    Set<Long> findExistingIds(Collection<Long> loanIds);
 
     /**
      * Удалить займ по ID.
      *
      * @param loanId ID займа
+     * @return удаленный займ или {@link Optional#empty()}, если займа не было
+     */
+    Optional<LoanView> deleteById(Long loanId);
+
+    /**
+     * Удалить все займы пользователя, заблокировав строку пользователя до конца транзакции.
+     *
+     * @param userId ID пользователя
+     * @return удаленные займы
+     */
+    List<LoanView> deleteByUserId(Long userId);
+
+    /**
+     * Удалить все займы книги, заблокировав строку книги до конца транзакции.
+     *
+     * @param bookId ID книги
+     * @return удаленные займы
      */
-    void deleteById(Long loanId);
+    List<LoanView> deleteByBookId(Long bookId);
 }
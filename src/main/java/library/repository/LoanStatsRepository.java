@@ -0,0 +1,94 @@
+package library.repository;
+
+import library.dto.AuthorLoanStats;
+import library.dto.BookLoanStats;
+import library.dto.LoanStatsDelta;
+import library.dto.UserLoanStats;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий агрегированной статистики займов.
+ * <p>
+ * Таблицы {@code book_loan_stats}, {@code author_loan_stats} и {@code user_loan_stats} хранят счетчики
+ * займов по книгам, авторам и пользователям. Счетчики меняются приращениями в той же транзакции, что и
+ * займы, а рейтинги читаются из начала индексов по счетчикам, без сканирования таблицы займов.
+ * Займы автора учитываются по текущему автору книги: при смене автора счетчик книги переносится к новому
+ * автору ({@link #moveAuthor}).
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+public interface LoanStatsRepository {
+
+    /**
+     * Применить изменения статистики. Изменения одной книги, автора или пользователя суммируются.
+     *
+     * @param deltas изменения от отдельных займов
+     */
+    void apply(Collection<LoanStatsDelta> deltas);
+
+    /**
+     * Перенести займы книги от прежнего автора к новому. Вызывается в транзакции изменения книги.
+     * <p>
+     * Строка статистики книги блокируется до конца транзакции: параллельный заем этой книги учитывается
+     * либо до переноса и переносится вместе со счетчиком, либо после фиксации и уже у нового автора.
+     *
+     * @param bookId         id книги
+     * @param previousAuthor прежний автор или {@code null}
+     * @param author         новый автор или {@code null}
+     */
+    void moveAuthor(Long bookId, String previousAuthor, String author);
+
+    /**
+     * Пересчитать статистику заново по таблице займов.
+     * <p>
+     * Нужен после изменений займов в обход {@link library.service.LoanService}, например прямым SQL.
+     */
+    void rebuild();
+
+    /**
+     * Найти книги с наибольшим количеством займов.
+     *
+     * @param limit максимальное количество книг
+     * @return книги в порядке убывания количества займов, при равенстве - возрастания id
+     */
+    List<BookLoanStats> findTopBooks(int limit);
+
+    /**
+     * Найти статистику выдач книги.
+     *
+     * @param bookId id книги
+     * @return статистика книги, у книги без займов - нулевая, или {@link Optional#empty()}, если книги нет
+     */
+    Optional<BookLoanStats> findBookStats(Long bookId);
+
+    /**
+     * Найти авторов с наибольшим количеством займов их книг.
+     *
+     * @param limit максимальное количество авторов
+     * @return авторы в порядке убывания количества займов, при равенстве - по имени
+     */
+    List<AuthorLoanStats> findTopAuthors(int limit);
+
+    /**
+     * Найти пользователей с наибольшим количеством открытых займов.
+     *
+     * @param limit максимальное количество пользователей
+     * @return пользователи хотя бы с одним открытым займом в порядке убывания их количества,
+     *     при равенстве - возрастания id
+     */
+    List<UserLoanStats> findTopActiveUsers(int limit);
+
+    /**
+     * Найти статистику займов пользователя.
+     *
+     * @param userId id пользователя
+     * @return статистика пользователя, у пользователя без займов - нулевая,
+     *     или {@link Optional#empty()}, если пользователя нет
+     */
+    Optional<UserLoanStats> findUserStats(Long userId);
+}
@@ -0,0 +1,52 @@
+package library.repository;
+
+import library.outbox.OutboxEvent;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий таблицы {@code outbox_events}: события, записанные в транзакции изменения и ожидающие доставки.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+public interface OutboxRepository {
+
+    /**
+     * Записать события. Вызывается в транзакции изменения, к которому относятся события.
+     *
+     * @param types    имена типов событий
+     * @param payloads события в JSON в том же порядке
+     * @return id записанных событий
+     */
+    List<Long> append(List<String> types, List<String> payloads);
+
+    /**
+     * Заблокировать до конца текущей транзакции события, готовые к доставке. События, уже заблокированные
+     * другими транзакциями, пропускаются, поэтому экземпляры приложения разбирают outbox параллельно.
+     *
+     * @param limit наибольшее количество событий
+     * @return события в порядке записи
+     */
+    List<OutboxEvent> lockBatch(int limit);
+
+    /**
+     * Удалить доставленные события.
+     *
+     * @param ids id событий
+     */
+    void delete(Collection<Long> ids);
+
+    /**
+     * Отложить повторную доставку событий: задержка удваивается с каждой неудачной попыткой.
+     *
+     * @param ids        id событий
+     * @param backoff    задержка после первой неудачной попытки
+     * @param maxBackoff наибольшая задержка
+     * @param error      описание ошибки доставки
+     */
+    void scheduleRetry(Collection<Long> ids, Duration backoff, Duration maxBackoff, String error);
+}
@@ -1,6 +1,8 @@
 package library.repository;
 
+import library.dto.UserSummary;
 import library.entity.User;
+import library.util.KeysetCursor;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -18,11 +20,13 @@ import java.util.Optional;
 public interface UserRepository {
 
     /**
-     * Найти всех пользователей.
+     * Найти страницу пользователей, упорядоченных по {@code (dateRegistration, id)}.
      *
+     * @param after курсор последнего пользователя предыдущей страницы или {@code null} для первой страницы.
+     * @param limit максимальное количество пользователей.
      * @return список пользователей.
      */
-    List<User> findAll();
+    List<UserSummary> findPage(KeysetCursor after, int limit);
 
     /**
      * Найти пользователя по ID.
@@ -32,13 +36,22 @@ public interface UserRepository {
      */
     Optional<User> findById(Long userId);
 
+    /**
+     * Найти пользователя по ID вместе с его займами.
+     * Займы подгружаются одним запросом через граф сущности "User.loans".
+     *
+     * @param userId ID пользователя.
+     * @return Optional с объектом User и загруженными займами, если найден.
+     */
+    Optional<User> findByIdWithLoans(Long userId);
+
     /**
      * Найти пользователя по имени.
      *
      * @param firstName имя пользователя.
      * @return список пользователей с данным именем.
      */
-    List<User> findByFirstName(String firstName);
+    List<UserSummary> findByFirstName(String firstName);
 
     /**
      * Найти пользователей по фамилии.
@@ -46,7 +59,7 @@ public interface UserRepository {
      * @param lastName фамилия пользователя.
      * @return список пользователей с данной фамилией.
      */
-    List<User> findByLastName(String lastName);
+    List<UserSummary> findByLastName(String lastName);
 
     /**
      * Найти пользователей по дате регистрации после указанной.
@@ -54,7 +67,7 @@ public interface UserRepository {
      * @param date дата регистрации.
      * @return список пользователей.
      */
-    List<User> findByDateRegistrationAfter(LocalDate date);
+    List<UserSummary> findByDateRegistrationAfter(LocalDate date);
 
     /**
      * Сохранить нового пользователя или обновить существующего.
@@ -73,6 +86,16 @@ public interface UserRepository {
      */
     Optional<User> update(Long userId, User updatedUser);
 
+    /**
+     * Вставка пачки новых пользователей одним пакетом JDBC.
+     * <p>
+     * Пользователям без id идентификаторы выделяются блоками из последовательности {@link User#ID_SEQUENCE}
+     * и записываются в переданные объекты.
+     *
+     * @param users новые пользователи
+     */
+    void insertAll(List<User> users);
+
     /**
      * Удалить пользователя по ID.
      *
@@ -2,15 +2,29 @@ package library.repository.imp;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import library.dto.BookSummary;
 import library.entity.Book;
 import library.repository.BookRepository;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Реализация {@link BookRepository}.
@@ -27,11 +41,39 @@ public class BookRepositoryImpl implements BookRepository {
     @PersistenceContext
     private final EntityManager entityManager;
 
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SELECT_SUMMARY = "SELECT new library.dto.BookSummary("
+        + "b.id, b.title, b.author, b.publishedYear, b.pageCount, b.available, b.addedAt) FROM Book b";
+
+    private static final String RETURNING_SUMMARY =
+        " RETURNING book_id, title, author, published_year, page_count, available, added_at";
+
+    private static final RowMapper<BookSummary> SUMMARY_ROW_MAPPER = (rs, rowNum) -> new BookSummary(
+        rs.getLong("book_id"), rs.getString("title"), rs.getString("author"),
+        rs.getObject("published_year", Integer.class), rs.getInt("page_count"), rs.getBoolean("available"),
+        rs.getObject("added_at", LocalDateTime.class));
+
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private static final String INSERT = "INSERT INTO books "
+        + "(book_id, title, author, published_year, page_count, available, added_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     @Override
     @Transactional(readOnly = true)
-    public List<Book> findAll() {
-        log.info("Запрос всех книг из базы данных");
-        List<Book> books = entityManager.createQuery("SELECT b FROM Book b", Book.class).getResultList();
+    public List<BookSummary> findPage(KeysetCursor after, int limit) {
+        log.info("Запрос страницы книг, после: {}, лимит: {}", after, limit);
+        TypedQuery<BookSummary> query;
+        if (after == null) {
+            query = entityManager.createQuery(SELECT_SUMMARY + " ORDER BY b.addedAt, b.id", BookSummary.class);
+        } else {
+            query = entityManager.createQuery(
+                    SELECT_SUMMARY + " WHERE (b.addedAt, b.id) > (:addedAt, :id) ORDER BY b.addedAt, b.id",
+                    BookSummary.class)
+                .setParameter("addedAt", after.timestamp())
+                .setParameter("id", after.id());
+        }
+        List<BookSummary> books = query.setMaxResults(limit).getResultList();
         log.info("Найдено {} книг", books.size());
         return books;
     }
@@ -49,6 +91,20 @@ public class BookRepositoryImpl implements BookRepository {
         return Optional.ofNullable(book);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Book> findByIdWithLoans(Long bookId) {
+        log.info("Поиск книги с займами по ID: {}", bookId);
+        Book book = entityManager.find(Book.class, bookId,
+            Map.of("jakarta.persistence.fetchgraph", entityManager.getEntityGraph("Book.loans")));
+        if (book != null) {
+            log.info("Книга с ID {} найдена, займов: {}", bookId, book.getLoans().size());
+        } else {
+            log.warn("Книга с ID {} не найдена", bookId);
+        }
+        return Optional.ofNullable(book);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<Book> findByTitle(String title) {
@@ -67,19 +123,33 @@ public class BookRepositoryImpl implements BookRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Book> findByAvailableTrue() {
-        log.info("Поиск доступных книг");
-        List<Book> books = entityManager.createQuery("SELECT b FROM Book b WHERE b.available = true", Book.class)
+    public List<BookSummary> findSummariesByIds(Collection<Long> bookIds) {
+        log.info("Поиск {} книг по id", bookIds.size());
+        List<BookSummary> books = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE b.id IN :ids ORDER BY b.id", BookSummary.class)
+            .setParameter("ids", bookIds)
             .getResultList();
-        log.info("Найдено {} доступных книг", books.size());
+        log.info("Найдено {} книг", books.size());
         return books;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<Book> findByAuthor(String author) {
+    public void scanAvailability(BiConsumer<Long, Boolean> consumer) {
+        // внутри транзакции драйвер PostgreSQL читает результат порциями по fetch size, а не целиком
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT book_id, available FROM books");
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getBoolean(2)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookSummary> findByAuthor(String author) {
         log.info("Поиск книг по автору: {}", author);
-        List<Book> books = entityManager.createQuery("SELECT b FROM Book b WHERE b.author = :author", Book.class)
+        List<BookSummary> books = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE b.author = :author", BookSummary.class)
             .setParameter("author", author)
             .getResultList();
         log.info("Найдено {} книг автора {}", books.size(), author);
@@ -88,9 +158,10 @@ public class BookRepositoryImpl implements BookRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Book> findByPublishedYearAfter(Integer year) {
+    public List<BookSummary> findByPublishedYearAfter(Integer year) {
         log.info("Поиск книг, опубликованных после года: {}", year);
-        List<Book> books = entityManager.createQuery("SELECT b FROM Book b WHERE b.publishedYear > :year", Book.class)
+        List<BookSummary> books = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE b.publishedYear > :year", BookSummary.class)
             .setParameter("year", year)
             .getResultList();
         log.info("Найдено {} книг, опубликованных после {} года", books.size(), year);
@@ -99,9 +170,10 @@ public class BookRepositoryImpl implements BookRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Book> findByPageCountGreaterThan(Integer pageCount) {
+    public List<BookSummary> findByPageCountGreaterThan(Integer pageCount) {
         log.info("Поиск книг с количеством страниц больше, чем: {}", pageCount);
-        List<Book> books = entityManager.createQuery("SELECT b FROM Book b WHERE b.pageCount > :pageCount", Book.class)
+        List<BookSummary> books = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE b.pageCount > :pageCount", BookSummary.class)
             .setParameter("pageCount", pageCount)
             .getResultList();
         log.info("Найдено {} книг с количеством страниц больше, чем {}", books.size(), pageCount);
@@ -123,6 +195,47 @@ public class BookRepositoryImpl implements BookRepository {
         }
     }
 
+    @Override
+    @Transactional
+    public void insertAll(List<Book> books) {
+        log.info("Пакетная вставка {} книг", books.size());
+        List<Book> withoutId = books.stream().filter(book -> book.getId() == null).toList();
+        long[] ids = SequenceIdAllocator.allocate(jdbcTemplate, Book.ID_SEQUENCE, Book.ID_ALLOCATION_SIZE,
+            withoutId.size());
+        for (int i = 0; i < ids.length; i++) {
+            withoutId.get(i).setId(ids[i]);
+        }
+        jdbcTemplate.batchUpdate(INSERT, books, books.size(), (statement, book) -> {
+            statement.setLong(1, book.getId());
+            statement.setString(2, book.getTitle());
+            statement.setString(3, book.getAuthor());
+            statement.setObject(4, book.getPublishedYear(), Types.INTEGER);
+            statement.setInt(5, book.getPageCount());
+            statement.setBoolean(6, book.isAvailable());
+            statement.setObject(7, book.getAddedAt());
+        });
+        log.info("Вставлено {} книг", books.size());
+    }
+
+    @Override
+    @Transactional
+    public List<BookSummary> updateAvailability(Collection<Long> bookIds, boolean available) {
+        log.info("Изменение доступности {} книг на {}", bookIds.size(), available);
+        List<BookSummary> books = jdbcTemplate.query(
+            "UPDATE books SET available = ? WHERE book_id = ANY(?) AND available IS DISTINCT FROM ?"
+                + RETURNING_SUMMARY,
+            SUMMARY_ROW_MAPPER, available, bookIds.toArray(Long[]::new), available);
+        log.info("Доступность изменена у {} книг", books.size());
+        return books;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<Long> findExistingIds(Collection<Long> bookIds) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT book_id FROM books WHERE book_id = ANY(?)",
+            Long.class, (Object) bookIds.toArray(Long[]::new)));
+    }
+
     @Override
     @Transactional
     public void deleteById(Long bookId) {
@@ -150,7 +263,6 @@ public class BookRepositoryImpl implements BookRepository {
         book.setAuthor(updatedBook.getAuthor());
         book.setPublishedYear(updatedBook.getPublishedYear());
         book.setPageCount(updatedBook.getPageCount());
-        book.setAvailable(updatedBook.isAvailable());
         book.setAddedAt(updatedBook.getAddedAt() != null ? updatedBook.getAddedAt() : book.getAddedAt());
         book = entityManager.merge(book);
         log.info("update - книга обновлена: {}", book);
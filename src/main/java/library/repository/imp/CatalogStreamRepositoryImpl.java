@@ -0,0 +1,173 @@
+package library.repository.imp;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import library.config.StreamProperties;
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.dto.UserSummary;
+import library.enums.Role;
+import library.repository.CatalogStreamRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Реализация {@link CatalogStreamRepository} через R2DBC.
+ * <p>
+ * Пул соединений R2DBC создается здесь, а не бином {@code ConnectionFactory}: при таком бине Spring Boot
+ * перестал бы настраивать {@code DataSource}, на котором работают JPA, Liquibase и остальные репозитории.
+ * Если {@code library.stream.r2dbc-url} не задан, адрес выводится из {@code spring.datasource.url}
+ * без параметров запроса.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+@Slf4j
+public class CatalogStreamRepositoryImpl implements CatalogStreamRepository, DisposableBean {
+
+    private static final String SELECT_BOOKS = "SELECT book_id, title, author, published_year, page_count, "
+        + "available, added_at FROM books WHERE book_id > :after ORDER BY book_id LIMIT :limit";
+
+    private static final String SELECT_USERS = "SELECT user_id, first_name, last_name, birth_date, "
+        + "date_registration, role FROM users WHERE user_id > :after ORDER BY user_id LIMIT :limit";
+
+    private static final String SELECT_LOANS = "SELECT loan_id, user_id, book_id, loan_date, due_date, "
+        + "return_date, returned FROM loans WHERE loan_id > :after ORDER BY loan_id LIMIT :limit";
+
+    private final ConnectionPool connectionPool;
+
+    private final DatabaseClient databaseClient;
+
+    private final int pageSize;
+
+    public CatalogStreamRepositoryImpl(StreamProperties streamProperties, DataSourceProperties dataSourceProperties) {
+        Map<String, String> jdbcParameters = new HashMap<>();
+        String url = StringUtils.hasText(streamProperties.r2dbcUrl())
+            ? streamProperties.r2dbcUrl()
+            : toR2dbcUrl(dataSourceProperties.determineUrl(), jdbcParameters);
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        String username = StringUtils.hasText(dataSourceProperties.determineUsername())
+            ? dataSourceProperties.determineUsername()
+            : jdbcParameters.get("user");
+        if (StringUtils.hasText(username)) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        String password = dataSourceProperties.determinePassword() != null
+            ? dataSourceProperties.determinePassword()
+            : jdbcParameters.get("password");
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+            .builder(ConnectionFactories.get(options.build()))
+            .name("library-stream")
+            .initialSize(0)
+            .maxSize(streamProperties.poolMaxSize())
+            .maxIdleTime(Duration.ofMinutes(10))
+            .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.pageSize = streamProperties.pageSize();
+    }
+
+    @Override
+    public Flux<BookSummary> streamBooks(long afterId) {
+        log.info("Поток книг после id: {}", afterId);
+        return streamByKeyset(SELECT_BOOKS, afterId, row -> new BookSummary(
+            row.get("book_id", Long.class), row.get("title", String.class), row.get("author", String.class),
+            row.get("published_year", Integer.class), row.get("page_count", Integer.class),
+            Boolean.TRUE.equals(row.get("available", Boolean.class)), row.get("added_at", LocalDateTime.class)),
+            BookSummary::id);
+    }
+
+    @Override
+    public Flux<UserSummary> streamUsers(long afterId) {
+        log.info("Поток пользователей после id: {}", afterId);
+        return streamByKeyset(SELECT_USERS, afterId, row -> new UserSummary(
+            row.get("user_id", Long.class), row.get("first_name", String.class), row.get("last_name", String.class),
+            row.get("birth_date", LocalDate.class), row.get("date_registration", LocalDateTime.class),
+            Role.valueOf(row.get("role", String.class))),
+            UserSummary::id);
+    }
+
+    @Override
+    public Flux<LoanView> streamLoans(long afterId) {
+        log.info("Поток займов после id: {}", afterId);
+        return streamByKeyset(SELECT_LOANS, afterId, row -> new LoanView(
+            row.get("loan_id", Long.class), row.get("user_id", Long.class), row.get("book_id", Long.class),
+            row.get("loan_date", LocalDateTime.class), row.get("due_date", LocalDateTime.class),
+            row.get("return_date", LocalDateTime.class), row.get("returned", Boolean.class)),
+            LoanView::id);
+    }
+
+    /**
+     * Вывести адрес R2DBC из адреса JDBC. Параметры запроса JDBC драйвер R2DBC не принимает в адресе
+     * ({@code user} и {@code password} он запрещает там явно), поэтому они отрезаются и возвращаются
+     * в {@code parameters}; из них используются только имя пользователя и пароль.
+     *
+     * @param jdbcUrl    адрес JDBC
+     * @param parameters параметры запроса адреса JDBC
+     * @return адрес R2DBC без параметров запроса
+     */
+    static String toR2dbcUrl(String jdbcUrl, Map<String, String> parameters) {
+        String url = jdbcUrl.replaceFirst("^jdbc:", "r2dbc:");
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url;
+        }
+        for (String pair : url.substring(queryStart + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return url.substring(0, queryStart);
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+
+    /**
+     * Читает таблицу страницами по {@code pageSize} строк. Следующая страница запрашивается, только когда
+     * подписчику понадобились ее строки, а неполная страница завершает поток.
+     */
+    private <T> Flux<T> streamByKeyset(String sql, long afterId, Function<Readable, T> mapper,
+                                       ToLongFunction<T> idOf) {
+        return page(sql, afterId, mapper)
+            .expand(rows -> rows.size() < pageSize
+                ? Mono.empty()
+                : page(sql, idOf.applyAsLong(rows.get(rows.size() - 1)), mapper))
+            .flatMapIterable(Function.identity(), 1);
+    }
+
+    private <T> Mono<List<T>> page(String sql, long afterId, Function<Readable, T> mapper) {
+        return databaseClient.sql(sql)
+            .bind("after", afterId)
+            .bind("limit", pageSize)
+            .map(mapper)
+            .all()
+            .collectList();
+    }
+}
@@ -0,0 +1,77 @@
+package library.repository.imp;
+
+import library.repository.LoanPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация {@link LoanPartitionRepository} через {@link JdbcTemplate} и системный каталог PostgreSQL.
+ * <p>
+ * Имена секций и границы диапазонов строятся только из {@link YearMonth}, поэтому подставляются в DDL
+ * напрямую.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class LoanPartitionRepositoryImpl implements LoanPartitionRepository {
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("uuuuMM");
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("loans_p(\\d{6})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<YearMonth> findMonthlyPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'loans'::regclass",
+                String.class).stream()
+            .map(MONTHLY_PARTITION::matcher)
+            .filter(Matcher::matches)
+            .map(matcher -> YearMonth.parse(matcher.group(1), NAME_FORMAT))
+            .collect(Collectors.toSet());
+    }
+
+    @Override
+    @Transactional
+    public void createMonthlyPartition(YearMonth month) {
+        log.info("Создание секции займов за {}", month);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF loans "
+            + "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        log.info("Секция займов за {} создана", month);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasOpenLoans(YearMonth month) {
+        // условие по loan_date отсекает все секции, кроме секции месяца
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM loans "
+                + "WHERE NOT returned AND loan_date >= ? AND loan_date < ?)", Boolean.class,
+            month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+
+    @Override
+    @Transactional
+    public void detachMonthlyPartition(YearMonth month) {
+        log.info("Отсоединение секции займов за {}", month);
+        jdbcTemplate.execute("ALTER TABLE loans DETACH PARTITION " + partitionName(month));
+        log.info("Секция займов за {} отсоединена", month);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "loans_p" + month.format(NAME_FORMAT);
+    }
+}
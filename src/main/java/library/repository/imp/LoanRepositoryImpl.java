@@ -2,15 +2,27 @@ package library.repository.imp;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import library.dto.LoanView;
 import library.entity.Loan;
 import library.repository.LoanRepository;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Реализация {@link LoanRepository} через {@link EntityManager}.
@@ -27,11 +39,39 @@ public class LoanRepositoryImpl implements LoanRepository {
     @PersistenceContext
     private final EntityManager entityManager;
 
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SELECT_VIEW = "SELECT new library.dto.LoanView("
+        + "l.id, l.user.id, l.book.id, l.loanDate, l.dueDate, l.returnDate, l.returned) FROM Loan l";
+
+    private static final String RETURNING_VIEW =
+        " RETURNING loan_id, user_id, book_id, loan_date, due_date, return_date, returned";
+
+    private static final RowMapper<LoanView> VIEW_ROW_MAPPER = (rs, rowNum) -> new LoanView(
+        rs.getLong("loan_id"), rs.getLong("user_id"), rs.getLong("book_id"),
+        rs.getObject("loan_date", LocalDateTime.class), rs.getObject("due_date", LocalDateTime.class),
+        rs.getObject("return_date", LocalDateTime.class), rs.getObject("returned", Boolean.class));
+
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
     @Override
     @Transactional(readOnly = true)
-    public List<Loan> findAll() {
-        log.info("Получение всех записей о займах");
-        List<Loan> loans = entityManager.createQuery("SELECT l FROM Loan l", Loan.class).getResultList();
+    public List<LoanView> findPage(KeysetCursor after, int limit) {
+        log.info("Получение страницы займов, после: {}, лимит: {}", after, limit);
+        TypedQuery<LoanView> query;
+        if (after == null) {
+            query = entityManager.createQuery(SELECT_VIEW + " ORDER BY l.loanDate, l.id", LoanView.class);
+        } else {
+            // отдельное условие по loanDate отсекает секции прошлых месяцев: по сравнению кортежей PostgreSQL
+            // секции не отсекает
+            query = entityManager.createQuery(SELECT_VIEW
+                        + " WHERE l.loanDate >= :loanDate AND (l.loanDate, l.id) > (:loanDate, :id)"
+                        + " ORDER BY l.loanDate, l.id",
+                    LoanView.class)
+                .setParameter("loanDate", after.timestamp())
+                .setParameter("id", after.id());
+        }
+        List<LoanView> loans = query.setMaxResults(limit).getResultList();
         log.info("Найдено {} займов", loans.size());
         return loans;
     }
@@ -51,9 +91,23 @@ public class LoanRepositoryImpl implements LoanRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Loan> findByUserId(Long userId) {
+    public Optional<LoanView> findViewById(Long loanId) {
+        log.info("Поиск представления займа с ID: {}", loanId);
+        Optional<LoanView> loan = entityManager.createQuery(SELECT_VIEW + " WHERE l.id = :loanId", LoanView.class)
+            .setParameter("loanId", loanId)
+            .getResultStream()
+            .findFirst();
+        if (loan.isEmpty()) {
+            log.warn("Займ с ID {} не найден", loanId);
+        }
+        return loan;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<LoanView> findByUserId(Long userId) {
         log.info("Поиск всех займов пользователя с ID: {}", userId);
-        List<Loan> loans = entityManager.createQuery("SELECT l FROM Loan l WHERE l.user.id = :userId", Loan.class)
+        List<LoanView> loans = entityManager.createQuery(SELECT_VIEW + " WHERE l.user.id = :userId", LoanView.class)
             .setParameter("userId", userId)
             .getResultList();
         log.info("Найдено {} займов для пользователя с ID: {}", loans.size(), userId);
@@ -62,14 +116,26 @@ public class LoanRepositoryImpl implements LoanRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Loan> findByReturnedFalse() {
+    public List<LoanView> findByReturnedFalse() {
         log.info("Поиск незавершенных (не возвращенных) займов");
-        List<Loan> loans = entityManager.createQuery("SELECT l FROM Loan l WHERE l.returned = false", Loan.class)
+        List<LoanView> loans = entityManager.createQuery(SELECT_VIEW + " WHERE l.returned = false", LoanView.class)
             .getResultList();
         log.info("Найдено {} незавершенных займов", loans.size());
         return loans;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void scanOpenLoans(Consumer<LoanView> consumer) {
+        // внутри транзакции драйвер PostgreSQL читает результат порциями по fetch size, а не целиком
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT loan_id, user_id, book_id, "
+                + "loan_date, due_date, return_date, returned FROM loans WHERE NOT returned");
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(VIEW_ROW_MAPPER.mapRow(rs, 0)));
+    }
+
     @Override
     @Transactional
     public Loan save(Loan loan) {
@@ -87,34 +153,89 @@ public class LoanRepositoryImpl implements LoanRepository {
 
     @Override
     @Transactional
-    public void updateReturnStatus(Long loanId, Boolean returned) {
-        log.info("Обновление статуса возврата для займа с ID: {}", loanId);
-        Optional<Loan> optionalLoan = findById(loanId);
-        if (optionalLoan.isPresent()) {
-            Loan loan = optionalLoan.get();
-            loan.setReturned(returned);
-            if (returned) {
-                loan.setReturnDate(java.time.LocalDateTime.now());
-                log.info("Дата возврата для займа с ID {} установлена на: {}", loanId, loan.getReturnDate());
-            }
-            entityManager.merge(loan);
-            log.info("Статус возврата обновлен для займа с ID {}: {}", loanId, returned);
-        } else {
-            log.warn("Займ с ID {} не найден для обновления статуса возврата", loanId);
+    public Optional<LoanView> compareAndSetReturned(Long loanId, boolean expected, boolean returned,
+                                                    LocalDateTime returnDate) {
+        log.info("Изменение статуса возврата займа с ID {}: {} -> {}", loanId, expected, returned);
+        List<LoanView> loans = jdbcTemplate.query(
+            "UPDATE loans SET returned = ?, return_date = ? WHERE loan_id = ? AND returned = ?" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, returned, returnDate, loanId, expected);
+        if (loans.isEmpty()) {
+            log.info("Статус возврата займа с ID {} не изменен: займа нет или статус не {}", loanId, expected);
+            return Optional.empty();
         }
+        log.info("Статус возврата займа с ID {} изменен на {}", loanId, returned);
+        return Optional.of(loans.get(0));
+    }
+
+    @Override
+    @Transactional
+    public List<LoanView> insertAll(Long userId, Collection<Long> bookIds, LocalDateTime loanDate,
+                                    LocalDateTime dueDate) {
+        log.info("Создание займов пользователя с ID {} на {} книг", userId, bookIds.size());
+        List<LoanView> loans = jdbcTemplate.query(
+            "INSERT INTO loans (user_id, book_id, loan_date, due_date, returned) "
+                + "SELECT ?, book_id, ?, ?, false FROM unnest(?::bigint[]) AS ids(book_id)" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, userId, loanDate, dueDate, bookIds.toArray(Long[]::new));
+        log.info("Создано {} займов", loans.size());
+        return loans;
+    }
+
+    @Override
+    @Transactional
+    public List<LoanView> markReturned(Collection<Long> loanIds, LocalDateTime returnDate) {
+        log.info("Закрытие {} займов", loanIds.size());
+        List<LoanView> loans = jdbcTemplate.query(
+            "UPDATE loans SET returned = true, return_date = ? "
+                + "WHERE loan_id = ANY(?) AND returned IS NOT TRUE" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, returnDate, loanIds.toArray(Long[]::new));
+        log.info("Закрыто {} займов", loans.size());
+        return loans;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<Long> findExistingIds(Collection<Long> loanIds) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT loan_id FROM loans WHERE loan_id = ANY(?)",
+            Long.class, (Object) loanIds.toArray(Long[]::new)));
     }
 
     @Override
     @Transactional
-    public void deleteById(Long loanId) {
+    public Optional<LoanView> deleteById(Long loanId) {
         log.info("Удаление займа с ID: {}", loanId);
-        Optional<Loan> optionalLoan = findById(loanId);
-        if (optionalLoan.isPresent()) {
-            Loan loan = optionalLoan.get();
-            entityManager.remove(loan);
-            log.info("Займ с ID {} удален", loanId);
-        } else {
+        List<LoanView> loans = jdbcTemplate.query("DELETE FROM loans WHERE loan_id = ?" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, loanId);
+        if (loans.isEmpty()) {
             log.warn("Займ с ID {} не найден для удаления", loanId);
+            return Optional.empty();
         }
+        log.info("Займ с ID {} удален", loanId);
+        return Optional.of(loans.get(0));
+    }
+
+    @Override
+    @Transactional
+    public List<LoanView> deleteByUserId(Long userId) {
+        log.info("Удаление всех займов пользователя с ID: {}", userId);
+        // блокировка строки пользователя не дает параллельной выдаче вставить займ до удаления пользователя:
+        // внешний ключ займа ждет ее снятия
+        List<LoanView> loans = jdbcTemplate.query("WITH owner AS "
+                + "(SELECT user_id FROM users WHERE user_id = ? FOR UPDATE) "
+                + "DELETE FROM loans WHERE user_id = (SELECT user_id FROM owner)" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, userId);
+        log.info("Удалено {} займов пользователя с ID: {}", loans.size(), userId);
+        return loans;
+    }
+
+    @Override
+    @Transactional
+    public List<LoanView> deleteByBookId(Long bookId) {
+        log.info("Удаление всех займов книги с ID: {}", bookId);
+        List<LoanView> loans = jdbcTemplate.query("WITH book AS "
+                + "(SELECT book_id FROM books WHERE book_id = ? FOR UPDATE) "
+                + "DELETE FROM loans WHERE book_id = (SELECT book_id FROM book)" + RETURNING_VIEW,
+            VIEW_ROW_MAPPER, bookId);
+        log.info("Удалено {} займов книги с ID: {}", loans.size(), bookId);
+        return loans;
     }
 }
@@ -0,0 +1,148 @@
+package library.repository.imp;
+
+import library.dto.AuthorLoanStats;
+import library.dto.BookLoanStats;
+import library.dto.LoanStatsDelta;
+import library.dto.UserLoanStats;
+import library.repository.LoanStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Реализация {@link LoanStatsRepository} через {@link JdbcTemplate}.
+ * <p>
+ * Изменения применяются через {@code INSERT ... ON CONFLICT DO UPDATE} с приращением счетчика.
+ * Строки вставляются в порядке ключа, поэтому параллельные транзакции блокируют общие строки
+ * в одном порядке и не взаимоблокируются.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class LoanStatsRepositoryImpl implements LoanStatsRepository {
+
+    private static final RowMapper<BookLoanStats> BOOK_ROW_MAPPER = (rs, rowNum) -> new BookLoanStats(
+        rs.getLong("book_id"), rs.getString("title"), rs.getString("author"), rs.getLong("loan_count"));
+
+    private static final RowMapper<AuthorLoanStats> AUTHOR_ROW_MAPPER = (rs, rowNum) -> new AuthorLoanStats(
+        rs.getString("author"), rs.getLong("loan_count"));
+
+    private static final RowMapper<UserLoanStats> USER_ROW_MAPPER = (rs, rowNum) -> new UserLoanStats(
+        rs.getLong("user_id"), rs.getString("first_name"), rs.getString("last_name"),
+        rs.getInt("active_loans"), rs.getLong("total_loans"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void apply(Collection<LoanStatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Long[] bookIds = deltas.stream().map(LoanStatsDelta::bookId).toArray(Long[]::new);
+        Long[] userIds = deltas.stream().map(LoanStatsDelta::userId).toArray(Long[]::new);
+        Integer[] loans = deltas.stream().map(LoanStatsDelta::loans).toArray(Integer[]::new);
+        Integer[] activeLoans = deltas.stream().map(LoanStatsDelta::activeLoans).toArray(Integer[]::new);
+        jdbcTemplate.update("INSERT INTO book_loan_stats (book_id, loan_count) "
+                + "SELECT book_id, sum(loans) FROM unnest(?::bigint[], ?::int[]) AS d(book_id, loans) "
+                + "GROUP BY book_id HAVING sum(loans) <> 0 ORDER BY book_id "
+                + "ON CONFLICT (book_id) DO UPDATE SET loan_count = book_loan_stats.loan_count + EXCLUDED.loan_count",
+            bookIds, loans);
+        jdbcTemplate.update("INSERT INTO author_loan_stats (author, loan_count) "
+                + "SELECT b.author, sum(d.loans) FROM unnest(?::bigint[], ?::int[]) AS d(book_id, loans) "
+                + "JOIN books b ON b.book_id = d.book_id WHERE b.author IS NOT NULL "
+                + "GROUP BY b.author HAVING sum(d.loans) <> 0 ORDER BY b.author "
+                + "ON CONFLICT (author) DO UPDATE SET loan_count = author_loan_stats.loan_count + EXCLUDED.loan_count",
+            bookIds, loans);
+        jdbcTemplate.update("INSERT INTO user_loan_stats (user_id, active_loans, total_loans) "
+                + "SELECT user_id, sum(active_loans), sum(loans) "
+                + "FROM unnest(?::bigint[], ?::int[], ?::int[]) AS d(user_id, loans, active_loans) "
+                + "GROUP BY user_id HAVING sum(loans) <> 0 OR sum(active_loans) <> 0 ORDER BY user_id "
+                + "ON CONFLICT (user_id) DO UPDATE SET "
+                + "active_loans = user_loan_stats.active_loans + EXCLUDED.active_loans, "
+                + "total_loans = user_loan_stats.total_loans + EXCLUDED.total_loans",
+            userIds, loans, activeLoans);
+    }
+
+    @Override
+    @Transactional
+    public void moveAuthor(Long bookId, String previousAuthor, String author) {
+        log.info("Перенос займов книги с ID {} от автора {} к автору {}", bookId, previousAuthor, author);
+        // FOR UPDATE ждет транзакции, уже изменившие счетчик книги, и читает их результат: apply меняет
+        // счетчик книги раньше счетчика автора
+        jdbcTemplate.update("WITH book AS (SELECT loan_count FROM book_loan_stats "
+                + "WHERE book_id = ? AND loan_count <> 0 FOR UPDATE) "
+                + "INSERT INTO author_loan_stats (author, loan_count) "
+                + "SELECT d.author, d.sign * book.loan_count FROM book "
+                + "CROSS JOIN (VALUES (CAST(? AS varchar), -1), (CAST(? AS varchar), 1)) AS d(author, sign) "
+                + "WHERE d.author IS NOT NULL ORDER BY d.author "
+                + "ON CONFLICT (author) DO UPDATE SET loan_count = author_loan_stats.loan_count + EXCLUDED.loan_count",
+            bookId, previousAuthor, author);
+    }
+
+    @Override
+    @Transactional
+    public void rebuild() {
+        log.info("Пересчет статистики займов");
+        // TRUNCATE ждет транзакции, уже изменившие статистику, и задерживает новые до фиксации пересчета,
+        // поэтому каждый заем учитывается ровно один раз: либо пересчетом, либо своим приращением
+        jdbcTemplate.execute("TRUNCATE book_loan_stats, author_loan_stats, user_loan_stats");
+        jdbcTemplate.update("INSERT INTO book_loan_stats (book_id, loan_count) "
+            + "SELECT book_id, count(*) FROM loans GROUP BY book_id");
+        jdbcTemplate.update("INSERT INTO author_loan_stats (author, loan_count) "
+            + "SELECT b.author, count(*) FROM loans l JOIN books b ON b.book_id = l.book_id "
+            + "WHERE b.author IS NOT NULL GROUP BY b.author");
+        jdbcTemplate.update("INSERT INTO user_loan_stats (user_id, active_loans, total_loans) "
+            + "SELECT user_id, count(*) FILTER (WHERE returned IS NOT TRUE), count(*) FROM loans GROUP BY user_id");
+        log.info("Статистика займов пересчитана");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookLoanStats> findTopBooks(int limit) {
+        return jdbcTemplate.query("SELECT s.book_id, b.title, b.author, s.loan_count FROM book_loan_stats s "
+            + "JOIN books b ON b.book_id = s.book_id "
+            + "ORDER BY s.loan_count DESC, s.book_id LIMIT ?", BOOK_ROW_MAPPER, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BookLoanStats> findBookStats(Long bookId) {
+        return jdbcTemplate.query("SELECT b.book_id, b.title, b.author, coalesce(s.loan_count, 0) AS loan_count "
+                + "FROM books b LEFT JOIN book_loan_stats s ON s.book_id = b.book_id WHERE b.book_id = ?",
+            BOOK_ROW_MAPPER, bookId).stream().findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AuthorLoanStats> findTopAuthors(int limit) {
+        return jdbcTemplate.query("SELECT author, loan_count FROM author_loan_stats "
+            + "ORDER BY loan_count DESC, author LIMIT ?", AUTHOR_ROW_MAPPER, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserLoanStats> findTopActiveUsers(int limit) {
+        return jdbcTemplate.query("SELECT s.user_id, u.first_name, u.last_name, s.active_loans, s.total_loans "
+            + "FROM user_loan_stats s JOIN users u ON u.user_id = s.user_id WHERE s.active_loans > 0 "
+            + "ORDER BY s.active_loans DESC, s.user_id LIMIT ?", USER_ROW_MAPPER, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<UserLoanStats> findUserStats(Long userId) {
+        return jdbcTemplate.query("SELECT u.user_id, u.first_name, u.last_name, "
+                + "coalesce(s.active_loans, 0) AS active_loans, coalesce(s.total_loans, 0) AS total_loans "
+                + "FROM users u LEFT JOIN user_loan_stats s ON s.user_id = u.user_id WHERE u.user_id = ?",
+            USER_ROW_MAPPER, userId).stream().findFirst();
+    }
+}
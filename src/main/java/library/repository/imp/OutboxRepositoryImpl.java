@@ -0,0 +1,73 @@
+package library.repository.imp;
+
+import library.outbox.OutboxEvent;
+import library.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Реализация {@link OutboxRepository} через {@link JdbcTemplate}.
+ * <p>
+ * Пачка событий записывается одним {@code INSERT ... SELECT FROM unnest}, выборка для доставки
+ * блокирует строки через {@code FOR UPDATE SKIP LOCKED}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepositoryImpl implements OutboxRepository {
+
+    /**
+     * Наибольшая длина описания ошибки, совпадает с длиной столбца {@code last_error}.
+     */
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final RowMapper<OutboxEvent> ROW_MAPPER = (rs, rowNum) -> new OutboxEvent(
+        rs.getLong("event_id"), rs.getString("event_type"), rs.getString("payload"), rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> append(List<String> types, List<String> payloads) {
+        if (types.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList("INSERT INTO outbox_events (event_type, payload) "
+                + "SELECT t, p::jsonb FROM unnest(?::varchar[], ?::text[]) WITH ORDINALITY AS e(t, p, n) ORDER BY n "
+                + "RETURNING event_id",
+            Long.class, types.toArray(String[]::new), payloads.toArray(String[]::new));
+    }
+
+    @Override
+    public List<OutboxEvent> lockBatch(int limit) {
+        return jdbcTemplate.query("SELECT event_id, event_type, payload, attempts FROM outbox_events "
+            + "WHERE next_attempt_at <= now() ORDER BY event_id LIMIT ? FOR UPDATE SKIP LOCKED", ROW_MAPPER, limit);
+    }
+
+    @Override
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM outbox_events WHERE event_id = ANY(?)", (Object) ids.toArray(Long[]::new));
+    }
+
+    @Override
+    public void scheduleRetry(Collection<Long> ids, Duration backoff, Duration maxBackoff, String error) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH
+            ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        jdbcTemplate.update("UPDATE outbox_events SET attempts = attempts + 1, last_error = ?, "
+                + "next_attempt_at = now() + least(? * power(2, least(attempts, 30)), ?) * INTERVAL '1 millisecond' "
+                + "WHERE event_id = ANY(?)",
+            lastError, backoff.toMillis(), maxBackoff.toMillis(), ids.toArray(Long[]::new));
+    }
+}
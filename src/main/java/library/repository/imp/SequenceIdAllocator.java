@@ -0,0 +1,46 @@
+package library.repository.imp;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Выдача идентификаторов блоками из последовательности с шагом больше единицы.
+ * <p>
+ * Работает по той же схеме, что и оптимизатор "pooled" Hibernate: значение {@code v}, полученное из
+ * {@code nextval}, закрепляет за вызывающим блок {@code (v - allocationSize, v]}. Поэтому идентификаторы,
+ * выданные здесь, не пересекаются ни с выданными Hibernate, ни со значениями по умолчанию столбца.
+ *
+ * @author Avdeyev Viktor
+ */
+final class SequenceIdAllocator {
+
+    private SequenceIdAllocator() {
+    }
+
+    /**
+     * Выделить идентификаторы одним запросом к базе данных.
+     *
+     * @param jdbcTemplate   шаблон JDBC
+     * @param sequence       имя последовательности
+     * @param allocationSize шаг последовательности
+     * @param count          количество нужных идентификаторов
+     * @return идентификаторы, возрастающие внутри каждого блока
+     */
+    static long[] allocate(JdbcTemplate jdbcTemplate, String sequence, int allocationSize, int count) {
+        long[] ids = new long[count];
+        int next = 0;
+        while (next < count) {
+            // первый nextval новой последовательности дает блок из одного значения, поэтому возможен повтор
+            int blocks = (count - next + allocationSize - 1) / allocationSize;
+            List<Long> highs = jdbcTemplate.queryForList(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)", Long.class, sequence, blocks);
+            for (long high : highs) {
+                for (long id = Math.max(1, high - allocationSize + 1); id <= high && next < count; id++) {
+                    ids[next++] = id;
+                }
+            }
+        }
+        return ids;
+    }
+}
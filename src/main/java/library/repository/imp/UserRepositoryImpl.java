@@ -2,15 +2,21 @@ package library.repository.imp;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import library.dto.UserSummary;
 import library.entity.User;
 import library.repository.UserRepository;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.sql.Types;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -28,12 +34,31 @@ public class UserRepositoryImpl implements UserRepository {
     @PersistenceContext
     private final EntityManager entityManager;
 
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SELECT_SUMMARY = "SELECT new library.dto.UserSummary("
+        + "u.id, u.firstName, u.lastName, u.birthDate, u.dateRegistration, u.role) FROM User u";
+
+    private static final String INSERT = "INSERT INTO users "
+        + "(user_id, first_name, last_name, birth_date, date_registration, role) VALUES (?, ?, ?, ?, ?, ?)";
+
     @Override
     @Transactional(readOnly = true)
-    public List<User> findAll() {
-        log.info("findAll - начало");
-        List<User> users = entityManager.createQuery("SELECT u FROM User u", User.class).getResultList();
-        log.info("findAll - найдено пользователей: {}", users.size());
+    public List<UserSummary> findPage(KeysetCursor after, int limit) {
+        log.info("findPage - начало, after = {}, limit = {}", after, limit);
+        TypedQuery<UserSummary> query;
+        if (after == null) {
+            query = entityManager.createQuery(
+                SELECT_SUMMARY + " ORDER BY u.dateRegistration, u.id", UserSummary.class);
+        } else {
+            query = entityManager.createQuery(
+                    SELECT_SUMMARY + " WHERE (u.dateRegistration, u.id) > (:dateRegistration, :id) "
+                        + "ORDER BY u.dateRegistration, u.id", UserSummary.class)
+                .setParameter("dateRegistration", after.timestamp())
+                .setParameter("id", after.id());
+        }
+        List<UserSummary> users = query.setMaxResults(limit).getResultList();
+        log.info("findPage - найдено пользователей: {}", users.size());
         return users;
     }
 
@@ -52,9 +77,24 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> findByFirstName(String firstName) {
+    public Optional<User> findByIdWithLoans(Long userId) {
+        log.info("findByIdWithLoans - начало, userId = {}", userId);
+        User user = entityManager.find(User.class, userId,
+            Map.of("jakarta.persistence.fetchgraph", entityManager.getEntityGraph("User.loans")));
+        if (user == null) {
+            log.warn("findByIdWithLoans - пользователь с ID {} не найден", userId);
+        } else {
+            log.info("findByIdWithLoans - найден пользователь, займов: {}", user.getLoans().size());
+        }
+        return Optional.ofNullable(user);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserSummary> findByFirstName(String firstName) {
         log.info("findByFirstName - начало, firstName = {}", firstName);
-        List<User> users = entityManager.createQuery("SELECT u FROM User u WHERE u.firstName = :firstName", User.class)
+        List<UserSummary> users = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE u.firstName = :firstName", UserSummary.class)
             .setParameter("firstName", firstName)
             .getResultList();
         log.info("findByFirstName - найдено пользователей с именем '{}': {}", firstName, users.size());
@@ -63,9 +103,10 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> findByLastName(String lastName) {
+    public List<UserSummary> findByLastName(String lastName) {
         log.info("findByLastName - начало, lastName = {}", lastName);
-        List<User> users = entityManager.createQuery("SELECT u FROM User u WHERE u.lastName = :lastName", User.class)
+        List<UserSummary> users = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE u.lastName = :lastName", UserSummary.class)
             .setParameter("lastName", lastName)
             .getResultList();
         log.info("findByLastName - найдено пользователей с фамилией '{}': {}", lastName, users.size());
@@ -74,9 +115,10 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> findByDateRegistrationAfter(LocalDate date) {
+    public List<UserSummary> findByDateRegistrationAfter(LocalDate date) {
         log.debug("findByDateRegistrationAfter - начало, date = {}", date);
-        List<User> users = entityManager.createQuery("SELECT u FROM User u WHERE u.dateRegistration > :date", User.class)
+        List<UserSummary> users = entityManager.createQuery(
+                SELECT_SUMMARY + " WHERE u.dateRegistration > :date", UserSummary.class)
             .setParameter("date", date.atStartOfDay())
             .getResultList();
         log.debug("findByDateRegistrationAfter - найдено пользователей, зарегистрированных после {}", date);
@@ -116,6 +158,27 @@ public class UserRepositoryImpl implements UserRepository {
         return Optional.of(user); // Возвращаем обновленного пользователя
     }
 
+    @Override
+    @Transactional
+    public void insertAll(List<User> users) {
+        log.info("insertAll - начало, пользователей: {}", users.size());
+        List<User> withoutId = users.stream().filter(user -> user.getId() == null).toList();
+        long[] ids = SequenceIdAllocator.allocate(jdbcTemplate, User.ID_SEQUENCE, User.ID_ALLOCATION_SIZE,
+            withoutId.size());
+        for (int i = 0; i < ids.length; i++) {
+            withoutId.get(i).setId(ids[i]);
+        }
+        jdbcTemplate.batchUpdate(INSERT, users, users.size(), (statement, user) -> {
+            statement.setLong(1, user.getId());
+            statement.setString(2, user.getFirstName());
+            statement.setString(3, user.getLastName());
+            statement.setObject(4, user.getBirthDate(), Types.DATE);
+            statement.setObject(5, user.getDateRegistration());
+            statement.setString(6, user.getRole().name());
+        });
+        log.info("insertAll - конец, вставлено пользователей: {}", users.size());
+    }
+
     @Override
     @Transactional
     public void deleteById(Long userId) {
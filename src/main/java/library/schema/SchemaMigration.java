@@ -0,0 +1,54 @@
+package library.schema;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.NativeDetector;
+import org.springframework.core.SpringProperties;
+
+/**
+ * Режим миграции схемы: {@code java -jar library.jar migrate [--свойство=значение ...]}.
+ * <p>
+ * Поднимает контекст только из источника данных и Liquibase с профилем {@code migrate}
+ * ({@code application-migrate.yaml}), применяет {@code db/changelog/changelog-master.yaml} и завершает процесс
+ * с кодом 0 или, при ошибке, ненулевым. Запускается один раз на выкладку, например отдельным заданием
+ * перед обновлением экземпляров, которые при старте только проверяют тег версии ({@link SchemaVersionCheck}).
+ * <p>
+ * Контекст миграции не проходит Spring AOT, поэтому в сборке с AOT миграции выполняются без
+ * сгенерированного кода, а нативный исполняемый файл их не выполняет: для них нужен jar приложения.
+ *
+ * @author Avdeyev Viktor
+ */
+@ImportAutoConfiguration({DataSourceAutoConfiguration.class, LiquibaseAutoConfiguration.class})
+public class SchemaMigration {
+
+    /**
+     * Первый аргумент командной строки, выбирающий режим миграции.
+     */
+    public static final String COMMAND = "migrate";
+
+    static final String PROFILE = "migrate";
+
+    /**
+     * Выполняет миграции.
+     *
+     * @param args аргументы командной строки без {@link #COMMAND}
+     * @return код завершения процесса
+     */
+    public static int run(String... args) {
+        if (NativeDetector.inNativeImage()) {
+            throw new IllegalStateException("Миграции выполняются jar приложения: java -jar library.jar " + COMMAND);
+        }
+        SpringProperties.setProperty(AotDetector.AOT_ENABLED, "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SchemaMigration.class)
+            .web(WebApplicationType.NONE)
+            .profiles(PROFILE)
+            .run(args);
+        return SpringApplication.exit(context);
+    }
+}
@@ -0,0 +1,70 @@
+package library.schema;
+
+import library.config.SchemaProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Проверка версии схемы базы данных при старте вместо миграций.
+ * <p>
+ * Миграции выполняет отдельный запуск {@link SchemaMigration}, а экземпляр приложения одним запросом
+ * к {@code databasechangelog} убеждается, что среди примененных changeset есть тег
+ * {@code library.schema.expected-tag}: без блокировки {@code databasechangelog_lock}, разбора changelog
+ * и сверки контрольных сумм. Более новые теги не мешают старту, поэтому при выкладке схема обновляется
+ * до экземпляров, а старые экземпляры продолжают работать.
+ * <p>
+ * Проверка регистрируется как инициализатор базы данных ({@link SchemaVersionCheckDetector}), поэтому
+ * JPA и {@code JdbcTemplate} создаются после нее, как раньше после Liquibase. Если Liquibase включен
+ * в этом же контексте ({@code spring.liquibase.enabled=true}, миграции при старте), бин не создается:
+ * проверка не нужна, а сам Liquibase - тоже инициализатор базы данных, и обращение к нему отсюда замкнуло бы
+ * порядок инициализаторов в цикл.
+ *
+ * @author Avdeyev Viktor
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.liquibase.enabled", havingValue = "false")
+public class SchemaVersionCheck implements InitializingBean {
+
+    static final String TAG_EXISTS = "select exists(select 1 from databasechangelog where tag = ?)";
+
+    private final DataSource dataSource;
+
+    private final SchemaProperties schemaProperties;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!schemaProperties.checkEnabled()) {
+            log.info("check - пропущена: library.schema.check-enabled = false");
+            return;
+        }
+        String expectedTag = schemaProperties.expectedTag();
+        log.info("check - начало, expectedTag = {}", expectedTag);
+        boolean tagged;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(TAG_EXISTS)) {
+            statement.setString(1, expectedTag);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                tagged = resultSet.next() && resultSet.getBoolean(1);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Не удалось проверить версию схемы базы данных; если миграции еще "
+                + "не выполнялись, запустите их: java -jar library.jar " + SchemaMigration.COMMAND, ex);
+        }
+        if (!tagged) {
+            throw new IllegalStateException("Схема базы данных не содержит тег " + expectedTag
+                + ", выполните миграции: java -jar library.jar " + SchemaMigration.COMMAND);
+        }
+        log.info("check - конец");
+    }
+}
@@ -0,0 +1,20 @@
+package library.schema;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+import java.util.Set;
+
+/**
+ * Регистрирует {@link SchemaVersionCheck} как инициализатор базы данных: бины, зависящие от инициализации
+ * базы данных (JPA, {@code JdbcTemplate}), создаются после проверки. Подключается через
+ * {@code META-INF/spring.factories}.
+ *
+ * @author Avdeyev Viktor
+ */
+public class SchemaVersionCheckDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Set.of(SchemaVersionCheck.class);
+    }
+}
@@ -0,0 +1,470 @@
+package library.search;
+
+import library.config.SearchProperties;
+import library.dto.BookSummary;
+import library.dto.SearchPage;
+import library.repository.BookRepository;
+import library.util.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Полнотекстовый индекс книг на Lucene в памяти процесса.
+ * <p>
+ * Индекс строится из базы данных при старте приложения, до того как веб-сервер начнет принимать запросы,
+ * и далее поддерживается инкрементально из {@link library.service.BookService} и
+ * {@link library.service.LoanService} после фиксации их транзакций. Изменения других экземпляров приложения
+ * и обновления, не попавшие в индекс из-за ошибки, учитываются периодическим перестроением раз в
+ * {@code library.search.reconcile-interval}: новое поколение индекса строится рядом с текущим и подменяет его,
+ * как в {@link library.availability.BookAvailabilityIndex}. Индекс не хранится на диске: он все равно
+ * перестраивается при старте, а каталог на диске, общий для экземпляров на одной машине, блокировал бы
+ * запуск второго из них. Документ хранит все поля {@link BookSummary}, поэтому результаты поиска отдаются
+ * без обращения к базе данных.
+ * <p>
+ * Каждое слово запроса должно совпасть с названием или автором; последнее слово может совпасть по префиксу
+ * (поиск по мере ввода). Если точный проход ничего не нашел, запрос повторяется с допуском опечаток.
+ * Точные совпадения ранжируются выше префиксных, название весит больше автора.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class BookSearchIndex implements SmartInitializingSingleton, DisposableBean {
+
+    private static final String ID = "id";
+
+    private static final String TITLE = "title";
+
+    private static final String AUTHOR = "author";
+
+    private static final String PUBLISHED_YEAR = "publishedYear";
+
+    private static final String PAGE_COUNT = "pageCount";
+
+    private static final String AVAILABLE = "available";
+
+    private static final String ADDED_AT = "addedAt";
+
+    /**
+     * Максимальная глубина выдачи: дальше страницы не листаются.
+     */
+    private static final int MAX_DEPTH = 10_000;
+
+    private final BookRepository bookRepository;
+
+    private final SearchProperties searchProperties;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    /**
+     * Поиск и изменения индекса берут блокировку на чтение и работают с поколением параллельно,
+     * подмена поколения берет блокировку на запись.
+     */
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    /**
+     * Не дает перестроениям идти параллельно. Блокировка, а не {@code synchronized}: перестроение держит ее
+     * на время чтения из базы данных и не должно закреплять поток-носитель виртуального потока.
+     */
+    private final Lock reconcileLock = new ReentrantLock();
+
+    private Generation generation;
+
+    /**
+     * Изменения, пришедшие во время перестроения. Повторяются поверх нового поколения перед подменой, иначе
+     * поколение, прочитанное из базы данных до их фиксации, откатило бы их. {@code null}, пока перестроение
+     * не идет.
+     */
+    private Queue<Change> journal;
+
+    public BookSearchIndex(BookRepository bookRepository, SearchProperties searchProperties) throws IOException {
+        this.bookRepository = bookRepository;
+        this.searchProperties = searchProperties;
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+        this.generation = Generation.open(analyzer);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Перестроить индекс по всем книгам из базы данных и заменить им текущий.
+     */
+    @Scheduled(initialDelayString = "${library.search.reconcile-interval:5m}",
+        fixedDelayString = "${library.search.reconcile-interval:5m}")
+    public void rebuild() {
+        reconcileLock.lock();
+        try {
+            rebuildExclusively();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void rebuildExclusively() {
+        log.info("rebuild - начало");
+        long startTime = System.currentTimeMillis();
+        setJournal(new ConcurrentLinkedQueue<>());
+        Generation fresh = null;
+        Generation retired;
+        long count = 0;
+        try {
+            fresh = Generation.open(analyzer);
+            KeysetCursor after = null;
+            List<BookSummary> page;
+            do {
+                page = bookRepository.findPage(after, searchProperties.rebuildBatch());
+                for (BookSummary book : page) {
+                    fresh.writer().addDocument(toDocument(book));
+                }
+                count += page.size();
+                if (!page.isEmpty()) {
+                    BookSummary last = page.get(page.size() - 1);
+                    after = new KeysetCursor(last.addedAt(), last.id());
+                }
+            } while (page.size() == searchProperties.rebuildBatch());
+            writeLock.lock();
+            try {
+                for (Change change : journal) {
+                    change.applyTo(fresh.writer());
+                }
+                fresh.searcherManager().maybeRefreshBlocking();
+                retired = generation;
+                generation = fresh;
+                journal = null;
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException ex) {
+            setJournal(null);
+            closeQuietly(fresh);
+            throw new UncheckedIOException("Не удалось перестроить поисковый индекс книг", ex);
+        } catch (RuntimeException ex) {
+            setJournal(null);
+            closeQuietly(fresh);
+            throw ex;
+        }
+        closeQuietly(retired);
+        log.info("rebuild - конец, проиндексировано {} книг за {} мс", count,
+            System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Добавить или обновить книгу в индексе.
+     *
+     * @param book книга
+     */
+    public void index(BookSummary book) {
+        apply(List.of(new Change(book.id(), book)), false);
+    }
+
+    /**
+     * Обновить пачку книг в индексе с одним обновлением читателя.
+     *
+     * @param books книги
+     */
+    public void updateAll(Collection<BookSummary> books) {
+        apply(books.stream().map(book -> new Change(book.id(), book)).toList(), false);
+    }
+
+    /**
+     * Добавить пачку новых книг в индекс без обновления читателя.
+     * <p>
+     * Книги становятся видны поиску после {@link #refresh()}: обновление читателя после каждой пачки
+     * заставляет индекс создавать и постоянно сливать мелкие сегменты.
+     *
+     * @param books книги, которых еще нет в индексе
+     */
+    public void addAll(Collection<BookSummary> books) {
+        apply(books.stream().map(book -> new Change(book.id(), book)).toList(), true);
+    }
+
+    /**
+     * Сделать видимыми поиску все изменения индекса.
+     */
+    public void refresh() {
+        readLock.lock();
+        try {
+            generation.searcherManager().maybeRefreshBlocking();
+        } catch (IOException | RuntimeException ex) {
+            log.warn("refresh - не удалось обновить читателя поискового индекса: {}", ex.toString());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Удалить книгу из индекса.
+     *
+     * @param bookId идентификатор книги
+     */
+    public void delete(Long bookId) {
+        apply(List.of(new Change(bookId, null)), false);
+    }
+
+    /**
+     * Найти книги по названию и автору.
+     *
+     * @param text поисковая строка
+     * @param page номер страницы, начиная с нуля
+     * @param size размер страницы
+     * @return страница книг в порядке убывания релевантности
+     */
+    public SearchPage<BookSummary> search(String text, int page, int size) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return new SearchPage<>(List.of(), 0, page, size);
+        }
+        int from = page * size;
+        if (from >= MAX_DEPTH) {
+            return new SearchPage<>(List.of(), 0, page, size);
+        }
+        readLock.lock();
+        try {
+            SearcherManager searcherManager = generation.searcherManager();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int depth = Math.min(from + size, MAX_DEPTH);
+                TopDocs topDocs = searcher.search(buildQuery(terms, false), depth);
+                if (topDocs.totalHits.value == 0) {
+                    topDocs = searcher.search(buildQuery(terms, true), depth);
+                }
+                List<BookSummary> items = new ArrayList<>(size);
+                ScoreDoc[] hits = topDocs.scoreDocs;
+                for (int i = from; i < hits.length; i++) {
+                    items.add(toSummary(searcher.storedFields().document(hits[i].doc)));
+                }
+                return new SearchPage<>(items, topDocs.totalHits.value, page, size);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Ошибка поиска по индексу книг", ex);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        writeLock.lock();
+        try {
+            generation.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Применить изменения к текущему поколению. Вызывается после фиксации транзакции, поэтому ошибка не выходит
+     * за пределы метода: запись уже зафиксирована, а индекс исправит следующее перестроение.
+     *
+     * @param changes изменения
+     * @param append  книг еще нет в индексе, читатель не обновляется
+     */
+    private void apply(List<Change> changes, boolean append) {
+        readLock.lock();
+        try {
+            if (journal != null) {
+                journal.addAll(changes);
+            }
+            IndexWriter writer = generation.writer();
+            for (Change change : changes) {
+                if (append) {
+                    writer.addDocument(toDocument(change.book()));
+                } else {
+                    change.applyTo(writer);
+                }
+            }
+            if (!append) {
+                generation.searcherManager().maybeRefreshBlocking();
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("apply - не удалось обновить в индексе {} книг, отложено до перестроения: {}",
+                changes.size(), ex.toString());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void setJournal(Queue<Change> journal) {
+        writeLock.lock();
+        try {
+            this.journal = journal;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Generation generation) {
+        if (generation == null) {
+            return;
+        }
+        try {
+            generation.close();
+        } catch (IOException | RuntimeException ex) {
+            log.warn("closeQuietly - не удалось закрыть поколение поискового индекса: {}", ex.toString());
+        }
+    }
+
+    private Query buildQuery(List<String> terms, boolean fuzzy) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            boolean prefix = i == terms.size() - 1;
+            BooleanQuery.Builder alternatives = new BooleanQuery.Builder();
+            addAlternatives(alternatives, TITLE, terms.get(i), 3f, prefix, fuzzy);
+            addAlternatives(alternatives, AUTHOR, terms.get(i), 2f, prefix, fuzzy);
+            query.add(alternatives.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private static void addAlternatives(BooleanQuery.Builder alternatives, String field, String term, float boost,
+                                        boolean prefix, boolean fuzzy) {
+        Term exact = new Term(field, term);
+        alternatives.add(new BoostQuery(new TermQuery(exact), boost * 4), BooleanClause.Occur.SHOULD);
+        if (prefix && term.length() >= 2) {
+            alternatives.add(new BoostQuery(new PrefixQuery(exact), boost * 2), BooleanClause.Occur.SHOULD);
+        }
+        int maxEdits = term.length() < 4 ? 0 : term.length() < 8 ? 1 : 2;
+        if (fuzzy && maxEdits > 0) {
+            alternatives.add(new BoostQuery(new FuzzyQuery(exact, maxEdits, 1), boost), BooleanClause.Occur.SHOULD);
+        }
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TITLE, text)) {
+            CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(attribute.toString());
+            }
+            stream.end();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось разобрать поисковый запрос", ex);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(BookSummary book) {
+        Document document = new Document();
+        document.add(new StringField(ID, book.id().toString(), Field.Store.YES));
+        document.add(new TextField(TITLE, book.title(), Field.Store.YES));
+        if (book.author() != null) {
+            document.add(new TextField(AUTHOR, book.author(), Field.Store.YES));
+        }
+        if (book.publishedYear() != null) {
+            document.add(new StoredField(PUBLISHED_YEAR, book.publishedYear()));
+        }
+        document.add(new StoredField(PAGE_COUNT, book.pageCount()));
+        document.add(new StoredField(AVAILABLE, book.available() ? 1 : 0));
+        if (book.addedAt() != null) {
+            document.add(new StoredField(ADDED_AT, book.addedAt().toString()));
+        }
+        return document;
+    }
+
+    private static BookSummary toSummary(Document document) {
+        IndexableField publishedYear = document.getField(PUBLISHED_YEAR);
+        String addedAt = document.get(ADDED_AT);
+        return new BookSummary(
+            Long.valueOf(document.get(ID)),
+            document.get(TITLE),
+            document.get(AUTHOR),
+            publishedYear == null ? null : publishedYear.numericValue().intValue(),
+            document.getField(PAGE_COUNT).numericValue().intValue(),
+            document.getField(AVAILABLE).numericValue().intValue() == 1,
+            addedAt == null ? null : LocalDateTime.parse(addedAt));
+    }
+
+    /**
+     * Поколение индекса: каталог в памяти, писатель и читатели одного перестроения.
+     */
+    private record Generation(Directory directory, IndexWriter writer, SearcherManager searcherManager) {
+
+        static Generation open(Analyzer analyzer) throws IOException {
+            Directory directory = new ByteBuffersDirectory();
+            IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+            return new Generation(directory, writer, new SearcherManager(writer, null));
+        }
+
+        void close() throws IOException {
+            searcherManager.close();
+            // индекс живет только в памяти, фиксировать его перед закрытием незачем
+            writer.rollback();
+            directory.close();
+        }
+    }
+
+    /**
+     * Изменение одной книги. Применение идемпотентно, поэтому повтор уже учтенного в поколении изменения
+     * безвреден.
+     *
+     * @param bookId id книги
+     * @param book   книга в новом состоянии или {@code null}, если книга удалена
+     */
+    private record Change(Long bookId, BookSummary book) {
+
+        void applyTo(IndexWriter writer) throws IOException {
+            Term id = new Term(ID, bookId.toString());
+            if (book == null) {
+                writer.deleteDocuments(id);
+            } else {
+                writer.updateDocument(id, toDocument(book));
+            }
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package library.service;
 
+import library.dto.AvailabilityCounts;
+import library.dto.BookDetails;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.SearchPage;
 import library.entity.Book;
+import library.importer.ImportFormat;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,11 +21,13 @@ import java.util.Optional;
 public interface BookService {
 
     /**
-     * Получение всех книг.
+     * Получение страницы книг.
      *
-     * @return список всех книг
+     * @param cursor токен продолжения, полученный с предыдущей страницей, или {@code null} для первой страницы
+     * @param size   запрошенный размер страницы
+     * @return страница книг с токеном следующей страницы
      */
-    List<Book> findAll();
+    CursorPage<BookSummary> findPage(String cursor, Integer size);
 
     /**
      * Поиск книги по ID.
@@ -27,6 +37,30 @@ public interface BookService {
      */
     Optional<Book> findById(Long bookId);
 
+    /**
+     * Версия книги для условных запросов. Меняется при каждом изменении книги, в том числе ее доступности.
+     *
+     * @param bookId уникальный идентификатор книги
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findVersion(Long bookId);
+
+    /**
+     * Версия списков книг для условных запросов: страниц, доступных книг и выборок по диапазонам.
+     * Меняется при каждом изменении любой книги.
+     *
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findListVersion();
+
+    /**
+     * Получение книги вместе с ее займами.
+     *
+     * @param bookId уникальный идентификатор книги
+     * @return книга и связанные с ней займы
+     */
+    BookDetails findDetailsById(Long bookId);
+
     /**
      * Поиск книги по названию.
      *
@@ -36,11 +70,39 @@ public interface BookService {
     Optional<Book> findByTitle(String title);
 
     /**
-     * Получение всех доступных книг.
+     * Полнотекстовый поиск книг по названию и автору.
+     * Учитывает префиксы и опечатки, результаты упорядочены по релевантности.
      *
-     * @return список доступных книг
+     * @param query поисковая строка
+     * @param page  номер страницы, начиная с нуля
+     * @param size  размер страницы
+     * @return страница найденных книг
      */
-    List<Book> findByAvailableTrue();
+    SearchPage<BookSummary> search(String query, Integer page, Integer size);
+
+    /**
+     * Получение страницы доступных книг в порядке возрастания id.
+     *
+     * @param cursor токен продолжения, полученный с предыдущей страницей, или {@code null} для первой страницы
+     * @param size   запрошенный размер страницы
+     * @return страница доступных книг с токеном следующей страницы
+     */
+    CursorPage<BookSummary> findAvailable(String cursor, Integer size);
+
+    /**
+     * Проверка доступности книги без обращения к базе данных.
+     *
+     * @param bookId уникальный идентификатор книги
+     * @return доступность книги или {@link Optional#empty()}, если книги нет
+     */
+    Optional<Boolean> findAvailability(Long bookId);
+
+    /**
+     * Подсчет книг по доступности без обращения к базе данных.
+     *
+     * @return количество всех, доступных и выданных книг
+     */
+    AvailabilityCounts countAvailability();
 
     /**
      * Поиск книг по автору.
@@ -48,7 +110,7 @@ public interface BookService {
      * @param author автор книги
      * @return список книг автора
      */
-    List<Book> findByAuthor(String author);
+    List<BookSummary> findByAuthor(String author);
 
     /**
      * Поиск книг, опубликованных после заданного года.
@@ -56,7 +118,7 @@ public interface BookService {
      * @param year год публикации
      * @return список книг, опубликованных после указанного года
      */
-    List<Book> findByPublishedYearAfter(Integer year);
+    List<BookSummary> findByPublishedYearAfter(Integer year);
 
     /**
      * Поиск книг с количеством страниц больше указанного.
@@ -64,7 +126,7 @@ public interface BookService {
      * @param pageCount минимальное количество страниц
      * @return список книг
      */
-    List<Book> findByPageCountGreaterThan(Integer pageCount);
+    List<BookSummary> findByPageCountGreaterThan(Integer pageCount);
 
     /**
      * Сохранение книги.
@@ -74,6 +136,18 @@ public interface BookService {
      */
     Book save(Book book);
 
+    /**
+     * Массовый импорт новых книг из NDJSON или CSV.
+     * <p>
+     * Строки, не прошедшие разбор, проверку или вставку, отклоняются по одной и попадают в отчет,
+     * остальные сохраняются пачками.
+     *
+     * @param input  входной поток в кодировке UTF-8
+     * @param format формат входного потока
+     * @return итог импорта
+     */
+    ImportReport importBooks(InputStream input, ImportFormat format);
+
     /**
      * Удаление книги по ID.
      *
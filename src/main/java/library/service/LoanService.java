@@ -1,5 +1,10 @@
 package library.service;
 
+import library.dto.CursorPage;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanView;
 import library.entity.Loan;
 
 import java.util.List;
@@ -13,19 +18,46 @@ import java.util.Optional;
 public interface LoanService {
 
     /**
-     * Получение всех займов.
+     * Получение страницы займов.
      *
-     * @return список всех займов
+     * @param cursor токен продолжения, полученный с предыдущей страницей, или {@code null} для первой страницы
+     * @param size   запрошенный размер страницы
+     * @return страница займов с токеном следующей страницы
      */
-    List<Loan> findAll();
+    CursorPage<LoanView> findPage(String cursor, Integer size);
 
     /**
-     * Поиск займа по ID.
+     * Поиск займа по ID. Заем кэшируется со ссылками на пользователя и книгу по id, а не с их сущностями:
+     * изменения пользователя и книги не инвалидируют тег займа.
      *
      * @param loanId уникальный идентификатор займа
-     * @return объект {@link Loan}, если найден, иначе {@link Optional#empty()}
+     * @return представление займа, если найден, иначе {@link Optional#empty()}
      */
-    Optional<Loan> findById(Long loanId);
+    Optional<LoanView> findById(Long loanId);
+
+    /**
+     * Версия займа для условных запросов. Меняется при каждом изменении займа.
+     *
+     * @param loanId уникальный идентификатор займа
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findVersion(Long loanId);
+
+    /**
+     * Версия списка займов пользователя для условных запросов. Меняется при каждом изменении его займов.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findUserLoansVersion(Long userId);
+
+    /**
+     * Версия списков займов для условных запросов: страниц и незавершенных займов.
+     * Меняется при каждом изменении любого займа.
+     *
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findListVersion();
 
     /**
      * Поиск всех займов пользователя по его ID.
@@ -33,17 +65,30 @@ public interface LoanService {
      * @param userId уникальный идентификатор пользователя
      * @return список всех займов пользователя
      */
-    List<Loan> findByUserId(Long userId);
+    List<LoanView> findByUserId(Long userId);
 
     /**
      * Поиск всех невозвращенных займов.
      *
      * @return список невозвращенных займов
      */
-    List<Loan> findByReturnedFalse();
+    List<LoanView> findByReturnedFalse();
+
+    /**
+     * Поиск просроченных займов: открытых займов с истекшим сроком возврата.
+     * <p>
+     * Отвечает из памяти процесса, без запроса к базе данных.
+     *
+     * @return просроченные займы в порядке срока возврата
+     */
+    List<LoanView> findOverdue();
 
     /**
      * Сохранение или обновление займа.
+     * <p>
+     * Открытый заем занимает книгу, закрытый освобождает ее в той же транзакции. Если книга уже выдана
+     * или заем изменен параллельно, бросается {@link library.exception.ConflictException}.
+     * Если срок возврата не задан, он отсчитывается от даты выдачи на {@code library.overdue.loan-period}.
      *
      * @param loan заем для сохранения
      * @return сохраненный или обновленный заем
@@ -52,16 +97,64 @@ public interface LoanService {
 
     /**
      * Обновление статуса возврата для займа.
+     * <p>
+     * Возврат освобождает книгу, повторное открытие займа снова занимает ее. Если книга уже выдана
+     * по другому займу, бросается {@link library.exception.ConflictException}.
      *
      * @param loanId   уникальный идентификатор займа
      * @param returned статус возврата
      */
     void updateReturnStatus(Long loanId, Boolean returned);
 
+    /**
+     * Выдать пользователю несколько книг одной транзакцией.
+     * <p>
+     * Выдаются только доступные книги; для каждой книги пакета возвращается отдельный результат
+     * в порядке запроса.
+     *
+     * @param batch пользователь и выдаваемые книги
+     * @return результаты по каждой книге пакета
+     */
+    List<LoanBatchResult> checkoutAll(LoanCheckoutBatch batch);
+
+    /**
+     * Закрыть несколько займов одной транзакцией и вернуть книги в доступные.
+     * <p>
+     * Для каждого займа пакета возвращается отдельный результат в порядке запроса.
+     *
+     * @param batch закрываемые займы
+     * @return результаты по каждому займу пакета
+     */
+    List<LoanBatchResult> returnAll(LoanReturnBatch batch);
+
     /**
      * Удаление займа по ID.
      *
      * @param loanId уникальный идентификатор займа
      */
     void deleteById(Long loanId);
+
+    /**
+     * Удаление всех займов пользователя перед удалением самого пользователя.
+     * <p>
+     * Вызывается в транзакции удаления пользователя: займы удаляются так же, как {@link #deleteById}, книги
+     * открытых займов снова становятся доступными. Строка пользователя блокируется до конца транзакции, поэтому
+     * параллельная выдача не создаст займ, который удалится каскадом незамеченным. Индексы книг и учет просрочек
+     * этого экземпляра обновляются после фиксации транзакции.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @throws IllegalStateException если нет активной транзакции
+     */
+    void deleteByUserId(Long userId);
+
+    /**
+     * Удаление всех займов книги перед удалением самой книги.
+     * <p>
+     * Вызывается в транзакции удаления книги, как {@link #deleteByUserId}; книга не освобождается,
+     * потому что удаляется вместе с займами.
+     *
+     * @param bookId уникальный идентификатор книги
+     * @throws IllegalStateException если нет активной транзакции
+     */
+    void deleteByBookId(Long bookId);
 }
@@ -0,0 +1,60 @@
+package library.service;
+
+import library.dto.AuthorLoanStats;
+import library.dto.BookLoanStats;
+import library.dto.UserLoanStats;
+
+import java.util.List;
+
+/**
+ * Сервис статистики займов.
+ *
+ * @author Avdeyev Viktor
+ */
+public interface StatsService {
+
+    /**
+     * Книги с наибольшим количеством займов.
+     *
+     * @param limit запрошенное количество книг или {@code null} для количества по умолчанию
+     * @return книги в порядке убывания количества займов
+     */
+    List<BookLoanStats> findTopBooks(Integer limit);
+
+    /**
+     * Статистика выдач книги.
+     *
+     * @param bookId id книги
+     * @return статистика книги
+     */
+    BookLoanStats findBookStats(Long bookId);
+
+    /**
+     * Авторы с наибольшим количеством займов их книг.
+     *
+     * @param limit запрошенное количество авторов или {@code null} для количества по умолчанию
+     * @return авторы в порядке убывания количества займов
+     */
+    List<AuthorLoanStats> findTopAuthors(Integer limit);
+
+    /**
+     * Пользователи с наибольшим количеством открытых займов.
+     *
+     * @param limit запрошенное количество пользователей или {@code null} для количества по умолчанию
+     * @return пользователи в порядке убывания количества открытых займов
+     */
+    List<UserLoanStats> findTopActiveUsers(Integer limit);
+
+    /**
+     * Статистика займов пользователя.
+     *
+     * @param userId id пользователя
+     * @return статистика пользователя
+     */
+    UserLoanStats findUserStats(Long userId);
+
+    /**
+     * Пересчитать статистику по таблице займов.
+     */
+    void rebuild();
+}
@@ -1,7 +1,13 @@
 package library.service;
 
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.UserDetails;
+import library.dto.UserSummary;
 import library.entity.User;
+import library.importer.ImportFormat;
 
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -14,11 +20,13 @@ import java.util.Optional;
 public interface UserService {
 
     /**
-     * Получение всех пользователей.
+     * Получение страницы пользователей.
      *
-     * @return список всех пользователей
+     * @param cursor токен продолжения, полученный с предыдущей страницей, или {@code null} для первой страницы
+     * @param size   запрошенный размер страницы
+     * @return страница пользователей с токеном следующей страницы
      */
-    List<User> findAll();
+    CursorPage<UserSummary> findPage(String cursor, Integer size);
 
     /**
      * Поиск пользователя по ID.
@@ -28,13 +36,36 @@ public interface UserService {
      */
     Optional<User> findById(Long userId);
 
+    /**
+     * Версия пользователя для условных запросов. Меняется при каждом изменении пользователя.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findVersion(Long userId);
+
+    /**
+     * Версия списков пользователей для условных запросов. Меняется при каждом изменении любого пользователя.
+     *
+     * @return версия, которая читается без обращения к базе данных
+     */
+    String findListVersion();
+
+    /**
+     * Получение пользователя вместе с его займами.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @return пользователь и связанные с ним займы
+     */
+    UserDetails findDetailsById(Long userId);
+
     /**
      * Поиск пользователей по имени.
      *
      * @param firstName имя пользователя
      * @return список пользователей с данным именем (пустой список, если не найдены)
      */
-    List<User> findByFirstName(String firstName);
+    List<UserSummary> findByFirstName(String firstName);
 
     /**
      * Поиск пользователей по фамилии.
@@ -42,7 +73,7 @@ public interface UserService {
      * @param lastName фамилия пользователя
      * @return список пользователей с данной фамилией (пустой список, если не найдены)
      */
-    List<User> findByLastName(String lastName);
+    List<UserSummary> findByLastName(String lastName);
 
     /**
      * Поиск пользователей, зарегистрированных после указанной даты.
@@ -50,7 +81,7 @@ public interface UserService {
      * @param date дата регистрации
      * @return список пользователей, зарегистрированных после указанной даты (пустой список, если не найдены)
      */
-    List<User> findByDateRegistrationAfter(LocalDate date);
+    List<UserSummary> findByDateRegistrationAfter(LocalDate date);
 
     /**
      * Сохранение или обновление пользователя.
@@ -60,6 +91,18 @@ public interface UserService {
      */
     User save(User user);
 
+    /**
+     * Массовый импорт новых пользователей из NDJSON или CSV.
+     * <p>
+     * Строки, не прошедшие разбор, проверку или вставку, отклоняются по одной и попадают в отчет,
+     * остальные сохраняются пачками.
+     *
+     * @param input  входной поток в кодировке UTF-8
+     * @param format формат входного потока
+     * @return итог импорта
+     */
+    ImportReport importUsers(InputStream input, ImportFormat format);
+
     /**
      * Обновление пользователя.
      *
@@ -1,18 +1,42 @@
 package library.service.impl;
 
+import library.availability.BookAvailabilityIndex;
+import library.cache.CacheTag;
+import library.cache.CacheTags;
+import library.cache.PageSize;
+import library.dto.AvailabilityCounts;
+import library.dto.BookDetails;
+import library.dto.BookImportRow;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.LoanView;
+import library.dto.SearchPage;
+import library.exception.BadRequestException;
 import library.entity.Book;
 import library.exception.NotFoundException;
+import library.importer.BulkImporter;
+import library.importer.ImportFormat;
+import library.outbox.BookChanged;
+import library.outbox.DomainEventOutbox;
 import library.repository.BookRepository;
+import library.repository.LoanStatsRepository;
+import library.search.BookSearchIndex;
 import library.service.BookService;
+import library.service.LoanService;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Реализация {@link BookService}.
@@ -24,19 +48,54 @@ import java.util.Optional;
 @Slf4j
 public class BookServiceImpl implements BookService {
 
+    /**
+     * Тег всех списков книг: страниц и выборок по диапазонам.
+     */
+    private static final String BOOKS_TAG = "books";
+
+    /**
+     * Тег всех выборок по автору. Массовый импорт инвалидирует его вместо тегов отдельных авторов.
+     */
+    private static final String BOOK_AUTHORS_TAG = "book-authors";
+
     private final BookRepository bookRepository;
 
+    private final CacheTags cacheTags;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BulkImporter bulkImporter;
+
+    private final BookAvailabilityIndex bookAvailabilityIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final DomainEventOutbox domainEventOutbox;
+
+    private final LoanService loanService;
+
+    private final LoanStatsRepository loanStatsRepository;
+
     @Override
-    @Cacheable(value = "books", key = "'allBooks'")
-    public List<Book> findAll() {
-        log.info("Запрос на получение всех книг");
-        List<Book> books = bookRepository.findAll();
-        log.info("Найдено {} книг", books.size());
-        return books;
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag(BOOKS_TAG)
+    public CursorPage<BookSummary> findPage(String cursor, @PageSize Integer size) {
+        log.info("Запрос страницы книг, cursor = {}, size = {}", cursor, size);
+        int limit = KeysetCursor.pageSize(size);
+        List<BookSummary> books = new ArrayList<>(bookRepository.findPage(KeysetCursor.decode(cursor), limit + 1));
+        String nextCursor = null;
+        if (books.size() > limit) {
+            books.remove(limit);
+            BookSummary last = books.get(limit - 1);
+            nextCursor = new KeysetCursor(last.addedAt(), last.id()).encode();
+        }
+        log.info("Найдено {} книг на странице", books.size());
+        return new CursorPage<>(books, nextCursor);
     }
 
     @Override
-    @Cacheable(value = "books", key = "#bookId")
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag("book:{0}")
     public Optional<Book> findById(Long bookId) {
         log.info("Поиск книги по ID: {}", bookId);
         return bookRepository.findById(bookId)
@@ -47,7 +106,31 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    @Cacheable(value = "books", key = "#title")
+    public String findVersion(Long bookId) {
+        return cacheTags.current("book:" + bookId);
+    }
+
+    @Override
+    public String findListVersion() {
+        return cacheTags.current(BOOKS_TAG);
+    }
+
+    @Override
+    public BookDetails findDetailsById(Long bookId) {
+        log.info("Поиск книги с займами по ID: {}", bookId);
+        Book book = bookRepository.findByIdWithLoans(bookId)
+            .orElseThrow(() -> {
+                log.warn("Книга с ID {} не найдена", bookId);
+                return new NotFoundException("Книга с ID " + bookId + " не найдена");
+            });
+        List<LoanView> loans = book.getLoans().stream().map(LoanView::from).toList();
+        log.info("Найдено {} займов книги с ID {}", loans.size(), bookId);
+        return new BookDetails(BookSummary.from(book), loans);
+    }
+
+    @Override
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag("book-title:{0}")
     public Optional<Book> findByTitle(String title) {
         log.info("Поиск книги по названию: {}", title);
         return bookRepository.findByTitle(title)
@@ -58,19 +141,57 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    @Cacheable(value = "books", key = "'availableBooks'")
-    public List<Book> findByAvailableTrue() {
-        log.info("Поиск всех доступных книг");
-        List<Book> books = bookRepository.findByAvailableTrue();
-        log.info("Найдено {} доступных книг", books.size());
-        return books;
+    public SearchPage<BookSummary> search(String query, Integer page, Integer size) {
+        log.info("Поиск книг по запросу '{}', page = {}, size = {}", query, page, size);
+        int pageNumber = page == null ? 0 : page;
+        if (pageNumber < 0) {
+            throw new BadRequestException("Номер страницы не может быть отрицательным");
+        }
+        SearchPage<BookSummary> result = bookSearchIndex.search(query, pageNumber, KeysetCursor.pageSize(size));
+        log.info("Найдено {} книг по запросу '{}'", result.total(), query);
+        return result;
     }
 
     @Override
-    @Cacheable(value = "books", key = "#author")
-    public List<Book> findByAuthor(String author) {
+    public CursorPage<BookSummary> findAvailable(String cursor, Integer size) {
+        log.info("Запрос страницы доступных книг, cursor = {}, size = {}", cursor, size);
+        int limit = KeysetCursor.pageSize(size);
+        List<Long> ids = bookAvailabilityIndex.findAvailableAfter(decodeIdCursor(cursor), limit + 1);
+        String nextCursor = null;
+        if (ids.size() > limit) {
+            ids = ids.subList(0, limit);
+            nextCursor = String.valueOf(ids.get(limit - 1));
+        }
+        // книга могла быть выдана после чтения индекса: такие книги пропускаются, страница становится короче
+        List<BookSummary> books = ids.isEmpty() ? List.of() : bookRepository.findSummariesByIds(ids).stream()
+            .filter(BookSummary::available)
+            .toList();
+        log.info("Найдено {} доступных книг на странице", books.size());
+        return new CursorPage<>(books, nextCursor);
+    }
+
+    @Override
+    public Optional<Boolean> findAvailability(Long bookId) {
+        if (!bookAvailabilityIndex.contains(bookId)) {
+            return Optional.empty();
+        }
+        return Optional.of(bookAvailabilityIndex.isAvailable(bookId));
+    }
+
+    @Override
+    public AvailabilityCounts countAvailability() {
+        long total = bookAvailabilityIndex.count();
+        long available = bookAvailabilityIndex.countAvailable();
+        log.info("Всего книг: {}, доступно: {}", total, available);
+        return new AvailabilityCounts(total, available, total - available);
+    }
+
+    @Override
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag({"book-author:{0}", BOOK_AUTHORS_TAG})
+    public List<BookSummary> findByAuthor(String author) {
         log.info("Поиск книг автора: {}", author);
-        List<Book> books = bookRepository.findByAuthor(author);
+        List<BookSummary> books = bookRepository.findByAuthor(author);
         if (books.isEmpty()) {
             log.warn("Книги автора '{}' не найдены", author);
             throw new NotFoundException("Книги автора '" + author + "' не найдены");
@@ -80,10 +201,11 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    @Cacheable(value = "books", key = "#year")
-    public List<Book> findByPublishedYearAfter(Integer year) {
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag(BOOKS_TAG)
+    public List<BookSummary> findByPublishedYearAfter(Integer year) {
         log.info("Поиск книг, опубликованных после {}", year);
-        List<Book> books = bookRepository.findByPublishedYearAfter(year);
+        List<BookSummary> books = bookRepository.findByPublishedYearAfter(year);
         if (books.isEmpty()) {
             log.warn("Книги, опубликованные после {}, не найдены", year);
             throw new NotFoundException("Книги, опубликованные после " + year + ", не найдены");
@@ -93,10 +215,11 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    @Cacheable(value = "books", key = "#pageCount")
-    public List<Book> findByPageCountGreaterThan(Integer pageCount) {
+    @Cacheable(cacheNames = "books", sync = true)
+    @CacheTag(BOOKS_TAG)
+    public List<BookSummary> findByPageCountGreaterThan(Integer pageCount) {
         log.info("Поиск книг с количеством страниц больше {}", pageCount);
-        List<Book> books = bookRepository.findByPageCountGreaterThan(pageCount);
+        List<BookSummary> books = bookRepository.findByPageCountGreaterThan(pageCount);
         if (books.isEmpty()) {
             log.warn("Книги с количеством страниц > {} не найдены", pageCount);
             throw new NotFoundException("Книги с количеством страниц > " + pageCount + " не найдены");
@@ -106,46 +229,128 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    @CacheEvict(value = "books", key = "#book.id")
     public Book save(Book book) {
         log.info("Сохранение книги: {}", book);
         if (book == null) {
             log.error("Сохранение книги - предоставлена пустая книга");
             throw new IllegalArgumentException("Книга не может быть пустой");
         }
-        Book savedBook = bookRepository.save(book);
+        Book savedBook = transactionTemplate.execute(status -> {
+            // прежнее состояние снимается до записи: сохранение меняет и загруженную сущность
+            BookSummary previous = book.getId() == null ? null
+                : bookRepository.findById(book.getId()).map(BookSummary::from).orElse(null);
+            if (previous != null) {
+                // доступностью существующей книги владеют займы
+                book.setAvailable(previous.available());
+            }
+            Book saved = bookRepository.save(book);
+            domainEventOutbox.append(List.of(new BookChanged(previous, BookSummary.from(saved))));
+            return saved;
+        });
+        bookSearchIndex.index(BookSummary.from(savedBook));
+        bookAvailabilityIndex.put(savedBook.getId(), savedBook.isAvailable());
         log.info("Книга сохранена: {}", savedBook);
         return savedBook;
     }
 
     @Override
-    @CachePut(value = "books", key = "#bookId")
+    public ImportReport importBooks(InputStream input, ImportFormat format) {
+        log.info("Импорт книг, формат: {}", format);
+        ImportReport report;
+        try {
+            report = bulkImporter.importRows(input, format, BookImportRow.class, BookImportRow::toBook,
+                bookRepository::insertAll, books -> {
+                    cacheTags.invalidate(List.of(BOOKS_TAG, BOOK_AUTHORS_TAG));
+                    List<BookSummary> summaries = books.stream().map(BookSummary::from).toList();
+                    bookSearchIndex.addAll(summaries);
+                    bookAvailabilityIndex.putAll(summaries);
+                });
+        } finally {
+            bookSearchIndex.refresh();
+        }
+        log.info("Импортировано {} книг, отклонено {} строк", report.imported(), report.failed());
+        return report;
+    }
+
+    @Override
     public Optional<Book> update(Long bookId, Book updatedBook) {
         log.info("Обновление книги с ID: {}, обновленные данные: {}", bookId, updatedBook);
 
-        Optional<Book> existingBook = bookRepository.findById(bookId);
-        if (existingBook.isEmpty()) {
-            log.error("Ошибка: книга с ID {} не найдена для обновления", bookId);
-            throw new NotFoundException("Книга с ID " + bookId + " не найдена для обновления");
-        }
+        Book updated = transactionTemplate.execute(status -> {
+            Optional<BookSummary> existingBook = bookRepository.findById(bookId).map(BookSummary::from);
+            if (existingBook.isEmpty()) {
+                log.error("Ошибка: книга с ID {} не найдена для обновления", bookId);
+                throw new NotFoundException("Книга с ID " + bookId + " не найдена для обновления");
+            }
 
-        updatedBook.setId(bookId);
+            updatedBook.setId(bookId);
+            // доступностью книги владеют займы, значение клиента игнорируется
+            updatedBook.setAvailable(existingBook.get().available());
 
-        Book updated = bookRepository.save(updatedBook);
+            Book saved = bookRepository.save(updatedBook);
+            String previousAuthor = existingBook.get().author();
+            if (!Objects.equals(previousAuthor, saved.getAuthor())) {
+                loanStatsRepository.moveAuthor(bookId, previousAuthor, saved.getAuthor());
+            }
+            domainEventOutbox.append(List.of(new BookChanged(existingBook.get(), BookSummary.from(saved))));
+            return saved;
+        });
+        bookSearchIndex.index(BookSummary.from(updated));
         log.info("Книга обновлена: {}", updated);
 
         return Optional.of(updated);
     }
 
     @Override
-    @CacheEvict(value = "books", key = "#bookId")
     public void deleteById(Long bookId) {
         log.info("Удаление книги с ID: {}", bookId);
-        if (bookRepository.findById(bookId).isEmpty()) {
-            log.error("Ошибка: невозможно удалить книгу с ID {}, так как она не найдена", bookId);
-            throw new NotFoundException("Книга с ID " + bookId + " не найдена");
-        }
-        bookRepository.deleteById(bookId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<BookSummary> book = bookRepository.findById(bookId).map(BookSummary::from);
+            if (book.isEmpty()) {
+                log.error("Ошибка: невозможно удалить книгу с ID {}, так как она не найдена", bookId);
+                throw new NotFoundException("Книга с ID " + bookId + " не найдена");
+            }
+            // займы удаляются до книги, а не каскадом базы: статистика автора еще находит книгу
+            loanService.deleteByBookId(bookId);
+            bookRepository.deleteById(bookId);
+            domainEventOutbox.append(List.of(new BookChanged(book.get(), null)));
+        });
+        bookSearchIndex.delete(bookId);
+        bookAvailabilityIndex.remove(bookId);
         log.info("Книга с ID {} успешно удалена", bookId);
     }
+
+    /**
+     * Разбирает токен продолжения страницы доступных книг: id последней отданной книги.
+     *
+     * @param cursor токен или {@code null} для первой страницы
+     * @return id, после которого начинается страница, или {@code null}
+     * @throws BadRequestException если токен поврежден
+     */
+    private static Long decodeIdCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(cursor);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    /**
+     * Добавляет теги кэша, зависящие от состояния книги: поиск по id, названию и автору, а также все списки книг.
+     * Нужен {@link CacheInvalidationConsumer} для событий {@link BookChanged}.
+     * Теги займов удаленной книги сюда не входят: их инвалидируют события удаления займов из
+     * {@link LoanService#deleteByBookId}.
+     *
+     * @param tags собираемые теги
+     * @param book состояние книги
+     */
+    static void collectTags(Set<String> tags, BookSummary book) {
+        tags.add(BOOKS_TAG);
+        tags.add("book:" + book.id());
+        tags.add("book-title:" + book.title());
+        tags.add("book-author:" + book.author());
+    }
 }
@@ -0,0 +1,77 @@
+package library.service.impl;
+
+import library.cache.CacheTags;
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.dto.UserSummary;
+import library.outbox.BookChanged;
+import library.outbox.DomainEvent;
+import library.outbox.DomainEventConsumer;
+import library.outbox.LoanChanged;
+import library.outbox.LoanCreated;
+import library.outbox.LoanReturned;
+import library.outbox.UserChanged;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Инвалидация кэша по событиям из outbox.
+ * <p>
+ * Теги всех событий пачки собираются в одно множество и инвалидируются одним проходом. Повторная
+ * инвалидация тега безвредна, поэтому повторная доставка пачки обработку не портит.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationConsumer implements DomainEventConsumer {
+
+    private final CacheTags cacheTags;
+
+    @Override
+    public void accept(List<DomainEvent> events) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (DomainEvent event : events) {
+            if (event instanceof BookChanged changed) {
+                collectBookTags(tags, changed.previous());
+                collectBookTags(tags, changed.current());
+            } else if (event instanceof UserChanged changed) {
+                collectUserTags(tags, changed.previous());
+                collectUserTags(tags, changed.current());
+            } else if (event instanceof LoanCreated created) {
+                collectLoanTags(tags, created.loan());
+            } else if (event instanceof LoanReturned returned) {
+                collectLoanTags(tags, returned.loan());
+            } else if (event instanceof LoanChanged changed) {
+                collectLoanTags(tags, changed.previous());
+                collectLoanTags(tags, changed.current());
+            }
+        }
+        log.debug("accept - событий: {}, тегов: {}", events.size(), tags.size());
+        cacheTags.invalidate(tags);
+    }
+
+    private static void collectBookTags(Set<String> tags, BookSummary book) {
+        if (book != null) {
+            BookServiceImpl.collectTags(tags, book);
+        }
+    }
+
+    private static void collectUserTags(Set<String> tags, UserSummary user) {
+        if (user != null) {
+            UserServiceImpl.collectTags(tags, user);
+        }
+    }
+
+    private static void collectLoanTags(Set<String> tags, LoanView loan) {
+        if (loan != null) {
+            LoanServiceImpl.collectTags(tags, loan);
+        }
+    }
+}
@@ -1,17 +1,54 @@
 package library.service.impl;
 
+import library.availability.BookAvailabilityIndex;
+import library.cache.CacheTag;
+import library.cache.CacheTags;
+import library.cache.PageSize;
+import library.config.OverdueProperties;
+import library.dto.BookSummary;
+import library.dto.CursorPage;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanStatsDelta;
+import library.dto.LoanView;
 import library.entity.Loan;
+import library.exception.BadRequestException;
+import library.exception.ConflictException;
 import library.exception.NotFoundException;
+import library.outbox.BookChanged;
+import library.outbox.DomainEvent;
+import library.outbox.DomainEventOutbox;
+import library.outbox.LoanChanged;
+import library.outbox.LoanCreated;
+import library.outbox.LoanReturned;
+import library.overdue.OverdueLoanTracker;
+import library.repository.BookRepository;
 import library.repository.LoanRepository;
+import library.repository.LoanStatsRepository;
+import library.repository.UserRepository;
+import library.search.BookSearchIndex;
 import library.service.LoanService;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Реализация {@link LoanService}.
@@ -23,22 +60,61 @@ import java.util.Optional;
 @Slf4j
 public class LoanServiceImpl implements LoanService {
 
+    /**
+     * Тег всех списков займов: страниц и незавершенных займов.
+     */
+    private static final String LOANS_TAG = "loans";
+
+    /**
+     * Наибольшее количество элементов в пакетной выдаче или возврате.
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final LoanRepository loanRepository;
 
+    private final BookRepository bookRepository;
+
+    private final UserRepository userRepository;
+
+    private final LoanStatsRepository loanStatsRepository;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BookAvailabilityIndex bookAvailabilityIndex;
+
+    private final CacheTags cacheTags;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final OverdueLoanTracker overdueLoanTracker;
+
+    private final OverdueProperties overdueProperties;
+
+    private final DomainEventOutbox domainEventOutbox;
+
     @Override
-    @Cacheable(value = "loans", key = "'allLoans'")
-    public List<Loan> findAll() {
-        log.info("findAll - начало");
-        List<Loan> loans = loanRepository.findAll();
-        log.info("findAll - конец, количество займов = {}", loans.size());
-        return loans;
+    @Cacheable(cacheNames = "loans", sync = true)
+    @CacheTag(LOANS_TAG)
+    public CursorPage<LoanView> findPage(String cursor, @PageSize Integer size) {
+        log.info("findPage - начало, cursor = {}, size = {}", cursor, size);
+        int limit = KeysetCursor.pageSize(size);
+        List<LoanView> loans = new ArrayList<>(loanRepository.findPage(KeysetCursor.decode(cursor), limit + 1));
+        String nextCursor = null;
+        if (loans.size() > limit) {
+            loans.remove(limit);
+            LoanView last = loans.get(limit - 1);
+            nextCursor = new KeysetCursor(last.loanDate(), last.id()).encode();
+        }
+        log.info("findPage - конец, количество займов = {}", loans.size());
+        return new CursorPage<>(loans, nextCursor);
     }
 
     @Override
-    @Cacheable(value = "loans", key = "#loanId")
-    public Optional<Loan> findById(Long loanId) {
+    @Cacheable(cacheNames = "loans", sync = true)
+    @CacheTag("loan:{0}")
+    public Optional<LoanView> findById(Long loanId) {
         log.info("findById - начало, loanId = {}", loanId);
-        Optional<Loan> loan = loanRepository.findById(loanId);
+        Optional<LoanView> loan = loanRepository.findViewById(loanId);
         if (loan.isEmpty()) {
             log.warn("findById - займ с ID {} не найден", loanId);
             throw new NotFoundException("Займ с ID " + loanId + " не найден");
@@ -48,10 +124,26 @@ public class LoanServiceImpl implements LoanService {
     }
 
     @Override
-    @Cacheable(value = "loans", key = "#userId")
-    public List<Loan> findByUserId(Long userId) {
+    public String findVersion(Long loanId) {
+        return cacheTags.current("loan:" + loanId);
+    }
+
+    @Override
+    public String findUserLoansVersion(Long userId) {
+        return cacheTags.current("user-loans:" + userId);
+    }
+
+    @Override
+    public String findListVersion() {
+        return cacheTags.current(LOANS_TAG);
+    }
+
+    @Override
+    @Cacheable(cacheNames = "loans", sync = true)
+    @CacheTag("user-loans:{0}")
+    public List<LoanView> findByUserId(Long userId) {
         log.info("findByUserId - начало, userId = {}", userId);
-        List<Loan> loans = loanRepository.findByUserId(userId);
+        List<LoanView> loans = loanRepository.findByUserId(userId);
         if (loans.isEmpty()) {
             log.warn("findByUserId - займы для пользователя с ID {} не найдены", userId);
             throw new NotFoundException("Займы для пользователя с ID " + userId + " не найдены");
@@ -61,10 +153,11 @@ public class LoanServiceImpl implements LoanService {
     }
 
     @Override
-    @Cacheable(value = "loans", key = "'returnedLoans'")
-    public List<Loan> findByReturnedFalse() {
+    @Cacheable(cacheNames = "loans", sync = true)
+    @CacheTag(LOANS_TAG)
+    public List<LoanView> findByReturnedFalse() {
         log.info("findByReturnedFalse - начало");
-        List<Loan> loans = loanRepository.findByReturnedFalse();
+        List<LoanView> loans = loanRepository.findByReturnedFalse();
         if (loans.isEmpty()) {
             log.warn("findByReturnedFalse - незавершенные займы не найдены");
             throw new NotFoundException("Незавершенные займы не найдены");
@@ -74,41 +167,371 @@ public class LoanServiceImpl implements LoanService {
     }
 
     @Override
-    @CacheEvict(value = "loans", key = "#loan.id")
+    public List<LoanView> findOverdue() {
+        log.info("findOverdue - начало");
+        List<LoanView> loans = overdueLoanTracker.findOverdue();
+        log.info("findOverdue - конец, количество просроченных займов = {}", loans.size());
+        return loans;
+    }
+
+    @Override
     public Loan save(Loan loan) {
         log.info("save - начало, заем = {}", loan);
         if (loan == null) {
             log.error("save - предоставлен пустой заем");
             throw new IllegalArgumentException("Заем не может быть пустым");
         }
-        Loan savedLoan = loanRepository.save(loan);
-        log.info("save - конец, сохранен займ с ID = {}", savedLoan.getId());
-        return savedLoan;
+        if (loan.getBook() == null || loan.getBook().getId() == null) {
+            throw new BadRequestException("Не указана книга займа");
+        }
+        if (loan.getUser() == null || loan.getUser().getId() == null) {
+            throw new BadRequestException("Не указан пользователь займа");
+        }
+        boolean holds = !Boolean.TRUE.equals(loan.getReturned());
+        if (!holds && loan.getReturnDate() == null) {
+            loan.setReturnDate(LocalDateTime.now());
+        }
+        if (loan.getLoanDate() == null) {
+            loan.setLoanDate(LocalDateTime.now());
+        }
+        if (loan.getDueDate() == null) {
+            loan.setDueDate(loan.getLoanDate().plus(overdueProperties.loanPeriod()));
+        }
+        Long bookId = loan.getBook().getId();
+        SavedLoan saved = transactionTemplate.execute(status -> {
+            Loan previous = loan.getId() == null ? null : loanRepository.findById(loan.getId()).orElse(null);
+            // прежнее состояние снимается до записи: сохранение меняет и загруженную сущность
+            LoanView previousView = previous == null ? null : LoanView.from(previous);
+            Long userId = loan.getUser().getId();
+            if ((previous == null || !previous.getUser().getId().equals(userId))
+                && userRepository.findById(userId).isEmpty()) {
+                log.warn("save - пользователь с ID {} не найден", userId);
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+            List<LoanStatsDelta> deltas = new ArrayList<>();
+            List<BookSummary> books = new ArrayList<>();
+            if (previous == null) {
+                if (holds) {
+                    books.addAll(claim(bookId));
+                }
+            } else {
+                boolean held = !Boolean.TRUE.equals(previous.getReturned());
+                Long previousBookId = previous.getBook().getId();
+                deltas.add(LoanStatsDelta.deleted(previousView));
+                // переход статуса займа условным UPDATE: параллельно измененный заем не перезаписывается
+                if (loanRepository.compareAndSetReturned(previous.getId(), !held, !holds, loan.getReturnDate())
+                    .isEmpty()) {
+                    throw new ConflictException("Займ с ID " + previous.getId() + " изменен параллельным запросом");
+                }
+                boolean sameBook = previousBookId.equals(bookId);
+                if (held && (!holds || !sameBook)) {
+                    books.addAll(bookRepository.updateAvailability(Set.of(previousBookId), true));
+                }
+                if (holds && (!held || !sameBook)) {
+                    books.addAll(claim(bookId));
+                }
+            }
+            Loan savedLoan = loanRepository.save(loan);
+            LoanView current = LoanView.from(savedLoan);
+            deltas.add(LoanStatsDelta.created(current));
+            loanStatsRepository.apply(deltas);
+            append(List.of(previous == null ? new LoanCreated(current) : new LoanChanged(previousView, current)),
+                books);
+            return new SavedLoan(savedLoan, books);
+        });
+        reindex(saved.books());
+        overdueLoanTracker.track(LoanView.from(saved.loan()));
+        log.info("save - конец, сохранен займ с ID = {}", saved.loan().getId());
+        return saved.loan();
     }
 
     @Override
-    @CacheEvict(value = "loans", key = "#loanId")
     public void updateReturnStatus(Long loanId, Boolean returned) {
         log.info("updateReturnStatus - начало, loanId = {}, возвращен = {}", loanId, returned);
-        Optional<Loan> loan = loanRepository.findById(loanId);
-        if (loan.isEmpty()) {
-            log.warn("updateReturnStatus - займ с ID {} не найден", loanId);
-            throw new NotFoundException("Займ с ID " + loanId + " не найден");
+        if (returned == null) {
+            throw new BadRequestException("Не указан статус возврата");
+        }
+        Circulation change = transactionTemplate.execute(status -> loanRepository
+            .compareAndSetReturned(loanId, !returned, returned, returned ? LocalDateTime.now() : null)
+            .map(loan -> {
+                loanStatsRepository.apply(List.of(LoanStatsDelta.statusChanged(loan)));
+                List<BookSummary> books = returned
+                    ? bookRepository.updateAvailability(Set.of(loan.bookId()), true)
+                    : claim(loan.bookId());
+                append(List.of(returned ? new LoanReturned(loan) : new LoanChanged(null, loan)), books);
+                return new Circulation(List.of(loan), books);
+            })
+            .orElse(null));
+        if (change == null) {
+            if (loanRepository.findExistingIds(Set.of(loanId)).isEmpty()) {
+                log.warn("updateReturnStatus - займ с ID {} не найден", loanId);
+                throw new NotFoundException("Займ с ID " + loanId + " не найден");
+            }
+            log.info("updateReturnStatus - конец, статус займа с ID {} уже {}", loanId, returned);
+            return;
         }
-        loanRepository.updateReturnStatus(loanId, returned);
+        reindex(change.books());
+        overdueLoanTracker.trackAll(change.loans());
         log.info("updateReturnStatus - конец, loanId = {}, возвращен = {}", loanId, returned);
     }
 
     @Override
-    @CacheEvict(value = "loans", key = "#loanId")
+    public List<LoanBatchResult> checkoutAll(LoanCheckoutBatch batch) {
+        log.info("checkoutAll - начало, batch = {}", batch);
+        List<Long> bookIds = requireBatch(batch.bookIds());
+        Long userId = batch.userId();
+        if (userId == null) {
+            throw new BadRequestException("Не указан пользователь");
+        }
+        if (userRepository.findById(userId).isEmpty()) {
+            log.warn("checkoutAll - пользователь с ID {} не найден", userId);
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+        Set<Long> requested = new LinkedHashSet<>(bookIds);
+        LocalDateTime loanDate = LocalDateTime.now();
+        Circulation checkout = transactionTemplate.execute(status -> {
+            List<BookSummary> claimed = bookRepository.updateAvailability(requested, false);
+            List<LoanView> loans = claimed.isEmpty() ? List.of() : loanRepository.insertAll(userId,
+                claimed.stream().map(BookSummary::id).toList(), loanDate,
+                loanDate.plus(overdueProperties.loanPeriod()));
+            loanStatsRepository.apply(loans.stream().map(LoanStatsDelta::created).toList());
+            append(loans.stream().map(LoanCreated::new).toList(), claimed);
+            return new Circulation(loans, claimed);
+        });
+        Map<Long, Long> loanIds = checkout.loans().stream()
+            .collect(Collectors.toMap(LoanView::bookId, LoanView::id));
+        Set<Long> rest = new HashSet<>(requested);
+        rest.removeAll(loanIds.keySet());
+        Set<Long> existing = rest.isEmpty() ? Set.of() : bookRepository.findExistingIds(rest);
+
+        List<LoanBatchResult> results = new ArrayList<>(bookIds.size());
+        Set<Long> seen = new HashSet<>();
+        for (Long bookId : bookIds) {
+            LoanBatchResult.Status status;
+            if (!seen.add(bookId)) {
+                status = LoanBatchResult.Status.DUPLICATE;
+            } else if (loanIds.containsKey(bookId)) {
+                status = LoanBatchResult.Status.CHECKED_OUT;
+            } else if (existing.contains(bookId)) {
+                status = LoanBatchResult.Status.BOOK_UNAVAILABLE;
+            } else {
+                status = LoanBatchResult.Status.BOOK_NOT_FOUND;
+            }
+            Long loanId = status == LoanBatchResult.Status.CHECKED_OUT ? loanIds.get(bookId) : null;
+            results.add(new LoanBatchResult(bookId, loanId, status));
+        }
+        reindex(checkout.books());
+        overdueLoanTracker.trackAll(checkout.loans());
+        log.info("checkoutAll - конец, выдано книг = {} из {}", checkout.loans().size(), bookIds.size());
+        return results;
+    }
+
+    @Override
+    public List<LoanBatchResult> returnAll(LoanReturnBatch batch) {
+        log.info("returnAll - начало, batch = {}", batch);
+        List<Long> loanIds = requireBatch(batch.loanIds());
+        Set<Long> requested = new LinkedHashSet<>(loanIds);
+        Circulation returns = transactionTemplate.execute(status -> {
+            List<LoanView> loans = loanRepository.markReturned(requested, LocalDateTime.now());
+            List<BookSummary> released = loans.isEmpty() ? List.of() : bookRepository.updateAvailability(
+                loans.stream().map(LoanView::bookId).collect(Collectors.toSet()), true);
+            loanStatsRepository.apply(loans.stream().map(LoanStatsDelta::statusChanged).toList());
+            append(loans.stream().map(LoanReturned::new).toList(), released);
+            return new Circulation(loans, released);
+        });
+        Map<Long, LoanView> returned = returns.loans().stream()
+            .collect(Collectors.toMap(LoanView::id, Function.identity()));
+        Set<Long> rest = new HashSet<>(requested);
+        rest.removeAll(returned.keySet());
+        Set<Long> existing = rest.isEmpty() ? Set.of() : loanRepository.findExistingIds(rest);
+
+        List<LoanBatchResult> results = new ArrayList<>(loanIds.size());
+        Set<Long> seen = new HashSet<>();
+        for (Long loanId : loanIds) {
+            LoanView loan = returned.get(loanId);
+            LoanBatchResult.Status status;
+            if (!seen.add(loanId)) {
+                status = LoanBatchResult.Status.DUPLICATE;
+            } else if (loan != null) {
+                status = LoanBatchResult.Status.RETURNED;
+            } else if (existing.contains(loanId)) {
+                status = LoanBatchResult.Status.ALREADY_RETURNED;
+            } else {
+                status = LoanBatchResult.Status.LOAN_NOT_FOUND;
+            }
+            Long bookId = status == LoanBatchResult.Status.RETURNED ? loan.bookId() : null;
+            results.add(new LoanBatchResult(bookId, loanId, status));
+        }
+        reindex(returns.books());
+        overdueLoanTracker.trackAll(returns.loans());
+        log.info("returnAll - конец, закрыто займов = {} из {}", returns.loans().size(), loanIds.size());
+        return results;
+    }
+
+    @Override
     public void deleteById(Long loanId) {
         log.info("deleteById - начало, loanId = {}", loanId);
-        Optional<Loan> loan = loanRepository.findById(loanId);
-        if (loan.isEmpty()) {
+        Circulation deleted = transactionTemplate.execute(status -> loanRepository.deleteById(loanId)
+            .map(loan -> delete(List.of(loan), true))
+            .orElse(null));
+        if (deleted == null) {
             log.warn("deleteById - займ с ID {} не найден", loanId);
             throw new NotFoundException("Займ с ID " + loanId + " не найден");
         }
-        loanRepository.deleteById(loanId);
+        reindex(deleted.books());
+        overdueLoanTracker.untrack(loanId);
         log.info("deleteById - конец, loanId = {}", loanId);
     }
+
+    @Override
+    public void deleteByUserId(Long userId) {
+        log.info("deleteByUserId - начало, userId = {}", userId);
+        requireTransaction();
+        Circulation deleted = delete(loanRepository.deleteByUserId(userId), true);
+        afterCommit(deleted);
+        log.info("deleteByUserId - конец, удалено займов = {}", deleted.loans().size());
+    }
+
+    @Override
+    public void deleteByBookId(Long bookId) {
+        log.info("deleteByBookId - начало, bookId = {}", bookId);
+        requireTransaction();
+        Circulation deleted = delete(loanRepository.deleteByBookId(bookId), false);
+        afterCommit(deleted);
+        log.info("deleteByBookId - конец, удалено займов = {}", deleted.loans().size());
+    }
+
+    /**
+     * Учитывает удаленные займы в статистике, освобождает книги открытых займов и записывает события в outbox.
+     * Вызывается в транзакции удаления.
+     *
+     * @param loans        удаленные займы
+     * @param releaseBooks освобождать ли книги открытых займов; не нужно, если книга удаляется вместе с ними
+     * @return удаленные займы и освобожденные книги
+     */
+    private Circulation delete(List<LoanView> loans, boolean releaseBooks) {
+        if (loans.isEmpty()) {
+            return new Circulation(List.of(), List.of());
+        }
+        loanStatsRepository.apply(loans.stream().map(LoanStatsDelta::deleted).toList());
+        Set<Long> held = !releaseBooks ? Set.of() : loans.stream()
+            .filter(loan -> !Boolean.TRUE.equals(loan.returned()))
+            .map(LoanView::bookId)
+            .collect(Collectors.toSet());
+        List<BookSummary> books = held.isEmpty() ? List.of() : bookRepository.updateAvailability(held, true);
+        append(loans.stream().map(loan -> new LoanChanged(loan, null)).toList(), books);
+        return new Circulation(loans, books);
+    }
+
+    /**
+     * Обновляет индексы книг и учет просрочек после фиксации внешней транзакции удаления.
+     *
+     * @param deleted удаленные займы и освобожденные книги
+     */
+    private void afterCommit(Circulation deleted) {
+        if (deleted.loans().isEmpty()) {
+            return;
+        }
+        List<Long> loanIds = deleted.loans().stream().map(LoanView::id).toList();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reindex(deleted.books());
+                overdueLoanTracker.untrackAll(loanIds);
+            }
+        });
+    }
+
+    /**
+     * Занимает книгу условным UPDATE: из параллельных выдач одной книги успешна только одна,
+     * остальные получают {@link ConflictException} и откатывают свою транзакцию.
+     *
+     * @param bookId id книги
+     * @return книга в новом состоянии
+     */
+    private List<BookSummary> claim(Long bookId) {
+        List<BookSummary> claimed = bookRepository.updateAvailability(Set.of(bookId), false);
+        if (claimed.isEmpty()) {
+            if (bookRepository.findExistingIds(Set.of(bookId)).isEmpty()) {
+                throw new NotFoundException("Книга с ID " + bookId + " не найдена");
+            }
+            throw new ConflictException("Книга с ID " + bookId + " уже выдана");
+        }
+        return claimed;
+    }
+
+    /**
+     * Записывает в outbox события займов и события изменения доступности их книг.
+     * Вызывается в транзакции изменения.
+     *
+     * @param loanEvents события займов
+     * @param books      книги, доступность которых изменилась
+     */
+    private void append(List<? extends DomainEvent> loanEvents, List<BookSummary> books) {
+        List<DomainEvent> events = new ArrayList<>(loanEvents.size() + books.size());
+        events.addAll(loanEvents);
+        for (BookSummary book : books) {
+            events.add(new BookChanged(null, book));
+        }
+        domainEventOutbox.append(events);
+    }
+
+    /**
+     * Обновляет книги в поисковом индексе и индексе доступности этого экземпляра. Индексы локальны,
+     * поэтому обновляются после фиксации транзакции сразу, а не через outbox, который разбирает любой экземпляр.
+     *
+     * @param books книги, доступность которых изменилась
+     */
+    private void reindex(List<BookSummary> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        bookSearchIndex.updateAll(books);
+        bookAvailabilityIndex.putAll(books);
+    }
+
+    /**
+     * Добавляет теги кэша, зависящие от состояния займа: поиск по id, займы пользователя и все списки займов.
+     * Нужен {@link CacheInvalidationConsumer} для событий займов.
+     *
+     * @param tags собираемые теги
+     * @param loan состояние займа
+     */
+    static void collectTags(Set<String> tags, LoanView loan) {
+        tags.add(LOANS_TAG);
+        tags.add("loan:" + loan.id());
+        tags.add("user-loans:" + loan.userId());
+    }
+
+    private static List<Long> requireBatch(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("Пакет не может быть пустым");
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("Пакет не может быть больше " + MAX_BATCH_SIZE + " элементов");
+        }
+        // contains(null) у неизменяемых списков бросает NullPointerException
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("Пакет не может содержать пустые идентификаторы");
+        }
+        return ids;
+    }
+
+    private static void requireTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Займы удаляются каскадом только в транзакции удаления");
+        }
+    }
+
+    /**
+     * Займы и книги, измененные одной пакетной операцией.
+     */
+    private record Circulation(List<LoanView> loans, List<BookSummary> books) {
+    }
+
+    /**
+     * Сохраненный заем и книги, доступность которых изменило сохранение.
+     */
+    private record SavedLoan(Loan loan, List<BookSummary> books) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package library.service.impl;
+
+import library.dto.AuthorLoanStats;
+import library.dto.BookLoanStats;
+import library.dto.UserLoanStats;
+import library.exception.BadRequestException;
+import library.exception.NotFoundException;
+import library.repository.LoanStatsRepository;
+import library.service.StatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Реализация {@link StatsService}.
+ * <p>
+ * Статистика не кэшируется: счетчики меняются с каждой выдачей, а чтение рейтинга - это чтение
+ * первых строк индекса.
+ *
+ * @author Avdeyev Viktor
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatsServiceImpl implements StatsService {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private static final int MAX_LIMIT = 100;
+
+    private final LoanStatsRepository loanStatsRepository;
+
+    @Override
+    public List<BookLoanStats> findTopBooks(Integer limit) {
+        log.info("findTopBooks - начало, limit = {}", limit);
+        List<BookLoanStats> books = loanStatsRepository.findTopBooks(limit(limit));
+        log.info("findTopBooks - конец, количество книг = {}", books.size());
+        return books;
+    }
+
+    @Override
+    public BookLoanStats findBookStats(Long bookId) {
+        log.info("findBookStats - начало, bookId = {}", bookId);
+        BookLoanStats stats = loanStatsRepository.findBookStats(bookId).orElseThrow(() -> {
+            log.warn("findBookStats - книга с ID {} не найдена", bookId);
+            return new NotFoundException("Книга с ID " + bookId + " не найдена");
+        });
+        log.info("findBookStats - конец, количество займов = {}", stats.loans());
+        return stats;
+    }
+
+    @Override
+    public List<AuthorLoanStats> findTopAuthors(Integer limit) {
+        log.info("findTopAuthors - начало, limit = {}", limit);
+        List<AuthorLoanStats> authors = loanStatsRepository.findTopAuthors(limit(limit));
+        log.info("findTopAuthors - конец, количество авторов = {}", authors.size());
+        return authors;
+    }
+
+    @Override
+    public List<UserLoanStats> findTopActiveUsers(Integer limit) {
+        log.info("findTopActiveUsers - начало, limit = {}", limit);
+        List<UserLoanStats> users = loanStatsRepository.findTopActiveUsers(limit(limit));
+        log.info("findTopActiveUsers - конец, количество пользователей = {}", users.size());
+        return users;
+    }
+
+    @Override
+    public UserLoanStats findUserStats(Long userId) {
+        log.info("findUserStats - начало, userId = {}", userId);
+        UserLoanStats stats = loanStatsRepository.findUserStats(userId).orElseThrow(() -> {
+            log.warn("findUserStats - пользователь с ID {} не найден", userId);
+            return new NotFoundException("Пользователь с ID " + userId + " не найден");
+        });
+        log.info("findUserStats - конец, открытых займов = {}", stats.activeLoans());
+        return stats;
+    }
+
+    @Override
+    public void rebuild() {
+        log.info("rebuild - начало");
+        loanStatsRepository.rebuild();
+        log.info("rebuild - конец");
+    }
+
+    private static int limit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Размер рейтинга должен быть от 1 до " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
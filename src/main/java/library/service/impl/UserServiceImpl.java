@@ -1,19 +1,36 @@
 package library.service.impl;
 
+import library.cache.CacheTag;
+import library.cache.CacheTags;
+import library.cache.PageSize;
+import library.dto.CursorPage;
+import library.dto.ImportReport;
+import library.dto.LoanView;
+import library.dto.UserDetails;
+import library.dto.UserImportRow;
+import library.dto.UserSummary;
 import library.entity.User;
 import library.exception.NotFoundException;
+import library.importer.BulkImporter;
+import library.importer.ImportFormat;
+import library.outbox.DomainEventOutbox;
+import library.outbox.UserChanged;
 import library.repository.UserRepository;
+import library.service.LoanService;
 import library.service.UserService;
+import library.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Реализация {@link UserService}.
@@ -23,19 +40,48 @@ import java.util.Optional;
 @Slf4j
 public class UserServiceImpl implements UserService {
 
+    /**
+     * Тег всех списков пользователей: страниц и выборок по дате регистрации.
+     */
+    private static final String USERS_TAG = "users";
+
+    /**
+     * Тег всех выборок по имени и фамилии. Массовый импорт инвалидирует его вместо тегов отдельных имен.
+     */
+    private static final String USER_NAMES_TAG = "user-names";
+
     private final UserRepository userRepository;
 
+    private final CacheTags cacheTags;
+
+    private final BulkImporter bulkImporter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final DomainEventOutbox domainEventOutbox;
+
+    private final LoanService loanService;
+
     @Override
-    @Cacheable(value = "users", key = "'allUsers'")
-    public List<User> findAll() {
-        log.info("Запрос на получение всех пользователей");
-        List<User> users = userRepository.findAll();
-        log.info("Найдено {} пользователей", users.size());
-        return users;
+    @Cacheable(cacheNames = "users", sync = true)
+    @CacheTag(USERS_TAG)
+    public CursorPage<UserSummary> findPage(String cursor, @PageSize Integer size) {
+        log.info("Запрос страницы пользователей, cursor = {}, size = {}", cursor, size);
+        int limit = KeysetCursor.pageSize(size);
+        List<UserSummary> users = new ArrayList<>(userRepository.findPage(KeysetCursor.decode(cursor), limit + 1));
+        String nextCursor = null;
+        if (users.size() > limit) {
+            users.remove(limit);
+            UserSummary last = users.get(limit - 1);
+            nextCursor = new KeysetCursor(last.dateRegistration(), last.id()).encode();
+        }
+        log.info("Найдено {} пользователей на странице", users.size());
+        return new CursorPage<>(users, nextCursor);
     }
 
     @Override
-    @Cacheable(value = "users", key = "#userId")
+    @Cacheable(cacheNames = "users", sync = true)
+    @CacheTag("user:{0}")
     public Optional<User> findById(Long userId) {
         log.info("Поиск пользователя по ID: {}", userId);
         return userRepository.findById(userId)
@@ -46,10 +92,34 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Cacheable(value = "users", key = "#firstName")
-    public List<User> findByFirstName(String firstName) {
+    public String findVersion(Long userId) {
+        return cacheTags.current("user:" + userId);
+    }
+
+    @Override
+    public String findListVersion() {
+        return cacheTags.current(USERS_TAG);
+    }
+
+    @Override
+    public UserDetails findDetailsById(Long userId) {
+        log.info("Поиск пользователя с займами по ID: {}", userId);
+        User user = userRepository.findByIdWithLoans(userId)
+            .orElseThrow(() -> {
+                log.warn("Пользователь с ID {} не найден", userId);
+                return new NotFoundException("Пользователь с ID " + userId + " не найден");
+            });
+        List<LoanView> loans = user.getLoans().stream().map(LoanView::from).toList();
+        log.info("Найдено {} займов пользователя с ID {}", loans.size(), userId);
+        return new UserDetails(UserSummary.from(user), loans);
+    }
+
+    @Override
+    @Cacheable(cacheNames = "users", sync = true)
+    @CacheTag({"user-first-name:{0}", USER_NAMES_TAG})
+    public List<UserSummary> findByFirstName(String firstName) {
         log.info("Поиск пользователей с именем: {}", firstName);
-        List<User> users = userRepository.findByFirstName(firstName);
+        List<UserSummary> users = userRepository.findByFirstName(firstName);
         if (users.isEmpty()) {
             log.warn("Пользователи с именем '{}' не найдены", firstName);
             throw new NotFoundException("Пользователи с именем '" + firstName + "' не найдены");
@@ -59,10 +129,11 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Cacheable(value = "users", key = "#lastName")
-    public List<User> findByLastName(String lastName) {
+    @Cacheable(cacheNames = "users", sync = true)
+    @CacheTag({"user-last-name:{0}", USER_NAMES_TAG})
+    public List<UserSummary> findByLastName(String lastName) {
         log.info("Поиск пользователей с фамилией: {}", lastName);
-        List<User> users = userRepository.findByLastName(lastName);
+        List<UserSummary> users = userRepository.findByLastName(lastName);
         if (users.isEmpty()) {
             log.warn("Пользователи с фамилией '{}' не найдены", lastName);
             throw new NotFoundException("Пользователи с фамилией '" + lastName + "' не найдены");
@@ -72,10 +143,11 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Cacheable(value = "users", key = "#date")
-    public List<User> findByDateRegistrationAfter(LocalDate date) {
+    @Cacheable(cacheNames = "users", sync = true)
+    @CacheTag(USERS_TAG)
+    public List<UserSummary> findByDateRegistrationAfter(LocalDate date) {
         log.info("Поиск пользователей, зарегистрированных после {}", date);
-        List<User> users = userRepository.findByDateRegistrationAfter(date);
+        List<UserSummary> users = userRepository.findByDateRegistrationAfter(date);
         if (users.isEmpty()) {
             log.warn("Пользователи, зарегистрированные после {}, не найдены", date);
             throw new NotFoundException("Пользователи, зарегистрированные после " + date + ", не найдены");
@@ -85,42 +157,81 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @CacheEvict(value = "users", key = "#user.id")
     public User save(User user) {
         log.info("Сохранение пользователя: {}", user);
         if (user == null) {
             log.error("Ошибка: предоставлен пустой пользователь");
             throw new IllegalArgumentException("Пользователь не может быть пустым");
         }
-        User savedUser = userRepository.save(user);
+        User savedUser = transactionTemplate.execute(status -> {
+            // прежнее состояние снимается до записи: сохранение меняет и загруженную сущность
+            UserSummary previous = user.getId() == null ? null
+                : userRepository.findById(user.getId()).map(UserSummary::from).orElse(null);
+            User saved = userRepository.save(user);
+            domainEventOutbox.append(List.of(new UserChanged(previous, UserSummary.from(saved))));
+            return saved;
+        });
         log.info("Пользователь сохранен: {}", savedUser);
         return savedUser;
     }
 
     @Override
-    @CachePut(value = "users", key = "#userId")
+    public ImportReport importUsers(InputStream input, ImportFormat format) {
+        log.info("Импорт пользователей, формат: {}", format);
+        ImportReport report = bulkImporter.importRows(input, format, UserImportRow.class, UserImportRow::toUser,
+            userRepository::insertAll, users -> cacheTags.invalidate(List.of(USERS_TAG, USER_NAMES_TAG)));
+        log.info("Импортировано {} пользователей, отклонено {} строк", report.imported(), report.failed());
+        return report;
+    }
+
+    @Override
     public Optional<User> update(Long userId, User updatedUser) {
         log.info("Обновление пользователя с ID: {}, обновленные данные: {}", userId, updatedUser);
-        Optional<User> user = userRepository.findById(userId);
-        if (user.isEmpty()) {
-            log.error("Ошибка: пользователь с ID {} не найден для обновления", userId);
-            throw new NotFoundException("Пользователь с ID " + userId + " не найден для обновления");
-        }
-        updatedUser.setId(userId);
-        User updated = userRepository.save(updatedUser);
+        User updated = transactionTemplate.execute(status -> {
+            Optional<UserSummary> user = userRepository.findById(userId).map(UserSummary::from);
+            if (user.isEmpty()) {
+                log.error("Ошибка: пользователь с ID {} не найден для обновления", userId);
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден для обновления");
+            }
+            updatedUser.setId(userId);
+            User saved = userRepository.save(updatedUser);
+            domainEventOutbox.append(List.of(new UserChanged(user.get(), UserSummary.from(saved))));
+            return saved;
+        });
         log.info("Пользователь обновлен: {}", updated);
         return Optional.ofNullable(updated);
     }
 
     @Override
-    @CacheEvict(value = "users", key = "#userId")
     public void deleteById(Long userId) {
         log.info("Удаление пользователя с ID: {}", userId);
-        if (userRepository.findById(userId).isEmpty()) {
-            log.error("Ошибка: пользователь с ID {} не найден для удаления", userId);
-            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
-        }
-        userRepository.deleteById(userId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<UserSummary> user = userRepository.findById(userId).map(UserSummary::from);
+            if (user.isEmpty()) {
+                log.error("Ошибка: пользователь с ID {} не найден для удаления", userId);
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+            // займы удаляются до пользователя, а не каскадом базы: книги открытых займов освобождаются
+            loanService.deleteByUserId(userId);
+            userRepository.deleteById(userId);
+            domainEventOutbox.append(List.of(new UserChanged(user.get(), null)));
+        });
         log.info("Пользователь с ID {} успешно удален", userId);
     }
+
+    /**
+     * Добавляет теги кэша, зависящие от состояния пользователя: поиск по id, имени и фамилии, а также все списки
+     * пользователей. Нужен {@link CacheInvalidationConsumer} для событий {@link UserChanged}.
+     * Теги займов удаленного пользователя сюда не входят: их инвалидируют события удаления займов из
+     * {@link LoanService#deleteByUserId}.
+     *
+     * @param tags собираемые теги
+     * @param user состояние пользователя
+     */
+    static void collectTags(Set<String> tags, UserSummary user) {
+        tags.add(USERS_TAG);
+        tags.add("user:" + user.id());
+        tags.add("user-first-name:" + user.firstName());
+        tags.add("user-last-name:" + user.lastName());
+    }
 }
@@ -0,0 +1,97 @@
+package library.stream;
+
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.dto.UserSummary;
+import library.repository.CatalogStreamRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Обработчики потокового API каталога.
+ * <p>
+ * По умолчанию ответ отдается как NDJSON, по одному объекту JSON в строке. Если клиент принимает только
+ * {@code text/event-stream}, ответ отдается как Server-Sent Events, где id события равен id записи.
+ * Продолжить прерванный поток можно параметром {@code after} или заголовком {@code Last-Event-ID}.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogStreamHandler {
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final CatalogStreamRepository catalogStreamRepository;
+
+    public Mono<ServerResponse> streamBooks(ServerRequest request) {
+        return stream(request, "streamBooks", catalogStreamRepository::streamBooks, BookSummary.class,
+            BookSummary::id);
+    }
+
+    public Mono<ServerResponse> streamUsers(ServerRequest request) {
+        return stream(request, "streamUsers", catalogStreamRepository::streamUsers, UserSummary.class,
+            UserSummary::id);
+    }
+
+    public Mono<ServerResponse> streamLoans(ServerRequest request) {
+        return stream(request, "streamLoans", catalogStreamRepository::streamLoans, LoanView.class,
+            LoanView::id);
+    }
+
+    private <T> Mono<ServerResponse> stream(ServerRequest request, String operation, LongFunction<Flux<T>> source,
+                                            Class<T> type, ToLongFunction<T> idOf) {
+        long afterId;
+        try {
+            afterId = afterId(request);
+        } catch (NumberFormatException ex) {
+            return ServerResponse.badRequest().bodyValue("Параметр after должен быть неотрицательным числом");
+        }
+        log.info("{} - start, после id: {}", operation, afterId);
+        Flux<T> items = source.apply(afterId)
+            .doOnComplete(() -> log.info("{} - end", operation))
+            .doOnCancel(() -> log.info("{} - клиент отключился", operation));
+        if (acceptsOnlyEventStream(request)) {
+            Flux<ServerSentEvent<T>> events = items.map(item -> ServerSentEvent.builder(item)
+                .id(String.valueOf(idOf.applyAsLong(item)))
+                .build());
+            return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events, ServerSentEvent.class);
+        }
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(items, type);
+    }
+
+    private static long afterId(ServerRequest request) {
+        String value = request.queryParam("after")
+            .orElseGet(() -> request.headers().firstHeader(LAST_EVENT_ID));
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        long afterId = Long.parseLong(value.trim());
+        if (afterId < 0) {
+            throw new NumberFormatException(value);
+        }
+        return afterId;
+    }
+
+    private static boolean acceptsOnlyEventStream(ServerRequest request) {
+        return request.headers().accept().stream()
+            .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)
+            && request.headers().accept().stream()
+            .noneMatch(MediaType.APPLICATION_NDJSON::isCompatibleWith);
+    }
+}
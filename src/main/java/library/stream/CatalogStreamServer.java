@@ -0,0 +1,95 @@
+package library.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import library.config.StreamProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * Сервер Reactor Netty для потокового API каталога.
+ * <p>
+ * Работает рядом с сервлетным контейнером MVC на отдельном порту {@code library.stream.port}: одно
+ * приложение Spring Boot не может обслуживать WebFlux и MVC в одном веб-сервере. Соединения обслуживаются
+ * циклами событий Netty, поэтому медленные клиенты не занимают по потоку на соединение.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@Slf4j
+public class CatalogStreamServer implements SmartLifecycle {
+
+    static final String BASE_PATH = "/library/stream";
+
+    private final StreamProperties streamProperties;
+
+    private final HttpHandler httpHandler;
+
+    private volatile DisposableServer server;
+
+    public CatalogStreamServer(StreamProperties streamProperties, CatalogStreamHandler handler,
+                               ObjectMapper objectMapper) {
+        this.streamProperties = streamProperties;
+        HandlerStrategies strategies = HandlerStrategies.builder()
+            .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(
+                new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)))
+            .build();
+        this.httpHandler = RouterFunctions.toHttpHandler(routes(handler), strategies);
+    }
+
+    static RouterFunction<ServerResponse> routes(CatalogStreamHandler handler) {
+        return RouterFunctions.route()
+            .path(BASE_PATH, builder -> builder
+                .route(GET("/books"), handler::streamBooks)
+                .route(GET("/users"), handler::streamUsers)
+                .route(GET("/loans"), handler::streamLoans))
+            .build();
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+            .port(streamProperties.port())
+            .handle(new ReactorHttpHandlerAdapter(httpHandler))
+            .bindNow();
+        log.info("Потоковый API каталога слушает порт {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow(Duration.ofSeconds(10));
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Фактический порт сервера, в том числе когда {@code library.stream.port} равен {@code 0}.
+     *
+     * @return порт или {@code -1}, если сервер не запущен
+     */
+    public int getPort() {
+        DisposableServer current = server;
+        return current == null ? -1 : current.port();
+    }
+}
@@ -0,0 +1,84 @@
+package library.util;
+
+import library.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция в упорядоченной по {@code (timestamp, id)} выборке.
+ * <p>
+ * Клиенту передается в виде непрозрачного токена, закодированного в Base64 URL.
+ *
+ * @param timestamp значение временной колонки последней отданной записи
+ * @param id        идентификатор последней отданной записи
+ * @author Avdeyev Viktor
+ */
+public record KeysetCursor(LocalDateTime timestamp, Long id) {
+
+    /**
+     * Размер страницы по умолчанию.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Максимально допустимый размер страницы.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Кодирует курсор в непрозрачный токен.
+     *
+     * @return токен продолжения
+     */
+    public String encode() {
+        String raw = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Декодирует токен, полученный от клиента.
+     *
+     * @param token токен продолжения, может быть {@code null} для первой страницы
+     * @return курсор или {@code null}, если токен не передан
+     * @throws BadRequestException если токен поврежден
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Некорректный курсор: " + token);
+            }
+            return new KeysetCursor(
+                LocalDateTime.parse(raw.substring(0, separator)),
+                Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("Некорректный курсор: " + token);
+        }
+    }
+
+    /**
+     * Приводит запрошенный размер страницы к допустимому диапазону.
+     *
+     * @param size запрошенный размер, может быть {@code null}
+     * @return размер страницы не больше {@link #MAX_PAGE_SIZE}
+     * @throws BadRequestException если размер меньше единицы
+     */
+    public static int pageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1) {
+            throw new BadRequestException("Размер страницы должен быть положительным");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,414 @@
+package library.warmup;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import library.config.WarmupProperties;
+import library.dto.BookLoanStats;
+import library.dto.UserLoanStats;
+import library.repository.BookRepository;
+import library.repository.LoanRepository;
+import library.repository.LoanStatsRepository;
+import library.repository.UserRepository;
+import library.service.BookService;
+import library.service.LoanService;
+import library.service.UserService;
+import library.util.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Прогрев приложения после старта веб-сервера и до готовности принимать трафик.
+ * <p>
+ * Spring Boot переводит приложение в {@code ReadinessState.ACCEPTING_TRAFFIC} после всех
+ * {@link ApplicationRunner}, поэтому проба {@code /actuator/health/readiness} зеленеет только после прогрева.
+ * Этапы выполняются по порядку:
+ * <ol>
+ *     <li>{@value #CONNECTIONS}: каждый пул Hikari открывает {@code minimumIdle} соединений сразу,
+ *     а не по мере первых запросов;</li>
+ *     <li>{@value #QUERIES}: каждый метод чтения репозиториев выполняется с заведомо несуществующими
+ *     аргументами, чтобы Hibernate разобрал и закэшировал запросы JPQL, а PostgreSQL - спланировал SQL;</li>
+ *     <li>{@value #CACHES}: в кэш загружаются первые страницы книг, доступных книг, пользователей и займов,
+ *     открытые займы и {@code library.warmup.top-items} самых востребованных книг и пользователей
+ *     по статистике займов;</li>
+ *     <li>{@value #REQUESTS}: GET-эндпоинты {@code library.warmup.request-rounds} раз вызываются
+ *     синтетическими запросами через локальный порт, чтобы JIT скомпилировал пути Tomcat, Spring MVC
+ *     и Jackson.</li>
+ * </ol>
+ * Ошибки отдельных операций не прерывают прогрев и не мешают старту. Итоги пишутся в журнал,
+ * в таймеры {@value #METRIC} с тегом {@code step} и в раздел {@code warmup} эндпоинта {@code /actuator/info};
+ * эффект прогрева виден по длительности первого и последнего прохода синтетических запросов.
+ *
+ * @author Avdeyev Viktor
+ */
+@Component
+@ConditionalOnProperty(name = "library.warmup.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class StartupWarmup implements ApplicationRunner, InfoContributor {
+
+    static final String METRIC = "library.warmup";
+
+    static final String CONNECTIONS = "connections";
+
+    static final String QUERIES = "queries";
+
+    static final String CACHES = "caches";
+
+    static final String REQUESTS = "requests";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Id, которых нет в базе данных: запросы с ними планируются и выполняются, но ничего не находят.
+     */
+    private static final long MISSING_ID = -1L;
+
+    private static final LocalDate FAR_DATE = LocalDate.of(9999, 12, 31);
+
+    private static final KeysetCursor FAR_CURSOR = new KeysetCursor(FAR_DATE.atStartOfDay(), MISSING_ID);
+
+    /**
+     * Эндпоинты без параметров. Списки открытых и просроченных займов не ограничены по размеру,
+     * поэтому они только загружаются в кэш, а не запрашиваются на каждом проходе.
+     */
+    private static final List<String> PATHS = List.of(
+        "/library/books",
+        "/library/books/available",
+        "/library/books/available/count",
+        "/library/users",
+        "/library/loans",
+        "/library/stats/books/top",
+        "/library/stats/authors/top",
+        "/library/stats/users/top"
+    );
+
+    private final ApplicationContext applicationContext;
+
+    private final ObjectProvider<HikariDataSource> pools;
+
+    private final BookRepository bookRepository;
+
+    private final UserRepository userRepository;
+
+    private final LoanRepository loanRepository;
+
+    private final LoanStatsRepository loanStatsRepository;
+
+    private final BookService bookService;
+
+    private final UserService userService;
+
+    private final LoanService loanService;
+
+    private final WarmupProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private volatile WarmupReport report;
+
+    public StartupWarmup(ApplicationContext applicationContext, ObjectProvider<HikariDataSource> pools,
+                         BookRepository bookRepository, UserRepository userRepository,
+                         LoanRepository loanRepository, LoanStatsRepository loanStatsRepository,
+                         BookService bookService, UserService userService, LoanService loanService,
+                         WarmupProperties properties, MeterRegistry meterRegistry) {
+        this.applicationContext = applicationContext;
+        this.pools = pools;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.loanRepository = loanRepository;
+        this.loanStatsRepository = loanStatsRepository;
+        this.bookService = bookService;
+        this.userService = userService;
+        this.loanService = loanService;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("warmup - начало");
+        long startTime = System.nanoTime();
+        WarmupRun run = new WarmupRun(startTime + properties.timeout().toNanos());
+
+        run.step(CONNECTIONS, this::openConnections);
+        run.step(QUERIES, this::prepareQueries);
+        run.step(CACHES, this::loadCaches);
+        run.step(REQUESTS, this::sendRequests);
+
+        report = new WarmupReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), run.timedOut,
+            List.copyOf(run.steps), run.firstRoundMillis, run.lastRoundMillis);
+        log.info("warmup - конец, заняло {} мс, этапы: {}, проходы запросов: первый {} мс, последний {} мс{}",
+            report.durationMillis(), report.steps(), report.firstRoundMillis(), report.lastRoundMillis(),
+            report.timedOut() ? ", остановлен по таймауту" : "");
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        WarmupReport current = report;
+        if (current != null) {
+            builder.withDetail("warmup", current);
+        }
+    }
+
+    /**
+     * Итоги последнего прогрева.
+     *
+     * @return итоги или {@code null}, если прогрев еще не закончен
+     */
+    public WarmupReport getReport() {
+        return report;
+    }
+
+    private void openConnections(StepRun step) {
+        pools.orderedStream().forEach(pool -> step.run(pool.getPoolName(), () -> openConnections(pool)));
+    }
+
+    /**
+     * Взять у пула {@code minimumIdle} соединений одновременно и вернуть их: пул создает недостающие сразу.
+     */
+    private static void openConnections(HikariDataSource pool) {
+        int count = pool.getMinimumIdle() > 0 ? pool.getMinimumIdle() : pool.getMaximumPoolSize();
+        List<Connection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                connections.add(pool.getConnection());
+            }
+        } catch (SQLException ex) {
+            throw new CannotGetJdbcConnectionException("Пул " + pool.getPoolName() + " не выдал соединение", ex);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    log.debug("warmup - соединение не закрыто: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void prepareQueries(StepRun step) {
+        Set<Long> missingIds = Set.of(MISSING_ID);
+        step.run("BookRepository.findPage", () -> bookRepository.findPage(null, 1));
+        step.run("BookRepository.findPage после курсора", () -> bookRepository.findPage(FAR_CURSOR, 1));
+        step.run("BookRepository.findById", () -> bookRepository.findById(MISSING_ID));
+        step.run("BookRepository.findByIdWithLoans", () -> bookRepository.findByIdWithLoans(MISSING_ID));
+        step.run("BookRepository.findByTitle", () -> bookRepository.findByTitle(""));
+        step.run("BookRepository.findSummariesByIds", () -> bookRepository.findSummariesByIds(missingIds));
+        step.run("BookRepository.findByAuthor", () -> bookRepository.findByAuthor(""));
+        step.run("BookRepository.findByPublishedYearAfter",
+            () -> bookRepository.findByPublishedYearAfter(FAR_DATE.getYear()));
+        step.run("BookRepository.findByPageCountGreaterThan",
+            () -> bookRepository.findByPageCountGreaterThan(Integer.MAX_VALUE));
+        step.run("BookRepository.findExistingIds", () -> bookRepository.findExistingIds(missingIds));
+        step.run("UserRepository.findPage", () -> userRepository.findPage(null, 1));
+        step.run("UserRepository.findPage после курсора", () -> userRepository.findPage(FAR_CURSOR, 1));
+        step.run("UserRepository.findById", () -> userRepository.findById(MISSING_ID));
+        step.run("UserRepository.findByIdWithLoans", () -> userRepository.findByIdWithLoans(MISSING_ID));
+        step.run("UserRepository.findByFirstName", () -> userRepository.findByFirstName(""));
+        step.run("UserRepository.findByLastName", () -> userRepository.findByLastName(""));
+        step.run("UserRepository.findByDateRegistrationAfter",
+            () -> userRepository.findByDateRegistrationAfter(FAR_DATE));
+        step.run("LoanRepository.findPage", () -> loanRepository.findPage(null, 1));
+        step.run("LoanRepository.findPage после курсора", () -> loanRepository.findPage(FAR_CURSOR, 1));
+        step.run("LoanRepository.findById", () -> loanRepository.findById(MISSING_ID));
+        step.run("LoanRepository.findViewById", () -> loanRepository.findViewById(MISSING_ID));
+        step.run("LoanRepository.findByUserId", () -> loanRepository.findByUserId(MISSING_ID));
+        step.run("LoanRepository.findExistingIds", () -> loanRepository.findExistingIds(missingIds));
+        step.run("LoanStatsRepository.findBookStats", () -> loanStatsRepository.findBookStats(MISSING_ID));
+        step.run("LoanStatsRepository.findTopAuthors", () -> loanStatsRepository.findTopAuthors(1));
+        step.run("LoanStatsRepository.findUserStats", () -> loanStatsRepository.findUserStats(MISSING_ID));
+    }
+
+    private void loadCaches(StepRun step) {
+        step.run("BookService.findPage", () -> bookService.findPage(null, null));
+        step.run("BookService.findAvailable", () -> bookService.findAvailable(null, null));
+        step.run("UserService.findPage", () -> userService.findPage(null, null));
+        step.run("LoanService.findPage", () -> loanService.findPage(null, null));
+        step.run("LoanService.findByReturnedFalse", loanService::findByReturnedFalse);
+
+        List<BookLoanStats> topBooks = step.call("LoanStatsRepository.findTopBooks",
+            () -> loanStatsRepository.findTopBooks(properties.topItems()));
+        if (topBooks != null) {
+            for (BookLoanStats book : topBooks) {
+                step.run("BookService.findById", () -> bookService.findById(book.bookId()));
+            }
+            step.warmup.hotBookId = topBooks.isEmpty() ? null : topBooks.get(0).bookId();
+        }
+        List<UserLoanStats> topUsers = step.call("LoanStatsRepository.findTopActiveUsers",
+            () -> loanStatsRepository.findTopActiveUsers(properties.topItems()));
+        if (topUsers != null) {
+            for (UserLoanStats user : topUsers) {
+                step.run("UserService.findById", () -> userService.findById(user.userId()));
+                step.run("LoanService.findByUserId", () -> loanService.findByUserId(user.userId()));
+            }
+            step.warmup.hotUserId = topUsers.isEmpty() ? null : topUsers.get(0).userId();
+        }
+    }
+
+    private void sendRequests(StepRun step) {
+        if (!(applicationContext instanceof WebServerApplicationContext webContext)
+            || webContext.getWebServer() == null || webContext.getWebServer().getPort() <= 0) {
+            log.info("warmup - веб-сервер не запущен, синтетические запросы пропущены");
+            return;
+        }
+        String base = "http://localhost:" + webContext.getWebServer().getPort()
+            + applicationContext.getEnvironment().getProperty("server.servlet.context-path", "");
+        List<URI> uris = new ArrayList<>();
+        PATHS.forEach(path -> uris.add(URI.create(base + path)));
+        Long hotBookId = step.warmup.hotBookId;
+        if (hotBookId != null) {
+            uris.add(URI.create(base + "/library/books/" + hotBookId));
+            uris.add(URI.create(base + "/library/stats/books/" + hotBookId));
+        }
+        Long hotUserId = step.warmup.hotUserId;
+        if (hotUserId != null) {
+            uris.add(URI.create(base + "/library/users/" + hotUserId));
+            uris.add(URI.create(base + "/library/loans/user/" + hotUserId));
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        for (int round = 0; round < properties.requestRounds() && !step.warmup.isTimedOut(); round++) {
+            long roundStart = System.nanoTime();
+            for (URI uri : uris) {
+                step.run(uri.getPath(), () -> send(client, uri));
+            }
+            long roundMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundStart);
+            if (round == 0) {
+                step.warmup.firstRoundMillis = roundMillis;
+            }
+            step.warmup.lastRoundMillis = roundMillis;
+        }
+    }
+
+    private static void send(HttpClient client, URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+            .timeout(REQUEST_TIMEOUT)
+            .GET()
+            .build();
+        HttpResponse<Void> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прогрев прерван", ex);
+        }
+        if (response.statusCode() >= 500) {
+            throw new IllegalStateException("Ответ " + response.statusCode());
+        }
+    }
+
+    /**
+     * Состояние одного прогрева.
+     */
+    private final class WarmupRun {
+
+        private final long deadline;
+
+        private final List<WarmupReport.Step> steps = new ArrayList<>();
+
+        private boolean timedOut;
+
+        private Long hotBookId;
+
+        private Long hotUserId;
+
+        private Long firstRoundMillis;
+
+        private Long lastRoundMillis;
+
+        WarmupRun(long deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean isTimedOut() {
+            if (!timedOut && System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                log.warn("warmup - истек таймаут {}, оставшиеся операции пропущены", properties.timeout());
+            }
+            return timedOut;
+        }
+
+        void step(String name, Consumer<StepRun> body) {
+            StepRun step = new StepRun(this, name);
+            long start = System.nanoTime();
+            body.accept(step);
+            long nanos = System.nanoTime() - start;
+            Timer.builder(METRIC).tag("step", name).register(meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+            steps.add(new WarmupReport.Step(name, TimeUnit.NANOSECONDS.toMillis(nanos), step.operations,
+                step.failures));
+        }
+    }
+
+    /**
+     * Операции одного этапа: ошибки считаются, первая пишется в журнал, после таймаута операции пропускаются.
+     */
+    private static final class StepRun {
+
+        private final WarmupRun warmup;
+
+        private final String name;
+
+        private int operations;
+
+        private int failures;
+
+        StepRun(WarmupRun warmup, String name) {
+            this.warmup = warmup;
+            this.name = name;
+        }
+
+        void run(String operation, Runnable action) {
+            call(operation, () -> {
+                action.run();
+                return Boolean.TRUE;
+            });
+        }
+
+        <T> T call(String operation, Supplier<T> action) {
+            if (warmup.isTimedOut()) {
+                return null;
+            }
+            operations++;
+            try {
+                return action.get();
+            } catch (RuntimeException ex) {
+                failures++;
+                if (failures == 1) {
+                    log.warn("warmup - {}: операция {} завершилась ошибкой: {}", name, operation, ex.toString());
+                }
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package library.warmup;
+
+import java.util.List;
+
+/**
+ * Итоги прогрева приложения при старте.
+ *
+ * @param durationMillis   длительность прогрева
+ * @param timedOut         прогрев остановлен по {@code library.warmup.timeout}
+ * @param steps            итоги этапов в порядке выполнения
+ * @param firstRoundMillis длительность первого прохода синтетических запросов или {@code null}, если их не было
+ * @param lastRoundMillis  длительность последнего прохода синтетических запросов или {@code null}, если их не было
+ * @author Avdeyev Viktor
+ */
+public record WarmupReport(
+    long durationMillis,
+    boolean timedOut,
+    List<Step> steps,
+    Long firstRoundMillis,
+    Long lastRoundMillis
+) {
+
+    /**
+     * Итоги этапа прогрева.
+     *
+     * @param name       этап
+     * @param millis     длительность этапа
+     * @param operations выполнено операций
+     * @param failures   операций завершилось ошибкой
+     */
+    public record Step(String name, long millis, int operations, int failures) {
+    }
+}
@@ -0,0 +1,337 @@
+package library;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import library.schema.SchemaMigration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Проверка нативного исполняемого файла: запросы ко всем контроллерам, springdoc и actuator.
+ * <p>
+ * Запускается профилем Maven {@code native} после сборки {@code target/library}; путь к файлу передается
+ * в {@code -Dlibrary.native.executable}. База данных - встроенный PostgreSQL или {@code -Dlibrary.native.jdbc-url};
+ * схему создает {@link SchemaMigration} в JVM теста, нативное приложение при старте проверяет ее тег. Кэш - Redis
+ * на {@code -Dlibrary.native.redis-host}: ответы повторных запросов читаются из него, что проверяет
+ * Java-сериализацию значений кэша в образе. Журнал приложения пишется во временный каталог,
+ * путь к которому выводится при ошибке запуска.
+ *
+ * @author Avdeyev Viktor
+ */
+class LibraryNativeIT {
+
+    static final String EXECUTABLE_PROPERTY = "library.native.executable";
+
+    static final String JDBC_URL_PROPERTY = "library.native.jdbc-url";
+
+    static final String REDIS_HOST_PROPERTY = "library.native.redis-host";
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(1);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private static EmbeddedPostgres postgres;
+
+    private static Path workDir;
+
+    private static Process application;
+
+    private static HttpClient client;
+
+    private static String baseUrl;
+
+    @BeforeAll
+    static void start() throws IOException, InterruptedException {
+        String executable = System.getProperty(EXECUTABLE_PROPERTY);
+        assumeTrue(executable != null && Files.isExecutable(Path.of(executable)),
+            "Нативный исполняемый файл не собран: " + executable);
+
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl == null) {
+            postgres = EmbeddedPostgres.builder().start();
+            jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+        }
+        assertThat(SchemaMigration.run("--spring.datasource.url=" + jdbcUrl, "--spring.docker.compose.enabled=false"))
+            .isZero();
+        workDir = Files.createTempDirectory("library-native-it");
+        int port = freePort();
+        baseUrl = "http://localhost:" + port;
+        Path log = workDir.resolve("library.log");
+        application = new ProcessBuilder(List.of(executable,
+            "--server.port=" + port,
+            "--spring.datasource.url=" + jdbcUrl,
+            "--spring.data.redis.host=" + System.getProperty(REDIS_HOST_PROPERTY, "localhost"),
+            "--spring.docker.compose.enabled=false",
+            "--library.stream.port=0",
+            "--library.warmup.request-rounds=5"))
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+        long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+        while (status("/actuator/health/readiness") != 200) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("Приложение завершилось с кодом " + application.exitValue()
+                    + ", журнал: " + log);
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Приложение не готово за " + START_TIMEOUT + ", журнал: " + log);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @AfterAll
+    static void stop() throws IOException, InterruptedException {
+        if (application != null) {
+            application.destroy();
+            if (!application.waitFor(30, TimeUnit.SECONDS)) {
+                application.destroyForcibly().waitFor();
+            }
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Test
+    void bookController() throws IOException, InterruptedException {
+        String title = uniqueName("Книга");
+        long bookId = createBook(title);
+
+        HttpResponse<String> book = send("GET", "/library/books/" + bookId, null);
+        assertThat(book.statusCode()).isEqualTo(200);
+        assertThat(json(book).path("title").asText()).isEqualTo(title);
+        String etag = book.headers().firstValue("ETag").orElseThrow();
+        HttpRequest conditional = request("GET", "/library/books/" + bookId, null)
+            .header("If-None-Match", etag)
+            .build();
+        assertThat(client.send(conditional, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(304);
+        // повторный запрос - из кэша
+        assertThat(json(send("GET", "/library/books/" + bookId, null)).path("id").asLong()).isEqualTo(bookId);
+
+        assertThat(send("GET", "/library/books/" + bookId + "/details", null).statusCode()).isEqualTo(200);
+        assertThat(send("GET", "/library/books/title/" + encode(title), null).statusCode()).isEqualTo(200);
+        assertThat(send("HEAD", "/library/books/" + bookId + "/available", null).statusCode()).isEqualTo(200);
+        assertThat(json(send("GET", "/library/books", null)).path("items").isArray()).isTrue();
+        assertThat(json(send("GET", "/library/books/available", null)).path("items").isArray()).isTrue();
+        assertThat(json(send("GET", "/library/books/available/count", null)).has("onLoan")).isTrue();
+        assertThat(send("GET", "/library/books/search?q=" + encode(title), null).statusCode()).isEqualTo(200);
+
+        HttpResponse<String> updated = send("PUT", "/library/books/" + bookId, """
+            {"title": "%s", "author": "Автор", "publishedYear": 2001, "pageCount": 321}
+            """.formatted(title));
+        assertThat(json(updated).path("pageCount").asInt()).isEqualTo(321);
+
+        HttpRequest importRequest = request("POST", "/library/books/import", """
+            {"title": "%s", "author": "Автор", "publishedYear": 1999, "pageCount": 100}
+            {"title": null, "pageCount": 100}
+            """.formatted(uniqueName("Импорт")))
+            .header("Content-Type", "application/x-ndjson")
+            .build();
+        JsonNode report = MAPPER.readTree(client.send(importRequest, HttpResponse.BodyHandlers.ofString()).body());
+        assertThat(report.path("imported").asLong()).isEqualTo(1);
+        assertThat(report.path("failed").asLong()).isEqualTo(1);
+
+        assertThat(send("DELETE", "/library/books/" + bookId, null).statusCode()).isEqualTo(204);
+        awaitStatus("/library/books/" + bookId, 404);
+    }
+
+    @Test
+    void userController() throws IOException, InterruptedException {
+        String firstName = uniqueName("Имя");
+        long userId = createUser(firstName);
+
+        HttpResponse<String> user = send("GET", "/library/users/" + userId, null);
+        assertThat(user.statusCode()).isEqualTo(200);
+        assertThat(json(user).path("role").asText()).isEqualTo("READER");
+        assertThat(json(send("GET", "/library/users/" + userId, null)).path("firstName").asText())
+            .isEqualTo(firstName);
+
+        assertThat(send("GET", "/library/users/" + userId + "/details", null).statusCode()).isEqualTo(200);
+        assertThat(json(send("GET", "/library/users/first-name/" + encode(firstName), null))).hasSize(1);
+        assertThat(send("GET", "/library/users/last-name/" + encode("Фамилия"), null).statusCode()).isEqualTo(200);
+        assertThat(send("GET", "/library/users/registered-after/2000-01-01", null).statusCode()).isEqualTo(200);
+        assertThat(json(send("GET", "/library/users", null)).path("items").isArray()).isTrue();
+
+        HttpResponse<String> updated = send("PUT", "/library/users/" + userId, """
+            {"firstName": "%s", "lastName": "Другая", "birthDate": "1990-05-17", "role": "READER"}
+            """.formatted(firstName));
+        assertThat(json(updated).path("lastName").asText()).isEqualTo("Другая");
+
+        assertThat(send("DELETE", "/library/users/" + userId, null).statusCode()).isEqualTo(204);
+        awaitStatus("/library/users/" + userId, 404);
+    }
+
+    @Test
+    void loanController() throws IOException, InterruptedException {
+        long userId = createUser(uniqueName("Читатель"));
+        long bookId = createBook(uniqueName("Выдача"));
+        long secondBookId = createBook(uniqueName("Пакет"));
+
+        long loanId = createLoan(userId, bookId);
+        assertThat(send("HEAD", "/library/books/" + bookId + "/available", null).statusCode()).isEqualTo(409);
+        assertThat(send("GET", "/library/loans/" + loanId, null).statusCode()).isEqualTo(200);
+        assertThat(json(send("GET", "/library/loans/user/" + userId, null))).hasSize(1);
+        assertThat(json(send("GET", "/library/loans/user/" + userId, null))).hasSize(1);
+        assertThat(send("GET", "/library/loans/not-returned", null).statusCode()).isEqualTo(200);
+        assertThat(send("GET", "/library/loans/overdue", null).statusCode()).isEqualTo(200);
+        assertThat(json(send("GET", "/library/loans", null)).path("items").isArray()).isTrue();
+
+        assertThat(send("PUT", "/library/loans/" + loanId + "/return-status?returned=true", null).statusCode())
+            .isEqualTo(204);
+        assertThat(send("HEAD", "/library/books/" + bookId + "/available", null).statusCode()).isEqualTo(200);
+
+        JsonNode checkout = json(send("POST", "/library/loans/batch-checkout", """
+            {"userId": %d, "bookIds": [%d, %d]}
+            """.formatted(userId, bookId, secondBookId)));
+        assertThat(checkout.findValuesAsText("status")).containsExactly("CHECKED_OUT", "CHECKED_OUT");
+        JsonNode returned = json(send("POST", "/library/loans/batch-return", """
+            {"loanIds": [%d, %d]}
+            """.formatted(checkout.get(0).path("loanId").asLong(), checkout.get(1).path("loanId").asLong())));
+        assertThat(returned.findValuesAsText("status")).containsExactly("RETURNED", "RETURNED");
+
+        assertThat(send("DELETE", "/library/loans/" + loanId, null).statusCode()).isEqualTo(204);
+        awaitStatus("/library/loans/" + loanId, 404);
+    }
+
+    @Test
+    void statsController() throws IOException, InterruptedException {
+        long userId = createUser(uniqueName("Статистика"));
+        long bookId = createBook(uniqueName("Статистика"));
+        createLoan(userId, bookId);
+
+        assertThat(send("POST", "/library/stats/rebuild", null).statusCode()).isEqualTo(204);
+        assertThat(json(send("GET", "/library/stats/books/" + bookId, null)).path("loans").asLong()).isEqualTo(1);
+        assertThat(json(send("GET", "/library/stats/users/" + userId, null)).path("activeLoans").asInt())
+            .isEqualTo(1);
+        assertThat(json(send("GET", "/library/stats/books/top?limit=5", null)).isArray()).isTrue();
+        assertThat(json(send("GET", "/library/stats/authors/top?limit=5", null)).isArray()).isTrue();
+        assertThat(json(send("GET", "/library/stats/users/top?limit=5", null)).isArray()).isTrue();
+    }
+
+    @Test
+    void cacheController() throws IOException, InterruptedException {
+        send("GET", "/library/books", null);
+
+        JsonNode stats = json(send("GET", "/library/cache/stats", null));
+        assertThat(stats.isArray()).isTrue();
+        assertThat(stats.findValuesAsText("name")).isNotEmpty();
+    }
+
+    @Test
+    void apiDocsAndActuator() throws IOException, InterruptedException {
+        JsonNode apiDocs = json(send("GET", "/v3/api-docs", null));
+        assertThat(apiDocs.path("paths").has("/library/books")).isTrue();
+        assertThat(send("GET", "/swagger-ui/index.html", null).statusCode()).isEqualTo(200);
+
+        assertThat(json(send("GET", "/actuator/health", null)).path("status").asText()).isEqualTo("UP");
+        assertThat(json(send("GET", "/actuator/info", null)).has("warmup")).isTrue();
+        assertThat(send("GET", "/actuator/prometheus", null).body()).contains("library_warmup");
+    }
+
+    private static long createBook(String title) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/library/books", """
+            {"title": "%s", "author": "Автор", "publishedYear": 2000, "pageCount": 123}
+            """.formatted(title));
+        assertThat(response.statusCode()).isEqualTo(200);
+        return json(response).path("id").asLong();
+    }
+
+    private static long createUser(String firstName) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/library/users", """
+            {"firstName": "%s", "lastName": "Фамилия", "birthDate": "1990-05-17", "role": "READER"}
+            """.formatted(firstName));
+        assertThat(response.statusCode()).isEqualTo(200);
+        return json(response).path("id").asLong();
+    }
+
+    private static long createLoan(long userId, long bookId) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/library/loans", """
+            {"user": {"id": %d}, "book": {"id": %d}}
+            """.formatted(userId, bookId));
+        assertThat(response.statusCode()).isEqualTo(200);
+        return json(response).path("id").asLong();
+    }
+
+    private static String uniqueName(String prefix) {
+        return prefix + " " + ProcessHandle.current().pid() + "-" + SEQUENCE.incrementAndGet();
+    }
+
+    private static HttpResponse<String> send(String method, String path, String json)
+        throws IOException, InterruptedException {
+        HttpRequest.Builder builder = request(method, path, json);
+        if (json != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.Builder request(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+    }
+
+    private static JsonNode json(HttpResponse<String> response) throws IOException {
+        assertThat(response.statusCode()).as("%s %s", response.request().method(), response.uri()).isEqualTo(200);
+        return MAPPER.readTree(response.body());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * Дождаться ответа с кодом: кэш инвалидируется после фиксации в отдельном потоке, а не до ответа на запись.
+     */
+    private static void awaitStatus(String path, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (status(path) != expected && System.nanoTime() - deadline < 0) {
+            Thread.sleep(20);
+        }
+        assertThat(status(path)).as("GET %s", path).isEqualTo(expected);
+    }
+
+    private static int status(String path) throws InterruptedException {
+        try {
+            return client.send(request("GET", path, null).build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
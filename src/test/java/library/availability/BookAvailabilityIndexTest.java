@@ -0,0 +1,76 @@
+package library.availability;
+
+import library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class BookAvailabilityIndexTest {
+
+    private BookRepository repository;
+
+    private BookAvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BookRepository.class);
+        doAnswer(invocation -> {
+            BiConsumer<Long, Boolean> consumer = invocation.getArgument(0);
+            consumer.accept(1L, true);
+            consumer.accept(2L, false);
+            consumer.accept(5L, true);
+            consumer.accept(9L, true);
+            return null;
+        }).when(repository).scanAvailability(any());
+        index = new BookAvailabilityIndex(repository);
+        index.reconcile();
+    }
+
+    @Test
+    void reconcileLoadsBooksFromDatabase() {
+        assertThat(index.count()).isEqualTo(4);
+        assertThat(index.countAvailable()).isEqualTo(3);
+        assertThat(index.contains(2L)).isTrue();
+        assertThat(index.isAvailable(2L)).isFalse();
+        assertThat(index.contains(3L)).isFalse();
+    }
+
+    @Test
+    void pagesAvailableIdsAfterCursor() {
+        assertThat(index.findAvailableAfter(null, 2)).containsExactly(1L, 5L);
+        assertThat(index.findAvailableAfter(5L, 2)).containsExactly(9L);
+        assertThat(index.findAvailableAfter(9L, 2)).isEmpty();
+    }
+
+    @Test
+    void tracksCheckoutReturnAndDelete() {
+        index.put(1L, false);
+        index.put(2L, true);
+        index.remove(9L);
+
+        assertThat(index.findAvailableAfter(null, 10)).containsExactly(2L, 5L);
+        assertThat(index.count()).isEqualTo(3);
+    }
+
+    @Test
+    void changeDuringReconcileIsNotLostToStaleSnapshot() {
+        doAnswer(invocation -> {
+            BiConsumer<Long, Boolean> consumer = invocation.getArgument(0);
+            consumer.accept(1L, true);
+            // книга выдана после того, как снимок прочитал ее строку
+            index.put(1L, false);
+            return null;
+        }).when(repository).scanAvailability(any());
+
+        index.reconcile();
+
+        assertThat(index.isAvailable(1L)).isFalse();
+        assertThat(index.count()).isEqualTo(1);
+    }
+}
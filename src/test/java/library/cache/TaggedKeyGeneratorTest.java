@@ -0,0 +1,167 @@
+package library.cache;
+
+import library.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringJUnitConfig(TaggedKeyGeneratorTest.Config.class)
+class TaggedKeyGeneratorTest {
+
+    @Autowired
+    private Catalog catalog;
+
+    @Autowired
+    private CacheTags cacheTags;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void sameArgumentOfDifferentQueriesDoesNotCollide() {
+        assertThat(catalog.findByTitle("1984")).isEqualTo("title:1984");
+        assertThat(catalog.findByAuthor("1984")).isEqualTo("author:1984");
+    }
+
+    @Test
+    void invalidatingTagEvictsOnlyDependentEntries() {
+        catalog.findByAuthor("Orwell");
+        catalog.findByAuthor("Huxley");
+        int loads = catalog.loads();
+
+        cacheTags.invalidate(List.of("author:Orwell"));
+        catalog.findByAuthor("Orwell");
+        catalog.findByAuthor("Huxley");
+
+        assertThat(catalog.loads()).isEqualTo(loads + 1);
+    }
+
+    @Test
+    void entryIsInvalidatedByAnyOfItsTags() {
+        catalog.findByAuthor("Orwell");
+        int loads = catalog.loads();
+
+        cacheTags.invalidate(List.of("authors"));
+        catalog.findByAuthor("Orwell");
+
+        assertThat(catalog.loads()).isEqualTo(loads + 1);
+    }
+
+    @Test
+    void readingVersionOfAbsentTagDoesNotWriteIt() {
+        catalog.findByTitle("Dune");
+        TwoTierCache versions = (TwoTierCache) cacheManager.getCache(CacheTags.CACHE_NAME);
+        long puts = versions.putCount();
+
+        assertThat(cacheTags.current("title:Dune")).isEqualTo(CacheTags.ABSENT_VERSION);
+        assertThat(versions.get("title:Dune")).isNull();
+        assertThat(versions.putCount()).isEqualTo(puts);
+
+        cacheTags.invalidate(List.of("title:Dune"));
+
+        assertThat(cacheTags.current("title:Dune")).isNotEqualTo(CacheTags.ABSENT_VERSION);
+    }
+
+    @Test
+    void expiringVersionsGiveAbsentTagVersionOfCurrentPeriod() {
+        CacheProperties properties = new CacheProperties();
+        properties.getRedis().setTimeToLive(Duration.ofHours(12));
+        CacheTags expiring = new CacheTags(cacheManager, properties);
+
+        assertThat(expiring.current("title:Solaris")).matches(CacheTags.ABSENT_VERSION + "-[0-9a-z]+");
+        assertThat(cacheManager.getCache(CacheTags.CACHE_NAME).get("title:Solaris")).isNull();
+    }
+
+    @Test
+    void pageSizeEntersKeyAfterClamping() {
+        catalog.findPage(null);
+        catalog.findPage(1_000);
+        int loads = catalog.loads();
+
+        catalog.findPage(KeysetCursor.DEFAULT_PAGE_SIZE);
+        catalog.findPage(KeysetCursor.MAX_PAGE_SIZE);
+        catalog.findPage(Integer.MAX_VALUE);
+
+        assertThat(catalog.loads()).isEqualTo(loads);
+    }
+
+    @Test
+    void tagTemplateReferencesArguments() {
+        assertThat(TaggedKeyGenerator.resolve("book:{0}", 42L)).isEqualTo("book:42");
+    }
+
+    static class Catalog {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        public int loads() {
+            return loads.get();
+        }
+
+        @Cacheable("books")
+        @CacheTag("title:{0}")
+        public String findByTitle(String title) {
+            loads.incrementAndGet();
+            return "title:" + title;
+        }
+
+        @Cacheable("books")
+        @CacheTag({"author:{0}", "authors"})
+        public String findByAuthor(String author) {
+            loads.incrementAndGet();
+            return "author:" + author;
+        }
+
+        @Cacheable("books")
+        public String findPage(@PageSize Integer size) {
+            loads.incrementAndGet();
+            return "page:" + KeysetCursor.pageSize(size);
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config implements CachingConfigurer {
+
+        @Autowired
+        private ObjectProvider<CacheTags> cacheTags;
+
+        @Bean
+        @Override
+        public KeyGenerator keyGenerator() {
+            return new TaggedKeyGenerator(cacheTags);
+        }
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new TwoTierCacheManager(new ConcurrentMapCacheManager(), new InMemoryCacheInvalidationBus(),
+                1_000_000, Duration.ofMinutes(10));
+        }
+
+        @Bean
+        public CacheTags cacheTags(CacheManager cacheManager) {
+            return new CacheTags(cacheManager, new CacheProperties());
+        }
+
+        @Bean
+        public Catalog catalog() {
+            return new Catalog();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package library.cache;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import library.dto.CursorPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TwoTierCacheManagerTest {
+
+    private static final int CONCURRENT_LOADS = 8;
+
+    private ConcurrentMapCacheManager remote;
+
+    private TwoTierCacheManager nodeA;
+
+    private TwoTierCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        nodeA = new TwoTierCacheManager(remote, bus, 1_000_000, Duration.ofMinutes(10));
+        nodeB = new TwoTierCacheManager(remote, bus, 1_000_000, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void remoteHitIsPromotedToLocalTier() {
+        nodeA.getCache("books").put(1L, "Dune");
+        Cache books = nodeB.getCache("books");
+
+        assertThat(books.get(1L).get()).isEqualTo("Dune");
+        assertThat(books.get(1L).get()).isEqualTo("Dune");
+
+        TwoTierCacheStats stats = ((TwoTierCache) books).stats();
+        assertThat(stats.remote().hits()).isEqualTo(1);
+        assertThat(stats.local().hits()).isEqualTo(1);
+        assertThat(stats.localBytes()).isPositive();
+    }
+
+    @Test
+    void writeOnOneNodeInvalidatesLocalTierOfOthers() {
+        nodeA.getCache("books").put(1L, "Dune");
+        nodeB.getCache("books").get(1L);
+
+        nodeA.getCache("books").put(1L, "Dune Messiah");
+
+        assertThat(nodeB.getCache("books").get(1L).get()).isEqualTo("Dune Messiah");
+    }
+
+    @Test
+    void clearReachesLocalTierOfOthers() {
+        nodeA.getCache("books").put(1L, "Dune");
+        nodeB.getCache("books").get(1L);
+
+        nodeA.getCache("books").clear();
+
+        assertThat(nodeB.getCache("books").get(1L)).isNull();
+        assertThat(remote.getCache("books").get(1L)).isNull();
+    }
+
+    @Test
+    void loadOnMissQueriesRemoteOnceAndDoesNotInvalidateOthers() {
+        Cache remoteBooks = spy(remote.getCache("books"));
+        ConcurrentMapCacheManager spied = new ConcurrentMapCacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                return remoteBooks;
+            }
+        };
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        TwoTierCacheManager loader = new TwoTierCacheManager(spied, bus, 1_000_000, Duration.ofMinutes(10));
+        TwoTierCacheManager other = new TwoTierCacheManager(spied, bus, 1_000_000, Duration.ofMinutes(10));
+        other.getCache("books").get(1L);
+
+        assertThat(loader.getCache("books").get(1L, () -> "Dune")).isEqualTo("Dune");
+
+        verify(remoteBooks, times(2)).get(1L);
+        verify(remoteBooks).put(1L, "Dune");
+        assertThat(((TwoTierCache) other.getCache("books")).stats().local().evictions()).isZero();
+        assertThat(other.getCache("books").get(1L).get()).isEqualTo("Dune");
+    }
+
+    @Test
+    void concurrentMissesLoadValueOnce() throws Exception {
+        TwoTierCache books = (TwoTierCache) nodeA.getCache("books");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = loadConcurrently(books, () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "Dune";
+        }, release);
+
+        for (Future<Object> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("Dune");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(books.putCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedLoadReachesEveryWaiterAndIsRetried() throws Exception {
+        TwoTierCache books = (TwoTierCache) nodeA.getCache("books");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = loadConcurrently(books, () -> {
+            loads.incrementAndGet();
+            release.await();
+            throw new IllegalStateException("база недоступна");
+        }, release);
+
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(Cache.ValueRetrievalException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(books.get(1L, () -> "Dune")).isEqualTo("Dune");
+    }
+
+    /**
+     * Запустить загрузку одного ключа из нескольких потоков и отпустить загрузчик, когда промах в L2
+     * получат все потоки: без объединения загрузок каждый из них вызвал бы загрузчик.
+     */
+    private static List<Future<Object>> loadConcurrently(TwoTierCache cache, Callable<Object> loader,
+                                                         CountDownLatch release) {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_LOADS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_LOADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(1L, loader);
+                }));
+            }
+            start.countDown();
+            await().atMost(Duration.ofSeconds(10))
+                .until(() -> cache.stats().remote().misses() == CONCURRENT_LOADS);
+            release.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void weightIsEstimatedFromValueShape() {
+        int small = TwoTierCacheManager.weigh(1L, new CursorPage<>(List.of("a"), null));
+        int large = TwoTierCacheManager.weigh(1L, new CursorPage<>(Collections.nCopies(500, "a"), null));
+
+        assertThat(TwoTierCacheManager.weigh(1L, "x".repeat(1000))).isGreaterThan(2000);
+        assertThat(large - small).isGreaterThan(499 * 40);
+        assertThat(TwoTierCacheManager.weigh(1L, new Object())).isEqualTo(TwoTierCacheManager.OBJECT_WEIGHT);
+    }
+
+    @Test
+    void localTierIsBoundedByWeight() {
+        TwoTierCacheManager small = new TwoTierCacheManager(remote, new InMemoryCacheInvalidationBus(), 2_000,
+            Duration.ofMinutes(10));
+        Cache cache = small.getCache("users");
+        for (long i = 0; i < 100; i++) {
+            cache.put(i, "user-" + i + "-".repeat(200));
+        }
+
+        TwoTierCache twoTier = (TwoTierCache) cache;
+        assertThat(twoTier.stats().localBytes()).isLessThanOrEqualTo(2_000);
+        assertThat(twoTier.stats().local().evictions()).isPositive();
+    }
+
+    @Test
+    void cachesCreatedLaterPublishMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        nodeB.setCacheCreatedListener(cache -> new TwoTierCacheMetrics(cache, Tags.empty()).bindTo(registry));
+        nodeA.getCache("books").put(1L, "Dune");
+        Cache books = nodeB.getCache("books");
+
+        books.get(1L);
+        books.get(1L);
+        books.get(2L);
+
+        assertThat(registry.get("cache.gets").tags("cache", "books", "result", "hit").functionCounter().count())
+            .isEqualTo(2);
+        assertThat(registry.get("cache.gets").tags("cache", "books", "result", "miss").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.tier.gets").tags("tier", "remote", "result", "hit").functionCounter()
+            .count()).isEqualTo(1);
+    }
+}
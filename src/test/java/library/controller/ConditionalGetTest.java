@@ -0,0 +1,72 @@
+package library.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionalGetTest {
+
+    private static final String ETAG = "\"v42\"";
+
+    @Test
+    void requestWithoutIfNoneMatchIsModified() {
+        assertThat(ConditionalGet.isNotModified(request(), ETAG)).isFalse();
+    }
+
+    @Test
+    void currentEtagInAnyListedValueIsNotModified() {
+        assertThat(ConditionalGet.isNotModified(request("\"v41\", \"v42\""), ETAG)).isTrue();
+        assertThat(ConditionalGet.isNotModified(request("\"v41\"", "\"v42\""), ETAG)).isTrue();
+        assertThat(ConditionalGet.isNotModified(request("W/\"v42\""), ETAG)).isTrue();
+        assertThat(ConditionalGet.isNotModified(request("*"), ETAG)).isTrue();
+    }
+
+    @Test
+    void staleEtagIsModified() {
+        assertThat(ConditionalGet.isNotModified(request("\"v41\""), ETAG)).isFalse();
+        assertThat(ConditionalGet.isNotModified(request("v42"), ETAG)).isFalse();
+    }
+
+    @Test
+    void etagDependsOnNegotiatedFormat() {
+        assertThat(ConditionalGet.etag("v42", request())).isEqualTo(ETAG);
+        assertThat(ConditionalGet.etag("v42", accepting("application/json"))).isEqualTo(ETAG);
+        assertThat(ConditionalGet.etag("v42", accepting("*/*"))).isEqualTo(ETAG);
+        assertThat(ConditionalGet.etag("v42", accepting("application/cbor"))).isEqualTo("\"v42-cbor\"");
+        assertThat(ConditionalGet.etag("v42", accepting("application/json;q=0.5, application/x-jackson-smile")))
+            .isEqualTo("\"v42-smile\"");
+    }
+
+    @Test
+    void responsesCarryEtagAndRevalidationPolicy() {
+        ResponseEntity<String> ok = ConditionalGet.ok(ETAG, "body");
+        ResponseEntity<String> notModified = ConditionalGet.notModified(ETAG);
+
+        assertThat(ok.getHeaders().getETag()).isEqualTo("\"v42\"");
+        assertThat(ok.getHeaders().getCacheControl()).isEqualTo("no-cache");
+        assertThat(ok.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getHeaders().getETag()).isEqualTo("\"v42\"");
+        assertThat(notModified.getBody()).isNull();
+    }
+
+    private static WebRequest request(String... ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/library/books/1");
+        for (String value : ifNoneMatch) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, value);
+        }
+        return new ServletWebRequest(request);
+    }
+
+    private static WebRequest accepting(String accept) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/library/books/1");
+        request.addHeader(HttpHeaders.ACCEPT, accept);
+        return new ServletWebRequest(request);
+    }
+}
@@ -0,0 +1,222 @@
+package library.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import library.config.OutboxProperties;
+import library.outbox.OutboxDispatcher;
+import library.repository.OutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+    private static final OutboxProperties OUTBOX_PROPERTIES = new OutboxProperties(
+        true, 100, Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofMinutes(5), 1, 10);
+
+    private final AtomicLong nanos = new AtomicLong(1_000);
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    private Connection primaryConnection;
+
+    private Connection replicaConnection;
+
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        replicaConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        dataSource = new ReplicaRoutingDataSource(primary, List.of(replica), MAX_LAG, nanos::get);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplicaAfterCheck() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+
+        assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void writeTransactionGoesToPrimary() throws SQLException {
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void readAfterWriteWaitsForReplicaToReplayIt() throws SQLException {
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+
+        dataSource.getConnection();
+        dataSource.trackWrite();
+        tick();
+        complete();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        walPositions(200L, 150L);
+        tick();
+        dataSource.checkReplicas();
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        walPositions(250L, 200L);
+        tick();
+        dataSource.checkReplicas();
+        assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void idleOutboxPollKeepsReadsOnReplica() throws SQLException {
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+        tick();
+
+        // опрос outbox - транзакция на запись в своем потоке, которая при пустом outbox ничего не меняет
+        DataSource lazyDataSource = new LazyConnectionDataSourceProxy(dataSource);
+        OutboxRepository outboxRepository = mock(OutboxRepository.class);
+        when(outboxRepository.lockBatch(anyInt())).thenAnswer(invocation -> {
+            DataSourceUtils.getConnection(lazyDataSource).createStatement();
+            return List.of();
+        });
+        OutboxDispatcher dispatcher = new OutboxDispatcher(outboxRepository, List.of(), new ObjectMapper(),
+            new TransactionTemplate(new DataSourceTransactionManager(lazyDataSource)), OUTBOX_PROPERTIES,
+            new SimpleMeterRegistry());
+        dispatcher.start();
+        try {
+            verify(outboxRepository, timeout(5_000)).lockBatch(anyInt());
+        } finally {
+            dispatcher.stop();
+        }
+        verify(primaryConnection).commit();
+        tick();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void replicaLaggingMoreThanMaxLagIsNotUsed() throws SQLException {
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        nanos.addAndGet(MAX_LAG.toNanos() + 1);
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        walPositions(200L, 100L);
+        dataSource.checkReplicas();
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void failedReplicaFallsBackToPrimaryUntilNextCheck() throws SQLException {
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        doThrow(new SQLException("connection refused")).when(replica).getConnection();
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        walPositions(100L, 100L);
+        tick();
+        dataSource.checkReplicas();
+        assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void serverThatIsNotReplicaIsNotUsed() throws SQLException {
+        walPositions(100L, null);
+        tick();
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    private void tick() {
+        nanos.addAndGet(1_000);
+    }
+
+    private void complete() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    /**
+     * Следующая проверка увидит эти позиции WAL основного сервера и реплики; соединения проверки
+     * отдельные, соединения маршрутизации остаются прежними.
+     */
+    private void walPositions(Long primaryPosition, Long replayPosition) throws SQLException {
+        Connection primaryCheck = checkConnection(ReplicaRoutingDataSource.PRIMARY_WAL_POSITION, primaryPosition);
+        Connection replicaCheck = checkConnection(ReplicaRoutingDataSource.REPLAY_WAL_POSITION, replayPosition);
+        doReturn(primaryCheck, primaryConnection).when(primary).getConnection();
+        doReturn(replicaCheck, replicaConnection).when(replica).getConnection();
+    }
+
+    private static Connection checkConnection(String sql, Long position) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(sql)).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getObject(1, Long.class)).thenReturn(position);
+        return connection;
+    }
+}
@@ -0,0 +1,88 @@
+package library.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import library.config.ImportProperties;
+import library.datasource.ReplicaRoutingDataSource;
+import library.dto.BookImportRow;
+import library.dto.ImportReport;
+import library.dto.ImportRowError;
+import library.entity.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkImporterTest {
+
+    private final BulkImporter importer = new BulkImporter(new ObjectMapper().findAndRegisterModules(),
+        Validation.buildDefaultValidatorFactory().getValidator(), new ImportProperties(2, 10),
+        new StaticListableBeanFactory().getBeanProvider(ReplicaRoutingDataSource.class));
+
+    private final List<List<String>> batches = new ArrayList<>();
+
+    private final List<String> imported = new ArrayList<>();
+
+    @Test
+    void ndjsonRowsAreWrittenInBatchesAndBadRowsAreReported() {
+        ImportReport report = importBooks(ImportFormat.NDJSON, """
+            {"title":"Dune","author":"Frank Herbert","pageCount":412}
+            {"title":"No pages"}
+
+            {broken
+            {"title":"Solaris","pageCount":204}
+            {"title":"Ubik","pageCount":202}
+            """);
+
+        assertThat(report.processed()).isEqualTo(5);
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.errors()).extracting(ImportRowError::line).containsExactly(2L, 4L);
+        assertThat(batches).containsExactly(List.of("Dune", "Solaris"), List.of("Ubik"));
+    }
+
+    @Test
+    void csvRowWithBadValueDoesNotStopTheImport() {
+        ImportReport report = importBooks(ImportFormat.CSV, """
+            title,author,publishedYear,pageCount
+            Dune,Frank Herbert,1965,412
+            Solaris,Stanislaw Lem,not-a-year,204
+            Ubik,Philip K. Dick,,202
+            """);
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.errors()).extracting(ImportRowError::line).containsExactly(3L);
+        assertThat(imported).containsExactly("Dune", "Ubik");
+    }
+
+    @Test
+    void rejectedBatchIsRetriedRowByRow() {
+        ImportReport report = importBooks(ImportFormat.NDJSON, """
+            {"title":"Dune","pageCount":412}
+            {"title":"duplicate","pageCount":1}
+            """);
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).extracting(ImportRowError::line).containsExactly(2L);
+        assertThat(imported).containsExactly("Dune");
+    }
+
+    private ImportReport importBooks(ImportFormat format, String content) {
+        return importer.importRows(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format,
+            BookImportRow.class, BookImportRow::toBook, this::write,
+            books -> books.forEach(book -> imported.add(book.getTitle())));
+    }
+
+    private void write(List<Book> books) {
+        List<String> titles = books.stream().map(Book::getTitle).toList();
+        if (titles.contains("duplicate")) {
+            throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+        }
+        batches.add(titles);
+    }
+}
@@ -0,0 +1,186 @@
+package library.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import library.config.OutboxProperties;
+import library.dto.BookSummary;
+import library.dto.LoanView;
+import library.repository.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTest {
+
+    private static final OutboxProperties PROPERTIES = new OutboxProperties(
+        true, 100, Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofMinutes(5), 1, 10);
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private OutboxRepository outboxRepository;
+
+    private DomainEventConsumer first;
+
+    private DomainEventConsumer second;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = mock(OutboxRepository.class);
+        first = mock(DomainEventConsumer.class);
+        second = mock(DomainEventConsumer.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // доставка после фиксации выполняется в потоке теста
+        dispatcher = new OutboxDispatcher(outboxRepository, List.of(first, second), objectMapper,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), PROPERTIES, meterRegistry, Runnable::run);
+    }
+
+    @Test
+    void deliversBatchToAllConsumersAndDeletesIt() throws Exception {
+        LoanCreated loanCreated = new LoanCreated(new LoanView(7L, 5L, 3L, NOW, NOW.plusDays(14), null, false));
+        BookChanged bookChanged = new BookChanged(null, new BookSummary(3L, "Книга", "Автор", 2001, 320, false, NOW));
+        when(outboxRepository.lockBatch(PROPERTIES.batchSize())).thenReturn(List.of(
+            event(1L, loanCreated), event(2L, bookChanged)));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(2);
+
+        verify(first).accept(List.of(loanCreated, bookChanged));
+        verify(second).accept(List.of(loanCreated, bookChanged));
+        verify(outboxRepository).delete(List.of(1L, 2L));
+        verify(outboxRepository, never()).scheduleRetry(anyCollection(), any(), any(), any());
+        assertThat(meterRegistry.get(OutboxDispatcher.METRIC).tag("outcome", "success").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void consumerFailureSchedulesRetryInsteadOfDelete() throws Exception {
+        LoanReturned loanReturned = new LoanReturned(new LoanView(7L, 5L, 3L, NOW, NOW.plusDays(14), NOW, true));
+        when(outboxRepository.lockBatch(PROPERTIES.batchSize())).thenReturn(List.of(event(1L, loanReturned)));
+        doThrow(new IllegalStateException("Redis недоступен")).when(second).accept(List.of(loanReturned));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(1);
+
+        verify(outboxRepository).scheduleRetry(eq(List.of(1L)), eq(PROPERTIES.retryBackoff()),
+            eq(PROPERTIES.maxRetryBackoff()), contains("Redis недоступен"));
+        verify(outboxRepository, never()).delete(anyCollection());
+        assertThat(meterRegistry.get(OutboxDispatcher.METRIC).tag("outcome", "failure").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void unknownEventTypeIsRetriedNotDropped() {
+        when(outboxRepository.lockBatch(PROPERTIES.batchSize())).thenReturn(List.of(
+            new OutboxEvent(1L, "BookRenamed", "{}", 0)));
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(1);
+
+        verifyNoInteractions(first, second);
+        verify(outboxRepository).scheduleRetry(eq(List.of(1L)), any(), any(), contains("BookRenamed"));
+        verify(outboxRepository, never()).delete(anyCollection());
+    }
+
+    @Test
+    void emptyOutboxDeliversNothing() {
+        when(outboxRepository.lockBatch(PROPERTIES.batchSize())).thenReturn(List.of());
+
+        assertThat(dispatcher.dispatchBatch()).isZero();
+
+        verifyNoInteractions(first, second);
+        verify(outboxRepository, never()).delete(anyCollection());
+    }
+
+    @Test
+    void committedEventsAreDeliveredAndDeleted() {
+        UserChanged userChanged = new UserChanged(null, null);
+
+        dispatcher.deliverCommitted(List.of(4L), List.of(userChanged));
+
+        verify(first).accept(List.of(userChanged));
+        verify(second).accept(List.of(userChanged));
+        verify(outboxRepository).delete(List.of(4L));
+    }
+
+    @Test
+    void committedEventsDoNotBlockCaller() throws InterruptedException {
+        UserChanged userChanged = new UserChanged(null, null);
+        CountDownLatch consumerBlocked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            consumerBlocked.await();
+            return null;
+        }).when(first).accept(List.of(userChanged));
+        OutboxDispatcher pooled = new OutboxDispatcher(outboxRepository, List.of(first, second), objectMapper,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), PROPERTIES, meterRegistry);
+        try {
+            pooled.deliverCommitted(List.of(4L), List.of(userChanged));
+
+            verify(outboxRepository, never()).delete(anyCollection());
+            consumerBlocked.countDown();
+            verify(outboxRepository, timeout(5_000)).delete(List.of(4L));
+        } finally {
+            consumerBlocked.countDown();
+            pooled.destroy();
+        }
+    }
+
+    @Test
+    void failureAfterCommitLeavesEventsForRetry() {
+        UserChanged userChanged = new UserChanged(null, null);
+        doThrow(new IllegalStateException("Redis недоступен")).when(first).accept(List.of(userChanged));
+
+        assertThatCode(() -> dispatcher.deliverCommitted(List.of(4L), List.of(userChanged)))
+            .doesNotThrowAnyException();
+
+        verify(outboxRepository, never()).delete(anyCollection());
+        assertThat(meterRegistry.get(OutboxDispatcher.METRIC).tag("outcome", "deferred").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void fullDeliveryQueueLeavesEventsForPoller() {
+        UserChanged userChanged = new UserChanged(null, null);
+        OutboxDispatcher saturated = new OutboxDispatcher(outboxRepository, List.of(first, second), objectMapper,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), PROPERTIES, meterRegistry,
+            task -> {
+                throw new RejectedExecutionException("очередь заполнена");
+            });
+
+        assertThatCode(() -> saturated.deliverCommitted(List.of(4L), List.of(userChanged)))
+            .doesNotThrowAnyException();
+
+        verifyNoInteractions(first, second);
+        verify(outboxRepository, never()).delete(anyCollection());
+        assertThat(meterRegistry.get(OutboxDispatcher.METRIC).tag("outcome", "deferred").timer().count())
+            .isEqualTo(1);
+    }
+
+    private OutboxEvent event(Long id, DomainEvent event) throws Exception {
+        return new OutboxEvent(id, event.getClass().getSimpleName(), objectMapper.writeValueAsString(event), 0);
+    }
+}
@@ -0,0 +1,140 @@
+package library.overdue;
+
+import library.config.OverdueProperties;
+import library.dto.LoanView;
+import library.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OverdueLoanTrackerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 12, 0);
+
+    private MutableClock clock;
+
+    private List<LoanView> openLoans;
+
+    private ApplicationEventPublisher publisher;
+
+    private OverdueLoanTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        LoanRepository repository = mock(LoanRepository.class);
+        openLoans = List.of(loan(1L, NOW.minusDays(1)), loan(2L, NOW.plusHours(1)), loan(3L, NOW.plusDays(3)));
+        doAnswer(invocation -> {
+            Consumer<LoanView> consumer = invocation.getArgument(0);
+            openLoans.forEach(consumer);
+            return null;
+        }).when(repository).scanOpenLoans(any());
+        clock = new MutableClock(NOW.toInstant(ZoneOffset.UTC));
+        publisher = mock(ApplicationEventPublisher.class);
+        tracker = new OverdueLoanTracker(repository, publisher,
+            new OverdueProperties(Duration.ofDays(14), Duration.ofMinutes(1), Duration.ofMinutes(1)), clock);
+        tracker.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void loadsOverdueLoansWithoutEvents() {
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(1L);
+        verify(publisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void advanceMovesDueLoansToOverdueAndPublishesEvents() {
+        clock.advance(Duration.ofMinutes(59));
+        tracker.advance();
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(1L);
+
+        clock.advance(Duration.ofMinutes(1));
+        tracker.advance();
+
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(1L, 2L);
+        verify(publisher).publishEvent(new LoanOverdueEvent(loan(2L, NOW.plusHours(1))));
+    }
+
+    @Test
+    void returnAndDeleteRemoveLoans() {
+        tracker.track(new LoanView(1L, 10L, 100L, NOW.minusDays(15), NOW.minusDays(1), NOW, true));
+        tracker.untrack(2L);
+        clock.advance(Duration.ofDays(1));
+        tracker.advance();
+
+        assertThat(tracker.findOverdue()).isEmpty();
+        verify(publisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void trackingPastDueLoanMakesItOverdueAtOnce() {
+        LoanView late = loan(4L, NOW.minusHours(2));
+
+        tracker.trackAll(List.of(late));
+
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(1L, 4L);
+        verify(publisher).publishEvent(new LoanOverdueEvent(late));
+    }
+
+    @Test
+    void reconcilePicksUpLoansChangedByOtherInstances() {
+        // заем 1 возвращен, заем 5 просрочен и заем 6 выдан на другом экземпляре
+        openLoans = List.of(loan(2L, NOW.plusHours(1)), loan(3L, NOW.plusDays(3)), loan(5L, NOW.minusHours(3)),
+            loan(6L, NOW.plusMinutes(30)));
+
+        tracker.reconcile();
+
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(5L);
+        clock.advance(Duration.ofMinutes(30));
+        tracker.advance();
+        assertThat(tracker.findOverdue()).extracting(LoanView::id).containsExactly(5L, 6L);
+        verify(publisher).publishEvent(new LoanOverdueEvent(loan(6L, NOW.plusMinutes(30))));
+    }
+
+    private static LoanView loan(Long id, LocalDateTime dueDate) {
+        return new LoanView(id, 10L, 100L + id, dueDate.minusDays(14), dueDate, null, false);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package library.overdue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+
+    @Test
+    void firesTimersAtTheirDeadlineAcrossLevels() {
+        TimerWheel<String> wheel = new TimerWheel<>(1_000);
+        wheel.schedule(1, "через тик", 1_001);
+        wheel.schedule(2, "уровень 1", 1_000 + 100);
+        wheel.schedule(3, "уровень 2", 1_000 + 10_000);
+        wheel.schedule(4, "уровень 3", 1_000 + 1_000_000);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advanceTo(1_099, fired::add);
+        assertThat(fired).containsExactly("через тик");
+
+        wheel.advanceTo(1_100, fired::add);
+        wheel.advanceTo(11_000, fired::add);
+        assertThat(fired).containsExactly("через тик", "уровень 1", "уровень 2");
+
+        wheel.advanceTo(2_000_000, fired::add);
+        assertThat(fired).containsExactly("через тик", "уровень 1", "уровень 2", "уровень 3");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void rejectsPastDeadlineAndReschedulesById() {
+        TimerWheel<String> wheel = new TimerWheel<>(500);
+
+        assertThat(wheel.schedule(1, "просрочен", 500)).isFalse();
+        assertThat(wheel.schedule(2, "рано", 510)).isTrue();
+        assertThat(wheel.schedule(2, "позже", 600)).isTrue();
+        assertThat(wheel.cancel(3)).isNull();
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(599, fired::add);
+
+        assertThat(fired).isEmpty();
+        wheel.advanceTo(600, fired::add);
+        assertThat(fired).containsExactly("позже");
+    }
+
+    @Test
+    void cancelledTimerDoesNotFire() {
+        TimerWheel<String> wheel = new TimerWheel<>(0);
+        wheel.schedule(1, "возвращен", 5_000);
+
+        assertThat(wheel.cancel(1)).isEqualTo("возвращен");
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(10_000, fired::add);
+        assertThat(fired).isEmpty();
+    }
+
+    @Test
+    void randomDeadlinesFireExactlyOnceAtTheirTick() {
+        Random random = new Random(42);
+        long start = 123_456_789L;
+        TimerWheel<Long> wheel = new TimerWheel<>(start);
+        for (long id = 0; id < 5_000; id++) {
+            long deadline = start + 1 + random.nextInt(300_000);
+            wheel.schedule(id, deadline, deadline);
+        }
+        List<Long> late = new ArrayList<>();
+        int fired = 0;
+
+        for (long tick = start + 1; tick <= start + 300_000; tick++) {
+            long current = tick;
+            List<Long> due = new ArrayList<>();
+            wheel.advanceTo(tick, due::add);
+            fired += due.size();
+            due.stream().filter(deadline -> deadline != current).forEach(late::add);
+        }
+
+        assertThat(fired).isEqualTo(5_000);
+        assertThat(late).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+}
@@ -0,0 +1,76 @@
+package library.partition;
+
+import library.config.LoanPartitionProperties;
+import library.repository.LoanPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoanPartitionManagerTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+    private LoanPartitionRepository repository;
+
+    private LoanPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(LoanPartitionRepository.class);
+        when(repository.findMonthlyPartitions()).thenReturn(Set.of(
+            YearMonth.of(2021, 8), YearMonth.of(2021, 9), YearMonth.of(2021, 10), CURRENT, CURRENT.plusMonths(1)));
+        manager = new LoanPartitionManager(repository, new LoanPartitionProperties(3, 60, Duration.ofDays(1)));
+    }
+
+    @Test
+    void createsMissingFuturePartitions() {
+        manager.maintain(CURRENT);
+
+        verify(repository).createMonthlyPartition(YearMonth.of(2026, 12));
+        verify(repository).createMonthlyPartition(YearMonth.of(2027, 1));
+        verify(repository, never()).createMonthlyPartition(CURRENT);
+        verify(repository, never()).createMonthlyPartition(YearMonth.of(2027, 2));
+    }
+
+    @Test
+    void detachesOnlyExpiredPartitionsWithoutOpenLoans() {
+        when(repository.hasOpenLoans(YearMonth.of(2021, 9))).thenReturn(true);
+
+        manager.maintain(CURRENT);
+
+        verify(repository).detachMonthlyPartition(YearMonth.of(2021, 8));
+        verify(repository, never()).detachMonthlyPartition(YearMonth.of(2021, 9));
+        verify(repository, never()).detachMonthlyPartition(YearMonth.of(2021, 10));
+    }
+
+    @Test
+    void zeroRetentionKeepsAllPartitions() {
+        manager = new LoanPartitionManager(repository, new LoanPartitionProperties(3, 0, Duration.ofDays(1)));
+
+        manager.maintain(CURRENT);
+
+        verify(repository, never()).detachMonthlyPartition(any());
+    }
+
+    @Test
+    void failedCreationDoesNotStopMaintenance() {
+        doThrow(new DataIntegrityViolationException("loans_default содержит строки"))
+            .when(repository).createMonthlyPartition(YearMonth.of(2026, 12));
+
+        manager.maintain(CURRENT);
+
+        verify(repository).createMonthlyPartition(YearMonth.of(2027, 1));
+        verify(repository).detachMonthlyPartition(YearMonth.of(2021, 8));
+    }
+}
@@ -0,0 +1,152 @@
+package library.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Обертка над {@link DataSource}, которая во время записи перед выполнением каждого подготовленного
+ * запроса получает его план через {@code EXPLAIN (FORMAT JSON)} с теми же значениями параметров.
+ * <p>
+ * План строится на том же соединении и в той же транзакции, что и сам запрос, поэтому учитывает
+ * незафиксированные изменения и совпадает с планом, который выбрал бы PostgreSQL для этих значений.
+ */
+final class ExplainingDataSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+        "executeLargeUpdate");
+
+    private final List<Plan> plans = new ArrayList<>();
+
+    private volatile boolean recording;
+
+    /**
+     * Обернуть источник соединений.
+     *
+     * @param dataSource исходный источник
+     * @return источник, соединения которого записывают планы
+     */
+    DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args) -> {
+            Object result = method.invoke(dataSource, args);
+            return result instanceof Connection connection ? wrap(connection) : result;
+        });
+    }
+
+    /**
+     * Записать планы запросов, выполненных в {@code action}.
+     *
+     * @param action действие с репозиторием
+     * @return планы выполненных запросов в порядке выполнения
+     */
+    synchronized List<Plan> record(Runnable action) {
+        plans.clear();
+        recording = true;
+        try {
+            action.run();
+        } finally {
+            recording = false;
+        }
+        return List.copyOf(plans);
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = method.invoke(connection, args);
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                return wrap(connection, statement, (String) args[0]);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrap(Connection connection, PreparedStatement statement, String sql) {
+        List<Binding> bindings = new ArrayList<>();
+        return proxy(PreparedStatement.class, statement, (method, args) -> {
+            // setXxx(индекс параметра, значение, ...); setFetchSize и подобные принимают один аргумент
+            if (method.getName().startsWith("set") && args != null && args.length >= 2
+                && args[0] instanceof Integer) {
+                bindings.add(new Binding(method, args));
+            } else if (method.getName().equals("clearParameters")) {
+                bindings.clear();
+            } else if (recording && EXECUTE_METHODS.contains(method.getName()) && (args == null || args.length == 0)) {
+                plans.add(explain(connection, sql, bindings));
+            }
+            return method.invoke(statement, args);
+        });
+    }
+
+    private static Plan explain(Connection connection, String sql, List<Binding> bindings) throws Exception {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+            for (Binding binding : bindings) {
+                binding.method().invoke(explain, binding.args());
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                rs.next();
+                return new Plan(sql, MAPPER.readTree(rs.getString(1)).get(0).get("Plan"));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Invocation invocation) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return invocation.invoke(method, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(ExplainingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    @FunctionalInterface
+    private interface Invocation {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    private record Binding(Method method, Object[] args) {
+    }
+
+    /**
+     * План одного запроса.
+     *
+     * @param sql  текст запроса
+     * @param root корневой узел плана из {@code EXPLAIN (FORMAT JSON)}
+     */
+    record Plan(String sql, JsonNode root) {
+
+        /**
+         * Имена таблиц и секций, которые план читает последовательным сканированием.
+         *
+         * @return имена отношений узлов {@code Seq Scan}
+         */
+        List<String> seqScannedRelations() {
+            List<String> relations = new ArrayList<>();
+            collectSeqScans(root, relations);
+            return relations;
+        }
+
+        private static void collectSeqScans(JsonNode node, List<String> relations) {
+            if ("Seq Scan".equals(node.path("Node Type").asText())) {
+                relations.add(node.path("Relation Name").asText());
+            }
+            for (JsonNode child : node.path("Plans")) {
+                collectSeqScans(child, relations);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package library.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import library.dto.LoanStatsDelta;
+import library.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверка планов запросов репозиториев на заполненной базе данных.
+ * <p>
+ * Каждый запрос, выполненный методом репозитория, дополнительно разбирается через {@code EXPLAIN (FORMAT JSON)}
+ * с теми же параметрами. Тест падает, если план читает последовательным сканированием таблицу или секцию,
+ * в которой по статистике больше {@link #SEQ_SCAN_ROWS} строк. Аргументы методов выбраны селективными:
+ * для неселективного условия последовательное сканирование было бы правильным планом.
+ * <p>
+ * База данных - встроенный PostgreSQL; вместо него можно передать {@code -Dlibrary.plan.jdbc-url},
+ * например если тесты запускаются от root, под которым PostgreSQL не стартует.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "spring.cache.type=simple",
+    "spring.docker.compose.enabled=false",
+    "spring.liquibase.enabled=true",
+    "library.stream.port=0",
+    "library.availability.reconcile-interval=1h",
+    "library.overdue.reconcile-interval=1h",
+    "library.search.reconcile-interval=1h",
+    "library.warmup.enabled=false",
+    "library.outbox.dispatch=false",
+    "logging.level.root=WARN"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanRegressionTest {
+
+    private static final String JDBC_URL_PROPERTY = "library.plan.jdbc-url";
+
+    private static final long SEQ_SCAN_ROWS = 10_000;
+
+    private static final int BOOKS = 100_000;
+
+    private static final int USERS = 50_000;
+
+    private static final int LOANS = 400_000;
+
+    /**
+     * Открытыми остаются самые новые займы.
+     */
+    private static final int OPEN_LOANS = 2_000;
+
+    /**
+     * События outbox, отложенные после неудачной доставки: готовых к доставке среди них нет.
+     */
+    private static final int OUTBOX_EVENTS = 20_000;
+
+    private static final ExplainingDataSource EXPLAINING = new ExplainingDataSource();
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanPartitionRepository loanPartitionRepository;
+
+    @Autowired
+    private LoanStatsRepository loanStatsRepository;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long bookId;
+
+    private Long userId;
+
+    private Long loanId;
+
+    private Long eventId;
+
+    private KeysetCursor bookCursor;
+
+    private KeysetCursor userCursor;
+
+    private KeysetCursor loanCursor;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", QueryPlanRegressionTest::jdbcUrl);
+    }
+
+    private static synchronized String jdbcUrl() {
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl != null) {
+            return jdbcUrl;
+        }
+        if (postgres == null) {
+            try {
+                // процесс PostgreSQL останавливает перехватчик завершения JVM из EmbeddedPostgres
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return postgres.getJdbcUrl("postgres", "postgres");
+    }
+
+    @BeforeAll
+    void seed() {
+        YearMonth current = YearMonth.now();
+        for (YearMonth month = current.minusMonths(12); month.isBefore(current); month = month.plusMonths(1)) {
+            loanPartitionRepository.createMonthlyPartition(month);
+        }
+        jdbcTemplate.update("INSERT INTO books (title, author, published_year, page_count, available, added_at) "
+            + "SELECT 'Книга ' || i, 'Автор ' || (i % 20000), 1900 + i % 126, 50 + i % 1451, i % 10 <> 0, "
+            + "now() - make_interval(mins => i) FROM generate_series(1, ?) AS i", BOOKS);
+        jdbcTemplate.update("INSERT INTO users (first_name, last_name, birth_date, date_registration, role) "
+            + "SELECT 'Имя' || (i % 5000), 'Фамилия' || (i % 10000), DATE '1990-01-01' + i % 10000, "
+            + "now() - make_interval(mins => i * 30), 'READER' FROM generate_series(1, ?) AS i", USERS);
+        jdbcTemplate.update("WITH u AS (SELECT array_agg(user_id) AS ids FROM users), "
+            + "b AS (SELECT array_agg(book_id) AS ids FROM books) "
+            + "INSERT INTO loans (user_id, book_id, loan_date, due_date, return_date, returned) "
+            + "SELECT u.ids[1 + i % cardinality(u.ids)], b.ids[1 + i * 7 % cardinality(b.ids)], "
+            + "now() - make_interval(secs => i * 75), now() - make_interval(secs => i * 75) + INTERVAL '14 days', "
+            + "CASE WHEN i > ? THEN now() - make_interval(secs => i * 75 - 86400) END, i > ? "
+            + "FROM u, b, generate_series(1, ?) AS i", OPEN_LOANS, OPEN_LOANS, LOANS);
+        loanStatsRepository.rebuild();
+        jdbcTemplate.update("INSERT INTO outbox_events (event_type, payload, attempts, next_attempt_at) "
+            + "SELECT 'BookChanged', jsonb_build_object('current', jsonb_build_object('id', i)), 5, "
+            + "now() + INTERVAL '1 hour' FROM generate_series(1, ?) AS i", OUTBOX_EVENTS);
+        jdbcTemplate.execute("ANALYZE");
+
+        bookId = jdbcTemplate.queryForObject("SELECT book_id FROM books WHERE title = 'Книга 500'", Long.class);
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM users ORDER BY user_id OFFSET ? LIMIT 1",
+            Long.class, USERS / 2);
+        loanId = jdbcTemplate.queryForObject("SELECT loan_id FROM loans ORDER BY loan_id OFFSET ? LIMIT 1",
+            Long.class, LOANS / 2);
+        eventId = jdbcTemplate.queryForObject("SELECT event_id FROM outbox_events ORDER BY event_id OFFSET ? LIMIT 1",
+            Long.class, OUTBOX_EVENTS / 2);
+        bookCursor = cursor("SELECT added_at, book_id FROM books ORDER BY added_at, book_id OFFSET ? LIMIT 1",
+            BOOKS / 2);
+        userCursor = cursor("SELECT date_registration, user_id FROM users "
+            + "ORDER BY date_registration, user_id OFFSET ? LIMIT 1", USERS / 2);
+        loanCursor = cursor("SELECT loan_date, loan_id FROM loans ORDER BY loan_date, loan_id OFFSET ? LIMIT 1",
+            LOANS / 2);
+    }
+
+    Stream<Arguments> queries() {
+        return Stream.of(
+            query("BookRepository.findPage", () -> bookRepository.findPage(null, 50)),
+            query("BookRepository.findPage после курсора", () -> bookRepository.findPage(bookCursor, 50)),
+            query("BookRepository.findById", () -> bookRepository.findById(bookId)),
+            query("BookRepository.findByIdWithLoans", () -> bookRepository.findByIdWithLoans(bookId)),
+            query("BookRepository.findByTitle", () -> bookRepository.findByTitle("Книга 500")),
+            query("BookRepository.findSummariesByIds",
+                () -> bookRepository.findSummariesByIds(List.of(bookId, bookId + 50, bookId + 100))),
+            query("BookRepository.findByAuthor", () -> bookRepository.findByAuthor("Автор 42")),
+            query("BookRepository.findByPublishedYearAfter", () -> bookRepository.findByPublishedYearAfter(2024)),
+            query("BookRepository.findByPageCountGreaterThan",
+                () -> bookRepository.findByPageCountGreaterThan(1495)),
+            query("BookRepository.updateAvailability", () -> bookRepository.updateAvailability(Set.of(bookId), false)),
+            query("BookRepository.findExistingIds", () -> bookRepository.findExistingIds(Set.of(bookId))),
+            query("UserRepository.findPage", () -> userRepository.findPage(null, 50)),
+            query("UserRepository.findPage после курсора", () -> userRepository.findPage(userCursor, 50)),
+            query("UserRepository.findById", () -> userRepository.findById(userId)),
+            query("UserRepository.findByIdWithLoans", () -> userRepository.findByIdWithLoans(userId)),
+            query("UserRepository.findByFirstName", () -> userRepository.findByFirstName("Имя42")),
+            query("UserRepository.findByLastName", () -> userRepository.findByLastName("Фамилия42")),
+            query("UserRepository.findByDateRegistrationAfter",
+                () -> userRepository.findByDateRegistrationAfter(LocalDate.now().minusDays(3))),
+            query("LoanRepository.findPage", () -> loanRepository.findPage(null, 50)),
+            query("LoanRepository.findPage после курсора", () -> loanRepository.findPage(loanCursor, 50)),
+            query("LoanRepository.findById", () -> loanRepository.findById(loanId)),
+            query("LoanRepository.findViewById", () -> loanRepository.findViewById(loanId)),
+            query("LoanRepository.findByUserId", () -> loanRepository.findByUserId(userId)),
+            query("LoanRepository.findByReturnedFalse", () -> loanRepository.findByReturnedFalse()),
+            query("LoanRepository.compareAndSetReturned",
+                () -> loanRepository.compareAndSetReturned(loanId, true, false, null)),
+            query("LoanRepository.markReturned",
+                () -> loanRepository.markReturned(Set.of(loanId), LocalDateTime.now())),
+            query("LoanRepository.findExistingIds", () -> loanRepository.findExistingIds(Set.of(loanId))),
+            query("LoanRepository.deleteById", () -> loanRepository.deleteById(loanId)),
+            query("LoanRepository.deleteByUserId", () -> loanRepository.deleteByUserId(userId)),
+            query("LoanRepository.deleteByBookId", () -> loanRepository.deleteByBookId(bookId)),
+            query("LoanPartitionRepository.hasOpenLoans",
+                () -> loanPartitionRepository.hasOpenLoans(YearMonth.now().minusMonths(6))),
+            query("LoanStatsRepository.apply", () -> loanStatsRepository.apply(List.of(
+                new LoanStatsDelta(bookId, userId, 1, 1), new LoanStatsDelta(bookId + 50, userId, 1, 1)))),
+            query("LoanStatsRepository.moveAuthor",
+                () -> loanStatsRepository.moveAuthor(bookId, "Автор 500", "Автор 501")),
+            query("LoanStatsRepository.findTopBooks", () -> loanStatsRepository.findTopBooks(10)),
+            query("LoanStatsRepository.findBookStats", () -> loanStatsRepository.findBookStats(bookId)),
+            query("LoanStatsRepository.findTopAuthors", () -> loanStatsRepository.findTopAuthors(10)),
+            query("LoanStatsRepository.findTopActiveUsers", () -> loanStatsRepository.findTopActiveUsers(10)),
+            query("LoanStatsRepository.findUserStats", () -> loanStatsRepository.findUserStats(userId)),
+            query("OutboxRepository.lockBatch", () -> outboxRepository.lockBatch(100)),
+            query("OutboxRepository.delete", () -> outboxRepository.delete(List.of(eventId, eventId + 1))),
+            query("OutboxRepository.scheduleRetry", () -> outboxRepository.scheduleRetry(List.of(eventId),
+                Duration.ofSeconds(1), Duration.ofMinutes(5), "ошибка"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void doesNotSeqScanLargeTables(String name, Runnable query) {
+        // изменения данных откатываются, чтобы не влиять на планы следующих запросов
+        List<ExplainingDataSource.Plan> plans = EXPLAINING.record(() -> transactionTemplate.executeWithoutResult(
+            status -> {
+                status.setRollbackOnly();
+                query.run();
+            }));
+        Map<String, Long> rows = relationRows();
+
+        assertThat(plans).as("запросы %s", name).isNotEmpty();
+        for (ExplainingDataSource.Plan plan : plans) {
+            assertThat(plan.seqScannedRelations())
+                .as("последовательное сканирование больших таблиц в плане запроса %s:%n%s%n%s",
+                    name, plan.sql(), plan.root().toPrettyString())
+                .allMatch(relation -> rows.getOrDefault(relation, 0L) <= SEQ_SCAN_ROWS);
+        }
+    }
+
+    private Map<String, Long> relationRows() {
+        return jdbcTemplate.queryForList("SELECT relname, reltuples::bigint AS rows FROM pg_class "
+                + "WHERE relkind = 'r' AND relnamespace = 'public'::regnamespace").stream()
+            .collect(Collectors.toMap(row -> (String) row.get("relname"), row -> (Long) row.get("rows")));
+    }
+
+    private KeysetCursor cursor(String sql, int offset) {
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new KeysetCursor(
+            rs.getObject(1, LocalDateTime.class), rs.getLong(2)), offset);
+    }
+
+    private static Arguments query(String name, Runnable query) {
+        return Arguments.of(name, query);
+    }
+
+    @TestConfiguration
+    static class ExplainingConfig {
+
+        @Bean
+        static BeanPostProcessor explainingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? EXPLAINING.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package library.schema;
+
+import library.config.SchemaProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SchemaVersionCheckTest {
+
+    private static final String TAG = "step8";
+
+    private DataSource dataSource;
+
+    private PreparedStatement statement;
+
+    private ResultSet resultSet;
+
+    private SchemaVersionCheck check;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(SchemaVersionCheck.TAG_EXISTS)).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        check = new SchemaVersionCheck(dataSource, new SchemaProperties(true, TAG));
+    }
+
+    @Test
+    void passesWhenExpectedTagIsApplied() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(true);
+
+        assertThatCode(check::afterPropertiesSet).doesNotThrowAnyException();
+        verify(statement).setString(1, TAG);
+    }
+
+    @Test
+    void failsWhenExpectedTagIsMissing() throws SQLException {
+        when(resultSet.getBoolean(1)).thenReturn(false);
+
+        assertThatThrownBy(check::afterPropertiesSet)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(TAG)
+            .hasMessageContaining(SchemaMigration.COMMAND);
+    }
+
+    @Test
+    void failsWhenSchemaWasNeverMigrated() throws SQLException {
+        when(statement.executeQuery()).thenThrow(new SQLException("relation \"databasechangelog\" does not exist"));
+
+        assertThatThrownBy(check::afterPropertiesSet)
+            .isInstanceOf(IllegalStateException.class)
+            .hasCauseInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void skippedWhenCheckIsDisabled() {
+        check = new SchemaVersionCheck(dataSource, new SchemaProperties(false, TAG));
+
+        assertThatCode(check::afterPropertiesSet).doesNotThrowAnyException();
+        verifyNoInteractions(dataSource);
+    }
+}
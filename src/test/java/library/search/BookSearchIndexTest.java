@@ -0,0 +1,114 @@
+package library.search;
+
+import library.config.SearchProperties;
+import library.dto.BookSummary;
+import library.dto.SearchPage;
+import library.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSearchIndexTest {
+
+    private BookRepository repository;
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = mock(BookRepository.class);
+        when(repository.findPage(any(), anyInt())).thenReturn(List.of(
+            book(3L, "The Great Gatsby", "F. Scott Fitzgerald")));
+        when(repository.findPage(isNull(), anyInt())).thenReturn(List.of(
+            book(1L, "1984", "George Orwell"),
+            book(2L, "Animal Farm", "George Orwell")));
+        index = new BookSearchIndex(repository, new SearchProperties(2, Duration.ofMinutes(5)));
+        index.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        index.destroy();
+    }
+
+    @Test
+    void rebuildIndexesEveryPage() {
+        assertThat(ids(index.search("orwell", 0, 10))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids(index.search("gatsby", 0, 10))).containsExactly(3L);
+    }
+
+    @Test
+    void matchesPrefixesAndTypos() {
+        assertThat(ids(index.search("gats", 0, 10))).containsExactly(3L);
+        assertThat(ids(index.search("fitzgerlad", 0, 10))).containsExactly(3L);
+    }
+
+    @Test
+    void titleMatchRanksAboveAuthorMatch() {
+        index.index(book(4L, "Orwell: A Life", "Bernard Crick"));
+
+        assertThat(ids(index.search("orwell", 0, 10))).first().isEqualTo(4L);
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        index.index(book(3L, "Tender Is the Night", "F. Scott Fitzgerald"));
+        index.delete(1L);
+
+        assertThat(index.search("gatsby", 0, 10).total()).isZero();
+        assertThat(ids(index.search("tender night", 0, 10))).containsExactly(3L);
+        assertThat(ids(index.search("orwell", 0, 10))).containsExactly(2L);
+    }
+
+    @Test
+    void rebuildPicksUpBooksChangedByOtherInstances() {
+        when(repository.findPage(isNull(), anyInt())).thenReturn(List.of(book(5L, "Brave New World", "Aldous Huxley")));
+
+        index.rebuild();
+
+        assertThat(ids(index.search("huxley", 0, 10))).containsExactly(5L);
+        assertThat(index.search("orwell", 0, 10).total()).isZero();
+    }
+
+    @Test
+    void changesDuringRebuildAreNotLost() {
+        when(repository.findPage(isNull(), anyInt())).thenAnswer(invocation -> {
+            index.index(book(6L, "Homage to Catalonia", "George Orwell"));
+            index.delete(2L);
+            return List.of(book(1L, "1984", "George Orwell"), book(2L, "Animal Farm", "George Orwell"));
+        });
+
+        index.rebuild();
+
+        assertThat(ids(index.search("orwell", 0, 10))).containsExactlyInAnyOrder(1L, 6L);
+    }
+
+    @Test
+    void pagesThroughResults() {
+        SearchPage<BookSummary> first = index.search("george", 0, 1);
+        SearchPage<BookSummary> second = index.search("george", 1, 1);
+
+        assertThat(first.total()).isEqualTo(2);
+        assertThat(first.items()).hasSize(1);
+        assertThat(second.items()).hasSize(1).doesNotContainAnyElementsOf(first.items());
+    }
+
+    private static List<Long> ids(SearchPage<BookSummary> page) {
+        return page.items().stream().map(BookSummary::id).toList();
+    }
+
+    private static BookSummary book(Long id, String title, String author) {
+        return new BookSummary(id, title, author, 1950, 300, true, LocalDateTime.of(2020, 1, 1, 0, 0).plusDays(id));
+    }
+}
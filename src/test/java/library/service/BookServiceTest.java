@@ -0,0 +1,117 @@
+package library.service;
+
+import library.cache.CacheTags;
+import library.dto.BookDetails;
+import library.dto.BookSummary;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanView;
+import library.entity.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class BookServiceTest extends ServiceTestSupport {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CacheTags cacheTags;
+
+    @Test
+    void deletingBookInvalidatesTagsOfItsLoans() {
+        Long userId = insertUser(unique("Читатель"));
+        Long bookId = insertBook(unique("Удаляемая"), "Автор");
+        List<LoanBatchResult> checkout = loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId)));
+        List<String> tags = List.of("loans", "loan:" + checkout.get(0).loanId(), "user-loans:" + userId);
+        awaitDelivered();
+        Map<String, String> before = versions(tags);
+
+        bookService.deleteById(bookId);
+        awaitDelivered();
+
+        assertThat(versions(tags)).allSatisfy((tag, version) -> assertThat(version).isNotEqualTo(before.get(tag)));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM loans WHERE book_id = ?", Long.class, bookId))
+            .isZero();
+    }
+
+    @Test
+    void authorChangeMovesLoanCountsToNewAuthor() {
+        Long userId = insertUser(unique("Читатель"));
+        String previousAuthor = unique("Прежний автор");
+        String author = unique("Новый автор");
+        Long bookId = insertBook(unique("Переименованная"), previousAuthor);
+        Long loanId = loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId))).get(0).loanId();
+        loanService.returnAll(new LoanReturnBatch(List.of(loanId)));
+        loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId)));
+
+        Book update = new Book();
+        update.setTitle("Переименованная");
+        update.setAuthor(author);
+        update.setPageCount(100);
+        bookService.update(bookId, update);
+
+        assertThat(authorLoans(previousAuthor)).isZero();
+        assertThat(authorLoans(author)).isEqualTo(2);
+
+        bookService.deleteById(bookId);
+
+        assertThat(authorLoans(previousAuthor)).isZero();
+        assertThat(authorLoans(author)).isZero();
+    }
+
+    @Test
+    void deletingBookRemovesItsLoansFromStats() {
+        Long userId = insertUser(unique("Читатель"));
+        String author = unique("Автор");
+        Long bookId = insertBook(unique("Удаляемая"), author);
+        Long otherBookId = insertBook(unique("Остающаяся"), author);
+        loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId, otherBookId)));
+
+        bookService.deleteById(bookId);
+
+        assertThat(authorLoans(author)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForMap("SELECT active_loans, total_loans FROM user_loan_stats "
+            + "WHERE user_id = ?", userId)).containsEntry("active_loans", 1).containsEntry("total_loans", 1L);
+    }
+
+    @Test
+    void listingsReturnSummariesAndDetailsCarryLoans() {
+        Long userId = insertUser(unique("Читатель"));
+        String author = unique("Автор");
+        String title = unique("Проекция");
+        Long bookId = insertBook(title, author);
+        Long loanId = loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId))).get(0).loanId();
+
+        List<BookSummary> books = bookService.findByAuthor(author);
+        BookDetails details = bookService.findDetailsById(bookId);
+
+        assertThat(books).extracting(BookSummary::id, BookSummary::title, BookSummary::author,
+            BookSummary::publishedYear, BookSummary::pageCount, BookSummary::available)
+            .containsExactly(tuple(bookId, title, author, 2000, 100, false));
+        assertThat(details.book()).isEqualTo(books.get(0));
+        assertThat(details.loans()).extracting(LoanView::id, LoanView::userId, LoanView::bookId, LoanView::returned)
+            .containsExactly(tuple(loanId, userId, bookId, false));
+    }
+
+    private long authorLoans(String author) {
+        return jdbcTemplate.queryForList("SELECT loan_count FROM author_loan_stats WHERE author = ?", Long.class,
+            author).stream().mapToLong(Long::longValue).sum();
+    }
+
+    private Map<String, String> versions(List<String> tags) {
+        return tags.stream().collect(Collectors.toMap(Function.identity(), cacheTags::current));
+    }
+}
@@ -0,0 +1,223 @@
+package library.service;
+
+import library.cache.CacheTags;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.entity.Book;
+import library.entity.Loan;
+import library.entity.User;
+import library.exception.BadRequestException;
+import library.exception.ConflictException;
+import library.exception.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LoanServiceTest extends ServiceTestSupport {
+
+    private static final int CONCURRENT_CHECKOUTS = 8;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CacheTags cacheTags;
+
+    @Test
+    void concurrentCheckoutOfSameBookHasOneWinner() throws Exception {
+        Long bookId = insertBook(unique("Спорная"), "Автор");
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_CHECKOUTS; i++) {
+            userIds.add(insertUser(unique("Читатель")));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CHECKOUTS);
+        List<Future<Boolean>> checkouts = new ArrayList<>();
+        try {
+            for (Long userId : userIds) {
+                checkouts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        loanService.save(loan(userId, bookId));
+                        return true;
+                    } catch (ConflictException ex) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int won = 0;
+            for (Future<Boolean> checkout : checkouts) {
+                won += checkout.get(30, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertThat(won).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(isAvailable(bookId)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM loans WHERE book_id = ? AND NOT returned",
+            Long.class, bookId)).isEqualTo(1);
+    }
+
+    @Test
+    void returningReturnedLoanChangesNothing() {
+        Long userId = insertUser(unique("Читатель"));
+        Long bookId = insertBook(unique("Возвращаемая"), "Автор");
+        Long loanId = loanService.save(loan(userId, bookId)).getId();
+        loanService.updateReturnStatus(loanId, true);
+
+        loanService.updateReturnStatus(loanId, true);
+
+        assertThat(isAvailable(bookId)).isTrue();
+        assertThat(jdbcTemplate.queryForMap("SELECT active_loans, total_loans FROM user_loan_stats "
+            + "WHERE user_id = ?", userId)).containsEntry("active_loans", 0).containsEntry("total_loans", 1L);
+    }
+
+    @Test
+    void checkoutOfMissingBookOrByMissingUserIsNotFound() {
+        Long userId = insertUser(unique("Читатель"));
+        Long bookId = insertBook(unique("Книга"), "Автор");
+        Long missingId = Long.valueOf(Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> loanService.save(loan(userId, missingId))).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> loanService.save(loan(missingId, bookId))).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> loanService.checkoutAll(new LoanCheckoutBatch(missingId, List.of(bookId))))
+            .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> loanService.updateReturnStatus(missingId, true))
+            .isInstanceOf(NotFoundException.class);
+
+        assertThat(isAvailable(bookId)).isTrue();
+    }
+
+    @Test
+    void checkoutAllReportsEveryBookOfMixedBatch() {
+        Long userId = insertUser(unique("Читатель"));
+        Long otherUserId = insertUser(unique("Другой читатель"));
+        Long firstBookId = insertBook(unique("Первая"), "Автор");
+        Long secondBookId = insertBook(unique("Вторая"), "Автор");
+        Long loanedBookId = insertBook(unique("Выданная"), "Автор");
+        Long missingBookId = Long.valueOf(Integer.MAX_VALUE);
+        Long otherLoanId = loanService.checkoutAll(new LoanCheckoutBatch(otherUserId, List.of(loanedBookId)))
+            .get(0).loanId();
+        awaitDelivered();
+        String firstBookVersion = cacheTags.current("book:" + firstBookId);
+        String loanedBookVersion = cacheTags.current("book:" + loanedBookId);
+        String userLoansVersion = cacheTags.current("user-loans:" + userId);
+
+        List<LoanBatchResult> results = loanService.checkoutAll(new LoanCheckoutBatch(userId,
+            List.of(firstBookId, loanedBookId, firstBookId, missingBookId, secondBookId)));
+
+        assertThat(results).extracting(LoanBatchResult::bookId, LoanBatchResult::status).containsExactly(
+            tuple(firstBookId, LoanBatchResult.Status.CHECKED_OUT),
+            tuple(loanedBookId, LoanBatchResult.Status.BOOK_UNAVAILABLE),
+            tuple(firstBookId, LoanBatchResult.Status.DUPLICATE),
+            tuple(missingBookId, LoanBatchResult.Status.BOOK_NOT_FOUND),
+            tuple(secondBookId, LoanBatchResult.Status.CHECKED_OUT));
+        assertThat(results).filteredOn(result -> result.status() != LoanBatchResult.Status.CHECKED_OUT)
+            .allSatisfy(result -> assertThat(result.loanId()).isNull());
+        Map<Long, Long> openLoans = openLoansByBook(userId);
+        assertThat(openLoans).containsOnly(
+            Map.entry(firstBookId, results.get(0).loanId()),
+            Map.entry(secondBookId, results.get(4).loanId()));
+        assertThat(openLoansByBook(otherUserId)).containsOnly(Map.entry(loanedBookId, otherLoanId));
+        assertThat(isAvailable(firstBookId)).isFalse();
+        assertThat(isAvailable(secondBookId)).isFalse();
+        Map<String, Object> loan = jdbcTemplate.queryForMap("SELECT loan_date, due_date FROM loans WHERE loan_id = ?",
+            results.get(0).loanId());
+        assertThat(Duration.between(timestamp(loan, "loan_date"), timestamp(loan, "due_date")))
+            .isEqualTo(Duration.ofDays(14));
+
+        awaitDelivered();
+        assertThat(cacheTags.current("book:" + firstBookId)).isNotEqualTo(firstBookVersion);
+        assertThat(cacheTags.current("user-loans:" + userId)).isNotEqualTo(userLoansVersion);
+        assertThat(cacheTags.current("book:" + loanedBookId)).isEqualTo(loanedBookVersion);
+    }
+
+    @Test
+    void returnAllReportsEveryLoanOfMixedBatch() {
+        Long userId = insertUser(unique("Читатель"));
+        Long openBookId = insertBook(unique("Открытая"), "Автор");
+        Long returnedBookId = insertBook(unique("Возвращенная"), "Автор");
+        List<LoanBatchResult> checkout = loanService.checkoutAll(
+            new LoanCheckoutBatch(userId, List.of(openBookId, returnedBookId)));
+        Long openLoanId = checkout.get(0).loanId();
+        Long returnedLoanId = checkout.get(1).loanId();
+        Long missingLoanId = Long.valueOf(Integer.MAX_VALUE);
+        loanService.returnAll(new LoanReturnBatch(List.of(returnedLoanId)));
+        awaitDelivered();
+        String openLoanVersion = cacheTags.current("loan:" + openLoanId);
+        String returnedLoanVersion = cacheTags.current("loan:" + returnedLoanId);
+
+        List<LoanBatchResult> results = loanService.returnAll(
+            new LoanReturnBatch(List.of(openLoanId, returnedLoanId, openLoanId, missingLoanId)));
+
+        assertThat(results).extracting(LoanBatchResult::loanId, LoanBatchResult::bookId, LoanBatchResult::status)
+            .containsExactly(
+                tuple(openLoanId, openBookId, LoanBatchResult.Status.RETURNED),
+                tuple(returnedLoanId, null, LoanBatchResult.Status.ALREADY_RETURNED),
+                tuple(openLoanId, null, LoanBatchResult.Status.DUPLICATE),
+                tuple(missingLoanId, null, LoanBatchResult.Status.LOAN_NOT_FOUND));
+        assertThat(openLoansByBook(userId)).isEmpty();
+        assertThat(isAvailable(openBookId)).isTrue();
+        assertThat(isAvailable(returnedBookId)).isTrue();
+        assertThat(jdbcTemplate.queryForMap("SELECT active_loans, total_loans FROM user_loan_stats "
+            + "WHERE user_id = ?", userId)).containsEntry("active_loans", 0).containsEntry("total_loans", 2L);
+
+        awaitDelivered();
+        assertThat(cacheTags.current("loan:" + openLoanId)).isNotEqualTo(openLoanVersion);
+        assertThat(cacheTags.current("loan:" + returnedLoanId)).isEqualTo(returnedLoanVersion);
+    }
+
+    @Test
+    void emptyBatchIsRejected() {
+        Long userId = insertUser(unique("Читатель"));
+
+        assertThatThrownBy(() -> loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of())))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> loanService.checkoutAll(new LoanCheckoutBatch(userId, null)))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> loanService.returnAll(new LoanReturnBatch(List.of())))
+            .isInstanceOf(BadRequestException.class);
+    }
+
+    private Map<Long, Long> openLoansByBook(Long userId) {
+        Map<Long, Long> loans = new HashMap<>();
+        jdbcTemplate.query("SELECT book_id, loan_id FROM loans WHERE user_id = ? AND NOT returned",
+            (RowCallbackHandler) rs -> loans.put(rs.getLong("book_id"), rs.getLong("loan_id")), userId);
+        return loans;
+    }
+
+    private static LocalDateTime timestamp(Map<String, Object> loan, String column) {
+        return ((Timestamp) loan.get(column)).toLocalDateTime();
+    }
+
+    private static Loan loan(Long userId, Long bookId) {
+        User user = new User();
+        user.setId(userId);
+        Book book = new Book();
+        book.setId(bookId);
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        return loan;
+    }
+}
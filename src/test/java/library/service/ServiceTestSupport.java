@@ -0,0 +1,98 @@
+package library.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Общий контекст тестов сервисов на встроенном PostgreSQL.
+ * <p>
+ * Наследники разделяют один контекст Spring и одну базу данных, поэтому каждый тест создает свои книги и
+ * пользователей и не рассчитывает на пустые таблицы. Вместо встроенного PostgreSQL можно передать
+ * {@code -Dlibrary.test.jdbc-url}, например если тесты запускаются от root.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "spring.cache.type=simple",
+    "spring.docker.compose.enabled=false",
+    "spring.liquibase.enabled=true",
+    "library.stream.port=0",
+    "library.availability.reconcile-interval=1h",
+    "library.overdue.reconcile-interval=1h",
+    "library.search.reconcile-interval=1h",
+    "library.warmup.enabled=false",
+    "library.outbox.dispatch=false",
+    "logging.level.root=WARN"
+})
+abstract class ServiceTestSupport {
+
+    private static final String JDBC_URL_PROPERTY = "library.test.jdbc-url";
+
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", ServiceTestSupport::jdbcUrl);
+    }
+
+    private static synchronized String jdbcUrl() {
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl != null) {
+            return jdbcUrl;
+        }
+        if (postgres == null) {
+            try {
+                // процесс PostgreSQL останавливает перехватчик завершения JVM из EmbeddedPostgres
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return postgres.getJdbcUrl("postgres", "postgres");
+    }
+
+    /**
+     * Уникальное в пределах запуска имя, чтобы выборки по названию или автору видели только данные теста.
+     */
+    protected static String unique(String prefix) {
+        return prefix + " " + NAMES.incrementAndGet();
+    }
+
+    protected Long insertBook(String title, String author) {
+        return jdbcTemplate.queryForObject("INSERT INTO books (title, author, published_year, page_count, available, "
+            + "added_at) VALUES (?, ?, 2000, 100, true, now()) RETURNING book_id", Long.class, title, author);
+    }
+
+    protected Long insertUser(String lastName) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (first_name, last_name, birth_date, date_registration, "
+            + "role) VALUES ('Читатель', ?, DATE '1990-01-01', now(), 'READER') RETURNING user_id", Long.class,
+            lastName);
+    }
+
+    /**
+     * Дождаться доставки событий outbox: после фиксации их доставляет отдельный пул потоков.
+     */
+    protected void awaitDelivered() {
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+            jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_events", Long.class) == 0);
+    }
+
+    protected boolean isAvailable(Long bookId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT available FROM books WHERE book_id = ?",
+            Boolean.class, bookId));
+    }
+}
@@ -0,0 +1,85 @@
+package library.service;
+
+import library.availability.BookAvailabilityIndex;
+import library.cache.CacheTags;
+import library.dto.LoanBatchResult;
+import library.dto.LoanCheckoutBatch;
+import library.dto.LoanReturnBatch;
+import library.dto.LoanView;
+import library.dto.UserDetails;
+import library.dto.UserSummary;
+import library.enums.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class UserServiceTest extends ServiceTestSupport {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BookAvailabilityIndex bookAvailabilityIndex;
+
+    @Autowired
+    private CacheTags cacheTags;
+
+    @Test
+    void deletingUserReleasesBooksOfOpenLoans() {
+        Long userId = insertUser(unique("Удаляемый"));
+        Long openBookId = insertBook(unique("Открытая"), "Автор");
+        Long returnedBookId = insertBook(unique("Возвращенная"), "Автор");
+        List<LoanBatchResult> checkout = loanService.checkoutAll(
+            new LoanCheckoutBatch(userId, List.of(openBookId, returnedBookId)));
+        loanService.returnAll(new LoanReturnBatch(List.of(checkout.get(1).loanId())));
+        assertThat(isAvailable(openBookId)).isFalse();
+
+        userService.deleteById(userId);
+
+        assertThat(isAvailable(openBookId)).isTrue();
+        assertThat(isAvailable(returnedBookId)).isTrue();
+        assertThat(bookAvailabilityIndex.isAvailable(openBookId)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM loans WHERE user_id = ?", Long.class, userId))
+            .isZero();
+    }
+
+    @Test
+    void deletingUserInvalidatesTagsOfItsLoans() {
+        Long userId = insertUser(unique("Удаляемый"));
+        Long bookId = insertBook(unique("Книга"), "Автор");
+        Long loanId = loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId))).get(0).loanId();
+        awaitDelivered();
+        String loanVersion = cacheTags.current("loan:" + loanId);
+        String userLoansVersion = cacheTags.current("user-loans:" + userId);
+
+        userService.deleteById(userId);
+        awaitDelivered();
+
+        assertThat(cacheTags.current("loan:" + loanId)).isNotEqualTo(loanVersion);
+        assertThat(cacheTags.current("user-loans:" + userId)).isNotEqualTo(userLoansVersion);
+    }
+
+    @Test
+    void listingsReturnSummariesAndDetailsCarryLoans() {
+        String lastName = unique("Проекция");
+        Long userId = insertUser(lastName);
+        Long bookId = insertBook(unique("Книга"), "Автор");
+        Long loanId = loanService.checkoutAll(new LoanCheckoutBatch(userId, List.of(bookId))).get(0).loanId();
+
+        List<UserSummary> users = userService.findByLastName(lastName);
+        UserDetails details = userService.findDetailsById(userId);
+
+        assertThat(users).extracting(UserSummary::id, UserSummary::firstName, UserSummary::lastName,
+            UserSummary::role).containsExactly(tuple(userId, "Читатель", lastName, Role.READER));
+        assertThat(details.user()).isEqualTo(users.get(0));
+        assertThat(details.loans()).extracting(LoanView::id, LoanView::userId, LoanView::bookId, LoanView::returned)
+            .containsExactly(tuple(loanId, userId, bookId, false));
+    }
+}
@@ -0,0 +1,75 @@
+package library.stream;
+
+import library.dto.BookSummary;
+import library.repository.CatalogStreamRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogStreamHandlerTest {
+
+    private CatalogStreamRepository repository;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(CatalogStreamRepository.class);
+        client = WebTestClient.bindToRouterFunction(CatalogStreamServer.routes(new CatalogStreamHandler(repository)))
+            .build();
+    }
+
+    @Test
+    void streamsBooksAsNdjsonByDefault() {
+        when(repository.streamBooks(0)).thenReturn(Flux.just(book(1), book(2)));
+
+        String body = client.get().uri("/library/stream/books")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+
+        assertThat(body.lines()).hasSize(2);
+        assertThat(body.lines().findFirst().orElseThrow()).contains("\"id\":1");
+    }
+
+    @Test
+    void resumesServerSentEventsFromLastEventId() {
+        when(repository.streamBooks(7)).thenReturn(Flux.just(book(8)));
+
+        String body = client.get().uri("/library/stream/books")
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .header(CatalogStreamHandler.LAST_EVENT_ID, "7")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+
+        verify(repository).streamBooks(7);
+        assertThat(body).contains("id:8").contains("\"title\":\"Book 8\"");
+    }
+
+    @Test
+    void rejectsNegativeCursor() {
+        client.get().uri("/library/stream/books?after=-1")
+            .exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    private static BookSummary book(long id) {
+        return new BookSummary(id, "Book " + id, "Author", 2000, 100, true, LocalDateTime.of(2024, 1, 1, 0, 0));
+    }
+}
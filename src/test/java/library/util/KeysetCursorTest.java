@@ -0,0 +1,38 @@
+package library.util;
+
+import library.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodedCursorDecodesToSamePosition() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2021, 1, 15, 10, 0, 0, 123_456_000), 42L);
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void missingTokenMeansFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode(" ")).isNull();
+    }
+
+    @Test
+    void corruptedTokenIsBadRequest() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not-a-cursor"))
+            .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void pageSizeIsBounded() {
+        assertThat(KeysetCursor.pageSize(null)).isEqualTo(KeysetCursor.DEFAULT_PAGE_SIZE);
+        assertThat(KeysetCursor.pageSize(10_000)).isEqualTo(KeysetCursor.MAX_PAGE_SIZE);
+        assertThatThrownBy(() -> KeysetCursor.pageSize(0)).isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,109 @@
+package library.warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import library.config.WarmupProperties;
+import library.dto.BookLoanStats;
+import library.dto.UserLoanStats;
+import library.repository.BookRepository;
+import library.repository.LoanRepository;
+import library.repository.LoanStatsRepository;
+import library.repository.UserRepository;
+import library.service.BookService;
+import library.service.LoanService;
+import library.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.context.ApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupWarmupTest {
+
+    private BookRepository bookRepository;
+
+    private LoanStatsRepository loanStatsRepository;
+
+    private BookService bookService;
+
+    private UserService userService;
+
+    private LoanService loanService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StartupWarmup warmup;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        loanStatsRepository = mock(LoanStatsRepository.class);
+        bookService = mock(BookService.class);
+        userService = mock(UserService.class);
+        loanService = mock(LoanService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        warmup = warmup(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void loadsTopBooksAndUsersIntoCache() {
+        when(loanStatsRepository.findTopBooks(2)).thenReturn(List.of(
+            new BookLoanStats(7L, "Книга 7", "Автор", 30), new BookLoanStats(3L, "Книга 3", "Автор", 20)));
+        when(loanStatsRepository.findTopActiveUsers(2)).thenReturn(List.of(
+            new UserLoanStats(5L, "Имя", "Фамилия", 4, 12)));
+
+        warmup.run(new DefaultApplicationArguments());
+
+        verify(bookService).findPage(null, null);
+        verify(bookService).findAvailable(null, null);
+        verify(bookService).findById(7L);
+        verify(bookService).findById(3L);
+        verify(userService).findById(5L);
+        verify(loanService).findByUserId(5L);
+    }
+
+    @Test
+    void failuresAreCountedWithoutStoppingWarmup() {
+        when(bookRepository.findByAuthor("")).thenThrow(new IllegalStateException("нет соединения"));
+
+        warmup.run(new DefaultApplicationArguments());
+
+        WarmupReport report = warmup.getReport();
+        assertThat(report.timedOut()).isFalse();
+        assertThat(report.steps()).extracting(WarmupReport.Step::name).containsExactly(
+            StartupWarmup.CONNECTIONS, StartupWarmup.QUERIES, StartupWarmup.CACHES, StartupWarmup.REQUESTS);
+        WarmupReport.Step queries = report.steps().get(1);
+        assertThat(queries.failures()).isEqualTo(1);
+        assertThat(queries.operations()).isGreaterThan(1);
+        verify(bookService).findPage(null, null);
+        // без веб-сервера синтетических запросов нет
+        assertThat(report.steps().get(3).operations()).isZero();
+        assertThat(report.firstRoundMillis()).isNull();
+        assertThat(meterRegistry.find(StartupWarmup.METRIC).tag("step", StartupWarmup.QUERIES).timer())
+            .isNotNull();
+    }
+
+    @Test
+    void stopsAfterTimeout() {
+        warmup = warmup(Duration.ofNanos(-1));
+
+        warmup.run(new DefaultApplicationArguments());
+
+        assertThat(warmup.getReport().timedOut()).isTrue();
+        assertThat(warmup.getReport().steps()).allMatch(step -> step.operations() == 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StartupWarmup warmup(Duration timeout) {
+        return new StartupWarmup(mock(ApplicationContext.class), mock(ObjectProvider.class), bookRepository,
+            mock(UserRepository.class), mock(LoanRepository.class), loanStatsRepository, bookService,
+            userService, loanService, new WarmupProperties(true, 2, 10, timeout), meterRegistry);
+    }
+}